@@ -0,0 +1,119 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.lazywizard.lazylib.CollisionUtils;
+import org.lwjgl.util.vector.Vector2f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Segment/segment and segment/circle intersection, and point-in-polygon tests against polygons of various sizes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionUtilsBenchmark
+{
+    private static final int NUM_SEGMENTS = 1024;
+    private static final float POLYGON_RADIUS = 500f;
+    @Param({"8", "64", "512"})
+    public int polygonPoints;
+    private Vector2f[] starts1, ends1, starts2, ends2, points;
+    private float[] radii, polygon;
+    private final Vector2f dest = new Vector2f();
+
+    @Setup
+    public void setup()
+    {
+        final Random rng = new Random(1234);
+        starts1 = new Vector2f[NUM_SEGMENTS];
+        ends1 = new Vector2f[NUM_SEGMENTS];
+        starts2 = new Vector2f[NUM_SEGMENTS];
+        ends2 = new Vector2f[NUM_SEGMENTS];
+        points = new Vector2f[NUM_SEGMENTS];
+        radii = new float[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+        {
+            starts1[i] = randomPoint(rng);
+            ends1[i] = randomPoint(rng);
+            starts2[i] = randomPoint(rng);
+            ends2[i] = randomPoint(rng);
+            points[i] = randomPoint(rng);
+            radii[i] = 10f + rng.nextFloat() * 190f;
+        }
+
+        // A jagged star-shaped polygon, so the even-odd test can't short-circuit on a simple convex shape
+        polygon = new float[polygonPoints * 2];
+        for (int i = 0; i < polygonPoints; i++)
+        {
+            final double angle = (2.0 * Math.PI * i) / polygonPoints;
+            final float radius = POLYGON_RADIUS * (i % 2 == 0 ? 1f : 0.6f + rng.nextFloat() * 0.3f);
+            polygon[i * 2] = (float) (Math.cos(angle) * radius);
+            polygon[i * 2 + 1] = (float) (Math.sin(angle) * radius);
+        }
+    }
+
+    private static Vector2f randomPoint(Random rng)
+    {
+        return new Vector2f((rng.nextFloat() - 0.5f) * 2_000f, (rng.nextFloat() - 0.5f) * 2_000f);
+    }
+
+    @Benchmark
+    public void getCollisionPoint(Blackhole bh)
+    {
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+        {
+            bh.consume(CollisionUtils.getCollisionPoint(starts1[i], ends1[i], starts2[i], ends2[i]));
+        }
+    }
+
+    @Benchmark
+    public int getCollisionPointWithDest()
+    {
+        int hits = 0;
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+        {
+            final Vector2f s1 = starts1[i], e1 = ends1[i], s2 = starts2[i], e2 = ends2[i];
+            if (CollisionUtils.getCollisionPoint(s1.x, s1.y, e1.x, e1.y, s2.x, s2.y, e2.x, e2.y, dest))
+            {
+                hits++;
+            }
+        }
+
+        return hits;
+    }
+
+    @Benchmark
+    public int getCollides()
+    {
+        int hits = 0;
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+        {
+            if (CollisionUtils.getCollides(starts1[i], ends1[i], points[i], radii[i]))
+            {
+                hits++;
+            }
+        }
+
+        return hits;
+    }
+
+    @Benchmark
+    public int isPointWithinPolygon()
+    {
+        int inside = 0;
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+        {
+            final Vector2f point = points[i];
+            if (CollisionUtils.isPointWithinPolygon(point.x, point.y, polygon, polygonPoints))
+            {
+                inside++;
+            }
+        }
+
+        return inside;
+    }
+}
@@ -0,0 +1,149 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import com.fs.starfarer.api.combat.MissileAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.lazywizard.lazylib.combat.*;
+import org.lazywizard.lazylib.testing.FakeCombatEngine;
+import org.lwjgl.util.vector.Vector2f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Searches of a procedurally generated battle, with and without LazyLib's per-frame caching. Each call makes
+// QUERIES searches around random ships, reusing the same result lists so only the search itself allocates
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombatQueryBenchmark
+{
+    private static final int QUERIES = 64;
+    private static final float SEARCH_RANGE = 1_500f;
+    // Battles scale like the largest the game can field: 500 ships, 20k projectiles and 3k missiles
+    @Param({"50", "500"})
+    public int numShips;
+    @Param({"false", "true"})
+    public boolean caching;
+    private FakeCombatEngine engine;
+    private ShipAPI[] sources;
+    private final List<ShipAPI> ships = new ArrayList<>();
+    private final List<MissileAPI> missiles = new ArrayList<>();
+    private final List<CombatEntityAPI> entities = new ArrayList<>();
+    private final NearestEnemyTable nearestEnemies = new NearestEnemyTable();
+    private final WeaponTargetTable targets = new WeaponTargetTable();
+
+    @Setup
+    public void setup()
+    {
+        engine = new FakeCombatEngine(numShips, numShips * 40, numShips * 6);
+        engine.install();
+        FakeCombatEngine.setCachingEnabled(caching);
+
+        final Random rng = new Random(1234);
+        final List<ShipAPI> allShips = engine.getShips();
+        sources = new ShipAPI[QUERIES];
+        for (int i = 0; i < QUERIES; i++)
+        {
+            sources[i] = allShips.get(rng.nextInt(allShips.size()));
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        FakeCombatEngine.setCachingEnabled(false);
+        FakeCombatEngine.uninstall();
+    }
+
+    @Benchmark
+    public int getShipsWithinRange()
+    {
+        int found = 0;
+        for (ShipAPI source : sources)
+        {
+            ships.clear();
+            CombatUtils.getShipsWithinRange(source.getLocation(), SEARCH_RANGE, ships);
+            found += ships.size();
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int getMissilesWithinRange()
+    {
+        int found = 0;
+        for (ShipAPI source : sources)
+        {
+            missiles.clear();
+            CombatUtils.getMissilesWithinRange(source.getLocation(), SEARCH_RANGE, missiles);
+            found += missiles.size();
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int getEntitiesWithinRange()
+    {
+        int found = 0;
+        for (ShipAPI source : sources)
+        {
+            entities.clear();
+            CombatUtils.getEntitiesWithinRange(source.getLocation(), SEARCH_RANGE, entities);
+            found += entities.size();
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int getNearbyEnemies()
+    {
+        int found = 0;
+        for (ShipAPI source : sources)
+        {
+            ships.clear();
+            AIUtils.getNearbyEnemies(source, SEARCH_RANGE * 2f, ships);
+            found += ships.size();
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int getTargetsInArc()
+    {
+        int found = 0;
+        for (ShipAPI source : sources)
+        {
+            found += WeaponUtils.getTargetsInArc(source, targets).size();
+        }
+
+        return found;
+    }
+
+    // Starts a new frame first, so this includes rebuilding whatever LazyLib caches for that frame
+    @Benchmark
+    public NearestEnemyTable getNearestEnemiesForAllShips()
+    {
+        engine.advanceTime(1f / 60f);
+        return AIUtils.getNearestEnemiesForAllShips(nearestEnemies);
+    }
+
+    @Benchmark
+    public int firstQueryOfFrame()
+    {
+        engine.advanceTime(1f / 60f);
+        ships.clear();
+        final Vector2f loc = sources[0].getLocation();
+        CombatUtils.getShipsWithinRange(loc, SEARCH_RANGE, ships);
+        return ships.size();
+    }
+}
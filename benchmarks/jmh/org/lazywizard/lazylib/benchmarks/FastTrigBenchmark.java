@@ -0,0 +1,108 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.lazywizard.lazylib.FastTrig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares FastTrig's approximations against the exact java.lang.Math functions they replace
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastTrigBenchmark
+{
+    @Param({"64", "4096"})
+    public int size;
+    private double[] angles, xs, ys;
+
+    @Setup
+    public void setup()
+    {
+        final Random rng = new Random(1234);
+        angles = new double[size];
+        xs = new double[size];
+        ys = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            angles[i] = (rng.nextDouble() - 0.5) * 4.0 * Math.PI;
+            xs[i] = (rng.nextDouble() - 0.5) * 20_000.0;
+            ys[i] = (rng.nextDouble() - 0.5) * 20_000.0;
+        }
+    }
+
+    @Benchmark
+    public double fastSin()
+    {
+        double sum = 0.0;
+        for (double angle : angles)
+        {
+            sum += FastTrig.sin(angle);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double mathSin()
+    {
+        double sum = 0.0;
+        for (double angle : angles)
+        {
+            sum += Math.sin(angle);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double fastCos()
+    {
+        double sum = 0.0;
+        for (double angle : angles)
+        {
+            sum += FastTrig.cos(angle);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double mathCos()
+    {
+        double sum = 0.0;
+        for (double angle : angles)
+        {
+            sum += Math.cos(angle);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double fastAtan2()
+    {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++)
+        {
+            sum += FastTrig.atan2(ys[i], xs[i]);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double mathAtan2()
+    {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++)
+        {
+            sum += Math.atan2(ys[i], xs[i]);
+        }
+
+        return sum;
+    }
+}
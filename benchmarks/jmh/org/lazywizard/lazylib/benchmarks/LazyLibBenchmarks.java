@@ -0,0 +1,41 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs LazyLib's JMH benchmarks with the GC profiler attached, so every result also reports how much memory each
+ * call allocates ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Accepts the same arguments as JMH's own command line. With no arguments every benchmark in this package is run;
+ * pass a regular expression to only run matching benchmarks (for example {@code FastTrig}), or
+ * {@code -p size=4096} to override a parameter.
+ */
+public class LazyLibBenchmarks
+{
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        new Runner(createOptions(args)).run();
+    }
+
+    // Also used by RegressionGate, so both run the same benchmarks the same way
+    static Options createOptions(String... args) throws CommandLineOptionException
+    {
+        final CommandLineOptions cmdLine = new CommandLineOptions(args);
+        final ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(cmdLine)
+                .addProfiler(GCProfiler.class);
+        if (cmdLine.getIncludes().isEmpty())
+        {
+            options.include(LazyLibBenchmarks.class.getPackage().getName() + ".*Benchmark");
+        }
+
+        return options.build();
+    }
+}
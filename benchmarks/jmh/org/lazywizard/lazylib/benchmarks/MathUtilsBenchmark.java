@@ -0,0 +1,91 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.lazywizard.lazylib.MathUtils;
+import org.lwjgl.util.vector.Vector2f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Distance and range checks between pairs of points, as done by nearly every combat search
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathUtilsBenchmark
+{
+    private static final float RANGE = 5_000f;
+    @Param({"64", "4096"})
+    public int size;
+    private Vector2f[] from, to;
+
+    @Setup
+    public void setup()
+    {
+        final Random rng = new Random(1234);
+        from = new Vector2f[size];
+        to = new Vector2f[size];
+        for (int i = 0; i < size; i++)
+        {
+            from[i] = new Vector2f((rng.nextFloat() - 0.5f) * 20_000f, (rng.nextFloat() - 0.5f) * 20_000f);
+            to[i] = new Vector2f((rng.nextFloat() - 0.5f) * 20_000f, (rng.nextFloat() - 0.5f) * 20_000f);
+        }
+    }
+
+    @Benchmark
+    public float getDistance()
+    {
+        float sum = 0f;
+        for (int i = 0; i < size; i++)
+        {
+            sum += MathUtils.getDistance(from[i], to[i]);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public float getDistanceSquared()
+    {
+        float sum = 0f;
+        for (int i = 0; i < size; i++)
+        {
+            sum += MathUtils.getDistanceSquared(from[i], to[i]);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public int isWithinRange()
+    {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (MathUtils.isWithinRange(from[i], to[i], RANGE))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int isWithinRangeCoordinates()
+    {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            final Vector2f a = from[i], b = to[i];
+            if (MathUtils.isWithinRange(a.x, a.y, b.x, b.y, RANGE))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,395 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Runs LazyLib's benchmarks and compares the results against a checked-in baseline, failing if any benchmark has
+ * become slower or allocates more memory per call than allowed.
+ * <p>
+ * Results are written as JSON, keyed by benchmark method and parameters (input size, caching, etc), along with the
+ * JVM, OS and CPU count of the machine that ran them. The checked-in reference baseline is only ever written by
+ * {@code --update-baseline}. Timings are only meaningful on the machine that recorded them, so on any other machine
+ * allocations are checked against the reference baseline while timings are checked against a local baseline, kept
+ * in the (ignored) results folder. The first run on a new machine records that local baseline; if there's no
+ * reference baseline either, nothing has been checked and the gate fails.
+ * <p>
+ * Options (anything else is passed on to JMH, for example {@code CombatQuery} to only run matching benchmarks):
+ * <ul>
+ * <li>{@code --baseline <file>}: the baseline to compare against, default {@value #DEFAULT_BASELINE}.</li>
+ * <li>{@code --output <file>}: where to write this run's results, default {@value #DEFAULT_OUTPUT}.</li>
+ * <li>{@code --max-slowdown <fraction>}: how much slower a benchmark may get, default 0.1 (10%).</li>
+ * <li>{@code --max-alloc-increase <fraction>}: how much more a benchmark may allocate, default 0.05 (5%).</li>
+ * <li>{@code --local-baseline <file>}: the baseline for this machine, default {@value #DEFAULT_LOCAL_BASELINE}.</li>
+ * <li>{@code --update-baseline}: replace the reference baseline with this run's results instead of comparing
+ * them.</li>
+ * <li>{@code --update-local-baseline}: replace the local baseline with this run's results instead of comparing
+ * them.</li>
+ * <li>{@code --warn-only}: report regressions without failing.</li>
+ * <li>{@code --compare <file>}: compare an earlier run's results instead of running the benchmarks again.</li>
+ * </ul>
+ */
+public class RegressionGate
+{
+    static final String DEFAULT_BASELINE = "benchmarks/baseline.json",
+            DEFAULT_LOCAL_BASELINE = "benchmarks/results/baseline-local.json",
+            DEFAULT_OUTPUT = "benchmarks/results/latest.json";
+    private static final double DEFAULT_MAX_SLOWDOWN = 0.1, DEFAULT_MAX_ALLOC_INCREASE = 0.05;
+    // The GC profiler reports a few bytes per call even for benchmarks that never allocate
+    private static final double ALLOC_NOISE_BYTES = 16.0;
+    private static final String ALLOC_RESULT = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException,
+            JSONException
+    {
+        String baselineFile = DEFAULT_BASELINE, localBaselineFile = DEFAULT_LOCAL_BASELINE,
+                outputFile = DEFAULT_OUTPUT, compareFile = null;
+        double maxSlowdown = DEFAULT_MAX_SLOWDOWN, maxAllocIncrease = DEFAULT_MAX_ALLOC_INCREASE;
+        boolean updateBaseline = false, updateLocalBaseline = false, warnOnly = false;
+        final List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--baseline":
+                    baselineFile = args[++i];
+                    break;
+                case "--local-baseline":
+                    localBaselineFile = args[++i];
+                    break;
+                case "--output":
+                    outputFile = args[++i];
+                    break;
+                case "--compare":
+                    compareFile = args[++i];
+                    break;
+                case "--max-slowdown":
+                    maxSlowdown = Double.parseDouble(args[++i]);
+                    break;
+                case "--max-alloc-increase":
+                    maxAllocIncrease = Double.parseDouble(args[++i]);
+                    break;
+                case "--update-baseline":
+                    updateBaseline = true;
+                    break;
+                case "--update-local-baseline":
+                    updateLocalBaseline = true;
+                    break;
+                case "--warn-only":
+                    warnOnly = true;
+                    break;
+                default:
+                    jmhArgs.add(args[i]);
+            }
+        }
+
+        final JSONObject results;
+        if (compareFile != null)
+        {
+            results = read(Paths.get(compareFile));
+        }
+        else
+        {
+            final Collection<RunResult> runResults = new Runner(LazyLibBenchmarks.createOptions(
+                    jmhArgs.toArray(new String[0]))).run();
+            results = toJSON(runResults);
+            write(Paths.get(outputFile), results);
+            System.out.println("Results written to " + outputFile);
+        }
+
+        final Path baselinePath = Paths.get(baselineFile), localBaselinePath = Paths.get(localBaselineFile);
+        if (updateBaseline || updateLocalBaseline)
+        {
+            final Path path = (updateBaseline ? baselinePath : localBaselinePath);
+            write(path, results);
+            System.out.println("Baseline updated: " + path);
+            return;
+        }
+
+        final JSONObject reference = readBaseline(baselinePath);
+        final String machineChanges = (reference == null ? null : getMachineChanges(reference, results));
+        if (reference == null)
+        {
+            System.out.println("WARNING: no reference baseline found in " + baselineFile + ". Record one on the"
+                    + " reference machine with --update-baseline and commit it");
+        }
+        else if (machineChanges != null)
+        {
+            // Timings from another machine say nothing about a change, but allocations per call still do
+            System.out.println("WARNING: the reference baseline was recorded on a different machine ("
+                    + machineChanges + "), so only its allocations will be checked");
+        }
+
+        // Timings that can't be checked against the reference baseline are checked against one from this machine,
+        // which is never the checked-in file
+        JSONObject local = null;
+        if (reference == null || machineChanges != null)
+        {
+            local = readBaseline(localBaselinePath);
+            if (local != null && getMachineChanges(local, results) != null)
+            {
+                System.out.println("WARNING: the local baseline in " + localBaselineFile
+                        + " was recorded on a different machine, replacing it");
+                local = null;
+            }
+
+            if (local == null)
+            {
+                write(localBaselinePath, results);
+                System.out.println("This run was recorded as the local baseline for " + describeMachine(results)
+                        + " in " + localBaselineFile + "; run the gate again to compare timings against it");
+                if (reference == null)
+                {
+                    System.out.println("Nothing was compared");
+                    fail(warnOnly);
+                    return;
+                }
+            }
+        }
+
+        final List<String> regressions = new ArrayList<>();
+        if (reference != null)
+        {
+            System.out.println("Compared with " + baselineFile + ":");
+            regressions.addAll(compare(reference, results,
+                    (machineChanges == null ? maxSlowdown : Double.POSITIVE_INFINITY), maxAllocIncrease));
+        }
+
+        if (local != null)
+        {
+            // Allocations were already checked against the reference baseline, if there is one
+            System.out.println("Compared with " + localBaselineFile + ":");
+            regressions.addAll(compare(local, results, maxSlowdown,
+                    (reference == null ? maxAllocIncrease : Double.POSITIVE_INFINITY)));
+        }
+
+        if (regressions.isEmpty())
+        {
+            System.out.println("No regressions found");
+            return;
+        }
+
+        System.out.println(regressions.size() + " regression(s) found:");
+        for (String regression : regressions)
+        {
+            System.out.println("  " + regression);
+        }
+
+        fail(warnOnly);
+    }
+
+    private static void fail(boolean warnOnly)
+    {
+        if (!warnOnly)
+        {
+            System.exit(1);
+        }
+    }
+
+    //<editor-fold desc="Results">
+    static JSONObject toJSON(Collection<RunResult> runResults) throws JSONException
+    {
+        final JSONObject benchmarks = new JSONObject();
+        for (RunResult runResult : runResults)
+        {
+            final Result primary = runResult.getPrimaryResult();
+            final Result alloc = runResult.getSecondaryResults().get(ALLOC_RESULT);
+            final JSONObject entry = new JSONObject();
+            entry.put("mode", runResult.getParams().getMode().shortLabel());
+            entry.put("score", primary.getScore());
+            entry.put("error", getError(primary));
+            entry.put("unit", primary.getScoreUnit());
+            if (alloc != null)
+            {
+                entry.put("allocBytesPerOp", alloc.getScore());
+            }
+
+            benchmarks.put(getKey(runResult.getParams()), entry);
+        }
+
+        final JSONObject results = new JSONObject();
+        results.put("date", Instant.now().toString());
+        results.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        results.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        results.put("cpus", Runtime.getRuntime().availableProcessors());
+        results.put("benchmarks", benchmarks);
+        return results;
+    }
+
+    private static String describeMachine(JSONObject results)
+    {
+        return results.optString("jvm", "unknown JVM") + " on " + results.optString("os", "unknown OS") + " ("
+                + results.optString("cpus", "?") + " CPUs)";
+    }
+
+    // Returns how the machine that recorded baseline differs from the one that recorded current, or null if they match
+    private static String getMachineChanges(JSONObject baseline, JSONObject current)
+    {
+        final StringJoiner changes = new StringJoiner(", ");
+        for (String key : new String[]{"jvm", "os", "cpus"})
+        {
+            final String oldValue = baseline.optString(key, "unknown"), newValue = current.optString(key, "unknown");
+            if (!oldValue.equals(newValue))
+            {
+                changes.add(key + " " + oldValue + " -> " + newValue);
+            }
+        }
+
+        return (changes.length() == 0 ? null : changes.toString());
+    }
+
+    // JMH reports NaN as the error when there were too few iterations to calculate it
+    private static double getError(Result result)
+    {
+        final double error = result.getScoreError();
+        return (Double.isNaN(error) ? 0.0 : error);
+    }
+
+    // For example "CombatQueryBenchmark.getShipsWithinRange(caching=true, numShips=500)"
+    static String getKey(BenchmarkParams params)
+    {
+        final String prefix = RegressionGate.class.getPackage().getName() + ".";
+        String name = params.getBenchmark();
+        if (name.startsWith(prefix))
+        {
+            name = name.substring(prefix.length());
+        }
+
+        final Collection<String> paramNames = new TreeSet<>(params.getParamsKeys());
+        if (paramNames.isEmpty())
+        {
+            return name;
+        }
+
+        final StringJoiner joiner = new StringJoiner(", ", name + "(", ")");
+        for (String param : paramNames)
+        {
+            joiner.add(param + "=" + params.getParam(param));
+        }
+
+        return joiner.toString();
+    }
+
+    // Returns null if there's no baseline at that path, or it has no results (such as the empty placeholder)
+    private static JSONObject readBaseline(Path file) throws IOException, JSONException
+    {
+        final JSONObject baseline = (Files.exists(file) ? read(file) : null);
+        if (baseline == null || baseline.optJSONObject("benchmarks") == null
+                || baseline.getJSONObject("benchmarks").length() == 0)
+        {
+            return null;
+        }
+
+        return baseline;
+    }
+
+    private static JSONObject read(Path file) throws IOException, JSONException
+    {
+        return new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    private static void write(Path file, JSONObject json) throws IOException, JSONException
+    {
+        if (file.getParent() != null)
+        {
+            Files.createDirectories(file.getParent());
+        }
+
+        Files.write(file, (json.toString(4) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Comparison">
+
+    /**
+     * Compares two sets of results, printing how every benchmark changed.
+     *
+     * @return A description of every benchmark that got slower or allocates more than allowed.
+     */
+    static List<String> compare(JSONObject baseline, JSONObject current, double maxSlowdown,
+                                double maxAllocIncrease) throws JSONException
+    {
+        final JSONObject oldResults = baseline.getJSONObject("benchmarks"),
+                newResults = current.getJSONObject("benchmarks");
+        final List<String> regressions = new ArrayList<>();
+        for (String key : sortedKeys(newResults))
+        {
+            final JSONObject newResult = newResults.getJSONObject(key);
+            final JSONObject oldResult = oldResults.optJSONObject(key);
+            if (oldResult == null)
+            {
+                System.out.println(String.format("%-90s new, not in baseline", key));
+                continue;
+            }
+
+            if (!oldResult.getString("mode").equals(newResult.getString("mode"))
+                    || !oldResult.getString("unit").equals(newResult.getString("unit")))
+            {
+                System.out.println(String.format("%-90s can't compare, mode or unit changed", key));
+                continue;
+            }
+
+            // Throughput is the only mode where a higher score is better
+            final double oldScore = oldResult.getDouble("score"), newScore = newResult.getDouble("score");
+            final boolean throughput = "thrpt".equals(newResult.getString("mode"));
+            final double slowdown = (throughput ? oldScore / newScore : newScore / oldScore) - 1.0;
+            // Ignore changes that are within the measurement error of either run
+            final boolean significant = Math.abs(newScore - oldScore)
+                    > newResult.optDouble("error", 0.0) + oldResult.optDouble("error", 0.0);
+            final double oldAlloc = oldResult.optDouble("allocBytesPerOp", 0.0),
+                    newAlloc = newResult.optDouble("allocBytesPerOp", 0.0);
+            final String summary = String.format("%-90s %+7.1f%% time  %10.1f -> %10.1f B/op",
+                    key, slowdown * 100.0, oldAlloc, newAlloc);
+            System.out.println(summary);
+
+            if (significant && slowdown > maxSlowdown)
+            {
+                regressions.add(String.format("%s: %.1f%% slower (%.3f -> %.3f %s)", key, slowdown * 100.0,
+                        oldScore, newScore, newResult.getString("unit")));
+            }
+
+            if (newAlloc > oldAlloc * (1.0 + maxAllocIncrease) + ALLOC_NOISE_BYTES)
+            {
+                regressions.add(String.format("%s: allocates more (%.1f -> %.1f bytes per call)",
+                        key, oldAlloc, newAlloc));
+            }
+        }
+
+        for (String key : sortedKeys(oldResults))
+        {
+            if (!newResults.has(key))
+            {
+                System.out.println(String.format("%-90s not run", key));
+            }
+        }
+
+        return regressions;
+    }
+
+    private static List<String> sortedKeys(JSONObject json)
+    {
+        final List<String> keys = new ArrayList<>();
+        for (Iterator iter = json.keys(); iter.hasNext(); )
+        {
+            keys.add((String) iter.next());
+        }
+
+        Collections.sort(keys);
+        return keys;
+    }
+    //</editor-fold>
+}
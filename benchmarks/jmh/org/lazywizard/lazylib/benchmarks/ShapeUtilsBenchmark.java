@@ -0,0 +1,37 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.lazywizard.lazylib.ShapeUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Vertex generation for the shapes drawn by DrawUtils
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeUtilsBenchmark
+{
+    @Param({"16", "128", "1024"})
+    public int numSegments;
+
+    @Benchmark
+    public float[] createCircle()
+    {
+        return ShapeUtils.createCircle(100f, -50f, 300f, numSegments);
+    }
+
+    @Benchmark
+    public float[] createEllipse()
+    {
+        return ShapeUtils.createEllipse(100f, -50f, 300f, 150f, 30f, numSegments);
+    }
+
+    @Benchmark
+    public float[] createArc()
+    {
+        return ShapeUtils.createArc(100f, -50f, 300f, 45f, 120f, numSegments);
+    }
+}
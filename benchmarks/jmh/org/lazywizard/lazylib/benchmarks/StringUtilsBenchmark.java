@@ -0,0 +1,48 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.lazywizard.lazylib.StringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Word wrapping of generated text, with occasional newlines and words too long to fit on a line
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark
+{
+    @Param({"100", "10000"})
+    public int textLength;
+    @Param({"40", "120"})
+    public int maxLineLength;
+    private String text;
+
+    @Setup
+    public void setup()
+    {
+        final Random rng = new Random(1234);
+        final StringBuilder sb = new StringBuilder(textLength + 200);
+        while (sb.length() < textLength)
+        {
+            final int wordLength = (rng.nextInt(20) == 0 ? 150 : 1 + rng.nextInt(10));
+            for (int i = 0; i < wordLength; i++)
+            {
+                sb.append((char) ('a' + rng.nextInt(26)));
+            }
+
+            sb.append(rng.nextInt(30) == 0 ? '\n' : ' ');
+        }
+
+        text = sb.substring(0, textLength);
+    }
+
+    @Benchmark
+    public String wrapString()
+    {
+        return StringUtils.wrapString(text, maxLineLength);
+    }
+}
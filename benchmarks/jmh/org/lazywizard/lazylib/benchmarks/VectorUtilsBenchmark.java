@@ -0,0 +1,85 @@
+package org.lazywizard.lazylib.benchmarks;
+
+import org.lazywizard.lazylib.VectorUtils;
+import org.lwjgl.util.vector.Vector2f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Rotation (allocating and reusing a destination vector) and angle calculation (FastTrig and exact)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorUtilsBenchmark
+{
+    @Param({"64", "4096"})
+    public int size;
+    private Vector2f[] from, to;
+    private float[] angles;
+    private final Vector2f dest = new Vector2f();
+
+    @Setup
+    public void setup()
+    {
+        final Random rng = new Random(1234);
+        from = new Vector2f[size];
+        to = new Vector2f[size];
+        angles = new float[size];
+        for (int i = 0; i < size; i++)
+        {
+            from[i] = new Vector2f((rng.nextFloat() - 0.5f) * 20_000f, (rng.nextFloat() - 0.5f) * 20_000f);
+            to[i] = new Vector2f((rng.nextFloat() - 0.5f) * 20_000f, (rng.nextFloat() - 0.5f) * 20_000f);
+            angles[i] = rng.nextFloat() * 360f;
+        }
+    }
+
+    @Benchmark
+    public void rotate(Blackhole bh)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            bh.consume(VectorUtils.rotate(from[i], angles[i]));
+        }
+    }
+
+    @Benchmark
+    public float rotateWithDest()
+    {
+        float sum = 0f;
+        for (int i = 0; i < size; i++)
+        {
+            sum += VectorUtils.rotate(from[i], angles[i], dest).x;
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public float getAngle()
+    {
+        float sum = 0f;
+        for (int i = 0; i < size; i++)
+        {
+            sum += VectorUtils.getAngle(from[i], to[i]);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public float getAngleStrict()
+    {
+        float sum = 0f;
+        for (int i = 0; i < size; i++)
+        {
+            sum += VectorUtils.getAngleStrict(from[i], to[i]);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,49 @@
+package org.lazywizard.lazylib.console;
+
+import org.jetbrains.annotations.NotNull;
+import org.lazywizard.console.BaseCommand;
+import org.lazywizard.console.Console;
+import org.lazywizard.lazylib.Instrumentation;
+
+/**
+ * Shows the {@link Instrumentation} report of which LazyLib searches are the most expensive, and which mods are
+ * calling them. Can also turn instrumentation on or off and discard the statistics gathered so far.
+ */
+public class LazyLibStats implements BaseCommand
+{
+    private static final int DEFAULT_ENTRIES = 10;
+
+    @Override
+    public CommandResult runCommand(@NotNull String args, CommandContext context)
+    {
+        final String arg = args.trim().toLowerCase();
+        switch (arg)
+        {
+            case "on":
+                Instrumentation.setEnabled(true);
+                Console.showMessage("LazyLib instrumentation enabled.");
+                return CommandResult.SUCCESS;
+            case "off":
+                Instrumentation.setEnabled(false);
+                Console.showMessage("LazyLib instrumentation disabled.");
+                return CommandResult.SUCCESS;
+            case "reset":
+                Instrumentation.reset();
+                Console.showMessage("LazyLib instrumentation statistics discarded.");
+                return CommandResult.SUCCESS;
+            case "":
+                break;
+            default:
+                return CommandResult.BAD_SYNTAX;
+        }
+
+        if (!Instrumentation.isEnabled())
+        {
+            Console.showMessage("LazyLib instrumentation is disabled. Use 'lazylibstats on' or set"
+                    + " \"enableInstrumentation\" in lazylib_settings.json to enable it.");
+        }
+
+        Console.showMessage(Instrumentation.getReport(DEFAULT_ENTRIES));
+        return CommandResult.SUCCESS;
+    }
+}
@@ -2,19 +2,28 @@ package org.lazywizard.lazylib.console;
 
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.combat.*;
-import com.fs.starfarer.api.input.InputEventAPI;
 import org.jetbrains.annotations.NotNull;
 import org.lazywizard.console.BaseCommand;
 import org.lazywizard.console.CommonStrings;
 import org.lazywizard.console.Console;
 import org.lazywizard.lazylib.MathUtils;
+import org.lazywizard.lazylib.combat.CombatUtils;
 import org.lwjgl.util.vector.Vector2f;
 
-import java.awt.Color;
 import java.util.*;
 
+/**
+ * Checks in a live battle that the grid-based {@link CombatUtils#getEntitiesWithinRange(Vector2f, float)} and
+ * {@link CombatUtils#getProjectilesWithinRange(Vector2f, float)} return exactly the same entities as a linear scan
+ * of every entity on the map. This only checks correctness; single calls timed in-game say little about speed, so
+ * performance is measured by {@code CombatQueryBenchmark} in the JMH benchmarks instead (and the same equivalence is
+ * covered off-line by {@code CombatUtilsTests}).
+ */
 public class TestWithinRange implements BaseCommand
 {
+    private static final int NUM_LOCATIONS = 250;
+    private static final float MIN_RANGE = 50f, MAX_RANGE = 3000f;
+
     @Override
     public CommandResult runCommand(@NotNull String args, CommandContext context)
     {
@@ -24,18 +33,88 @@ public class TestWithinRange implements BaseCommand
             return CommandResult.WRONG_CONTEXT;
         }
 
-        // Do stuff here
-        Global.getCombatEngine().addPlugin(new TestWithinRangePlugin());
+        // Pick test locations all over the map, plus a few around every ship where entities are densest
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        final Random rng = new Random();
+        final List<Vector2f> locations = new ArrayList<>();
+        final List<Float> ranges = new ArrayList<>();
+        for (int i = 0; i < NUM_LOCATIONS; i++)
+        {
+            locations.add(new Vector2f((rng.nextFloat() - 0.5f) * engine.getMapWidth(),
+                    (rng.nextFloat() - 0.5f) * engine.getMapHeight()));
+            ranges.add(MathUtils.getRandomNumberInRange(MIN_RANGE, MAX_RANGE));
+        }
+
+        for (ShipAPI ship : engine.getShips())
+        {
+            locations.add(new Vector2f(ship.getLocation()));
+            ranges.add(MathUtils.getRandomNumberInRange(MIN_RANGE, MAX_RANGE));
+        }
+
+        int entityMismatches = 0, projMismatches = 0;
+        for (int i = 0; i < locations.size(); i++)
+        {
+            final Vector2f loc = locations.get(i);
+            final float range = ranges.get(i);
+            entityMismatches += reportMismatches("getEntitiesWithinRange", loc, range,
+                    CombatUtils.getEntitiesWithinRange(loc, range), getEntitiesWithinRangeOld(loc, range));
+            projMismatches += reportMismatches("getProjectilesWithinRange", loc, range,
+                    CombatUtils.getProjectilesWithinRange(loc, range), getProjectilesWithinRangeOld(loc, range));
+        }
+
+        final int numTests = locations.size();
+        Console.showMessage("Tested " + numTests + " locations with " + engine.getShips().size() + " ships, "
+                + engine.getProjectiles().size() + " projectiles and " + engine.getAsteroids().size()
+                + " asteroids on the map.");
+        Console.showMessage(" - getEntitiesWithinRange(): " + entityMismatches + " mismatches");
+        Console.showMessage(" - getProjectilesWithinRange(): " + projMismatches + " mismatches");
+        Console.showMessage("(For timings, run CombatQueryBenchmark from the JMH benchmarks.)");
+        if (entityMismatches + projMismatches > 0)
+        {
+            Console.showMessage("Mismatched entities were written to starsector.log.");
+            return CommandResult.ERROR;
+        }
+
         return CommandResult.SUCCESS;
     }
 
+    // Results are compared as sets, as the grid doesn't return entities in the same order as the engine's lists
+    private static int reportMismatches(String method, Vector2f loc, float range,
+                                        List<? extends CombatEntityAPI> newResults,
+                                        List<? extends CombatEntityAPI> oldResults)
+    {
+        final Set<CombatEntityAPI> onlyNew = Collections.newSetFromMap(new IdentityHashMap<>()),
+                onlyOld = Collections.newSetFromMap(new IdentityHashMap<>());
+        onlyNew.addAll(newResults);
+        onlyOld.addAll(oldResults);
+        oldResults.forEach(onlyNew::remove);
+        newResults.forEach(onlyOld::remove);
+
+        for (CombatEntityAPI entity : onlyNew)
+        {
+            Global.getLogger(TestWithinRange.class).warn(method + "(" + loc + ", " + range
+                    + ") only in grid results: " + entity + " | Distance: " + MathUtils.getDistance(entity, loc)
+                    + " (center: " + MathUtils.getDistance(entity.getLocation(), loc) + ")");
+        }
+
+        for (CombatEntityAPI entity : onlyOld)
+        {
+            Global.getLogger(TestWithinRange.class).warn(method + "(" + loc + ", " + range
+                    + ") only in linear results: " + entity + " | Distance: " + MathUtils.getDistance(entity, loc)
+                    + " (center: " + MathUtils.getDistance(entity.getLocation(), loc) + ")");
+        }
+
+        return onlyNew.size() + onlyOld.size() + (newResults.size() != oldResults.size() ? 1 : 0);
+    }
+
+    // The linear scan getEntitiesWithinRange() used before switching to the engine's collision grids
     public static List<CombatEntityAPI> getEntitiesWithinRangeOld(Vector2f location, float range)
     {
-        List<CombatEntityAPI> entities = new ArrayList<>();
+        final List<CombatEntityAPI> entities = new ArrayList<>();
 
         for (CombatEntityAPI tmp : Global.getCombatEngine().getShips())
         {
-            if (MathUtils.isWithinRange(tmp.getLocation(), location, range))
+            if (MathUtils.isWithinRange(tmp, location, range))
             {
                 entities.add(tmp);
             }
@@ -44,7 +123,7 @@ public class TestWithinRange implements BaseCommand
         // This also includes missiles
         for (CombatEntityAPI tmp : Global.getCombatEngine().getProjectiles())
         {
-            if (MathUtils.isWithinRange(tmp.getLocation(), location, range))
+            if (MathUtils.isWithinRange(tmp, location, range))
             {
                 entities.add(tmp);
             }
@@ -52,7 +131,7 @@ public class TestWithinRange implements BaseCommand
 
         for (CombatEntityAPI tmp : Global.getCombatEngine().getAsteroids())
         {
-            if (MathUtils.isWithinRange(tmp.getLocation(), location, range))
+            if (MathUtils.isWithinRange(tmp, location, range))
             {
                 entities.add(tmp);
             }
@@ -61,63 +140,19 @@ public class TestWithinRange implements BaseCommand
         return entities;
     }
 
-    public static List<CombatEntityAPI> inRangeGrid(Vector2f loc, float range)
+    // The linear scan getProjectilesWithinRange() used before switching to the engine's collision grids
+    public static List<DamagingProjectileAPI> getProjectilesWithinRangeOld(Vector2f location, float range)
     {
-        final List<CombatEntityAPI> entities = new ArrayList<>();
+        final List<DamagingProjectileAPI> projectiles = new ArrayList<>();
 
-        for (Iterator iter = Global.getCombatEngine().getAllObjectGrid().getCheckIterator(loc, range * 2f, range * 2f); iter.hasNext(); )
+        for (DamagingProjectileAPI tmp : Global.getCombatEngine().getProjectiles())
         {
-            final CombatEntityAPI entity = (CombatEntityAPI) iter.next();
-            if (!(entity instanceof DamagingProjectileAPI || entity instanceof ShipAPI || entity instanceof CombatAsteroidAPI))
-            {
-                continue;
-            }
-
-            if (MathUtils.isWithinRange(entity.getLocation(), loc, range))
+            if (!(tmp instanceof MissileAPI) && MathUtils.isWithinRange(tmp.getLocation(), location, range))
             {
-                entities.add(entity);
+                projectiles.add(tmp);
             }
         }
 
-        return entities;
-    }
-
-    static class TestWithinRangePlugin extends BaseEveryFrameCombatPlugin
-    {
-        private static final float TEST_RANGE = 1500f;
-
-        @Override
-        public void advance(float amount, List<InputEventAPI> events)
-        {
-            final CombatEngineAPI engine = Global.getCombatEngine();
-            final ShipAPI player = Global.getCombatEngine().getPlayerShip();
-            if (engine.isPaused() || engine.getCombatUI().isShowingCommandUI() || engine.isUIShowingDialog() ||
-                    player == null || !engine.isEntityInPlay(player))
-            {
-                return;
-            }
-
-            final List<CombatEntityAPI> newInRange = inRangeGrid(player.getLocation(), TEST_RANGE),
-                    oldInRange = getEntitiesWithinRangeOld(player.getLocation(), TEST_RANGE);
-
-            final Set<CombatEntityAPI> uniqueNew = new HashSet<>(newInRange),
-                    uniqueOld = new HashSet<>(oldInRange);
-            oldInRange.forEach(uniqueNew::remove);
-            newInRange.forEach(uniqueOld::remove);
-
-            for (CombatEntityAPI entity : uniqueNew)
-            {
-                engine.addSmokeParticle(entity.getLocation(), entity.getVelocity(), entity.getCollisionRadius(), 0.5f, 0.5f, Color.GREEN);
-                System.out.println("Only in new method: " + entity + " | Distance: " + MathUtils.getDistance(player, entity) +
-                        " (real: " + MathUtils.getDistance(player.getLocation(), entity.getLocation()) + ")");
-            }
-
-            for (CombatEntityAPI entity : uniqueOld)
-            {
-                engine.addSmokeParticle(entity.getLocation(), entity.getVelocity(), entity.getCollisionRadius(), 0.5f, 0.5f, Color.RED);
-                System.out.println("Only in old method: " + entity + " | Distance: " + MathUtils.getDistance(player, entity) +
-                        " (real: " + MathUtils.getDistance(player.getLocation(), entity.getLocation()) + ")");
-            }
-        }
+        return projectiles;
     }
 }
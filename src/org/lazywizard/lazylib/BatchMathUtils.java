@@ -0,0 +1,145 @@
+package org.lazywizard.lazylib;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Contains batch versions of the most common {@link MathUtils} distance and range checks, which test one query
+ * point against many positions stored in packed {@code float} arrays (one array of X coordinates, one of Y
+ * coordinates, and optionally one of radii).
+ * <p>
+ * Each method is a single simple loop over the arrays with no method calls or unpredictable branches, which lets
+ * the JVM's JIT compiler vectorize it with SIMD instructions where the hardware supports them. The results are
+ * identical to calling the equivalent {@link MathUtils} method on each position in turn.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public class BatchMathUtils
+{
+    /**
+     * Calculates the distance squared between a point and many other points.
+     *
+     * @param x     The X coordinate of the point to measure from.
+     * @param y     The Y coordinate of the point to measure from.
+     * @param xs    The X coordinates of the points to measure to.
+     * @param ys    The Y coordinates of the points to measure to.
+     * @param count How many entries of {@code xs} and {@code ys} to use.
+     * @param dest  The array the results will be stored in. {@code dest[i]} will be the distance squared between
+     *              ({@code x}, {@code y}) and ({@code xs[i]}, {@code ys[i]}).
+     *
+     * @see MathUtils#getDistanceSquared(float, float, float, float)
+     * @since 3.0b
+     */
+    public static void getDistancesSquared(float x, float y, float[] xs, float[] ys, int count, float[] dest)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final float a = xs[i] - x, b = ys[i] - y;
+            dest[i] = (a * a) + (b * b);
+        }
+    }
+
+    /**
+     * Checks which of many points (or circles) are within range of a location.
+     *
+     * @param x     The X coordinate of the location to search around.
+     * @param y     The Y coordinate of the location to search around.
+     * @param range How far around the location to search.
+     * @param xs    The X coordinates of the points to check.
+     * @param ys    The Y coordinates of the points to check.
+     * @param radii The radius of each point, which is added to {@code range} the same way
+     *              {@link MathUtils#isWithinRange(com.fs.starfarer.api.combat.CombatEntityAPI,
+     *              org.lwjgl.util.vector.Vector2f, float)} adds collision radius. If {@code null}, all radii are
+     *              treated as 0.
+     * @param count How many entries of the arrays to check.
+     * @param dest  The hit mask. {@code dest[i]} will be set to whether point {@code i} is within range.
+     *
+     * @return How many points were within range.
+     *
+     * @see #getIndicesWithinRange(float, float, float, float[], float[], float[], int, int[])
+     * @since 3.0b
+     */
+    public static int getWithinRange(float x, float y, float range, float[] xs, float[] ys,
+                                     @Nullable float[] radii, int count, boolean[] dest)
+    {
+        int numHits = 0;
+        if (radii == null)
+        {
+            final float rangeSquared = range * range;
+            for (int i = 0; i < count; i++)
+            {
+                final float a = xs[i] - x, b = ys[i] - y;
+                final boolean hit = ((a * a) + (b * b) <= rangeSquared);
+                dest[i] = hit;
+                numHits += (hit ? 1 : 0);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < count; i++)
+            {
+                final float a = xs[i] - x, b = ys[i] - y, reach = range + radii[i];
+                final boolean hit = ((a * a) + (b * b) <= reach * reach);
+                dest[i] = hit;
+                numHits += (hit ? 1 : 0);
+            }
+        }
+
+        return numHits;
+    }
+
+    /**
+     * Finds which of many points (or circles) are within range of a location, storing their indices in a compact
+     * list. Unlike {@link #getWithinRange(float, float, float, float[], float[], float[], int, boolean[])}, the
+     * results don't need to be scanned again to find the hits.
+     *
+     * @param x     The X coordinate of the location to search around.
+     * @param y     The Y coordinate of the location to search around.
+     * @param range How far around the location to search.
+     * @param xs    The X coordinates of the points to check.
+     * @param ys    The Y coordinates of the points to check.
+     * @param radii The radius of each point, which is added to {@code range} the same way
+     *              {@link MathUtils#isWithinRange(com.fs.starfarer.api.combat.CombatEntityAPI,
+     *              org.lwjgl.util.vector.Vector2f, float)} adds collision radius. If {@code null}, all radii are
+     *              treated as 0.
+     * @param count How many entries of the arrays to check.
+     * @param dest  The array the indices of points within range will be stored in, in ascending order. Must be
+     *              able to hold {@code count} entries.
+     *
+     * @return How many points were within range, i.e. how many entries of {@code dest} were filled.
+     *
+     * @since 3.0b
+     */
+    public static int getIndicesWithinRange(float x, float y, float range, float[] xs, float[] ys,
+                                            @Nullable float[] radii, int count, int[] dest)
+    {
+        int numHits = 0;
+        if (radii == null)
+        {
+            final float rangeSquared = range * range;
+            for (int i = 0; i < count; i++)
+            {
+                final float a = xs[i] - x, b = ys[i] - y;
+
+                // Always write the index, only keep it if it was a hit (avoids a branch per point)
+                dest[numHits] = i;
+                numHits += ((a * a) + (b * b) <= rangeSquared ? 1 : 0);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < count; i++)
+            {
+                final float a = xs[i] - x, b = ys[i] - y, reach = range + radii[i];
+                dest[numHits] = i;
+                numHits += ((a * a) + (b * b) <= reach * reach ? 1 : 0);
+            }
+        }
+
+        return numHits;
+    }
+
+    private BatchMathUtils()
+    {
+    }
+}
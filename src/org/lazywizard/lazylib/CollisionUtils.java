@@ -8,8 +8,6 @@ import org.jetbrains.annotations.Nullable;
 import org.lwjgl.util.vector.Vector2f;
 
 import java.awt.geom.Line2D;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Contains methods for line intersection, bounds and collision detection tests.
@@ -38,10 +36,8 @@ public class CollisionUtils
     public static Vector2f getCollisionPoint(Vector2f lineStart,
                                              Vector2f lineEnd, CombatEntityAPI target)
     {
-        BoundsAPI bounds = target.getExactBounds();
-
         // Entities that lack bounds will use the collision circle instead
-        if (bounds == null)
+        if (target.getExactBounds() == null)
         {
             if (getCollides(lineStart, lineEnd,
                     target.getLocation(), target.getCollisionRadius()))
@@ -52,37 +48,164 @@ public class CollisionUtils
             return null;
         }
 
+        final Vector2f result = new Vector2f();
+        return (getCollisionPoint(lineStart, lineEnd, target, result) ? result : null);
+    }
+
+    /**
+     * Finds the part of the ship that would be intersected by a given path,
+     * storing it in an existing {@link Vector2f}. Unlike
+     * {@link #getCollisionPoint(Vector2f, Vector2f, CombatEntityAPI)}, this
+     * does not allocate any memory for the bounds segments it tests.
+     * <p>
+     * <b>Important note:</b> if the line is completely within {@code target}'s bounds,
+     * no collision will be detected!
+     *
+     * @param lineStart The start of the line to test collision with.
+     * @param lineEnd   The end of the line to test collision with.
+     * @param target    The CombatEntityAPI to check collision with.
+     * @param dest      The {@link Vector2f} the collision point will be
+     *                  stored in, if one is found. If {@code target} lacks
+     *                  bounds, this will be its location.
+     *
+     * @return {@code true} if the line hits {@code target}, {@code false}
+     *         otherwise (in which case {@code dest} is left unchanged).
+     *
+     * @since 3.0b
+     */
+    public static boolean getCollisionPoint(Vector2f lineStart, Vector2f lineEnd,
+                                            CombatEntityAPI target, Vector2f dest)
+    {
+        // Large bounds are tested in their own local space using a precomputed tree of their segments
+        final SegmentTree tree = SegmentTree.get(target);
+        if (tree != null)
+        {
+            return getCollisionPoint(lineStart, lineEnd, target, tree, dest);
+        }
+
+        final TransformedBounds bounds = TransformedBounds.get(target);
+
+        // Entities that lack bounds will use the collision circle instead
+        if (bounds == null)
+        {
+            if (getCollides(lineStart, lineEnd,
+                    target.getLocation(), target.getCollisionRadius()))
+            {
+                dest.set(target.getLocation());
+                return true;
+            }
+
+            return false;
+        }
+
         // Check for lines completely within bounds
-        // (called method also updates bounds, so unnecessary later)
-        if (isPointWithinBounds(lineStart, target))
+        if (isPointWithinBounds(lineStart.x, lineStart.y, target, bounds))
         {
-            return new Vector2f(lineStart);
+            dest.set(lineStart);
+            return true;
         }
 
-        Vector2f closestIntersection = null;
+        // Skip the segment tests entirely if the line can't reach the bounding box
+        if (Math.max(lineStart.x, lineEnd.x) < bounds.minX - 1f || Math.min(lineStart.x, lineEnd.x) > bounds.maxX + 1f
+                || Math.max(lineStart.y, lineEnd.y) < bounds.minY - 1f
+                || Math.min(lineStart.y, lineEnd.y) > bounds.maxY + 1f)
+        {
+            return false;
+        }
 
-        // Convert all segments to lines, do collision checks to find closest hit
-        for (SegmentAPI tmp : bounds.getSegments())
+        // Do collision checks against every segment to find closest hit
+        final float[] segments = bounds.segments;
+        float closestFraction = Float.MAX_VALUE;
+        for (int i = 0; i < bounds.numSegments; i++)
         {
-            Vector2f intersection
-                    = getCollisionPoint(lineStart, lineEnd, tmp.getP1(), tmp.getP2());
-            // Collision = true
-            if (intersection != null)
+            final float fraction = getIntersectionFraction(lineStart.x, lineStart.y, lineEnd.x, lineEnd.y,
+                    segments[i * 4], segments[i * 4 + 1], segments[i * 4 + 2], segments[i * 4 + 3]);
+            if (fraction >= 0f && fraction < closestFraction)
             {
-                if (closestIntersection == null)
-                {
-                    closestIntersection = new Vector2f(intersection);
-                }
-                else if (MathUtils.getDistanceSquared(lineStart, intersection)
-                        < MathUtils.getDistanceSquared(lineStart, closestIntersection))
-                {
-                    closestIntersection.set(intersection);
-                }
+                closestFraction = fraction;
             }
         }
 
-        // Null if no segment was hit
-        return closestIntersection;
+        // No segment was hit
+        if (closestFraction == Float.MAX_VALUE)
+        {
+            return false;
+        }
+
+        dest.set(lineStart.x + (closestFraction * (lineEnd.x - lineStart.x)),
+                lineStart.y + (closestFraction * (lineEnd.y - lineStart.y)));
+        return true;
+    }
+
+    private static boolean getCollisionPoint(Vector2f lineStart, Vector2f lineEnd, CombatEntityAPI target,
+                                             SegmentTree tree, Vector2f dest)
+    {
+        // Check for lines completely within bounds
+        if (isPointWithinBounds(lineStart.x, lineStart.y, target, tree))
+        {
+            dest.set(lineStart);
+            return true;
+        }
+
+        // Move the line into the bounds' local space; the fraction along it is the same in both spaces
+        final Vector2f center = target.getLocation();
+        final double facing = Math.toRadians(target.getFacing());
+        final float cos = (float) Math.cos(facing), sin = (float) Math.sin(facing),
+                startX = lineStart.x - center.x, startY = lineStart.y - center.y,
+                endX = lineEnd.x - center.x, endY = lineEnd.y - center.y;
+        final float closestFraction = tree.getFirstHitFraction(startX * cos + startY * sin,
+                startY * cos - startX * sin, endX * cos + endY * sin, endY * cos - endX * sin);
+
+        // No segment was hit
+        if (closestFraction == Float.MAX_VALUE)
+        {
+            return false;
+        }
+
+        dest.set(lineStart.x + (closestFraction * (lineEnd.x - lineStart.x)),
+                lineStart.y + (closestFraction * (lineEnd.y - lineStart.y)));
+        return true;
+    }
+
+    // Same test as getCollisionPoint(Vector2f, Vector2f, Vector2f, Vector2f), but returns how far along the first
+    // line the intersection is (0 at start1, 1 at end1), or -1 if the lines don't intersect
+    static float getIntersectionFraction(float start1X, float start1Y, float end1X, float end1Y,
+                                                 float start2X, float start2Y, float end2X, float end2Y)
+    {
+        if (Line2D.Float.ptSegDistSq(start2X, start2Y, end2X, end2Y,
+                end1X, end1Y) <= 0.11111f)
+        {
+            return 1f;
+        }
+
+        if (Line2D.Float.ptSegDistSq(start2X, start2Y, end2X, end2Y,
+                start1X, start1Y) <= 0.11111f)
+        {
+            return 0f;
+        }
+
+        final float denom = ((end1X - start1X) * (end2Y - start2Y))
+                - ((end1Y - start1Y) * (end2X - start2X));
+
+        //  AB & CD are parallel
+        if (MathUtils.equals(0f, denom))
+        {
+            return -1f;
+        }
+
+        final float numer = ((start1Y - start2Y) * (end2X - start2X))
+                - ((start1X - start2X) * (end2Y - start2Y));
+        final float r = numer / denom;
+        final float numer2 = ((start1Y - start2Y) * (end1X - start1X))
+                - ((start1X - start2X) * (end1Y - start1Y));
+        final float s = numer2 / denom;
+
+        if ((r < 0 || r > 1) || (s < 0 || s > 1))
+        {
+            return -1f;
+        }
+
+        return r;
     }
 
     /**
@@ -103,45 +226,55 @@ public class CollisionUtils
     public static Vector2f getCollisionPoint(Vector2f start1, Vector2f end1,
                                              Vector2f start2, Vector2f end2)
     {
-        if (Line2D.Float.ptSegDistSq(start2.x, start2.y, end2.x, end2.y,
-                end1.x, end1.y) <= 0.11111f)
+        final float fraction = getIntersectionFraction(start1.x, start1.y, end1.x, end1.y,
+                start2.x, start2.y, end2.x, end2.y);
+        if (fraction < 0f)
         {
-            return end1;
+            return null;
         }
 
-        if (Line2D.Float.ptSegDistSq(start2.x, start2.y, end2.x, end2.y,
-                start1.x, start1.y) <= 0.11111f)
+        // Endpoints within 1/3 su of the other line are returned as-is
+        if (fraction == 1f)
         {
-            return start1;
+            return end1;
         }
 
-        float denom = ((end1.x - start1.x) * (end2.y - start2.y))
-                - ((end1.y - start1.y) * (end2.x - start2.x));
-
-        //  AB & CD are parallel
-        if (MathUtils.equals(0f, denom))
+        if (fraction == 0f)
         {
-            return null;
+            return start1;
         }
 
-        float numer = ((start1.y - start2.y) * (end2.x - start2.x))
-                - ((start1.x - start2.x) * (end2.y - start2.y));
-        float r = numer / denom;
-        float numer2 = ((start1.y - start2.y) * (end1.x - start1.x))
-                - ((start1.x - start2.x) * (end1.y - start1.y));
-        float s = numer2 / denom;
+        return new Vector2f(start1.x + (fraction * (end1.x - start1.x)),
+                start1.y + (fraction * (end1.y - start1.y)));
+    }
 
-        if ((r < 0 || r > 1) || (s < 0 || s > 1))
+    /**
+     * Finds the point of intersection between two lines given as raw coordinates, storing it in an existing
+     * {@link Vector2f}. Accurate to within 1/3 su. Useful when iterating over packed coordinate arrays, as no
+     * {@link Vector2f}s need to be created.
+     *
+     * @param dest The {@link Vector2f} the intersection point will be stored in, if one is found.
+     *
+     * @return {@code true} if the line from ({@code start1X}, {@code start1Y}) to ({@code end1X}, {@code end1Y})
+     *         intersects the line from ({@code start2X}, {@code start2Y}) to ({@code end2X}, {@code end2Y}),
+     *         {@code false} otherwise (in which case {@code dest} is left unchanged).
+     *
+     * @see #getCollisionPoint(Vector2f, Vector2f, Vector2f, Vector2f)
+     * @since 3.0b
+     */
+    public static boolean getCollisionPoint(float start1X, float start1Y, float end1X, float end1Y,
+                                            float start2X, float start2Y, float end2X, float end2Y,
+                                            Vector2f dest)
+    {
+        final float fraction = getIntersectionFraction(start1X, start1Y, end1X, end1Y,
+                start2X, start2Y, end2X, end2Y);
+        if (fraction < 0f)
         {
-            return null;
+            return false;
         }
 
-        // Find intersection point
-        Vector2f result = new Vector2f();
-        result.x = start1.x + (r * (end1.x - start1.x));
-        result.y = start1.y + (r * (end1.y - start1.y));
-
-        return result;
+        dest.set(start1X + (fraction * (end1X - start1X)), start1Y + (fraction * (end1Y - start1Y)));
+        return true;
     }
 
     /**
@@ -159,10 +292,25 @@ public class CollisionUtils
      */
     public static boolean getCollides(Vector2f lineStart, Vector2f lineEnd,
                                       Vector2f circleCenter, float circleRadius)
+    {
+        return getCollides(lineStart.x, lineStart.y, lineEnd.x, lineEnd.y,
+                circleCenter.x, circleCenter.y, circleRadius);
+    }
+
+    /**
+     * Checks if a line connects with a circle, using raw coordinates.
+     *
+     * @return {@code true} if the line from ({@code startX}, {@code startY}) to ({@code endX}, {@code endY})
+     *         collides with the circle, {@code false} otherwise.
+     *
+     * @see #getCollides(Vector2f, Vector2f, Vector2f, float)
+     * @since 3.0b
+     */
+    public static boolean getCollides(float startX, float startY, float endX, float endY,
+                                      float circleX, float circleY, float circleRadius)
     {
         // Check if distance between line and center is within radius
-        return Line2D.ptSegDistSq(lineStart.x, lineStart.y, lineEnd.x,
-                lineEnd.y, circleCenter.x, circleCenter.y)
+        return Line2D.ptSegDistSq(startX, startY, endX, endY, circleX, circleY)
                 <= (circleRadius * circleRadius);
     }
 
@@ -189,22 +337,53 @@ public class CollisionUtils
                     entity.getCollisionRadius(), VectorUtils.getAngle(entity.getLocation(), source));
         }
 
+        // Find the nearest point in the bounds' local space, then move it back into world space
+        final SegmentTree tree = SegmentTree.get(entity);
+        if (tree != null)
+        {
+            final Vector2f center = entity.getLocation(), closestPoint = new Vector2f();
+            final double facing = Math.toRadians(entity.getFacing());
+            final float cos = (float) Math.cos(facing), sin = (float) Math.sin(facing),
+                    x = source.x - center.x, y = source.y - center.y;
+            tree.getNearestPoint(x * cos + y * sin, y * cos - x * sin, closestPoint);
+            closestPoint.set(center.x + closestPoint.x * cos - closestPoint.y * sin,
+                    center.y + closestPoint.x * sin + closestPoint.y * cos);
+            return closestPoint;
+        }
+
         // Fallback in case entity somehow lacks any segments in its bounds
         final Vector2f closestPoint = new Vector2f(entity.getLocation());
+        getNearestPoint(source.x, source.y, TransformedBounds.get(entity), closestPoint);
+        return closestPoint;
+    }
+
+    // Stores the nearest point on a transformed bounds' segments in dest, and returns its squared distance
+    // If the bounds have no segments, dest is left unchanged and Float.MAX_VALUE is returned
+    private static float getNearestPoint(float x, float y, TransformedBounds bounds, Vector2f dest)
+    {
+        final float[] segments = bounds.segments;
         float closestDistanceSquared = Float.MAX_VALUE;
-        bounds.update(entity.getLocation(), entity.getFacing());
-        for (SegmentAPI segment : bounds.getSegments())
+        for (int i = 0; i < bounds.numSegments; i++)
         {
-            final Vector2f tmp = MathUtils.getNearestPointOnLine(source, segment.getP1(), segment.getP2());
-            final float distanceSquared = MathUtils.getDistanceSquared(source, tmp);
+            // Same as MathUtils.getNearestPointOnLine(), without allocating a new Vector2f
+            final float x1 = segments[i * 4], y1 = segments[i * 4 + 1],
+                    segX = segments[i * 4 + 2] - x1, segY = segments[i * 4 + 3] - y1,
+                    lengthSquared = segX * segX + segY * segY;
+            float u = (lengthSquared == 0f ? 0f : ((x - x1) * segX + (y - y1) * segY) / lengthSquared);
+            if (u < 0) u = 0;
+            if (u > 1) u = 1;
+
+            final float nearestX = x1 + u * segX, nearestY = y1 + u * segY,
+                    distX = x - nearestX, distY = y - nearestY,
+                    distanceSquared = distX * distX + distY * distY;
             if (distanceSquared < closestDistanceSquared)
             {
-                closestPoint.set(tmp);
+                dest.set(nearestX, nearestY);
                 closestDistanceSquared = distanceSquared;
             }
         }
 
-        return closestPoint;
+        return closestDistanceSquared;
     }
 
     /**
@@ -242,8 +421,56 @@ public class CollisionUtils
      */
     public static boolean isPointOnSegment(Vector2f point, SegmentAPI segment)
     {
-        return (Line2D.Float.ptSegDistSq(segment.getP1().x, segment.getP1().y,
-                segment.getP2().x, segment.getP2().y, point.x, point.y) <= 0.11111f);
+        return isPointOnSegment(point.x, point.y, segment.getP1().x, segment.getP1().y,
+                segment.getP2().x, segment.getP2().y);
+    }
+
+    /**
+     * Check if a point is along a segment, using raw coordinates. Accurate to within 1/3 su.
+     *
+     * @return {@code true} if ({@code x}, {@code y}) is along the segment from ({@code x1}, {@code y1}) to
+     *         ({@code x2}, {@code y2}), {@code false} otherwise.
+     *
+     * @see #isPointOnSegment(Vector2f, SegmentAPI)
+     * @since 3.0b
+     */
+    public static boolean isPointOnSegment(float x, float y, float x1, float y1, float x2, float y2)
+    {
+        return (Line2D.Float.ptSegDistSq(x1, y1, x2, y2, x, y) <= 0.11111f);
+    }
+
+    /**
+     * Checks if a point is inside a polygon stored as packed coordinates. Points exactly on the polygon's edges may
+     * or may not count as inside; combine this with
+     * {@link #isPointOnSegment(float, float, float, float, float, float)} if that matters.
+     *
+     * @param x         The X coordinate of the point to check.
+     * @param y         The Y coordinate of the point to check.
+     * @param points    The polygon's vertices, packed as {@code x0, y0, x1, y1, ...}. The polygon is closed
+     *                  automatically, so the first vertex doesn't need to be repeated at the end.
+     * @param numPoints How many vertices of {@code points} to use.
+     *
+     * @return {@code true} if the point is inside the polygon, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public static boolean isPointWithinPolygon(float x, float y, float[] points, int numPoints)
+    {
+        // This code uses the extremely efficient PNPOLY solution taken from:
+        // http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
+        int i, j;
+        boolean result = false;
+        for (i = 0, j = numPoints - 1; i < numPoints; j = i++)
+        {
+            final float xi = points[i * 2], yi = points[i * 2 + 1], xj = points[j * 2], yj = points[j * 2 + 1];
+            if ((yi > y) != (yj > y)
+                    && (x < (xj - xi) * (y - yi) / (yj - yi) + xi))
+            {
+                result = !result;
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -262,60 +489,364 @@ public class CollisionUtils
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public static boolean isPointWithinBounds(Vector2f point, CombatEntityAPI entity)
     {
+        final SegmentTree tree = SegmentTree.get(entity);
+        if (tree != null)
+        {
+            return isPointWithinBounds(point.x, point.y, entity, tree);
+        }
+
         // If the entity lacks bounds, use the collision circle instead
-        if (entity.getExactBounds() == null)
+        final TransformedBounds bounds = TransformedBounds.get(entity);
+        if (bounds == null)
         {
             return isPointWithinCollisionCircle(point, entity);
         }
 
-        // Check if it's even possible there's a collision
-        if (!isPointWithinCollisionCircle(point, entity))
+        return isPointWithinBounds(point.x, point.y, entity, bounds);
+    }
+
+    private static boolean isPointWithinBounds(float x, float y, CombatEntityAPI entity, SegmentTree tree)
+    {
+        final Vector2f center = entity.getLocation();
+        final float radius = entity.getCollisionRadius(), dx = x - center.x, dy = y - center.y;
+        if (dx * dx + dy * dy > radius * radius)
         {
             return false;
         }
 
-        // Grab the ship bounds and update them to reflect the ship's position
-        BoundsAPI bounds = entity.getExactBounds();
-        bounds.update(entity.getLocation(), entity.getFacing());
+        // Bounds that aren't a closed loop are tested the same way as small bounds
+        if (!tree.isClosed())
+        {
+            return isPointWithinBounds(x, y, entity, TransformedBounds.get(entity));
+        }
 
-        // Transform the bounds into a series of points
-        List<SegmentAPI> segments = bounds.getSegments();
-        List<Vector2f> points = new ArrayList<>(segments.size() + 1);
-        for (int x = 0; x < segments.size(); x++)
+        // Move the point into the bounds' local space
+        final double facing = Math.toRadians(entity.getFacing());
+        final float cos = (float) Math.cos(facing), sin = (float) Math.sin(facing),
+                localX = dx * cos + dy * sin, localY = dy * cos - dx * sin;
+        return tree.isPointOnSegment(localX, localY) || tree.isPointInPolygon(localX, localY);
+    }
+
+    private static boolean isPointWithinBounds(float x, float y, CombatEntityAPI entity, TransformedBounds bounds)
+    {
+        // Check if it's even possible there's a collision
+        // The bounding box is padded to match isPointOnSegment()'s tolerance
+        final Vector2f center = entity.getLocation();
+        final float radius = entity.getCollisionRadius();
+        if ((x - center.x) * (x - center.x) + (y - center.y) * (y - center.y) > radius * radius
+                || !bounds.isInBoundingBox(x, y, 0.34f))
         {
-            final SegmentAPI seg = segments.get(x);
+            return false;
+        }
 
-            // Use this opportunity to test if the point is exactly on the bounds
-            if (CollisionUtils.isPointOnSegment(point, seg))
+        // Test if the point is exactly on the bounds
+        final float[] segments = bounds.segments;
+        for (int i = 0; i < bounds.numSegments; i++)
+        {
+            if (isPointOnSegment(x, y, segments[i * 4], segments[i * 4 + 1],
+                    segments[i * 4 + 2], segments[i * 4 + 3]))
             {
                 return true;
             }
+        }
+
+        // Check if the point is inside the bounds polygon
+        return isPointWithinPolygon(x, y, bounds.points, bounds.numPoints);
+    }
 
-            points.add(seg.getP1());
-            // Make sure to add the final point
-            if (x == (segments.size() - 1))
+    /**
+     * Finds when and where a moving point first touches a {@link CombatEntityAPI}'s bounds, or its collision circle
+     * if it lacks bounds. Unlike {@link #getCollisionPoint(Vector2f, Vector2f, CombatEntityAPI)}, the point can't
+     * tunnel through thin bounds regardless of how far it moves.
+     * <p>
+     * {@code target} is treated as stationary; to account for its movement, pass the point's velocity relative to
+     * {@code target} instead.
+     *
+     * @param position The position of the point at the start of the sweep.
+     * @param velocity The velocity of the point.
+     * @param dt       How long the point moves for, usually the frame's {@code amount}.
+     * @param target   The entity to test against.
+     * @param result   Where the contact will be stored, if one is found.
+     *
+     * @return {@code true} if the point touches {@code target} within {@code dt}, {@code false} otherwise (in
+     *         which case {@code result} is left unchanged).
+     *
+     * @since 3.0b
+     */
+    public static boolean getSweptCollision(Vector2f position, Vector2f velocity, float dt,
+                                            CombatEntityAPI target, SweptCollision result)
+    {
+        return getSweptCollision(position, velocity, 0f, dt, target, result);
+    }
+
+    /**
+     * Finds when and where a moving circle first touches a {@link CombatEntityAPI}'s bounds, or its collision
+     * circle if it lacks bounds. This lets fast-moving objects be tested once per frame without tunneling through
+     * thin bounds, instead of being tested several times along their path.
+     * <p>
+     * {@code target} is treated as stationary; to account for its movement, pass the circle's velocity relative to
+     * {@code target} instead. If the circle already overlaps {@code target} at the start of the sweep, the contact
+     * time is 0 and the contact point is the nearest point on {@code target}'s bounds.
+     * <p>
+     * Accurate to within 1/3 su, like the other tests in this class. This method does not allocate any memory.
+     *
+     * @param position The center of the circle at the start of the sweep.
+     * @param velocity The velocity of the circle.
+     * @param radius   The radius of the circle. A radius of 0 tests a moving point.
+     * @param dt       How long the circle moves for, usually the frame's {@code amount}.
+     * @param target   The entity to test against.
+     * @param result   Where the contact will be stored, if one is found.
+     *
+     * @return {@code true} if the circle touches {@code target} within {@code dt}, {@code false} otherwise (in
+     *         which case {@code result} is left unchanged).
+     *
+     * @since 3.0b
+     */
+    public static boolean getSweptCollision(Vector2f position, Vector2f velocity, float radius, float dt,
+                                            CombatEntityAPI target, SweptCollision result)
+    {
+        // Points are given the same 1/3 su tolerance as the rest of this class's segment tests
+        final float sweepRadius = Math.max(radius, 0.33333f);
+        final float startX = position.x, startY = position.y,
+                dx = velocity.x * dt, dy = velocity.y * dt;
+        final Vector2f center = target.getLocation();
+        final float reach = sweepRadius + target.getCollisionRadius();
+
+        // Skip everything else if the sweep never comes near the target's collision circle
+        if (Line2D.Float.ptSegDistSq(startX, startY, startX + dx, startY + dy,
+                center.x, center.y) > reach * reach)
+        {
+            return false;
+        }
+
+        // Large bounds are tested in their own local space using a precomputed tree of their segments
+        final SegmentTree tree = SegmentTree.get(target);
+        if (tree != null)
+        {
+            return getSweptCollision(startX, startY, dx, dy, sweepRadius, dt, target, tree, result);
+        }
+
+        // Entities that lack bounds (or have no segments) will use the collision circle instead
+        final TransformedBounds bounds = TransformedBounds.get(target);
+        if (bounds == null || bounds.numSegments == 0)
+        {
+            final float fraction = getSweptFraction(startX, startY, dx, dy, center.x, center.y, reach);
+            if (fraction < 0f)
             {
-                points.add(seg.getP2());
+                return false;
             }
+
+            final float normalX = startX + dx * fraction - center.x, normalY = startY + dy * fraction - center.y,
+                    length = (float) Math.sqrt(normalX * normalX + normalY * normalY),
+                    scale = (length > 0f ? target.getCollisionRadius() / length : 0f);
+            result.set(target, fraction * dt, center.x + normalX * scale, center.y + normalY * scale,
+                    normalX, normalY);
+            return true;
         }
 
-        // Check if the point is inside the bounds polygon
-        // This code uses the extremely efficient PNPOLY solution taken from:
-        // http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
-        int i, j;
-        boolean result = false;
-        for (i = 0, j = points.size() - 1; i < points.size(); j = i++)
+        // Check if the sweep starts out touching the bounds
+        final boolean inside = isPointWithinBounds(startX, startY, target, bounds);
+        if (inside || getNearestPoint(startX, startY, bounds, result.tmp) <= sweepRadius * sweepRadius)
         {
-            if ((points.get(i).y > point.y) != (points.get(j).y > point.y)
-                    && (point.x < (points.get(j).x - points.get(i).x)
-                    * (point.y - points.get(i).y)
-                    / (points.get(j).y - points.get(i).y) + points.get(i).x))
+            if (inside)
             {
-                result = !result;
+                getNearestPoint(startX, startY, bounds, result.tmp);
             }
+
+            setStartingContact(startX, startY, inside, target, result);
+            return true;
         }
 
-        return result;
+        // Skip the segment tests entirely if the sweep can't reach the bounding box
+        final float padding = sweepRadius + 1f;
+        if (Math.max(startX, startX + dx) < bounds.minX - padding
+                || Math.min(startX, startX + dx) > bounds.maxX + padding
+                || Math.max(startY, startY + dy) < bounds.minY - padding
+                || Math.min(startY, startY + dy) > bounds.maxY + padding)
+        {
+            return false;
+        }
+
+        final float[] segments = bounds.segments;
+        float closestFraction = Float.MAX_VALUE;
+        int closestSegment = -1;
+        for (int i = 0; i < bounds.numSegments; i++)
+        {
+            final float fraction = getSweptFraction(startX, startY, dx, dy, sweepRadius,
+                    segments[i * 4], segments[i * 4 + 1], segments[i * 4 + 2], segments[i * 4 + 3]);
+            if (fraction >= 0f && fraction < closestFraction)
+            {
+                closestFraction = fraction;
+                closestSegment = i;
+            }
+        }
+
+        // No segment was touched
+        if (closestSegment < 0)
+        {
+            return false;
+        }
+
+        setSweptContact(startX, startY, dx, dy, closestFraction, dt, segments[closestSegment * 4],
+                segments[closestSegment * 4 + 1], segments[closestSegment * 4 + 2],
+                segments[closestSegment * 4 + 3], target, result);
+        return true;
+    }
+
+    private static boolean getSweptCollision(float startX, float startY, float dx, float dy, float radius,
+                                             float dt, CombatEntityAPI target, SegmentTree tree,
+                                             SweptCollision result)
+    {
+        // Move the sweep into the bounds' local space
+        final Vector2f center = target.getLocation();
+        final double facing = Math.toRadians(target.getFacing());
+        final float cos = (float) Math.cos(facing), sin = (float) Math.sin(facing),
+                offsetX = startX - center.x, offsetY = startY - center.y,
+                localX = offsetX * cos + offsetY * sin, localY = offsetY * cos - offsetX * sin,
+                localDx = dx * cos + dy * sin, localDy = dy * cos - dx * sin;
+
+        // Check if the sweep starts out touching the bounds
+        final boolean inside = isPointWithinBounds(startX, startY, target, tree);
+        if (tree.getNearestPoint(localX, localY, result.tmp) <= radius * radius || inside)
+        {
+            setStartingContact(localX, localY, inside, target, result);
+        }
+        else
+        {
+            final float fraction = tree.getFirstSweptFraction(localX, localY, localDx, localDy, radius);
+            if (fraction == Float.MAX_VALUE)
+            {
+                return false;
+            }
+
+            final float[] seg = tree.hitSegment;
+            setSweptContact(localX, localY, localDx, localDy, fraction, dt,
+                    seg[0], seg[1], seg[2], seg[3], target, result);
+        }
+
+        // Move the contact back into world space
+        final Vector2f point = result.getPoint(), normal = result.getNormal();
+        point.set(center.x + point.x * cos - point.y * sin, center.y + point.x * sin + point.y * cos);
+        normal.set(normal.x * cos - normal.y * sin, normal.x * sin + normal.y * cos);
+        return true;
+    }
+
+    // Stores a contact at the start of a sweep, using the nearest point on the bounds already stored in result.tmp
+    private static void setStartingContact(float x, float y, boolean inside, CombatEntityAPI target,
+                                           SweptCollision result)
+    {
+        final Vector2f nearest = result.tmp;
+        // The normal should point the shortest way out of the bounds
+        final float normalX = (inside ? nearest.x - x : x - nearest.x),
+                normalY = (inside ? nearest.y - y : y - nearest.y);
+        result.set(target, 0f, nearest.x, nearest.y, normalX, normalY);
+    }
+
+    // Stores the contact between a swept circle and the segment it touched first
+    private static void setSweptContact(float startX, float startY, float dx, float dy, float fraction, float dt,
+                                        float x1, float y1, float x2, float y2, CombatEntityAPI target,
+                                        SweptCollision result)
+    {
+        final float centerX = startX + dx * fraction, centerY = startY + dy * fraction,
+                segX = x2 - x1, segY = y2 - y1, lengthSquared = segX * segX + segY * segY;
+        float u = (lengthSquared == 0f ? 0f : ((centerX - x1) * segX + (centerY - y1) * segY) / lengthSquared);
+        if (u < 0) u = 0;
+        if (u > 1) u = 1;
+
+        final float pointX = x1 + u * segX, pointY = y1 + u * segY;
+        float normalX = centerX - pointX, normalY = centerY - pointY;
+
+        // A swept point touches the segment itself, so use the side of the segment it came from instead
+        if (normalX * normalX + normalY * normalY < 0.0001f)
+        {
+            normalX = -segY;
+            normalY = segX;
+            if ((startX - x1) * normalX + (startY - y1) * normalY < 0f)
+            {
+                normalX = -normalX;
+                normalY = -normalY;
+            }
+        }
+
+        result.set(target, fraction * dt, pointX, pointY, normalX, normalY);
+    }
+
+    // Returns how far along its path (0 at the start, 1 at the end) a moving circle first touches a stationary
+    // circle, or -1 if it never does. Returns 0 if they already overlap
+    private static float getSweptFraction(float startX, float startY, float dx, float dy,
+                                          float centerX, float centerY, float radius)
+    {
+        final float offsetX = startX - centerX, offsetY = startY - centerY,
+                c = offsetX * offsetX + offsetY * offsetY - radius * radius;
+        if (c <= 0f)
+        {
+            return 0f;
+        }
+
+        // Solve |offset + d*t| = radius; halfB is negative when the circle is moving closer
+        final float a = dx * dx + dy * dy, halfB = offsetX * dx + offsetY * dy;
+        if (a == 0f || halfB >= 0f)
+        {
+            return -1f;
+        }
+
+        final float discriminant = halfB * halfB - a * c;
+        if (discriminant < 0f)
+        {
+            return -1f;
+        }
+
+        final float fraction = (-halfB - (float) Math.sqrt(discriminant)) / a;
+        return (fraction <= 1f ? fraction : -1f);
+    }
+
+    // Returns how far along its path (0 at the start, 1 at the end) a moving circle first touches a segment, or -1
+    // if it never does. This is a ray test against the capsule formed by growing the segment by the circle's radius
+    static float getSweptFraction(float startX, float startY, float dx, float dy, float radius,
+                                  float x1, float y1, float x2, float y2)
+    {
+        float closest = -1f;
+        final float segX = x2 - x1, segY = y2 - y1, lengthSquared = segX * segX + segY * segY;
+
+        // The flat sides of the capsule, only checking the side facing the start of the path
+        if (lengthSquared > 0f)
+        {
+            final float length = (float) Math.sqrt(lengthSquared),
+                    normalX = -segY / length, normalY = segX / length,
+                    distance = (startX - x1) * normalX + (startY - y1) * normalY,
+                    approach = dx * normalX + dy * normalY;
+            if (approach != 0f && Math.abs(distance) >= radius)
+            {
+                final float fraction = ((distance >= 0f ? radius : -radius) - distance) / approach;
+                if (fraction >= 0f && fraction <= 1f)
+                {
+                    final float u = ((startX + dx * fraction - x1) * segX
+                            + (startY + dy * fraction - y1) * segY) / lengthSquared;
+                    if (u >= 0f && u <= 1f)
+                    {
+                        closest = fraction;
+                    }
+                }
+            }
+        }
+
+        // The rounded ends of the capsule
+        if (radius > 0f)
+        {
+            final float start = getSweptFraction(startX, startY, dx, dy, x1, y1, radius);
+            if (start >= 0f && (closest < 0f || start < closest))
+            {
+                closest = start;
+            }
+
+            final float end = getSweptFraction(startX, startY, dx, dy, x2, y2, radius);
+            if (end >= 0f && (closest < 0f || end < closest))
+            {
+                closest = end;
+            }
+        }
+
+        return closest;
     }
 
     private CollisionUtils()
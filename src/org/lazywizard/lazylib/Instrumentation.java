@@ -0,0 +1,553 @@
+package org.lazywizard.lazylib;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional instrumentation of LazyLib's searches, for modders trying to find
+ * out what is eating their frame budget. While enabled, every call to an
+ * instrumented method records how long it took, how many results it found
+ * and roughly how much memory it allocated, and every so often which mod's
+ * package it was called from.
+ * <p>
+ * Instrumentation is off unless "enableInstrumentation" is set in
+ * lazylib_settings.json, in which case a report of the most expensive methods
+ * and callers is written to the log every "instrumentationLogInterval"
+ * seconds. The report can also be shown at any time with the
+ * {@code LazyLibStats} console command, or retrieved with
+ * {@link #getReport(int)}. While disabled, an instrumented method only pays
+ * for a single field read.
+ * <p>
+ * Counters are {@link LongAdder}s, and the bookkeeping for calls in progress
+ * is kept per thread, so instrumented methods can be called from any thread
+ * without contention. Timings include any instrumented methods called by the
+ * method itself (for example, {@code AIUtils.getNearbyEnemies()} includes
+ * its call to {@code CombatUtils.getShipsWithinRange()}).
+ * <p>
+ * Mods can instrument their own code the same way LazyLib does:
+ * <pre>
+ * private static final Instrumentation.Probe PROBE =
+ *         new Instrumentation.Probe("MyMod.findTargets");
+ *
+ * final int call = Instrumentation.start();
+ * final List&lt;ShipAPI&gt; targets = findTargets();
+ * Instrumentation.end(PROBE, call, targets.size());
+ * </pre>
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class Instrumentation
+{
+    private static final Logger Log = Global.getLogger(Instrumentation.class);
+    private static final List<Probe> allProbes = new ArrayList<>();
+    // Deep enough for any sane nesting of instrumented calls; anything deeper simply isn't recorded
+    private static final int MAX_DEPTH = 32;
+    private static final ThreadLocal<CallStack> callStacks = ThreadLocal.withInitial(CallStack::new);
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+    private static final AtomicLong nextLogTime = new AtomicLong();
+    @Nullable
+    private static final com.sun.management.ThreadMXBean allocationTracker = findAllocationTracker();
+    private static volatile boolean enabled = false;
+    private static volatile long enabledSince = System.nanoTime();
+    // Whether allocation tracking was off until instrumentation turned it on, so it can be turned off again
+    private static boolean startedAllocationTracking = false;
+    private static long logIntervalNanos = 0L;
+    private static int sampleRate = 64;
+
+    /**
+     * Checks if instrumentation is currently enabled.
+     *
+     * @return {@code true} if instrumented methods are recording their calls,
+     *         {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Turns instrumentation on or off. Statistics gathered so far are kept;
+     * use {@link #reset()} to discard them.
+     *
+     * @param enabled Whether instrumented methods should record their calls.
+     *
+     * @since 3.0b
+     */
+    public static void setEnabled(boolean enabled)
+    {
+        if (enabled && !Instrumentation.enabled)
+        {
+            nextLogTime.set(System.nanoTime() + logIntervalNanos);
+        }
+
+        if (enabled != Instrumentation.enabled)
+        {
+            setAllocationTracking(enabled);
+        }
+
+        Instrumentation.enabled = enabled;
+    }
+
+    /**
+     * Discards all statistics gathered so far.
+     *
+     * @since 3.0b
+     */
+    public static void reset()
+    {
+        for (Probe probe : getAllProbes())
+        {
+            probe.reset();
+        }
+
+        enabledSince = System.nanoTime();
+    }
+
+    /**
+     * Returns every probe created so far, whether or not it has recorded any
+     * calls.
+     *
+     * @return An unmodifiable {@link List} of every {@link Probe}.
+     *
+     * @since 3.0b
+     */
+    public static List<Probe> getAllProbes()
+    {
+        synchronized (allProbes)
+        {
+            return Collections.unmodifiableList(new ArrayList<>(allProbes));
+        }
+    }
+
+    /**
+     * Marks the start of an instrumented call. Every call to this method must
+     * be followed by a call to {@link #end(Probe, int)} or
+     * {@link #end(Probe, int, int)} once the instrumented code is done.
+     *
+     * @return A handle to pass to {@code end()}, or -1 if instrumentation is
+     *         disabled.
+     *
+     * @since 3.0b
+     */
+    public static int start()
+    {
+        if (!enabled)
+        {
+            return -1;
+        }
+
+        final CallStack stack = callStacks.get();
+        final int call = stack.depth;
+        if (call >= MAX_DEPTH)
+        {
+            return -1;
+        }
+
+        stack.depth = call + 1;
+        stack.startResults[call] = stack.results;
+        stack.startBytes[call] = getAllocatedBytes() - stack.overheadBytes;
+        stack.startNanos[call] = System.nanoTime() - stack.overheadNanos;
+        return call;
+    }
+
+    /**
+     * Counts one result towards every instrumented call in progress on this
+     * thread. LazyLib's searches call this for every entity they find, so
+     * {@link #end(Probe, int)} knows how many results a search produced
+     * without the search having to keep count itself.
+     *
+     * @since 3.0b
+     */
+    public static void countResult()
+    {
+        if (enabled)
+        {
+            callStacks.get().results++;
+        }
+    }
+
+    /**
+     * Marks the end of an instrumented call whose results were counted with
+     * {@link #countResult()}.
+     *
+     * @param probe The probe to record the call in.
+     * @param call  The handle returned by the matching {@link #start()}.
+     *
+     * @since 3.0b
+     */
+    public static void end(Probe probe, int call)
+    {
+        end(probe, call, -1);
+    }
+
+    /**
+     * Marks the end of an instrumented call.
+     *
+     * @param probe      The probe to record the call in.
+     * @param call       The handle returned by the matching {@link #start()}.
+     * @param numResults How many results the call produced, or -1 to use the
+     *                   number of times {@link #countResult()} was called
+     *                   since {@code start()}.
+     *
+     * @since 3.0b
+     */
+    public static void end(Probe probe, int call, int numResults)
+    {
+        if (call < 0)
+        {
+            return;
+        }
+
+        long endNanos = System.nanoTime();
+        final CallStack stack = callStacks.get();
+        final long endBytes = getAllocatedBytes();
+        final long nanos = (endNanos - stack.overheadNanos) - stack.startNanos[call],
+                bytes = Math.max(0L, (endBytes - stack.overheadBytes) - stack.startBytes[call]);
+        final long results = (numResults >= 0 ? numResults : stack.results - stack.startResults[call]);
+
+        // Resetting the depth (rather than decrementing it) recovers from nested calls that threw before ending
+        stack.depth = call;
+        probe.record(nanos, results, bytes);
+
+        // Finding the caller means walking the stack, so only a random sample of calls are attributed
+        // The time and memory this takes is excluded from any instrumented calls this one is nested in
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0)
+        {
+            probe.recordCaller(findCallerPackage(), sampleRate, nanos * sampleRate);
+            final long now = System.nanoTime();
+            stack.overheadNanos += now - endNanos;
+            stack.overheadBytes += getAllocatedBytes() - endBytes;
+            endNanos = now;
+        }
+
+        final long nextLog = nextLogTime.get();
+        if (logIntervalNanos > 0L && endNanos - nextLog >= 0L
+                && nextLogTime.compareAndSet(nextLog, endNanos + logIntervalNanos))
+        {
+            Log.log(Level.INFO, getReport(10));
+        }
+    }
+
+    /**
+     * Builds a human-readable report of the most expensive instrumented
+     * methods, and the most expensive combinations of calling package and
+     * method.
+     *
+     * @param maxEntries The most methods and callers to list.
+     *
+     * @return The report, one entry per line.
+     *
+     * @since 3.0b
+     */
+    public static String getReport(int maxEntries)
+    {
+        final List<Probe> probes = new ArrayList<>();
+        final List<CallerEntry> callers = new ArrayList<>();
+        for (Probe probe : getAllProbes())
+        {
+            if (probe.getCalls() == 0L)
+            {
+                continue;
+            }
+
+            probes.add(probe);
+            for (Map.Entry<String, CallerStats> entry : probe.callers.entrySet())
+            {
+                callers.add(new CallerEntry(entry.getKey(), probe, entry.getValue()));
+            }
+        }
+
+        probes.sort(Comparator.comparingLong(Probe::getTotalNanos).reversed());
+        callers.sort(Comparator.comparingLong((CallerEntry entry) -> entry.nanos).reversed());
+
+        final StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format("LazyLib instrumentation report (%.1f seconds%s):",
+                (System.nanoTime() - enabledSince) / 1_000_000_000d, enabled ? "" : ", disabled"));
+        if (probes.isEmpty())
+        {
+            return sb.append("\n No instrumented calls recorded.").toString();
+        }
+
+        sb.append("\n Most expensive methods:");
+        for (int i = 0; i < Math.min(maxEntries, probes.size()); i++)
+        {
+            final Probe probe = probes.get(i);
+            final long calls = probe.getCalls();
+            sb.append(String.format("%n  %s: %d calls, %.2fms total (%.2fus/call), %.1f results/call, %d bytes/call",
+                    probe.getName(), calls, probe.getTotalNanos() / 1_000_000d,
+                    probe.getTotalNanos() / 1_000d / calls, probe.getResults() / (double) calls,
+                    probe.getAllocatedBytes() / calls));
+        }
+
+        sb.append("\n Most expensive callers (estimated from 1 in ").append(sampleRate).append(" calls):");
+        for (int i = 0; i < Math.min(maxEntries, callers.size()); i++)
+        {
+            final CallerEntry entry = callers.get(i);
+            sb.append(String.format("%n  %s -> %s: ~%d calls, ~%.2fms total",
+                    entry.callerPackage, entry.probe.getName(), entry.calls, entry.nanos / 1_000_000d));
+        }
+
+        return sb.toString();
+    }
+
+    // Called when LazyLib's settings are loaded
+    static void configure(boolean enabled, float logIntervalSeconds, int sampleRate)
+    {
+        logIntervalNanos = (long) (Math.max(0f, logIntervalSeconds) * 1_000_000_000d);
+        Instrumentation.sampleRate = Math.max(1, sampleRate);
+        setEnabled(enabled);
+        if (enabled)
+        {
+            Log.log(Level.INFO, "Instrumentation enabled" + (allocationTracker == null
+                    ? ", but allocation tracking isn't supported by this JVM" : ""));
+        }
+    }
+
+    // Tracking allocations adds a cost to every allocation in the JVM, so it's only
+    // turned on while instrumentation is enabled (and left alone if it already was)
+    private static synchronized void setAllocationTracking(boolean enabled)
+    {
+        if (allocationTracker == null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (enabled && !allocationTracker.isThreadAllocatedMemoryEnabled())
+            {
+                allocationTracker.setThreadAllocatedMemoryEnabled(true);
+                startedAllocationTracking = true;
+            }
+            else if (!enabled && startedAllocationTracking)
+            {
+                allocationTracker.setThreadAllocatedMemoryEnabled(false);
+                startedAllocationTracking = false;
+            }
+        }
+        catch (Throwable ex)
+        {
+            Log.log(Level.WARN, "Failed to " + (enabled ? "start" : "stop") + " allocation tracking", ex);
+        }
+    }
+
+    private static long getAllocatedBytes()
+    {
+        return (allocationTracker == null ? 0L : allocationTracker.getCurrentThreadAllocatedBytes());
+    }
+
+    // Returns the package of the first class on the stack that isn't part of LazyLib
+    private static String findCallerPackage()
+    {
+        final String caller = stackWalker.walk(frames -> frames
+                .map(StackWalker.StackFrame::getClassName)
+                .filter(name -> !name.startsWith("org.lazywizard.lazylib.") || name.startsWith(
+                        "org.lazywizard.lazylib.console."))
+                .findFirst()
+                .orElse("<unknown>"));
+        final int lastDot = caller.lastIndexOf('.');
+        return (lastDot < 0 ? "<default package>" : caller.substring(0, lastDot));
+    }
+
+    @Nullable
+    private static com.sun.management.ThreadMXBean findAllocationTracker()
+    {
+        try
+        {
+            final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean tracker
+                    && tracker.isThreadAllocatedMemorySupported())
+            {
+                return tracker;
+            }
+        }
+        catch (Throwable ex)
+        {
+            Log.log(Level.WARN, "Allocation tracking is unavailable", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * The statistics recorded for one instrumented method.
+     * <p>
+     * A probe is meant to be created once and stored in a static field. Every
+     * probe is registered with {@link Instrumentation} for the lifetime of the
+     * game, and is included in its reports.
+     *
+     * @since 3.0b
+     */
+    public static final class Probe
+    {
+        private final String name;
+        private final LongAdder calls = new LongAdder(), nanos = new LongAdder(), results = new LongAdder(),
+                bytes = new LongAdder();
+        private final Map<String, CallerStats> callers = new ConcurrentHashMap<>();
+
+        /**
+         * Creates a new probe.
+         *
+         * @param name The name of this probe, used in reports. Including your
+         *             mod's name here is recommended.
+         *
+         * @since 3.0b
+         */
+        public Probe(String name)
+        {
+            this.name = name;
+
+            synchronized (allProbes)
+            {
+                allProbes.add(this);
+            }
+        }
+
+        /**
+         * Returns the name this probe was created with.
+         *
+         * @return This probe's name.
+         *
+         * @since 3.0b
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Returns how many calls this probe has recorded.
+         *
+         * @return The number of calls recorded since the last
+         *         {@link Instrumentation#reset()}.
+         *
+         * @since 3.0b
+         */
+        public long getCalls()
+        {
+            return calls.sum();
+        }
+
+        /**
+         * Returns how long the calls this probe has recorded took.
+         *
+         * @return The total time of every recorded call, in nanoseconds.
+         *
+         * @since 3.0b
+         */
+        public long getTotalNanos()
+        {
+            return nanos.sum();
+        }
+
+        /**
+         * Returns how many results the calls this probe has recorded
+         * produced.
+         *
+         * @return The total number of results of every recorded call.
+         *
+         * @since 3.0b
+         */
+        public long getResults()
+        {
+            return results.sum();
+        }
+
+        /**
+         * Returns roughly how much memory the calls this probe has recorded
+         * allocated.
+         *
+         * @return The total bytes allocated by every recorded call, or 0 if
+         *         the JVM doesn't support allocation tracking.
+         *
+         * @since 3.0b
+         */
+        public long getAllocatedBytes()
+        {
+            return bytes.sum();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Probe{name=" + name + ", calls=" + getCalls() + ", totalNanos=" + getTotalNanos()
+                    + ", results=" + getResults() + ", allocatedBytes=" + getAllocatedBytes() + "}";
+        }
+
+        private void record(long nanos, long results, long bytes)
+        {
+            calls.increment();
+            this.nanos.add(nanos);
+            this.results.add(results);
+            this.bytes.add(bytes);
+        }
+
+        private void recordCaller(String callerPackage, long calls, long nanos)
+        {
+            final CallerStats stats = callers.computeIfAbsent(callerPackage, key -> new CallerStats());
+            stats.calls.add(calls);
+            stats.nanos.add(nanos);
+        }
+
+        private void reset()
+        {
+            calls.reset();
+            nanos.reset();
+            results.reset();
+            bytes.reset();
+            callers.clear();
+        }
+    }
+
+    // Estimated totals for one calling package of a probe
+    private static final class CallerStats
+    {
+        private final LongAdder calls = new LongAdder(), nanos = new LongAdder();
+    }
+
+    // A snapshot of CallerStats taken while building a report, so sorting sees consistent values
+    private static final class CallerEntry
+    {
+        private final String callerPackage;
+        private final Probe probe;
+        private final long calls, nanos;
+
+        private CallerEntry(String callerPackage, Probe probe, CallerStats stats)
+        {
+            this.callerPackage = callerPackage;
+            this.probe = probe;
+            calls = stats.calls.sum();
+            nanos = stats.nanos.sum();
+        }
+    }
+
+    // The bookkeeping for the instrumented calls in progress on one thread
+    private static final class CallStack
+    {
+        private final long[] startNanos = new long[MAX_DEPTH], startBytes = new long[MAX_DEPTH],
+                startResults = new long[MAX_DEPTH];
+        private int depth = 0;
+        private long results = 0L, overheadNanos = 0L, overheadBytes = 0L;
+    }
+
+    private Instrumentation()
+    {
+    }
+}
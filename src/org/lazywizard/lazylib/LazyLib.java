@@ -249,6 +249,9 @@ public class LazyLib extends BaseModPlugin
         cacheEnabled = settings.optBoolean("enableCaching", false);
         logDeprecated = settings.optBoolean("logDeprecated", false);
         crashOnDeprecated = settings.optBoolean("crashOnDeprecated", false);
+        Instrumentation.configure(settings.optBoolean("enableInstrumentation", false),
+                (float) settings.optDouble("instrumentationLogInterval", 60.0),
+                settings.optInt("instrumentationSampleRate", 64));
 
         try
         {
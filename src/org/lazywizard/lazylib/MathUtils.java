@@ -87,7 +87,21 @@ public class MathUtils
      */
     public static float getDistance(Vector2f loc1, Vector2f loc2)
     {
-        final float a = loc1.x - loc2.x, b = loc1.y - loc2.y;
+        return getDistance(loc1.x, loc1.y, loc2.x, loc2.y);
+    }
+
+    /**
+     * Returns the distance between two points, given as raw coordinates. Useful when iterating over packed
+     * coordinate arrays, as no {@link Vector2f}s are needed.
+     *
+     * @return The distance between ({@code x1}, {@code y1}) and ({@code x2}, {@code y2}).
+     *
+     * @see MathUtils#getDistanceSquared(float, float, float, float)
+     * @since 3.0b
+     */
+    public static float getDistance(float x1, float y1, float x2, float y2)
+    {
+        final float a = x1 - x2, b = y1 - y2;
         return (float) Math.hypot(a, b);
     }
 
@@ -184,7 +198,19 @@ public class MathUtils
      */
     public static float getDistanceSquared(Vector2f loc1, Vector2f loc2)
     {
-        final float a = loc1.x - loc2.x, b = loc1.y - loc2.y;
+        return getDistanceSquared(loc1.x, loc1.y, loc2.x, loc2.y);
+    }
+
+    /**
+     * Returns the distance squared between two points, given as raw coordinates (avoids a costly sqrt()).
+     *
+     * @return The distance squared between ({@code x1}, {@code y1}) and ({@code x2}, {@code y2}).
+     *
+     * @since 3.0b
+     */
+    public static float getDistanceSquared(float x1, float y1, float x2, float y2)
+    {
+        final float a = x1 - x2, b = y1 - y2;
         return (a * a) + (b * b);
     }
 
@@ -293,7 +319,21 @@ public class MathUtils
      */
     public static boolean isWithinRange(Vector2f loc1, Vector2f loc2, float range)
     {
-        return (getDistanceSquared(loc1, loc2) <= (range * range));
+        return isWithinRange(loc1.x, loc1.y, loc2.x, loc2.y, range);
+    }
+
+    /**
+     * Check if two points, given as raw coordinates, are within a certain distance of each other.
+     *
+     * @param range The maximum distance between the two points.
+     *
+     * @return Whether ({@code x1}, {@code y1}) is within {@code range} su of ({@code x2}, {@code y2}).
+     *
+     * @since 3.0b
+     */
+    public static boolean isWithinRange(float x1, float y1, float x2, float y2, float range)
+    {
+        return (getDistanceSquared(x1, y1, x2, y2) <= (range * range));
     }
 
     // TODO: Test, rename, Javadoc, add to changelog
@@ -622,8 +662,26 @@ public class MathUtils
      */
     public static boolean isPointWithinCircle(Vector2f point, @Nullable Vector2f center, float radius)
     {
-        final float a = point.x - (center == null ? 0f : center.x),
-                b = point.y - (center == null ? 0f : center.y);
+        return isPointWithinCircle(point.x, point.y, (center == null ? 0f : center.x),
+                (center == null ? 0f : center.y), radius);
+    }
+
+    /**
+     * Checks whether a point is on or within the bounds of a circle, using raw coordinates.
+     *
+     * @param x       The X coordinate of the point to check.
+     * @param y       The Y coordinate of the point to check.
+     * @param centerX The X coordinate of the center of the circle.
+     * @param centerY The Y coordinate of the center of the circle.
+     * @param radius  The radius of the circle.
+     *
+     * @return {@code true} if the point is on or within the circle, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public static boolean isPointWithinCircle(float x, float y, float centerX, float centerY, float radius)
+    {
+        final float a = x - centerX, b = y - centerY;
         return (a * a) + (b * b) <= (radius * radius);
     }
 
@@ -642,8 +700,20 @@ public class MathUtils
      */
     public static boolean isPointOnLine(Vector2f point, Vector2f lineStart, Vector2f lineEnd)
     {
-        return (Line2D.Float.ptSegDistSq(lineStart.x, lineStart.y,
-                lineEnd.x, lineEnd.y, point.x, point.y) <= 0.0001);
+        return isPointOnLine(point.x, point.y, lineStart.x, lineStart.y, lineEnd.x, lineEnd.y);
+    }
+
+    /**
+     * Check if a point is along a line, using raw coordinates. Accurate to within 1/100 of a unit.
+     *
+     * @return {@code true} if ({@code x}, {@code y}) is along the line between ({@code startX}, {@code startY})
+     *         and ({@code endX}, {@code endY}), {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public static boolean isPointOnLine(float x, float y, float startX, float startY, float endX, float endY)
+    {
+        return (Line2D.Float.ptSegDistSq(startX, startY, endX, endY, x, y) <= 0.0001);
     }
 
     /**
@@ -660,21 +730,40 @@ public class MathUtils
      */
     public static Vector2f getNearestPointOnLine(Vector2f source, Vector2f lineStart, Vector2f lineEnd)
     {
-        float u = (source.x - lineStart.x) * (lineEnd.x - lineStart.x)
-                + (source.y - lineStart.y) * (lineEnd.y - lineStart.y);
-        float denom = Vector2f.sub(lineEnd, lineStart, new Vector2f()).length();
-        denom *= denom;
+        return getNearestPointOnLine(source.x, source.y, lineStart.x, lineStart.y, lineEnd.x, lineEnd.y,
+                new Vector2f());
+    }
 
-        u /= denom;
+    /**
+     * Given a point and a line, finds the nearest point on said line to that point, using raw coordinates and
+     * storing the result in an existing {@link Vector2f}.
+     *
+     * @param x      The X coordinate of the point to test distance from.
+     * @param y      The Y coordinate of the point to test distance from.
+     * @param startX The X coordinate of the start of the line.
+     * @param startY The Y coordinate of the start of the line.
+     * @param endX   The X coordinate of the end of the line.
+     * @param endY   The Y coordinate of the end of the line.
+     * @param dest   The {@link Vector2f} to store the result in.
+     *
+     * @return {@code dest}, set to the point on the line nearest to ({@code x}, {@code y}). If the line has no
+     *         length, this is its start.
+     *
+     * @since 3.0b
+     */
+    public static Vector2f getNearestPointOnLine(float x, float y, float startX, float startY,
+                                                 float endX, float endY, Vector2f dest)
+    {
+        final float lineX = endX - startX, lineY = endY - startY,
+                lengthSquared = (lineX * lineX) + (lineY * lineY);
+        float u = (lengthSquared == 0f ? 0f : ((x - startX) * lineX + (y - startY) * lineY) / lengthSquared);
 
         // if closest point on line is outside the segment, clamp to on the segment
         if (u < 0) u = 0;
         if (u > 1) u = 1;
 
-        Vector2f i = new Vector2f();
-        i.x = lineStart.x + u * (lineEnd.x - lineStart.x);
-        i.y = lineStart.y + u * (lineEnd.y - lineStart.y);
-        return i;
+        dest.set(startX + u * lineX, startY + u * lineY);
+        return dest;
     }
 
     /**
@@ -0,0 +1,460 @@
+package org.lazywizard.lazylib;
+
+import com.fs.starfarer.api.combat.BoundsAPI;
+import com.fs.starfarer.api.combat.BoundsAPI.SegmentAPI;
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.awt.geom.Line2D;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A bounding volume hierarchy over an entity's bounds segments, built once in the bounds' local space (from
+ * {@link BoundsAPI#getOrigSegments()}). Queries move the point or line being tested into local space instead of
+ * moving the bounds into world space, so the cost of a test no longer depends on how many segments the bounds
+ * have, and nothing needs to be redone when the entity moves.
+ * <p>
+ * Only used for bounds with at least {@link #MIN_SEGMENTS} segments; smaller bounds are faster to test directly
+ * using {@link TransformedBounds}. Trees are stored in a {@link WeakHashMap} keyed by the entity's
+ * {@link BoundsAPI}, so they are discarded along with the entity.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class SegmentTree
+{
+    static final int MIN_SEGMENTS = 32;
+    private static final int MAX_LEAF_SIZE = 4;
+    // Node bounding boxes are padded to match the 1/3 su tolerance of CollisionUtils' segment tests
+    private static final float PADDING = 0.34f;
+    private static final Map<BoundsAPI, SegmentTree> cache = new WeakHashMap<>();
+
+    // Segment i runs from (segments[i*4], segments[i*4+1]) to (segments[i*4+2], segments[i*4+3]), in local space
+    private final float[] segments;
+    private final float[] nodeMinX, nodeMinY, nodeMaxX, nodeMaxY;
+    // Leaves have a left child of -1, and store their segments as a range of the (reordered) segment array
+    private final int[] nodeLeft, nodeRight, nodeStart, nodeCount;
+    private final int numSegments;
+    // Whether every segment starts where the last one ended, which lets the tree answer point-in-polygon tests
+    private final boolean closed;
+    // The segment touched by the last call to getFirstSweptFraction(), packed the same way as segments
+    final float[] hitSegment = new float[4];
+    private final int[] stack = new int[64];
+    private int numNodes = 0;
+
+    /**
+     * Returns the tree for an entity's bounds, building it if necessary.
+     *
+     * @return The tree for {@code entity}'s bounds, or {@code null} if it lacks bounds or they have too few
+     *         segments to benefit from one.
+     */
+    @Nullable
+    static SegmentTree get(CombatEntityAPI entity)
+    {
+        final BoundsAPI bounds = entity.getExactBounds();
+        if (bounds == null)
+        {
+            return null;
+        }
+
+        final List<SegmentAPI> orig = bounds.getOrigSegments();
+        if (orig.size() < MIN_SEGMENTS)
+        {
+            return null;
+        }
+
+        SegmentTree tree = cache.get(bounds);
+        if (tree == null || tree.numSegments != orig.size())
+        {
+            tree = new SegmentTree(orig);
+            cache.put(bounds, tree);
+        }
+
+        return tree;
+    }
+
+    private SegmentTree(List<SegmentAPI> orig)
+    {
+        numSegments = orig.size();
+        final float[] unsorted = new float[numSegments * 4];
+        boolean isClosed = true;
+        for (int i = 0; i < numSegments; i++)
+        {
+            final SegmentAPI seg = orig.get(i), next = orig.get((i + 1) % numSegments);
+            unsorted[i * 4] = seg.getP1().x;
+            unsorted[i * 4 + 1] = seg.getP1().y;
+            unsorted[i * 4 + 2] = seg.getP2().x;
+            unsorted[i * 4 + 3] = seg.getP2().y;
+            if (seg.getP2().x != next.getP1().x || seg.getP2().y != next.getP1().y)
+            {
+                isClosed = false;
+            }
+        }
+
+        closed = isClosed;
+        final int maxNodes = numSegments * 2;
+        nodeMinX = new float[maxNodes];
+        nodeMinY = new float[maxNodes];
+        nodeMaxX = new float[maxNodes];
+        nodeMaxY = new float[maxNodes];
+        nodeLeft = new int[maxNodes];
+        nodeRight = new int[maxNodes];
+        nodeStart = new int[maxNodes];
+        nodeCount = new int[maxNodes];
+
+        final int[] order = new int[numSegments];
+        final float[] centers = new float[numSegments * 2];
+        for (int i = 0; i < numSegments; i++)
+        {
+            order[i] = i;
+            centers[i * 2] = (unsorted[i * 4] + unsorted[i * 4 + 2]) * 0.5f;
+            centers[i * 2 + 1] = (unsorted[i * 4 + 1] + unsorted[i * 4 + 3]) * 0.5f;
+        }
+
+        build(unsorted, order, centers, 0, numSegments);
+
+        // Store segments in tree order so every leaf's segments are contiguous
+        segments = new float[numSegments * 4];
+        for (int i = 0; i < numSegments; i++)
+        {
+            System.arraycopy(unsorted, order[i] * 4, segments, i * 4, 4);
+        }
+    }
+
+    // Builds the node covering order[start, end), splitting at the median of its longest axis
+    private int build(float[] segs, int[] order, float[] centers, int start, int end)
+    {
+        final int node = numNodes++;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float minCX = Float.MAX_VALUE, minCY = Float.MAX_VALUE, maxCX = -Float.MAX_VALUE, maxCY = -Float.MAX_VALUE;
+        for (int i = start; i < end; i++)
+        {
+            final int seg = order[i] * 4;
+            minX = Math.min(minX, Math.min(segs[seg], segs[seg + 2]));
+            minY = Math.min(minY, Math.min(segs[seg + 1], segs[seg + 3]));
+            maxX = Math.max(maxX, Math.max(segs[seg], segs[seg + 2]));
+            maxY = Math.max(maxY, Math.max(segs[seg + 1], segs[seg + 3]));
+            minCX = Math.min(minCX, centers[order[i] * 2]);
+            minCY = Math.min(minCY, centers[order[i] * 2 + 1]);
+            maxCX = Math.max(maxCX, centers[order[i] * 2]);
+            maxCY = Math.max(maxCY, centers[order[i] * 2 + 1]);
+        }
+
+        nodeMinX[node] = minX - PADDING;
+        nodeMinY[node] = minY - PADDING;
+        nodeMaxX[node] = maxX + PADDING;
+        nodeMaxY[node] = maxY + PADDING;
+        nodeStart[node] = start;
+        nodeCount[node] = end - start;
+        if (end - start <= MAX_LEAF_SIZE)
+        {
+            nodeLeft[node] = -1;
+            nodeRight[node] = -1;
+            return node;
+        }
+
+        final int axis = (maxCX - minCX >= maxCY - minCY ? 0 : 1);
+        sortByCenter(order, centers, axis, start, end - 1);
+        final int mid = (start + end) >>> 1;
+        nodeLeft[node] = build(segs, order, centers, start, mid);
+        nodeRight[node] = build(segs, order, centers, mid, end);
+        return node;
+    }
+
+    // Quicksort of order[lo, hi] by segment center along one axis
+    private static void sortByCenter(int[] order, float[] centers, int axis, int lo, int hi)
+    {
+        while (lo < hi)
+        {
+            final float pivot = centers[order[(lo + hi) >>> 1] * 2 + axis];
+            int i = lo, j = hi;
+            while (i <= j)
+            {
+                while (centers[order[i] * 2 + axis] < pivot) i++;
+                while (centers[order[j] * 2 + axis] > pivot) j--;
+                if (i <= j)
+                {
+                    final int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+
+            // Recurse into the smaller half to keep the stack shallow
+            if (j - lo < hi - i)
+            {
+                sortByCenter(order, centers, axis, lo, j);
+                lo = i;
+            }
+            else
+            {
+                sortByCenter(order, centers, axis, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Returns the squared distance from a local space point to the nearest segment, and stores the nearest point
+     * (also in local space) in {@code dest}.
+     */
+    float getNearestPoint(float x, float y, Vector2f dest)
+    {
+        float best = Float.MAX_VALUE;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            final int node = stack[--top];
+            if (getBoxDistanceSquared(node, x, y) >= best)
+            {
+                continue;
+            }
+
+            if (nodeLeft[node] < 0)
+            {
+                for (int i = nodeStart[node], end = i + nodeCount[node]; i < end; i++)
+                {
+                    final float x1 = segments[i * 4], y1 = segments[i * 4 + 1],
+                            segX = segments[i * 4 + 2] - x1, segY = segments[i * 4 + 3] - y1,
+                            lengthSquared = segX * segX + segY * segY;
+                    float u = (lengthSquared == 0f ? 0f : ((x - x1) * segX + (y - y1) * segY) / lengthSquared);
+                    if (u < 0) u = 0;
+                    if (u > 1) u = 1;
+
+                    final float nearestX = x1 + u * segX, nearestY = y1 + u * segY,
+                            distX = x - nearestX, distY = y - nearestY,
+                            distanceSquared = distX * distX + distY * distY;
+                    if (distanceSquared < best)
+                    {
+                        best = distanceSquared;
+                        dest.set(nearestX, nearestY);
+                    }
+                }
+
+                continue;
+            }
+
+            // Visit the closer child first so the other is more likely to be pruned
+            final int left = nodeLeft[node], right = nodeRight[node];
+            if (getBoxDistanceSquared(left, x, y) < getBoxDistanceSquared(right, x, y))
+            {
+                stack[top++] = right;
+                stack[top++] = left;
+            }
+            else
+            {
+                stack[top++] = left;
+                stack[top++] = right;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns whether a local space point is within 1/3 su of any segment.
+     */
+    boolean isPointOnSegment(float x, float y)
+    {
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            final int node = stack[--top];
+            if (x < nodeMinX[node] || x > nodeMaxX[node] || y < nodeMinY[node] || y > nodeMaxY[node])
+            {
+                continue;
+            }
+
+            if (nodeLeft[node] < 0)
+            {
+                for (int i = nodeStart[node], end = i + nodeCount[node]; i < end; i++)
+                {
+                    if (Line2D.Float.ptSegDistSq(segments[i * 4], segments[i * 4 + 1],
+                            segments[i * 4 + 2], segments[i * 4 + 3], x, y) <= 0.11111f)
+                    {
+                        return true;
+                    }
+                }
+
+                continue;
+            }
+
+            stack[top++] = nodeLeft[node];
+            stack[top++] = nodeRight[node];
+        }
+
+        return false;
+    }
+
+    /**
+     * PNPOLY point-in-polygon test, only counting the segments whose boxes straddle the point's horizontal ray.
+     * Only valid if {@link #isClosed()} is {@code true}.
+     */
+    boolean isPointInPolygon(float x, float y)
+    {
+        boolean result = false;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            final int node = stack[--top];
+            if (y < nodeMinY[node] || y > nodeMaxY[node] || x > nodeMaxX[node])
+            {
+                continue;
+            }
+
+            if (nodeLeft[node] < 0)
+            {
+                for (int i = nodeStart[node], end = i + nodeCount[node]; i < end; i++)
+                {
+                    final float xi = segments[i * 4], yi = segments[i * 4 + 1],
+                            xj = segments[i * 4 + 2], yj = segments[i * 4 + 3];
+                    if ((yi > y) != (yj > y)
+                            && (x < (xj - xi) * (y - yi) / (yj - yi) + xi))
+                    {
+                        result = !result;
+                    }
+                }
+
+                continue;
+            }
+
+            stack[top++] = nodeLeft[node];
+            stack[top++] = nodeRight[node];
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns how far along a local space line (0 at its start, 1 at its end) it first hits a segment, using the
+     * same rules as {@link CollisionUtils#getCollisionPoint(org.lwjgl.util.vector.Vector2f,
+     * org.lwjgl.util.vector.Vector2f, org.lwjgl.util.vector.Vector2f, org.lwjgl.util.vector.Vector2f)}, or
+     * {@link Float#MAX_VALUE} if it hits nothing.
+     */
+    float getFirstHitFraction(float startX, float startY, float endX, float endY)
+    {
+        final float dx = endX - startX, dy = endY - startY;
+        float best = Float.MAX_VALUE;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            final int node = stack[--top];
+            if (getBoxEntryFraction(node, startX, startY, dx, dy, 0f) > best)
+            {
+                continue;
+            }
+
+            if (nodeLeft[node] < 0)
+            {
+                for (int i = nodeStart[node], end = i + nodeCount[node]; i < end; i++)
+                {
+                    final float fraction = CollisionUtils.getIntersectionFraction(startX, startY, endX, endY,
+                            segments[i * 4], segments[i * 4 + 1], segments[i * 4 + 2], segments[i * 4 + 3]);
+                    if (fraction >= 0f && fraction < best)
+                    {
+                        best = fraction;
+                    }
+                }
+
+                continue;
+            }
+
+            stack[top++] = nodeLeft[node];
+            stack[top++] = nodeRight[node];
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns how far along its local space path (0 at its start, 1 at its end) a moving circle first touches a
+     * segment, or {@link Float#MAX_VALUE} if it touches nothing. The touched segment is stored in
+     * {@link #hitSegment}.
+     */
+    float getFirstSweptFraction(float startX, float startY, float dx, float dy, float radius)
+    {
+        float best = Float.MAX_VALUE;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            final int node = stack[--top];
+            if (getBoxEntryFraction(node, startX, startY, dx, dy, radius) > best)
+            {
+                continue;
+            }
+
+            if (nodeLeft[node] < 0)
+            {
+                for (int i = nodeStart[node], end = i + nodeCount[node]; i < end; i++)
+                {
+                    final float fraction = CollisionUtils.getSweptFraction(startX, startY, dx, dy, radius,
+                            segments[i * 4], segments[i * 4 + 1], segments[i * 4 + 2], segments[i * 4 + 3]);
+                    if (fraction >= 0f && fraction < best)
+                    {
+                        best = fraction;
+                        System.arraycopy(segments, i * 4, hitSegment, 0, 4);
+                    }
+                }
+
+                continue;
+            }
+
+            stack[top++] = nodeLeft[node];
+            stack[top++] = nodeRight[node];
+        }
+
+        return best;
+    }
+
+    // Slab test of a line against a node's box (grown by padding), returning the fraction along the line where it
+    // enters the box, or infinity if it misses
+    private float getBoxEntryFraction(int node, float startX, float startY, float dx, float dy, float padding)
+    {
+        final float minX = nodeMinX[node] - padding, maxX = nodeMaxX[node] + padding,
+                minY = nodeMinY[node] - padding, maxY = nodeMaxY[node] + padding;
+        float tMin = 0f, tMax = 1f;
+        if (dx == 0f)
+        {
+            if (startX < minX || startX > maxX) return Float.POSITIVE_INFINITY;
+        }
+        else
+        {
+            final float t1 = (minX - startX) / dx, t2 = (maxX - startX) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+
+        if (dy == 0f)
+        {
+            if (startY < minY || startY > maxY) return Float.POSITIVE_INFINITY;
+        }
+        else
+        {
+            final float t1 = (minY - startY) / dy, t2 = (maxY - startY) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+
+        return (tMin > tMax ? Float.POSITIVE_INFINITY : tMin);
+    }
+
+    private float getBoxDistanceSquared(int node, float x, float y)
+    {
+        final float dx = Math.max(0f, Math.max(nodeMinX[node] - x, x - nodeMaxX[node])),
+                dy = Math.max(0f, Math.max(nodeMinY[node] - y, y - nodeMaxY[node]));
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,139 @@
+package org.lazywizard.lazylib;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.util.vector.Vector2f;
+
+/**
+ * The result of a swept (continuous) collision test, such as
+ * {@link CollisionUtils#getSweptCollision(Vector2f, Vector2f, float, float, CombatEntityAPI, SweptCollision)}:
+ * the entity that was touched, how long after the start of the sweep the contact happened, where, and the surface
+ * normal at that point.
+ * <p>
+ * A result can be reused for any number of tests, which avoids allocating memory for each one.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class SweptCollision
+{
+    private final Vector2f point = new Vector2f(), normal = new Vector2f();
+    // Scratch space, so tests that store their results here don't need to allocate memory of their own
+    final Vector2f tmp = new Vector2f();
+    @Nullable
+    private CombatEntityAPI entity = null;
+    private float time = Float.MAX_VALUE;
+
+    /**
+     * Creates an empty result that doesn't contain a contact.
+     *
+     * @since 3.0b
+     */
+    public SweptCollision()
+    {
+    }
+
+    /**
+     * Returns whether a contact was found.
+     *
+     * @return {@code true} if this result contains a contact, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean hasHit()
+    {
+        return entity != null;
+    }
+
+    /**
+     * Returns the entity that was touched.
+     *
+     * @return The entity the swept point or circle touched first, or {@code null} if nothing was touched.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public CombatEntityAPI getEntity()
+    {
+        return entity;
+    }
+
+    /**
+     * Returns how long after the start of the sweep the contact happened.
+     *
+     * @return The time of impact, in the same units as the {@code dt} passed to the test (usually seconds), or
+     *         {@link Float#MAX_VALUE} if nothing was touched. This is 0 if the sweep started in contact.
+     *
+     * @since 3.0b
+     */
+    public float getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Returns the point of contact.
+     *
+     * @return Where the swept point or circle first touched the entity's bounds (or collision circle, if it lacks
+     *         bounds). This {@link Vector2f} is reused by later tests using this result, so copy it if you need to
+     *         keep it. Its value is undefined if nothing was touched.
+     *
+     * @since 3.0b
+     */
+    public Vector2f getPoint()
+    {
+        return point;
+    }
+
+    /**
+     * Returns the surface normal at the point of contact.
+     *
+     * @return A unit vector pointing out of the entity's bounds at {@link #getPoint()}, towards the swept point or
+     *         circle. If the sweep started inside the bounds, it points the shortest way out instead. This
+     *         {@link Vector2f} is reused by later tests using this result, so copy it if you need to keep it. Its
+     *         value is undefined if nothing was touched.
+     *
+     * @since 3.0b
+     */
+    public Vector2f getNormal()
+    {
+        return normal;
+    }
+
+    /**
+     * Resets this result so that it no longer contains a contact.
+     *
+     * @since 3.0b
+     */
+    public void clear()
+    {
+        entity = null;
+        time = Float.MAX_VALUE;
+    }
+
+    void set(CombatEntityAPI entity, float time, float pointX, float pointY, float normalX, float normalY)
+    {
+        this.entity = entity;
+        this.time = time;
+        point.set(pointX, pointY);
+
+        // Normalize here so callers don't have to, falling back to zero if there's no sensible direction
+        final float length = (float) Math.sqrt(normalX * normalX + normalY * normalY);
+        if (length > 0f)
+        {
+            normal.set(normalX / length, normalY / length);
+        }
+        else
+        {
+            normal.set(0f, 0f);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return (entity == null ? "SweptCollision{no hit}"
+                : "SweptCollision{entity=" + entity + ", time=" + time
+                + ", point=" + point + ", normal=" + normal + "}");
+    }
+}
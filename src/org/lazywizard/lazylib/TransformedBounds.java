@@ -0,0 +1,121 @@
+package org.lazywizard.lazylib;
+
+import com.fs.starfarer.api.combat.BoundsAPI;
+import com.fs.starfarer.api.combat.BoundsAPI.SegmentAPI;
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A copy of an entity's bounds in world space, packed into {@code float} arrays along with their bounding box.
+ * Used by {@link CollisionUtils} so that repeated bounds tests against the same entity only transform its bounds
+ * once, and don't allocate any memory.
+ * <p>
+ * A copy is reused for as long as its entity stays at the same location and facing, which in practice means until
+ * the next frame. Copies are stored in a {@link WeakHashMap} keyed by the entity's {@link BoundsAPI}, so they are
+ * discarded along with the entity.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class TransformedBounds
+{
+    private static final Map<BoundsAPI, TransformedBounds> cache = new WeakHashMap<>();
+
+    // Segment i runs from (segments[i*4], segments[i*4+1]) to (segments[i*4+2], segments[i*4+3])
+    float[] segments = new float[0];
+    // The polygon tested by isPointWithinBounds(): the start of every segment, plus the end of the last one
+    float[] points = new float[0];
+    int numSegments = 0, numPoints = 0;
+    float minX, minY, maxX, maxY;
+    private float lastX, lastY, lastFacing;
+    private int lastNumSegments = -1;
+
+    /**
+     * Returns the current world space bounds of an entity, updating them only if the entity has moved or turned
+     * since they were last requested.
+     *
+     * @return The entity's transformed bounds, or {@code null} if it lacks bounds.
+     */
+    @Nullable
+    static TransformedBounds get(CombatEntityAPI entity)
+    {
+        final BoundsAPI bounds = entity.getExactBounds();
+        if (bounds == null)
+        {
+            return null;
+        }
+
+        TransformedBounds transformed = cache.get(bounds);
+        if (transformed == null)
+        {
+            transformed = new TransformedBounds();
+            cache.put(bounds, transformed);
+        }
+
+        transformed.update(bounds, entity);
+        return transformed;
+    }
+
+    private void update(BoundsAPI bounds, CombatEntityAPI entity)
+    {
+        final float x = entity.getLocation().x, y = entity.getLocation().y, facing = entity.getFacing();
+        final int segmentCount = bounds.getOrigSegments().size();
+        if (x == lastX && y == lastY && facing == lastFacing && segmentCount == lastNumSegments)
+        {
+            return;
+        }
+
+        // Let the game transform the bounds, then copy them
+        bounds.update(entity.getLocation(), facing);
+        final List<SegmentAPI> segs = bounds.getSegments();
+        numSegments = segs.size();
+        numPoints = (numSegments == 0 ? 0 : numSegments + 1);
+        if (segments.length < numSegments * 4)
+        {
+            segments = new float[numSegments * 4];
+            points = new float[(numSegments + 1) * 2];
+        }
+
+        minX = minY = Float.MAX_VALUE;
+        maxX = maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < numSegments; i++)
+        {
+            final SegmentAPI seg = segs.get(i);
+            final float x1 = seg.getP1().x, y1 = seg.getP1().y, x2 = seg.getP2().x, y2 = seg.getP2().y;
+            segments[i * 4] = x1;
+            segments[i * 4 + 1] = y1;
+            segments[i * 4 + 2] = x2;
+            segments[i * 4 + 3] = y2;
+            points[i * 2] = x1;
+            points[i * 2 + 1] = y1;
+            minX = Math.min(minX, Math.min(x1, x2));
+            minY = Math.min(minY, Math.min(y1, y2));
+            maxX = Math.max(maxX, Math.max(x1, x2));
+            maxY = Math.max(maxY, Math.max(y1, y2));
+        }
+
+        if (numSegments > 0)
+        {
+            points[numSegments * 2] = segments[numSegments * 4 - 2];
+            points[numSegments * 2 + 1] = segments[numSegments * 4 - 1];
+        }
+
+        lastX = x;
+        lastY = y;
+        lastFacing = facing;
+        lastNumSegments = segmentCount;
+    }
+
+    boolean isInBoundingBox(float x, float y, float padding)
+    {
+        return x >= minX - padding && x <= maxX + padding && y >= minY - padding && y <= maxY + padding;
+    }
+
+    private TransformedBounds()
+    {
+    }
+}
@@ -4,11 +4,13 @@ import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.combat.*;
 import com.fs.starfarer.api.combat.ShipwideAIFlags.AIFlags;
 import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.Instrumentation;
 import org.lazywizard.lazylib.LazyLib;
 import org.lazywizard.lazylib.MathUtils;
 import org.lwjgl.util.vector.Vector2f;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -21,6 +23,42 @@ import java.util.List;
  */
 public class AIUtils
 {
+    // How far around an entity the first missile grid search covers, doubled until the nearest missile is found
+    private static final float MISSILE_SEARCH_START = 500f;
+    // Below this many missiles, checking every missile is cheaper than searching the missile grid in growing areas
+    private static final int MISSILE_SEARCH_MIN_MISSILES = 64;
+    // How many times the accelerating intercept solver refines its flight time before giving up
+    private static final int MAX_INTERCEPT_ITERATIONS = 16;
+    // The accelerating intercept solver stops once the flight time changes by less than this fraction of itself
+    // (or this many seconds, for very short flights)
+    private static final float INTERCEPT_TOLERANCE = 0.0001f;
+    // Record the cost of each search while instrumentation is enabled in lazylib_settings.json
+    private static final Instrumentation.Probe nearestEnemyProbe =
+            new Instrumentation.Probe("AIUtils.getNearestEnemy");
+    private static final Instrumentation.Probe enemiesOnMapProbe =
+            new Instrumentation.Probe("AIUtils.getEnemiesOnMap");
+    private static final Instrumentation.Probe nearbyEnemiesProbe =
+            new Instrumentation.Probe("AIUtils.getNearbyEnemies");
+    private static final Instrumentation.Probe alliesOnMapProbe =
+            new Instrumentation.Probe("AIUtils.getAlliesOnMap");
+    private static final Instrumentation.Probe nearbyAlliesProbe =
+            new Instrumentation.Probe("AIUtils.getNearbyAllies");
+    private static final Instrumentation.Probe enemyMissilesOnMapProbe =
+            new Instrumentation.Probe("AIUtils.getEnemyMissilesOnMap");
+    private static final Instrumentation.Probe nearbyEnemyMissilesProbe =
+            new Instrumentation.Probe("AIUtils.getNearbyEnemyMissiles");
+    private static final Instrumentation.Probe nearestEnemiesForAllShipsProbe =
+            new Instrumentation.Probe("AIUtils.getNearestEnemiesForAllShips");
+    // Used when "enableCaching" is on, so repeated questions about the same entity are only answered once per frame
+    private static final FrameCache<CombatEntityAPI, BattleObjectiveAPI> nearestObjectiveCache
+            = new FrameCache<>("AIUtils.getNearestObjective", AIUtils::findNearestObjective);
+    private static final FrameCache<CombatEntityAPI, ShipAPI> nearestEnemyCache
+            = new FrameCache<>("AIUtils.getNearestEnemy", AIUtils::findNearestEnemy);
+    private static final FrameCache<Integer, List<ShipAPI>> alliesCache
+            = new FrameCache<>("AIUtils.getAlliesOnMap", AIUtils::findShipsOfSide);
+    private static final FrameCache<Integer, List<MissileAPI>> enemyMissilesCache
+            = new FrameCache<>("AIUtils.getEnemyMissilesOnMap", AIUtils::findEnemyMissilesOfSide);
+
     /**
      * Find the closest {@link BattleObjectiveAPI} to an entity.
      *
@@ -33,6 +71,12 @@ public class AIUtils
      */
     @Nullable
     public static BattleObjectiveAPI getNearestObjective(CombatEntityAPI entity)
+    {
+        return nearestObjectiveCache.get(entity);
+    }
+
+    @Nullable
+    private static BattleObjectiveAPI findNearestObjective(CombatEntityAPI entity)
     {
         BattleObjectiveAPI closest = null;
         float distanceSquared, closestDistanceSquared = Float.MAX_VALUE;
@@ -64,6 +108,15 @@ public class AIUtils
      */
     @Nullable
     public static ShipAPI getNearestEnemy(CombatEntityAPI entity)
+    {
+        final int call = Instrumentation.start();
+        final ShipAPI nearest = nearestEnemyCache.get(entity);
+        Instrumentation.end(nearestEnemyProbe, call, (nearest == null ? 0 : 1));
+        return nearest;
+    }
+
+    @Nullable
+    private static ShipAPI findNearestEnemy(CombatEntityAPI entity)
     {
         ShipAPI closest = null;
         float distance, closestDistance = Float.MAX_VALUE;
@@ -81,6 +134,134 @@ public class AIUtils
         return closest;
     }
 
+    /**
+     * Finds the closest visible enemy of every ship on the battle map at once.
+     * This gives the same results as calling {@link #getNearestEnemy(CombatEntityAPI)}
+     * for every ship, but each side's visible enemies are only gathered once
+     * and placed in a grid, so each ship only checks the enemies near it.
+     *
+     * @return A new {@link NearestEnemyTable} containing the closest visible
+     *         enemy of every ship.
+     *
+     * @see #getNearestEnemiesForAllShips(NearestEnemyTable)
+     * @since 3.0b
+     */
+    public static NearestEnemyTable getNearestEnemiesForAllShips()
+    {
+        return getNearestEnemiesForAllShips(new NearestEnemyTable());
+    }
+
+    /**
+     * Finds the closest visible enemy of every ship on the battle map at once,
+     * reusing an existing {@link NearestEnemyTable}. Passing in the same table
+     * every frame avoids allocating memory for the results.
+     *
+     * @param results The table to fill. Any existing contents are discarded.
+     *
+     * @return {@code results}, now containing the closest visible enemy of
+     *         every ship.
+     *
+     * @since 3.0b
+     */
+    public static NearestEnemyTable getNearestEnemiesForAllShips(NearestEnemyTable results)
+    {
+        final int call = Instrumentation.start();
+        final NearestEnemyTable result = findNearestEnemiesForAllShips(results);
+        Instrumentation.end(nearestEnemiesForAllShipsProbe, call, result.size());
+        return result;
+    }
+
+    private static NearestEnemyTable findNearestEnemiesForAllShips(NearestEnemyTable results)
+    {
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        results.reset(ships.size());
+        while (results.candidates.size() < 2)
+        {
+            results.candidates.add(new ArrayList<ShipAPI>());
+        }
+
+        // Gather what each side can see once, instead of once per ship
+        for (int side = 0; side < 2; side++)
+        {
+            final List<ShipAPI> candidates = results.candidates.get(side);
+            if (LazyLib.isCachingEnabled())
+            {
+                CombatCache.collectVisibleEnemies(side, candidates, null);
+                continue;
+            }
+
+            for (int i = 0; i < ships.size(); i++)
+            {
+                final ShipAPI tmp = ships.get(i);
+                if (tmp.getOwner() != side && !tmp.isHulk() && !tmp.isShuttlePod()
+                        && CombatUtils.isVisibleToSide(tmp, side))
+                {
+                    candidates.add(tmp);
+                }
+            }
+        }
+
+        for (int side = 0; side < 2; side++)
+        {
+            results.grids[side].rebuild(results.candidates.get(side));
+        }
+
+        for (int i = 0; i < ships.size(); i++)
+        {
+            final ShipAPI ship = ships.get(i);
+            final int side = ship.getOwner();
+            if (side < 0 || side >= 2 || ship.isHulk() || ship.isShuttlePod())
+            {
+                continue;
+            }
+
+            final List<ShipAPI> candidates = results.candidates.get(side);
+            final SpatialHash grid = results.grids[side];
+            final Vector2f loc = ship.getLocation();
+            ShipAPI closest = null;
+            float closestDistance = Float.MAX_VALUE;
+
+            // Search an ever-growing area until it's guaranteed to contain the closest enemy.
+            // Anything outside of the area searched is further away than range, so once the
+            // closest candidate found is within range no unsearched enemy can beat it
+            float range = grid.getCellSize();
+            while (grid.size() > 0)
+            {
+                closest = null;
+                closestDistance = Float.MAX_VALUE;
+                final int start = grid.query(loc.x, loc.y, range);
+                for (int j = start, end = grid.getQueryEnd(); j < end; j++)
+                {
+                    final ShipAPI tmp = candidates.get(grid.getResult(j));
+                    final float distance = MathUtils.getDistance(tmp, loc);
+                    if (distance < closestDistance)
+                    {
+                        closest = tmp;
+                        closestDistance = distance;
+                    }
+                }
+
+                grid.release(start);
+                if (closestDistance <= range || grid.coversAll(loc.x, loc.y, range))
+                {
+                    break;
+                }
+
+                range *= 2f;
+            }
+
+            results.add(ship, closest, closestDistance);
+        }
+
+        // Don't hold on to any ships outside of the table's results
+        for (int side = 0; side < 2; side++)
+        {
+            results.candidates.get(side).clear();
+        }
+
+        return results;
+    }
+
     /**
      * Find the closest ally of an entity.
      *
@@ -131,14 +312,17 @@ public class AIUtils
         ShipAPI closest = null;
         float distance, closestDistance = Float.MAX_VALUE;
 
-        for (ShipAPI tmp : Global.getCombatEngine().getShips())
+        final VisibilityCache visibility = CombatCache.getVisibility(CombatCache.SHIPS);
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        for (int i = 0; i < ships.size(); i++)
         {
+            final ShipAPI tmp = ships.get(i);
             if (tmp == entity || tmp.isHulk() || tmp.isShuttlePod())
             {
                 continue;
             }
 
-            if (!CombatUtils.isVisibleToSide(tmp, entity.getOwner()))
+            if (!visibility.isVisibleToSide(tmp, entity.getOwner(), i))
             {
                 continue;
             }
@@ -167,32 +351,330 @@ public class AIUtils
     @Nullable
     public static MissileAPI getNearestMissile(CombatEntityAPI entity)
     {
-        MissileAPI closest = null;
-        float distanceSquared, closestDistanceSquared = Float.MAX_VALUE;
+        final NearestHeap<MissileAPI> nearest = new NearestHeap<>(1);
+        findNearestMissiles(entity, false, nearest);
+        return nearest.peekWorst();
+    }
+
+    /**
+     * Find the {@code k} closest {@link BattleObjectiveAPI}s to an entity.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param k      The maximum number of objectives to return.
+     *
+     * @return Up to {@code k} {@link BattleObjectiveAPI}s, ordered from
+     *         closest to furthest from {@code entity}.
+     *
+     * @see #getNearestObjective(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static List<BattleObjectiveAPI> getNearestObjectives(CombatEntityAPI entity, int k)
+    {
+        final NearestHeap<BattleObjectiveAPI> nearest = new NearestHeap<>(k);
+        if (k <= 0)
+        {
+            return nearest.drainSorted();
+        }
+
+        final List<BattleObjectiveAPI> objectives = Global.getCombatEngine().getObjectives();
+        for (int i = 0; i < objectives.size(); i++)
+        {
+            final BattleObjectiveAPI tmp = objectives.get(i);
+            nearest.offer(tmp, MathUtils.getDistanceSquared(tmp.getLocation(), entity.getLocation()));
+        }
+
+        return nearest.drainSorted();
+    }
+
+    /**
+     * Find the {@code k} closest visible enemies of an entity. This is much
+     * faster than sorting the results of {@link #getEnemiesOnMap(CombatEntityAPI)}
+     * when only a handful of enemies are needed.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param k      The maximum number of enemies to return.
+     *
+     * @return Up to {@code k} enemies of {@code entity} who can be seen within
+     *         the fog of war, ordered from closest to furthest.
+     *
+     * @see #getNearestEnemy(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static List<ShipAPI> getNearestEnemies(CombatEntityAPI entity, int k)
+    {
+        final NearestHeap<ShipAPI> nearest = new NearestHeap<>(k);
+        if (k <= 0)
+        {
+            return nearest.drainSorted();
+        }
+
+        final Vector2f loc = entity.getLocation();
+        findEnemiesOnMap(entity, null, tmp ->
+        {
+            nearest.offer(tmp, MathUtils.getDistance(tmp, loc));
+            return true;
+        });
+
+        return nearest.drainSorted();
+    }
+
+    /**
+     * Find the {@code k} closest allies of an entity.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param k      The maximum number of allies to return.
+     *
+     * @return Up to {@code k} allies of {@code entity}, ordered from closest
+     *         to furthest.
+     *
+     * @see #getNearestAlly(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static List<ShipAPI> getNearestAllies(CombatEntityAPI entity, int k)
+    {
+        final NearestHeap<ShipAPI> nearest = new NearestHeap<>(k);
+        if (k <= 0)
+        {
+            return nearest.drainSorted();
+        }
+
+        final Vector2f loc = entity.getLocation();
+        findAlliesOnMap(entity, null, tmp ->
+        {
+            nearest.offer(tmp, MathUtils.getDistance(tmp, loc));
+            return true;
+        });
+
+        return nearest.drainSorted();
+    }
+
+    /**
+     * Find the {@code k} closest visible ships near an entity.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param k      The maximum number of ships to return.
+     *
+     * @return Up to {@code k} ships that can be seen within the fog of war,
+     *         ordered from closest to furthest from {@code entity}.
+     *
+     * @see #getNearestShip(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static List<ShipAPI> getNearestShips(CombatEntityAPI entity, int k)
+    {
+        final NearestHeap<ShipAPI> nearest = new NearestHeap<>(k);
+        if (k <= 0)
+        {
+            return nearest.drainSorted();
+        }
 
-        for (MissileAPI tmp : Global.getCombatEngine().getMissiles())
+        final VisibilityCache visibility = CombatCache.getVisibility(CombatCache.SHIPS);
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        for (int i = 0; i < ships.size(); i++)
         {
-            if (tmp == entity)
+            final ShipAPI tmp = ships.get(i);
+            if (tmp == entity || tmp.isHulk() || tmp.isShuttlePod())
             {
                 continue;
             }
 
-            if (!CombatUtils.isVisibleToSide(tmp, entity.getOwner()))
+            // Skip the more expensive fog of war check when this ship couldn't make the cut anyway
+            final float distance = MathUtils.getDistance(tmp, entity.getLocation());
+            if (distance < nearest.getWorstKey() && visibility.isVisibleToSide(tmp, entity.getOwner(), i))
             {
-                continue;
+                nearest.offer(tmp, distance);
             }
+        }
 
-            distanceSquared = MathUtils.getDistanceSquared(tmp.getLocation(),
-                    entity.getLocation());
+        return nearest.drainSorted();
+    }
 
-            if (distanceSquared < closestDistanceSquared)
+    /**
+     * Find the {@code k} closest visible missiles near an entity.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param k      The maximum number of missiles to return.
+     *
+     * @return Up to {@code k} {@link MissileAPI}s that can be seen within the
+     *         fog of war, ordered from closest to furthest from {@code entity}.
+     *
+     * @see #getNearestMissile(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static List<MissileAPI> getNearestMissiles(CombatEntityAPI entity, int k)
+    {
+        return findNearestMissiles(entity, k, false);
+    }
+
+    // Shared by getNearestMissiles() and getNearestEnemyMissiles()
+    private static List<MissileAPI> findNearestMissiles(CombatEntityAPI entity, int k, boolean enemiesOnly)
+    {
+        final NearestHeap<MissileAPI> nearest = new NearestHeap<>(k);
+        if (k > 0)
+        {
+            findNearestMissiles(entity, enemiesOnly, nearest);
+        }
+
+        return nearest.drainSorted();
+    }
+
+    // Fills nearest with the closest visible missiles to entity. Missiles are searched in an ever-growing area
+    // around entity, and the remaining missiles are checked directly once that area stops turning up new ones, so
+    // the cost depends on how many missiles are nearby rather than on how many are on the map. While caching is
+    // enabled the areas are searched in a grid of the per-frame snapshot, so missiles are known by their index and
+    // fog of war results are shared between searches; otherwise the engine's missile grid is used instead
+    private static void findNearestMissiles(CombatEntityAPI entity, boolean enemiesOnly,
+                                            NearestHeap<MissileAPI> nearest)
+    {
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        final List<MissileAPI> missiles = engine.getMissiles();
+        if (missiles.isEmpty())
+        {
+            return;
+        }
+
+        final VisibilityCache visibility = CombatCache.getVisibility(CombatCache.MISSILES);
+        final CombatSnapshot snapshot = (LazyLib.isCachingEnabled()
+                ? CombatCache.getSnapshot(CombatSnapshot.MISSILES) : null);
+
+        // Missiles are split into square bands around entity by how far they are along either axis, so every
+        // missile belongs to exactly one band and none are checked twice. Everything out to searched is done
+        float searched = -1f;
+        if (missiles.size() >= MISSILE_SEARCH_MIN_MISSILES)
+        {
+            final float maxRange = Math.max(engine.getMapWidth(), engine.getMapHeight());
+            for (float range = MISSILE_SEARCH_START; range < maxRange; range *= 2f)
             {
-                closest = tmp;
-                closestDistanceSquared = distanceSquared;
+                final boolean foundNew = (snapshot != null
+                        ? offerMissilesInBand(entity, enemiesOnly, snapshot, searched, range, visibility, nearest)
+                        : offerMissilesInBand(entity, enemiesOnly, engine, searched, range, visibility, nearest));
+
+                // Any missile outside of the area searched is further away than range
+                searched = range;
+                if (nearest.isFull() && nearest.getWorstKey() <= range * range)
+                {
+                    return;
+                }
+
+                // Further areas are unlikely to do better once one comes up empty
+                if (!foundNew)
+                {
+                    break;
+                }
             }
         }
 
-        return closest;
+        final Vector2f loc = entity.getLocation();
+        final int owner = entity.getOwner();
+        if (snapshot != null)
+        {
+            final float[] xs = snapshot.getX(CombatSnapshot.MISSILES), ys = snapshot.getY(CombatSnapshot.MISSILES);
+            final int[] owners = snapshot.getOwner(CombatSnapshot.MISSILES);
+            for (int i = 0, size = snapshot.size(CombatSnapshot.MISSILES); i < size; i++)
+            {
+                final float dx = xs[i] - loc.x, dy = ys[i] - loc.y;
+                if (Math.max(Math.abs(dx), Math.abs(dy)) > searched && (!enemiesOnly || owners[i] != owner))
+                {
+                    offerMissile(entity, (MissileAPI) snapshot.getEntity(CombatSnapshot.MISSILES, i), i,
+                            dx * dx + dy * dy, visibility, nearest);
+                }
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < missiles.size(); i++)
+        {
+            final MissileAPI tmp = missiles.get(i);
+            final Vector2f tmpLoc = tmp.getLocation();
+            if (Math.max(Math.abs(tmpLoc.x - loc.x), Math.abs(tmpLoc.y - loc.y)) > searched
+                    && (!enemiesOnly || tmp.getOwner() != owner))
+            {
+                offerMissile(entity, tmp, i, MathUtils.getDistanceSquared(tmpLoc, loc), visibility, nearest);
+            }
+        }
+    }
+
+    // Offers every missile in one band of findNearestMissiles() using a grid of the per-frame snapshot
+    // Returns true if any missile was in the band
+    private static boolean offerMissilesInBand(CombatEntityAPI entity, boolean enemiesOnly, CombatSnapshot snapshot,
+                                               float searched, float range, VisibilityCache visibility,
+                                               NearestHeap<MissileAPI> nearest)
+    {
+        final Vector2f loc = entity.getLocation();
+        final float[] xs = snapshot.getX(CombatSnapshot.MISSILES), ys = snapshot.getY(CombatSnapshot.MISSILES);
+        final int[] owners = snapshot.getOwner(CombatSnapshot.MISSILES);
+        final SpatialHash grid = CombatCache.getSectionGrid(CombatSnapshot.MISSILES);
+        boolean foundNew = false;
+        final int start = grid.query(loc.x, loc.y, range);
+        try
+        {
+            for (int i = start, end = grid.getQueryEnd(); i < end; i++)
+            {
+                final int index = grid.getResult(i);
+                final float dx = xs[index] - loc.x, dy = ys[index] - loc.y,
+                        band = Math.max(Math.abs(dx), Math.abs(dy));
+                if (band <= searched || band > range)
+                {
+                    continue;
+                }
+
+                foundNew = true;
+                if (!enemiesOnly || owners[index] != entity.getOwner())
+                {
+                    offerMissile(entity, (MissileAPI) snapshot.getEntity(CombatSnapshot.MISSILES, index), index,
+                            dx * dx + dy * dy, visibility, nearest);
+                }
+            }
+        }
+        finally
+        {
+            grid.release(start);
+        }
+
+        return foundNew;
+    }
+
+    // Offers every missile in one band of findNearestMissiles() using the engine's missile grid
+    // Returns true if any missile was in the band
+    private static boolean offerMissilesInBand(CombatEntityAPI entity, boolean enemiesOnly, CombatEngineAPI engine,
+                                               float searched, float range, VisibilityCache visibility,
+                                               NearestHeap<MissileAPI> nearest)
+    {
+        // The grid is searched slightly wider than the band, so rounding can't drop a missile on its edge
+        final Vector2f loc = entity.getLocation();
+        boolean foundNew = false;
+        for (Iterator iter = engine.getMissileGrid().getCheckIterator(
+                loc, range * 2f + 2f, range * 2f + 2f); iter.hasNext(); )
+        {
+            final MissileAPI tmp = (MissileAPI) iter.next();
+            final Vector2f tmpLoc = tmp.getLocation();
+            final float band = Math.max(Math.abs(tmpLoc.x - loc.x), Math.abs(tmpLoc.y - loc.y));
+            if (band <= searched || band > range)
+            {
+                continue;
+            }
+
+            foundNew = true;
+            if (!enemiesOnly || tmp.getOwner() != entity.getOwner())
+            {
+                offerMissile(entity, tmp, -1, MathUtils.getDistanceSquared(tmpLoc, loc), visibility, nearest);
+            }
+        }
+
+        return foundNew;
+    }
+
+    // Used by findNearestMissiles(), index is the missile's position in the engine's missile list (or -1)
+    private static void offerMissile(CombatEntityAPI entity, MissileAPI missile, int index, float distanceSquared,
+                                     VisibilityCache visibility, NearestHeap<MissileAPI> nearest)
+    {
+        // Skip the more expensive fog of war check when this missile couldn't make the cut anyway
+        if (missile != entity && distanceSquared < nearest.getWorstKey()
+                && visibility.isVisibleToSide(missile, entity.getOwner(), index))
+        {
+            nearest.offer(missile, distanceSquared);
+        }
     }
 
     /**
@@ -206,26 +688,75 @@ public class AIUtils
      * @since 1.0
      */
     public static List<ShipAPI> getEnemiesOnMap(CombatEntityAPI entity)
+    {
+        final List<ShipAPI> enemies = new ArrayList<>();
+        findEnemiesOnMap(entity, enemies, null);
+        return enemies;
+    }
+
+    /**
+     * Adds all present and visible enemies of an entity to an existing
+     * {@link List}. This avoids allocating a new {@link List} for every search.
+     *
+     * @param entity  The {@link CombatEntityAPI} to search around.
+     * @param results The {@link List} that enemies will be added to.
+     *
+     * @see #getEnemiesOnMap(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static void getEnemiesOnMap(CombatEntityAPI entity, List<? super ShipAPI> results)
+    {
+        findEnemiesOnMap(entity, results, null);
+    }
+
+    /**
+     * Passes all present and visible enemies of an entity to an
+     * {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param entity  The {@link CombatEntityAPI} to search around.
+     * @param visitor The {@link EntityVisitor} that will be called for each
+     *                enemy.
+     *
+     * @see #getEnemiesOnMap(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static void getEnemiesOnMap(CombatEntityAPI entity, EntityVisitor<? super ShipAPI> visitor)
+    {
+        findEnemiesOnMap(entity, null, visitor);
+    }
+
+    private static boolean findEnemiesOnMap(CombatEntityAPI entity, @Nullable List<? super ShipAPI> results,
+                                            @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchEnemiesOnMap(entity, results, visitor);
+        Instrumentation.end(enemiesOnMapProbe, call);
+        return finished;
+    }
+
+    private static boolean searchEnemiesOnMap(CombatEntityAPI entity, @Nullable List<? super ShipAPI> results,
+                                              @Nullable EntityVisitor<? super ShipAPI> visitor)
     {
         if (LazyLib.isCachingEnabled())
         {
-            return CombatCache.getCachedVisibleEnemies(entity.getOwner());
+            return CombatCache.collectVisibleEnemies(entity.getOwner(), results, visitor);
         }
 
-        List<ShipAPI> ships = Global.getCombatEngine().getShips();
-        List<ShipAPI> enemies = new ArrayList<>((ships.size() / 2) + 1);
-
-        for (ShipAPI tmp : ships)
+        final int owner = entity.getOwner();
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        for (int i = 0; i < ships.size(); i++)
         {
-            if (tmp.getOwner() != entity.getOwner()
+            final ShipAPI tmp = ships.get(i);
+            if (tmp.getOwner() != owner
                     && !tmp.isHulk() && !tmp.isShuttlePod()
-                    && CombatUtils.isVisibleToSide(tmp, entity.getOwner()))
+                    && CombatUtils.isVisibleToSide(tmp, owner)
+                    && !CombatUtils.collect(tmp, results, visitor))
             {
-                enemies.add(tmp);
+                return false;
             }
         }
 
-        return enemies;
+        return true;
     }
 
     /**
@@ -241,17 +772,117 @@ public class AIUtils
      */
     public static List<ShipAPI> getNearbyEnemies(CombatEntityAPI entity, float range)
     {
-        List<ShipAPI> enemies = new ArrayList<>();
+        final List<ShipAPI> enemies = new ArrayList<>();
+        findNearbyEnemies(entity, range, enemies, null);
+        return enemies;
+    }
+
+    /**
+     * Adds all visible enemies within a certain range around an entity to an
+     * existing {@link List}. This avoids allocating a new {@link List} for
+     * every search.
+     *
+     * @param entity  The entity to search around.
+     * @param range   How far around {@code entity} to search.
+     * @param results The {@link List} that enemies within range will be added
+     *                to.
+     *
+     * @see #getNearbyEnemies(CombatEntityAPI, float)
+     * @since 3.0b
+     */
+    public static void getNearbyEnemies(CombatEntityAPI entity, float range, List<? super ShipAPI> results)
+    {
+        findNearbyEnemies(entity, range, results, null);
+    }
+
+    /**
+     * Passes all visible enemies within a certain range around an entity to an
+     * {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param entity  The entity to search around.
+     * @param range   How far around {@code entity} to search.
+     * @param visitor The {@link EntityVisitor} that will be called for each
+     *                enemy within range.
+     *
+     * @see #getNearbyEnemies(CombatEntityAPI, float)
+     * @since 3.0b
+     */
+    public static void getNearbyEnemies(CombatEntityAPI entity, float range,
+                                        EntityVisitor<? super ShipAPI> visitor)
+    {
+        findNearbyEnemies(entity, range, null, visitor);
+    }
+
+    private static boolean findNearbyEnemies(CombatEntityAPI entity, float range,
+                                             @Nullable List<? super ShipAPI> results,
+                                             @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchNearbyEnemies(entity, range, results, visitor);
+        Instrumentation.end(nearbyEnemiesProbe, call);
+        return finished;
+    }
 
-        for (ShipAPI enemy : getEnemiesOnMap(entity))
+    private static boolean searchNearbyEnemies(CombatEntityAPI entity, float range,
+                                               @Nullable List<? super ShipAPI> results,
+                                               @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int owner = entity.getOwner();
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+
+        // Only test ships in nearby cells of the per-frame ship grid
+        if (LazyLib.isCachingEnabled())
         {
-            if (MathUtils.isWithinRange(entity, enemy, range))
+            final CombatSnapshot snapshot = CombatCache.getSnapshot(CombatSnapshot.SHIPS);
+            final float[] xs = snapshot.getX(CombatSnapshot.SHIPS), ys = snapshot.getY(CombatSnapshot.SHIPS),
+                    radii = snapshot.getRadius(CombatSnapshot.SHIPS);
+            final int[] owners = snapshot.getOwner(CombatSnapshot.SHIPS),
+                    flags = snapshot.getFlags(CombatSnapshot.SHIPS);
+            final float x = entity.getLocation().x, y = entity.getLocation().y,
+                    reach = range + entity.getCollisionRadius();
+            final SpatialHash grid = CombatCache.getShipGrid();
+            final VisibilityCache visibility = CombatCache.getVisibility(CombatCache.SHIPS);
+            final int start = grid.query(x, y, reach);
+            try
+            {
+                for (int i = start, end = grid.getQueryEnd(); i < end; i++)
+                {
+                    final int index = grid.getResult(i);
+                    if (owners[index] == owner || (flags[index] & CombatCache.IGNORED_SHIPS) != 0
+                            || !MathUtils.isWithinRange(x, y, xs[index], ys[index], reach + radii[index]))
+                    {
+                        continue;
+                    }
+
+                    final ShipAPI tmp = (ShipAPI) snapshot.getEntity(CombatSnapshot.SHIPS, index);
+                    if (visibility.isVisibleToSide(tmp, owner, index)
+                            && !CombatUtils.collect(tmp, results, visitor))
+                    {
+                        return false;
+                    }
+                }
+            }
+            finally
             {
-                enemies.add(enemy);
+                grid.release(start);
             }
+
+            return true;
         }
 
-        return enemies;
+        for (int i = 0; i < ships.size(); i++)
+        {
+            final ShipAPI tmp = ships.get(i);
+            if (tmp.getOwner() != owner && !tmp.isHulk() && !tmp.isShuttlePod()
+                    && MathUtils.isWithinRange(entity, tmp, range)
+                    && CombatUtils.isVisibleToSide(tmp, owner)
+                    && !CombatUtils.collect(tmp, results, visitor))
+            {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -265,12 +896,94 @@ public class AIUtils
      */
     public static List<ShipAPI> getAlliesOnMap(CombatEntityAPI entity)
     {
-        List<ShipAPI> allies = new ArrayList<>();
+        final List<ShipAPI> allies = new ArrayList<>();
+        findAlliesOnMap(entity, allies, null);
+        return allies;
+    }
 
-        for (ShipAPI tmp : Global.getCombatEngine().getShips())
+    /**
+     * Adds all present allies of an entity to an existing {@link List}. This
+     * avoids allocating a new {@link List} for every search.
+     *
+     * @param entity  The {@link CombatEntityAPI} to search around.
+     * @param results The {@link List} that allies will be added to.
+     *
+     * @see #getAlliesOnMap(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static void getAlliesOnMap(CombatEntityAPI entity, List<? super ShipAPI> results)
+    {
+        findAlliesOnMap(entity, results, null);
+    }
+
+    /**
+     * Passes all present allies of an entity to an {@link EntityVisitor}. No
+     * {@link List} is created.
+     *
+     * @param entity  The {@link CombatEntityAPI} to search around.
+     * @param visitor The {@link EntityVisitor} that will be called for each
+     *                ally.
+     *
+     * @see #getAlliesOnMap(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static void getAlliesOnMap(CombatEntityAPI entity, EntityVisitor<? super ShipAPI> visitor)
+    {
+        findAlliesOnMap(entity, null, visitor);
+    }
+
+    private static boolean findAlliesOnMap(CombatEntityAPI entity, @Nullable List<? super ShipAPI> results,
+                                           @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchAlliesOnMap(entity, results, visitor);
+        Instrumentation.end(alliesOnMapProbe, call);
+        return finished;
+    }
+
+    private static boolean searchAlliesOnMap(CombatEntityAPI entity, @Nullable List<? super ShipAPI> results,
+                                             @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int owner = entity.getOwner();
+        if (LazyLib.isCachingEnabled())
+        {
+            final List<ShipAPI> allies = alliesCache.get(owner);
+            for (int i = 0; i < allies.size(); i++)
+            {
+                final ShipAPI tmp = allies.get(i);
+                if (tmp != entity && !CombatUtils.collect(tmp, results, visitor))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        for (int i = 0; i < ships.size(); i++)
+        {
+            final ShipAPI tmp = ships.get(i);
+            if (tmp != entity && tmp.getOwner() == owner
+                    && !tmp.isHulk() && !tmp.isShuttlePod()
+                    && !CombatUtils.collect(tmp, results, visitor))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Every non-hulk ship on a side, used to answer getAlliesOnMap() from the frame cache
+    private static List<ShipAPI> findShipsOfSide(int owner)
+    {
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        final List<ShipAPI> allies = new ArrayList<>();
+        for (int i = 0; i < ships.size(); i++)
         {
-            if (tmp != entity && tmp.getOwner() == entity.getOwner()
-                    && !tmp.isHulk() && !tmp.isShuttlePod())
+            final ShipAPI tmp = ships.get(i);
+            if (tmp.getOwner() == owner && !tmp.isHulk() && !tmp.isShuttlePod())
             {
                 allies.add(tmp);
             }
@@ -291,57 +1004,149 @@ public class AIUtils
      */
     public static List<ShipAPI> getNearbyAllies(CombatEntityAPI entity, float range)
     {
-        List<ShipAPI> allies = new ArrayList<>();
-        for (ShipAPI ally : getAlliesOnMap(entity))
-        {
-            if (MathUtils.isWithinRange(entity, ally, range))
-            {
-                allies.add(ally);
-            }
-        }
-
+        final List<ShipAPI> allies = new ArrayList<>();
+        findNearbyAllies(entity, range, allies, null);
         return allies;
     }
 
     /**
-     * Find the closest visible enemy missile near an entity.
+     * Adds all allies within a certain range around an entity to an existing
+     * {@link List}. This avoids allocating a new {@link List} for every search.
      *
-     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param entity  The entity to search around.
+     * @param range   How far around {@code entity} to search.
+     * @param results The {@link List} that allies within range will be added
+     *                to.
      *
-     * @return The enemy {@link MissileAPI} closest to {@code entity} that can
-     *         be seen within the fog of war, or {@code null} if none are found.
+     * @see #getNearbyAllies(CombatEntityAPI, float)
+     * @since 3.0b
+     */
+    public static void getNearbyAllies(CombatEntityAPI entity, float range, List<? super ShipAPI> results)
+    {
+        findNearbyAllies(entity, range, results, null);
+    }
+
+    /**
+     * Passes all allies within a certain range around an entity to an
+     * {@link EntityVisitor}. No {@link List} is created.
      *
-     * @since 1.4
+     * @param entity  The entity to search around.
+     * @param range   How far around {@code entity} to search.
+     * @param visitor The {@link EntityVisitor} that will be called for each
+     *                ally within range.
+     *
+     * @see #getNearbyAllies(CombatEntityAPI, float)
+     * @since 3.0b
      */
-    @Nullable
-    public static MissileAPI getNearestEnemyMissile(CombatEntityAPI entity)
+    public static void getNearbyAllies(CombatEntityAPI entity, float range,
+                                       EntityVisitor<? super ShipAPI> visitor)
     {
-        MissileAPI closest = null;
-        float distanceSquared, closestDistanceSquared = Float.MAX_VALUE;
+        findNearbyAllies(entity, range, null, visitor);
+    }
+
+    private static boolean findNearbyAllies(CombatEntityAPI entity, float range,
+                                            @Nullable List<? super ShipAPI> results,
+                                            @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchNearbyAllies(entity, range, results, visitor);
+        Instrumentation.end(nearbyAlliesProbe, call);
+        return finished;
+    }
+
+    private static boolean searchNearbyAllies(CombatEntityAPI entity, float range,
+                                              @Nullable List<? super ShipAPI> results,
+                                              @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int owner = entity.getOwner();
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
 
-        for (MissileAPI tmp : Global.getCombatEngine().getMissiles())
+        // Only test ships in nearby cells of the per-frame ship grid
+        if (LazyLib.isCachingEnabled())
         {
-            if (tmp.getOwner() == entity.getOwner())
+            final CombatSnapshot snapshot = CombatCache.getSnapshot(CombatSnapshot.SHIPS);
+            final float[] xs = snapshot.getX(CombatSnapshot.SHIPS), ys = snapshot.getY(CombatSnapshot.SHIPS),
+                    radii = snapshot.getRadius(CombatSnapshot.SHIPS);
+            final int[] owners = snapshot.getOwner(CombatSnapshot.SHIPS),
+                    flags = snapshot.getFlags(CombatSnapshot.SHIPS);
+            final float x = entity.getLocation().x, y = entity.getLocation().y,
+                    reach = range + entity.getCollisionRadius();
+            final SpatialHash grid = CombatCache.getShipGrid();
+            final int start = grid.query(x, y, reach);
+            try
             {
-                continue;
-            }
+                for (int i = start, end = grid.getQueryEnd(); i < end; i++)
+                {
+                    final int index = grid.getResult(i);
+                    if (owners[index] != owner || (flags[index] & CombatCache.IGNORED_SHIPS) != 0
+                            || !MathUtils.isWithinRange(x, y, xs[index], ys[index], reach + radii[index]))
+                    {
+                        continue;
+                    }
 
-            if (!CombatUtils.isVisibleToSide(tmp, entity.getOwner()))
+                    final ShipAPI tmp = (ShipAPI) snapshot.getEntity(CombatSnapshot.SHIPS, index);
+                    if (tmp != entity && !CombatUtils.collect(tmp, results, visitor))
+                    {
+                        return false;
+                    }
+                }
+            }
+            finally
             {
-                continue;
+                grid.release(start);
             }
 
-            distanceSquared = MathUtils.getDistanceSquared(tmp.getLocation(),
-                    entity.getLocation());
+            return true;
+        }
 
-            if (distanceSquared < closestDistanceSquared)
+        for (int i = 0; i < ships.size(); i++)
+        {
+            final ShipAPI tmp = ships.get(i);
+            if (tmp != entity && tmp.getOwner() == owner && !tmp.isHulk() && !tmp.isShuttlePod()
+                    && MathUtils.isWithinRange(entity, tmp, range)
+                    && !CombatUtils.collect(tmp, results, visitor))
             {
-                closest = tmp;
-                closestDistanceSquared = distanceSquared;
+                return false;
             }
         }
 
-        return closest;
+        return true;
+    }
+
+    /**
+     * Find the closest visible enemy missile near an entity.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     *
+     * @return The enemy {@link MissileAPI} closest to {@code entity} that can
+     *         be seen within the fog of war, or {@code null} if none are found.
+     *
+     * @since 1.4
+     */
+    @Nullable
+    public static MissileAPI getNearestEnemyMissile(CombatEntityAPI entity)
+    {
+        final NearestHeap<MissileAPI> nearest = new NearestHeap<>(1);
+        findNearestMissiles(entity, true, nearest);
+        return nearest.peekWorst();
+    }
+
+    /**
+     * Find the {@code k} closest visible enemy missiles near an entity.
+     *
+     * @param entity The {@link CombatEntityAPI} to search around.
+     * @param k      The maximum number of missiles to return.
+     *
+     * @return Up to {@code k} enemy {@link MissileAPI}s that can be seen
+     *         within the fog of war, ordered from closest to furthest from
+     *         {@code entity}.
+     *
+     * @see #getNearestEnemyMissile(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static List<MissileAPI> getNearestEnemyMissiles(CombatEntityAPI entity, int k)
+    {
+        return findNearestMissiles(entity, k, true);
     }
 
     /**
@@ -356,17 +1161,98 @@ public class AIUtils
      */
     public static List<MissileAPI> getEnemyMissilesOnMap(CombatEntityAPI entity)
     {
-        List<MissileAPI> missiles = new ArrayList<>();
+        final List<MissileAPI> missiles = new ArrayList<>();
+        findEnemyMissilesOnMap(entity, missiles, null);
+        return missiles;
+    }
+
+    /**
+     * Adds all present visible enemy missiles of an entity to an existing
+     * {@link List}. This avoids allocating a new {@link List} for every search.
+     *
+     * @param entity  The {@link CombatEntityAPI} to search around.
+     * @param results The {@link List} that enemy missiles will be added to.
+     *
+     * @see #getEnemyMissilesOnMap(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static void getEnemyMissilesOnMap(CombatEntityAPI entity, List<? super MissileAPI> results)
+    {
+        findEnemyMissilesOnMap(entity, results, null);
+    }
+
+    /**
+     * Passes all present visible enemy missiles of an entity to an
+     * {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param entity  The {@link CombatEntityAPI} to search around.
+     * @param visitor The {@link EntityVisitor} that will be called for each
+     *                enemy missile.
+     *
+     * @see #getEnemyMissilesOnMap(CombatEntityAPI)
+     * @since 3.0b
+     */
+    public static void getEnemyMissilesOnMap(CombatEntityAPI entity, EntityVisitor<? super MissileAPI> visitor)
+    {
+        findEnemyMissilesOnMap(entity, null, visitor);
+    }
 
-        for (MissileAPI tmp : Global.getCombatEngine().getMissiles())
+    private static boolean findEnemyMissilesOnMap(CombatEntityAPI entity, @Nullable List<? super MissileAPI> results,
+                                                  @Nullable EntityVisitor<? super MissileAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchEnemyMissilesOnMap(entity, results, visitor);
+        Instrumentation.end(enemyMissilesOnMapProbe, call);
+        return finished;
+    }
+
+    private static boolean searchEnemyMissilesOnMap(CombatEntityAPI entity,
+                                                    @Nullable List<? super MissileAPI> results,
+                                                    @Nullable EntityVisitor<? super MissileAPI> visitor)
+    {
+        if (LazyLib.isCachingEnabled())
         {
-            if (tmp.getOwner() != entity.getOwner() || tmp.isFizzling())
+            final List<MissileAPI> missiles = enemyMissilesCache.get(entity.getOwner());
+            for (int i = 0; i < missiles.size(); i++)
             {
-                missiles.add(tmp);
+                if (!CombatUtils.collect(missiles.get(i), results, visitor))
+                {
+                    return false;
+                }
             }
+
+            return true;
         }
 
-        return missiles;
+        final List<MissileAPI> missiles = Global.getCombatEngine().getMissiles();
+        for (int i = 0; i < missiles.size(); i++)
+        {
+            final MissileAPI tmp = missiles.get(i);
+            if ((tmp.getOwner() != entity.getOwner() || tmp.isFizzling())
+                    && !CombatUtils.collect(tmp, results, visitor))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Every missile that is a threat to a side, used to answer getEnemyMissilesOnMap() from the frame cache
+    private static List<MissileAPI> findEnemyMissilesOfSide(int owner)
+    {
+        final List<MissileAPI> missiles = Global.getCombatEngine().getMissiles();
+        final List<MissileAPI> enemyMissiles = new ArrayList<>();
+        for (int i = 0; i < missiles.size(); i++)
+        {
+            final MissileAPI tmp = missiles.get(i);
+            if (tmp.getOwner() != owner || tmp.isFizzling())
+            {
+                enemyMissiles.add(tmp);
+            }
+        }
+
+        return enemyMissiles;
     }
 
     /**
@@ -382,17 +1268,79 @@ public class AIUtils
      */
     public static List<MissileAPI> getNearbyEnemyMissiles(CombatEntityAPI entity, float range)
     {
-        List<MissileAPI> missiles = new ArrayList<>();
+        final List<MissileAPI> missiles = new ArrayList<>();
+        findNearbyEnemyMissiles(entity, range, missiles, null);
+        return missiles;
+    }
+
+    /**
+     * Adds all visible enemy missiles within a certain range around an entity
+     * to an existing {@link List}. This avoids allocating a new {@link List}
+     * for every search.
+     *
+     * @param entity  The entity to search around.
+     * @param range   How far around {@code entity} to search.
+     * @param results The {@link List} that enemy missiles within range will be
+     *                added to.
+     *
+     * @see #getNearbyEnemyMissiles(CombatEntityAPI, float)
+     * @since 3.0b
+     */
+    public static void getNearbyEnemyMissiles(CombatEntityAPI entity, float range,
+                                              List<? super MissileAPI> results)
+    {
+        findNearbyEnemyMissiles(entity, range, results, null);
+    }
+
+    /**
+     * Passes all visible enemy missiles within a certain range around an
+     * entity to an {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param entity  The entity to search around.
+     * @param range   How far around {@code entity} to search.
+     * @param visitor The {@link EntityVisitor} that will be called for each
+     *                enemy missile within range.
+     *
+     * @see #getNearbyEnemyMissiles(CombatEntityAPI, float)
+     * @since 3.0b
+     */
+    public static void getNearbyEnemyMissiles(CombatEntityAPI entity, float range,
+                                              EntityVisitor<? super MissileAPI> visitor)
+    {
+        findNearbyEnemyMissiles(entity, range, null, visitor);
+    }
+
+    private static boolean findNearbyEnemyMissiles(CombatEntityAPI entity, float range,
+                                                   @Nullable List<? super MissileAPI> results,
+                                                   @Nullable EntityVisitor<? super MissileAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchNearbyEnemyMissiles(entity, range, results, visitor);
+        Instrumentation.end(nearbyEnemyMissilesProbe, call);
+        return finished;
+    }
 
-        for (MissileAPI enemy : getEnemyMissilesOnMap(entity))
+    private static boolean searchNearbyEnemyMissiles(CombatEntityAPI entity, float range,
+                                                     @Nullable List<? super MissileAPI> results,
+                                                     @Nullable EntityVisitor<? super MissileAPI> visitor)
+    {
+        // Only check missiles in nearby cells of the engine's missile grid. The search
+        // area is padded by the largest missile, as the grid only tracks their centers
+        final float searchSize = (range + entity.getCollisionRadius()
+                + CombatCache.getMaxRadius(CombatSnapshot.MISSILES)) * 2f;
+        for (Iterator iter = Global.getCombatEngine().getMissileGrid().getCheckIterator(
+                entity.getLocation(), searchSize, searchSize); iter.hasNext(); )
         {
-            if (MathUtils.isWithinRange(entity, enemy, range))
+            final MissileAPI tmp = (MissileAPI) iter.next();
+            if ((tmp.getOwner() != entity.getOwner() || tmp.isFizzling())
+                    && MathUtils.isWithinRange(entity, tmp, range)
+                    && !CombatUtils.collect(tmp, results, visitor))
             {
-                missiles.add(enemy);
+                return false;
             }
         }
 
-        return missiles;
+        return true;
     }
 
     /**
@@ -410,6 +1358,7 @@ public class AIUtils
      * @return The best point to aim towards to hit {@code target} given current
      *         velocities, or {@code null} if a collision is not possible.
      *
+     * @see #getBestInterceptPoint(Vector2f, float, Vector2f, Vector2f, Vector2f)
      * @author Dark.Revenant (original by broofa @ stackoverflow.com)
      * @since 1.9
      */
@@ -417,59 +1366,220 @@ public class AIUtils
     public static Vector2f getBestInterceptPoint(Vector2f point, float speed,
                                                  Vector2f targetLoc, Vector2f targetVel)
     {
-        Vector2f difference = new Vector2f(targetLoc.x - point.x, targetLoc.y - point.y);
+        final Vector2f dest = new Vector2f();
+        return (getBestInterceptPoint(point, speed, targetLoc, targetVel, dest) ? dest : null);
+    }
 
-        final float a = (targetVel.x * targetVel.x) + (targetVel.y * targetVel.y) - (speed * speed),
-                b = 2f * ((targetVel.x * difference.x) + (targetVel.y * difference.y)),
-                c = (difference.x * difference.x) + (difference.y * difference.y);
+    /**
+     * Finds the best place to aim to hit a target, given its current location
+     * and velocity, and stores it in an existing {@link Vector2f}. This method
+     * does not take acceleration into account, and allocates no memory.
+     *
+     * @param point     The origin point of the object that will attempt to
+     *                  collide with the target (usually a weapon's projectile
+     *                  spawn point).
+     * @param speed     The speed of the object that will attempt to collide
+     *                  with the target (usually a projectile's travel speed).
+     * @param targetLoc The location of the target.
+     * @param targetVel The current velocity of the target.
+     * @param dest      The {@link Vector2f} to store the result in. It is left
+     *                  unchanged if a collision is not possible.
+     *
+     * @return {@code true} if an intercept point was found, {@code false} if a
+     *         collision is not possible.
+     *
+     * @see #getInterceptTime(float, float, float, float, float, float, float)
+     * @since 3.0b
+     */
+    public static boolean getBestInterceptPoint(Vector2f point, float speed, Vector2f targetLoc,
+                                                Vector2f targetVel, Vector2f dest)
+    {
+        final float time = getInterceptTime(point.x, point.y, speed,
+                targetLoc.x, targetLoc.y, targetVel.x, targetVel.y);
+        if (time == Float.MAX_VALUE)
+        {
+            return false;
+        }
+
+        dest.set(targetLoc.x + targetVel.x * time, targetLoc.y + targetVel.y * time);
+        return true;
+    }
+
+    /**
+     * Finds the best place to aim to hit an accelerating target with a
+     * projectile that inherits its shooter's velocity, and stores it in an
+     * existing {@link Vector2f}.
+     * <p>
+     * The target's acceleration is assumed to stay constant until impact. As
+     * there's no exact solution in that case, the intercept is refined from
+     * the result of
+     * {@link #getBestInterceptPoint(Vector2f, float, Vector2f, Vector2f, Vector2f)}
+     * until the flight time stops changing. With no acceleration and no
+     * shooter velocity, the result is the same as that method's.
+     *
+     * @param point       The origin point of the object that will attempt to
+     *                    collide with the target (usually a weapon's
+     *                    projectile spawn point).
+     * @param speed       The speed of the object that will attempt to collide
+     *                    with the target, not counting any velocity it
+     *                    inherits.
+     * @param shooterVel  The velocity the object inherits when it is launched
+     *                    (usually the firing ship's velocity).
+     * @param targetLoc   The location of the target.
+     * @param targetVel   The current velocity of the target.
+     * @param targetAccel The current acceleration of the target, in su per
+     *                    second per second.
+     * @param dest        The {@link Vector2f} to store the result in. This is
+     *                    the point to aim the object towards, which is offset
+     *                    from where the collision happens by how far the
+     *                    inherited velocity carries the object. It is left
+     *                    unchanged if a collision is not possible.
+     *
+     * @return {@code true} if an intercept point was found, {@code false} if a
+     *         collision is not possible (or the target accelerates away too
+     *         quickly for the solution to settle).
+     *
+     * @since 3.0b
+     */
+    public static boolean getBestInterceptPoint(Vector2f point, float speed, Vector2f shooterVel,
+                                                Vector2f targetLoc, Vector2f targetVel, Vector2f targetAccel,
+                                                Vector2f dest)
+    {
+        if (speed <= 0f)
+        {
+            return false;
+        }
 
-        Vector2f solutionSet = quad(a, b, c);
-        if (solutionSet != null)
+        // Work relative to the shooter, so the inherited velocity disappears
+        final float relVelX = targetVel.x - shooterVel.x, relVelY = targetVel.y - shooterVel.y,
+                halfAccelX = targetAccel.x * 0.5f, halfAccelY = targetAccel.y * 0.5f;
+        float time = getInterceptTime(point.x, point.y, speed, targetLoc.x, targetLoc.y, relVelX, relVelY);
+        if (time == Float.MAX_VALUE)
         {
-            float bestFit = Math.min(solutionSet.x, solutionSet.y);
-            if (bestFit < 0f)
-            {
-                bestFit = Math.max(solutionSet.x, solutionSet.y);
-            }
-            if (bestFit > 0f)
+            // Acceleration might still bring the target into reach
+            time = MathUtils.getDistance(point.x, point.y, targetLoc.x, targetLoc.y) / speed;
+        }
+
+        // Repeatedly aim at where the target will be once the object arrives
+        for (int i = 0; i < MAX_INTERCEPT_ITERATIONS; i++)
+        {
+            final float aimX = targetLoc.x + (relVelX + halfAccelX * time) * time,
+                    aimY = targetLoc.y + (relVelY + halfAccelY * time) * time,
+                    newTime = MathUtils.getDistance(point.x, point.y, aimX, aimY) / speed;
+            if (Math.abs(newTime - time) <= INTERCEPT_TOLERANCE * (1f + time))
             {
-                return new Vector2f(targetLoc.x + targetVel.x * bestFit,
-                        targetLoc.y + targetVel.y * bestFit);
+                dest.set(aimX, aimY);
+                return true;
             }
+
+            time = newTime;
         }
 
-        // No possible intercept found
-        return null;
+        // Didn't settle, the target is moving away faster than the object can close
+        return false;
     }
 
-    private static Vector2f quad(float a, float b, float c)
+    /**
+     * Calculates how long it will take an object to collide with a target,
+     * given their current locations and velocities. This is the flight time
+     * used by {@link #getBestInterceptPoint(Vector2f, float, Vector2f, Vector2f)},
+     * and does not take acceleration into account.
+     *
+     * @param pointX     The X coordinate the object starts at.
+     * @param pointY     The Y coordinate the object starts at.
+     * @param speed      The speed of the object.
+     * @param targetX    The X coordinate of the target.
+     * @param targetY    The Y coordinate of the target.
+     * @param targetVelX The X component of the target's velocity.
+     * @param targetVelY The Y component of the target's velocity.
+     *
+     * @return The time until the object collides with the target, in seconds,
+     *         or {@link Float#MAX_VALUE} if a collision is not possible.
+     *
+     * @since 3.0b
+     */
+    public static float getInterceptTime(float pointX, float pointY, float speed, float targetX, float targetY,
+                                         float targetVelX, float targetVelY)
     {
-        Vector2f solution = null;
+        final float diffX = targetX - pointX, diffY = targetY - pointY;
+        float a = (targetVelX * targetVelX) + (targetVelY * targetVelY) - (speed * speed);
+        final float b = 2f * ((targetVelX * diffX) + (targetVelY * diffY)),
+                c = (diffX * diffX) + (diffY * diffY);
 
+        // Solve the quadratic a*t^2 + b*t + c = 0 for the flight time
+        final float t1, t2;
         if (Float.compare(Math.abs(a), 0) == 0)
         {
             if (Float.compare(Math.abs(b), 0) == 0)
             {
-                solution = (Float.compare(Math.abs(c), 0) == 0)
-                        ? new Vector2f(0, 0) : null;
-            }
-            else
-            {
-                solution = new Vector2f(-c / b, -c / b);
+                return Float.MAX_VALUE;
             }
+
+            t1 = t2 = -c / b;
         }
         else
         {
             float d = (b * b) - (4 * a * c);
-            if (d >= 0)
+            if (d < 0)
             {
-                d = (float) Math.sqrt(d);
-                a = 2 * a;
-                solution = new Vector2f((-b - d) / a, (-b + d) / a);
+                return Float.MAX_VALUE;
             }
+
+            d = (float) Math.sqrt(d);
+            a = 2 * a;
+            t1 = (-b - d) / a;
+            t2 = (-b + d) / a;
+        }
+
+        float bestFit = Math.min(t1, t2);
+        if (bestFit < 0f)
+        {
+            bestFit = Math.max(t1, t2);
+        }
+
+        return (bestFit > 0f ? bestFit : Float.MAX_VALUE);
+    }
+
+    /**
+     * Calculates the flight times of many objects to their targets at once,
+     * from coordinates packed into parallel arrays (such as those of a
+     * {@link CombatSnapshot}). Entry {@code i} of every array describes one
+     * object/target pair. Allocates no memory.
+     *
+     * @param pointXs     The X coordinates each object starts at.
+     * @param pointYs     The Y coordinates each object starts at.
+     * @param speeds      The speed of each object.
+     * @param targetXs    The X coordinate of each target.
+     * @param targetYs    The Y coordinate of each target.
+     * @param targetVelXs The X component of each target's velocity.
+     * @param targetVelYs The Y component of each target's velocity.
+     * @param count       How many entries of the arrays to use.
+     * @param dest        The array the results will be stored in.
+     *                    {@code dest[i]} will be the same as calling
+     *                    {@link #getInterceptTime(float, float, float, float, float, float, float)}
+     *                    on entry {@code i}: the flight time in seconds, or
+     *                    {@link Float#MAX_VALUE} if that pair can't collide.
+     *                    The point to aim at is then
+     *                    {@code (targetXs[i] + targetVelXs[i] * dest[i], targetYs[i] + targetVelYs[i] * dest[i])}.
+     *
+     * @return How many pairs can collide.
+     *
+     * @since 3.0b
+     */
+    public static int getInterceptTimes(float[] pointXs, float[] pointYs, float[] speeds,
+                                        float[] targetXs, float[] targetYs,
+                                        float[] targetVelXs, float[] targetVelYs, int count, float[] dest)
+    {
+        int numHits = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final float time = getInterceptTime(pointXs[i], pointYs[i], speeds[i],
+                    targetXs[i], targetYs[i], targetVelXs[i], targetVelYs[i]);
+            dest[i] = time;
+            numHits += (time == Float.MAX_VALUE ? 0 : 1);
         }
 
-        return solution;
+        return numHits;
     }
 
     // TODO: Test, Javadoc, add to changelog
@@ -1,61 +1,397 @@
 package org.lazywizard.lazylib.combat;
 
 import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.combat.CombatEngineAPI;
+import com.fs.starfarer.api.combat.CombatEntityAPI;
 import com.fs.starfarer.api.combat.ShipAPI;
+import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.LazyLib;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 class CombatCache
 {
-    private static final Map<Integer, Set<ShipAPI>> visCache = new HashMap<>();
-    private static int lastNumShips = 0;
+    // If support for more than two sides is ever added, just raise this number
+    private static final int NUM_SIDES = 2;
+    // Results of FrameCaches are stored in the engine's custom data, so they die with the battle
+    private static final String STORE_KEY = "lw_lazylib_framecache";
+    // Engine lists that fog of war results can be cached for, see getVisibility()
+    static final int SHIPS = CombatSnapshot.SHIPS, MISSILES = CombatSnapshot.MISSILES,
+            PROJECTILES = CombatSnapshot.PROJECTILES;
+    // Snapshot flags of ships that are never returned as enemies or allies
+    static final int IGNORED_SHIPS = CombatSnapshot.FLAG_HULK | CombatSnapshot.FLAG_SHUTTLE_POD;
+    // Visible enemies are stored as indices into the ships section of the per-frame snapshot
+    // (never into the live ship list, which can change without changing size), so that the
+    // cache never keeps a ship alive after combat has ended
+    private static final int[][] visibleEnemies = new int[NUM_SIDES][0];
+    private static final int[] numVisibleEnemies = new int[NUM_SIDES];
+    // Grids of each snapshot section, rebuilt lazily whenever that section is retaken
+    private static final SpatialHash[] sectionGrids = new SpatialHash[CombatSnapshot.NUM_SECTIONS];
+    private static final boolean[] sectionGridDirty = new boolean[CombatSnapshot.NUM_SECTIONS];
+    // How often LazyLib's own searches will retake a snapshot section within a frame. Projectiles come and go
+    // constantly, and copying a whole section again costs more than the search it would speed up, so after this
+    // many retakes searches use the engine's lists and grids instead until the next frame
+    private static final int MAX_SECTION_RETAKES = 1;
+    // Sections of the snapshot are only taken when something first reads them each frame
+    private static final boolean[] sectionDirty = new boolean[CombatSnapshot.NUM_SECTIONS];
+    private static final int[] sectionRetakes = new int[CombatSnapshot.NUM_SECTIONS];
+    private static WeakReference<CombatEngineAPI> lastEngine = new WeakReference<>(null);
+    private static WeakReference<FrameStore> lastStore = new WeakReference<>(null);
+    private static int lastNumShips = 0, frameId = 0;
     private static float lastTime = 0f;
+    private static boolean visCacheDirty = true;
 
     static
     {
-        // If support for more than two sides is ever added, just
-        // add the side's owner number to this list
-        visCache.put(0, Collections.newSetFromMap(new WeakHashMap<>()));
-        visCache.put(1, Collections.newSetFromMap(new WeakHashMap<>()));
+        for (int section = 0; section < CombatSnapshot.NUM_SECTIONS; section++)
+        {
+            sectionGrids[section] = new SpatialHash();
+        }
     }
 
-    static List<ShipAPI> getCachedVisibleEnemies(int side)
+    // Everything cached here is only valid until the frame advances or the ship list changes
+    private static void checkFrame()
     {
-        if (!visCache.containsKey(side))
+        // None of this is thread-safe, and it all calls into the game
+        if (SnapshotExecutor.isWorkerThread())
         {
-            return Collections.emptyList();
+            throw new IllegalStateException("LazyLib's combat caches can't be used outside of the game thread!");
         }
 
-        final int numShips = Global.getCombatEngine().getShips().size();
-        final float time = Global.getCombatEngine().getTotalElapsedTime(true);
-        if ((numShips != lastNumShips) || (time != lastTime))
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        final List<ShipAPI> ships = engine.getShips();
+        final int numShips = ships.size();
+        final float time = engine.getTotalElapsedTime(true);
+        final boolean newEngine = (engine != lastEngine.get());
+        final FrameStore store = lastStore.get();
+        // The ship grid and visible enemy cache index the snapshot's ships, so a ship being
+        // replaced by another (which doesn't change the count) also has to start a new frame
+        if (newEngine || (numShips != lastNumShips) || (time != lastTime) || (store != null
+                && !sectionDirty[CombatSnapshot.SHIPS] && !store.snapshot.matches(CombatSnapshot.SHIPS, ships)))
         {
-            cacheMapVisible();
+            markDirty();
+            frameId++;
             lastNumShips = numShips;
             lastTime = time;
+            if (newEngine)
+            {
+                lastEngine = new WeakReference<>(engine);
+                lastStore = new WeakReference<>(getOrCreateStore(engine));
+            }
+        }
+    }
+
+    private static void markDirty()
+    {
+        visCacheDirty = true;
+        Arrays.fill(sectionGridDirty, true);
+        Arrays.fill(sectionDirty, true);
+    }
+
+    // Returns the table of cached results for one FrameCache, emptied if it was last used on an earlier frame
+    static Map<Object, Object> getFrameTable(int cacheId)
+    {
+        return getStore().getTable(cacheId, frameId);
+    }
+
+    // Returns the fog of war cache for SHIPS, MISSILES or PROJECTILES, passing
+    // an entity's index in that engine list lets it skip repeat fog lookups
+    static VisibilityCache getVisibility(int listType)
+    {
+        if (!LazyLib.isCachingEnabled() || Global.getCombatEngine() == null)
+        {
+            return VisibilityCache.UNCACHED;
+        }
+
+        final VisibilityCache visibility = getStore().visibility[listType];
+        visibility.setFrame(frameId);
+        return visibility;
+    }
+
+    private static FrameStore getStore()
+    {
+        checkFrame();
+        FrameStore store = lastStore.get();
+        if (store == null)
+        {
+            // Someone cleared the engine's custom data, so nothing taken earlier this frame is left
+            store = getOrCreateStore(Global.getCombatEngine());
+            lastStore = new WeakReference<>(store);
+            markDirty();
+        }
+
+        return store;
+    }
+
+    private static FrameStore getOrCreateStore(CombatEngineAPI engine)
+    {
+        final Map<String, Object> data = engine.getCustomData();
+        FrameStore store = (FrameStore) data.get(STORE_KEY);
+        if (store == null)
+        {
+            store = new FrameStore();
+            data.put(STORE_KEY, store);
+        }
+
+        return store;
+    }
+
+    static List<ShipAPI> getCachedVisibleEnemies(int side)
+    {
+        final List<ShipAPI> enemies = new ArrayList<>();
+        collectVisibleEnemies(side, enemies, null);
+        return enemies;
+    }
+
+    // Returns false if the visitor asked to stop the search
+    static boolean collectVisibleEnemies(int side, @Nullable List<? super ShipAPI> results,
+                                         @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        if (side < 0 || side >= NUM_SIDES)
+        {
+            return true;
+        }
+
+        checkFrame();
+        if (visCacheDirty)
+        {
+            cacheMapVisible();
+            visCacheDirty = false;
+        }
+
+        final CombatSnapshot snapshot = getSnapshot(CombatSnapshot.SHIPS);
+        final int[] visible = visibleEnemies[side];
+        for (int i = 0, numVisible = numVisibleEnemies[side]; i < numVisible; i++)
+        {
+            if (!CombatUtils.collect((ShipAPI) snapshot.getEntity(CombatSnapshot.SHIPS, visible[i]),
+                    results, visitor))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Entries are indices into the ships section of the snapshot
+    static SpatialHash getShipGrid()
+    {
+        getSnapshot(CombatSnapshot.SHIPS);
+        return getSectionGrid(CombatSnapshot.SHIPS);
+    }
+
+    // Returns a grid of one section of the snapshot, with entries that are indices into that section. Only valid
+    // after getSnapshot(section) has returned the snapshot, as the section can't be retaken from here
+    static SpatialHash getSectionGrid(int section)
+    {
+        final SpatialHash grid = sectionGrids[section];
+        if (sectionGridDirty[section])
+        {
+            grid.rebuild(getStore().snapshot.getSection(section));
+            sectionGridDirty[section] = false;
+        }
+
+        return grid;
+    }
+
+    // Returns the snapshot with every section up to date, for CombatUtils.getSnapshot() and frozen copies
+    // The snapshot is kept in the engine's custom data, so the entities it references die with the battle
+    static CombatSnapshot getSnapshot()
+    {
+        final CombatSnapshot snapshot = getStore().snapshot;
+        for (int section = 0; section < CombatSnapshot.NUM_SECTIONS; section++)
+        {
+            updateSection(snapshot, section, true);
         }
 
-        return new ArrayList<>(visCache.get(side));
+        return snapshot;
+    }
+
+    // Returns the snapshot with one section up to date, for LazyLib's own searches. Returns null if that section's
+    // engine list has changed too often this frame for retaking it to be worthwhile (see MAX_SECTION_RETAKES), in
+    // which case the caller should search the engine's list or grid instead. Never returns null for SHIPS, as any
+    // change to the ship list starts a new frame
+    @Nullable
+    static CombatSnapshot getSnapshot(int section)
+    {
+        final CombatSnapshot snapshot = getStore().snapshot;
+        return (updateSection(snapshot, section, false) ? snapshot : null);
+    }
+
+    // Returns false if the section is out of date and wasn't retaken
+    private static boolean updateSection(CombatSnapshot snapshot, int section, boolean force)
+    {
+        final List<? extends CombatEntityAPI> list = getList(Global.getCombatEngine(), section);
+        if (sectionDirty[section])
+        {
+            sectionRetakes[section] = 0;
+        }
+        else if (snapshot.matches(section, list))
+        {
+            return true;
+        }
+        else if (!force && sectionRetakes[section] >= MAX_SECTION_RETAKES)
+        {
+            return false;
+        }
+        else
+        {
+            sectionRetakes[section]++;
+        }
+
+        snapshot.rebuild(section, list);
+        snapshot.setFrameId(frameId);
+        sectionDirty[section] = false;
+        sectionGridDirty[section] = true;
+
+        return true;
+    }
+
+    private static List<? extends CombatEntityAPI> getList(CombatEngineAPI engine, int section)
+    {
+        switch (section)
+        {
+            case CombatSnapshot.SHIPS:
+                return engine.getShips();
+            case CombatSnapshot.MISSILES:
+                return engine.getMissiles();
+            case CombatSnapshot.PROJECTILES:
+                return engine.getProjectiles();
+            case CombatSnapshot.ASTEROIDS:
+                return engine.getAsteroids();
+            default:
+                throw new IllegalArgumentException("Unknown snapshot section: " + section);
+        }
+    }
+
+    // Returns a copy of the current snapshot that will never change, shared by every task submitted
+    // until the live snapshot is next retaken
+    static CombatSnapshot getFrozenSnapshot()
+    {
+        final CombatSnapshot snapshot = getSnapshot();
+        final FrameStore store = getStore();
+        if (store.frozen == null || store.frozen.getFrameId() != snapshot.getFrameId()
+                || store.frozen.getVersion() != snapshot.getVersion())
+        {
+            store.frozen = snapshot.freeze();
+        }
+
+        return store.frozen;
+    }
+
+    // Returns the largest collision radius of anything in an engine list, so grid searches know how far outside the
+    // searched area an entity can be and still reach into it. This is tracked whether or not caching is enabled, so
+    // it costs one scan of the list per frame plus a check of anything added to it since. Entities removed partway
+    // through a frame are left counted, as that can only make the result larger than it needs to be
+    static float getMaxRadius(int section)
+    {
+        final List<? extends CombatEntityAPI> list = getList(Global.getCombatEngine(), section);
+        final MaxRadius cached = getStore().maxRadii[section];
+        final int size = list.size();
+        if (cached.frameId != frameId || size == 0)
+        {
+            cached.frameId = frameId;
+            cached.radius = findMaxRadius(list, 0, size);
+        }
+        else if (list.get(size - 1) != cached.last)
+        {
+            // The game adds new entities to the end of its lists, so usually only those need checking
+            final boolean appended = (size > cached.size
+                    && (cached.size == 0 || list.get(cached.size - 1) == cached.last));
+            cached.radius = (appended ? Math.max(cached.radius, findMaxRadius(list, cached.size, size))
+                    : findMaxRadius(list, 0, size));
+        }
+
+        cached.size = size;
+        cached.last = (size > 0 ? list.get(size - 1) : null);
+        return cached.radius;
+    }
+
+    private static float findMaxRadius(List<? extends CombatEntityAPI> list, int start, int end)
+    {
+        float maxRadius = 0f;
+        for (int i = start; i < end; i++)
+        {
+            maxRadius = Math.max(maxRadius, list.get(i).getCollisionRadius());
+        }
+
+        return maxRadius;
     }
 
     private static void cacheMapVisible()
     {
-        for (Map.Entry<Integer, Set<ShipAPI>> entry : visCache.entrySet())
+        final CombatSnapshot snapshot = getSnapshot(CombatSnapshot.SHIPS);
+        final int numShips = snapshot.size(CombatSnapshot.SHIPS);
+        final int[] owners = snapshot.getOwner(CombatSnapshot.SHIPS), flags = snapshot.getFlags(CombatSnapshot.SHIPS);
+        final VisibilityCache visibility = getVisibility(SHIPS);
+        for (int owner = 0; owner < NUM_SIDES; owner++)
         {
-            final int owner = entry.getKey();
-            final Set<ShipAPI> visible = entry.getValue();
-            visible.clear();
-            for (ShipAPI tmp : Global.getCombatEngine().getShips())
+            if (visibleEnemies[owner].length < numShips)
+            {
+                visibleEnemies[owner] = new int[numShips];
+            }
+
+            final int[] visible = visibleEnemies[owner];
+            int numVisible = 0;
+            for (int i = 0; i < numShips; i++)
             {
-                if (tmp.getOwner() != owner && !tmp.isHulk() && !tmp.isShuttlePod()
-                        && CombatUtils.isVisibleToSide(tmp, owner))
+                if (owners[i] != owner && (flags[i] & IGNORED_SHIPS) == 0
+                        && visibility.isVisibleToSide(snapshot.getEntity(CombatSnapshot.SHIPS, i), owner, i))
                 {
-                    visible.add(tmp);
+                    visible[numVisible++] = i;
                 }
             }
+
+            numVisibleEnemies[owner] = numVisible;
         }
     }
 
+    private static class FrameStore
+    {
+        private final CombatSnapshot snapshot = new CombatSnapshot();
+        @Nullable
+        private CombatSnapshot frozen = null;
+        private final VisibilityCache[] visibility = {
+                new VisibilityCache(true), new VisibilityCache(true), new VisibilityCache(true)};
+        private final MaxRadius[] maxRadii = {new MaxRadius(), new MaxRadius(), new MaxRadius(), new MaxRadius()};
+        @SuppressWarnings("unchecked")
+        private Map<Object, Object>[] tables = new Map[0];
+        private int[] frameIds = new int[0];
+
+        private Map<Object, Object> getTable(int cacheId, int frameId)
+        {
+            if (cacheId >= tables.length)
+            {
+                final int oldLength = tables.length;
+                tables = Arrays.copyOf(tables, cacheId + 8);
+                frameIds = Arrays.copyOf(frameIds, cacheId + 8);
+                for (int i = oldLength; i < tables.length; i++)
+                {
+                    tables[i] = new HashMap<>();
+                }
+            }
+
+            final Map<Object, Object> table = tables[cacheId];
+            if (frameIds[cacheId] != frameId)
+            {
+                table.clear();
+                frameIds[cacheId] = frameId;
+            }
+
+            return table;
+        }
+    }
+
+    // The largest collision radius in one engine list, and enough about that list to tell what has been added
+    private static class MaxRadius
+    {
+        @Nullable
+        private CombatEntityAPI last = null;
+        private int frameId = -1, size = 0;
+        private float radius = 0f;
+    }
+
     private CombatCache()
     {
     }
@@ -0,0 +1,409 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import com.fs.starfarer.api.combat.DamagingProjectileAPI;
+import com.fs.starfarer.api.combat.MissileAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.lazywizard.lazylib.BatchMathUtils;
+
+import java.util.List;
+
+/**
+ * A copy of the state of every ship, missile, projectile and asteroid in combat, taken once per frame and stored in
+ * parallel primitive arrays (one array per property, one entry per entity). Reading these arrays is much cheaper
+ * than calling the same methods on each {@link CombatEntityAPI} over and over, and they can be passed directly to
+ * the methods in {@link BatchMathUtils}.
+ * <p>
+ * The snapshot is split into four sections, one for each of {@link #SHIPS}, {@link #MISSILES},
+ * {@link #PROJECTILES} and {@link #ASTEROIDS}. Entry {@code i} of a section is always entry {@code i} of the
+ * matching {@link com.fs.starfarer.api.combat.CombatEngineAPI} list as of when the section was taken. Each section
+ * is only taken when it is first needed each frame, so a search that only looks at ships never copies every
+ * projectile on the map.
+ * <p>
+ * The arrays returned by this class are the snapshot's own storage, not copies: do not modify them, do not keep
+ * them past the current frame, and only read the first {@link #size(int)} entries of each.
+ * <p>
+ * The snapshot is only available while LazyLib's caching is enabled; see {@link CombatUtils#getSnapshot()}. Tasks
+ * run by a {@link SnapshotExecutor} are instead given a frozen copy, which never changes once taken and can safely
+ * be read from any thread.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class CombatSnapshot
+{
+    /**
+     * Section containing the contents of {@link com.fs.starfarer.api.combat.CombatEngineAPI#getShips()}.
+     *
+     * @since 3.0b
+     */
+    public static final int SHIPS = 0;
+    /**
+     * Section containing the contents of {@link com.fs.starfarer.api.combat.CombatEngineAPI#getMissiles()}.
+     *
+     * @since 3.0b
+     */
+    public static final int MISSILES = 1;
+    /**
+     * Section containing the contents of {@link com.fs.starfarer.api.combat.CombatEngineAPI#getProjectiles()}.
+     * Like that list, this includes missiles.
+     *
+     * @since 3.0b
+     */
+    public static final int PROJECTILES = 2;
+    /**
+     * Section containing the contents of {@link com.fs.starfarer.api.combat.CombatEngineAPI#getAsteroids()}.
+     *
+     * @since 3.0b
+     */
+    public static final int ASTEROIDS = 3;
+    static final int NUM_SECTIONS = 4;
+
+    /**
+     * Flag set for ships where {@link ShipAPI#isHulk()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_HULK = 1;
+    /**
+     * Flag set for ships where {@link ShipAPI#isShuttlePod()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_SHUTTLE_POD = 1 << 1;
+    /**
+     * Flag set for ships where {@link ShipAPI#isFighter()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_FIGHTER = 1 << 2;
+    /**
+     * Flag set for ships where {@link ShipAPI#isDrone()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_DRONE = 1 << 3;
+    /**
+     * Flag set for ships where {@link ShipAPI#isPhased()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_PHASED = 1 << 4;
+    /**
+     * Flag set for every entity that is a {@link MissileAPI}, in both the {@link #MISSILES} and
+     * {@link #PROJECTILES} sections.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_MISSILE = 1 << 5;
+    /**
+     * Flag set for projectiles where {@link DamagingProjectileAPI#isFading()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_FADING = 1 << 6;
+    /**
+     * Flag set for missiles where {@link MissileAPI#isFizzling()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_FIZZLING = 1 << 7;
+    /**
+     * Flag set for missiles where {@link MissileAPI#isFlare()} is {@code true}.
+     *
+     * @since 3.0b
+     */
+    public static final int FLAG_FLARE = 1 << 8;
+
+    private final PackedPositions[] sections = new PackedPositions[NUM_SECTIONS];
+    private final boolean frozen;
+    private int frameId = -1;
+    // Incremented whenever any section is retaken, so frozen copies can tell if they're out of date
+    private int version = 0;
+
+    CombatSnapshot()
+    {
+        frozen = false;
+        for (int i = 0; i < NUM_SECTIONS; i++)
+        {
+            sections[i] = new PackedPositions();
+        }
+    }
+
+    private CombatSnapshot(CombatSnapshot source)
+    {
+        frozen = true;
+        frameId = source.frameId;
+        version = source.version;
+        for (int i = 0; i < NUM_SECTIONS; i++)
+        {
+            sections[i] = source.sections[i].copy();
+        }
+    }
+
+    // Returns a copy of this snapshot that is never retaken, for SnapshotExecutor tasks
+    CombatSnapshot freeze()
+    {
+        return new CombatSnapshot(this);
+    }
+
+    static int getFlags(CombatEntityAPI entity)
+    {
+        int flags = 0;
+        if (entity instanceof ShipAPI)
+        {
+            final ShipAPI ship = (ShipAPI) entity;
+            if (ship.isHulk()) flags |= FLAG_HULK;
+            if (ship.isShuttlePod()) flags |= FLAG_SHUTTLE_POD;
+            if (ship.isFighter()) flags |= FLAG_FIGHTER;
+            if (ship.isDrone()) flags |= FLAG_DRONE;
+            if (ship.isPhased()) flags |= FLAG_PHASED;
+        }
+        else if (entity instanceof DamagingProjectileAPI)
+        {
+            if (((DamagingProjectileAPI) entity).isFading()) flags |= FLAG_FADING;
+            if (entity instanceof MissileAPI)
+            {
+                final MissileAPI missile = (MissileAPI) entity;
+                flags |= FLAG_MISSILE;
+                if (missile.isFizzling()) flags |= FLAG_FIZZLING;
+                if (missile.isFlare()) flags |= FLAG_FLARE;
+            }
+        }
+
+        return flags;
+    }
+
+    // Retakes one section, called by CombatCache whenever its engine list may have changed
+    void rebuild(int section, List<? extends CombatEntityAPI> list)
+    {
+        sections[section].rebuild(list);
+        version++;
+    }
+
+    // Returns false if the section no longer matches its engine list, see PackedPositions.matches()
+    boolean matches(int section, List<? extends CombatEntityAPI> list)
+    {
+        return sections[section].matches(list);
+    }
+
+    int getVersion()
+    {
+        return version;
+    }
+
+    PackedPositions getSection(int section)
+    {
+        return sections[section];
+    }
+
+    void setFrameId(int frameId)
+    {
+        this.frameId = frameId;
+    }
+
+    /**
+     * Returns which frame this snapshot was taken on.
+     *
+     * @return An ID that changes every time the snapshot is retaken for a new frame. Only useful for comparing
+     *         against the ID of an earlier snapshot.
+     *
+     * @since 3.0b
+     */
+    public int getFrameId()
+    {
+        return frameId;
+    }
+
+    /**
+     * Returns whether this is a frozen copy of the snapshot, as given to {@link SnapshotExecutor} tasks.
+     *
+     * @return {@code true} if this snapshot will never change, {@code false} if it is the live snapshot returned by
+     *         {@link CombatUtils#getSnapshot()}, which is retaken every frame.
+     *
+     * @since 3.0b
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Returns how many entities are in a section of the snapshot.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return How many entries of that section's arrays are valid.
+     *
+     * @since 3.0b
+     */
+    public int size(int section)
+    {
+        return sections[section].size();
+    }
+
+    /**
+     * Returns the X coordinates of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of {@link CombatEntityAPI#getLocation()} X coordinates. Do not modify it.
+     *
+     * @since 3.0b
+     */
+    public float[] getX(int section)
+    {
+        return sections[section].xs;
+    }
+
+    /**
+     * Returns the Y coordinates of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of {@link CombatEntityAPI#getLocation()} Y coordinates. Do not modify it.
+     *
+     * @since 3.0b
+     */
+    public float[] getY(int section)
+    {
+        return sections[section].ys;
+    }
+
+    /**
+     * Returns the X velocity of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of {@link CombatEntityAPI#getVelocity()} X components. Do not modify it.
+     *
+     * @since 3.0b
+     */
+    public float[] getVelocityX(int section)
+    {
+        return sections[section].velXs;
+    }
+
+    /**
+     * Returns the Y velocity of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of {@link CombatEntityAPI#getVelocity()} Y components. Do not modify it.
+     *
+     * @since 3.0b
+     */
+    public float[] getVelocityY(int section)
+    {
+        return sections[section].velYs;
+    }
+
+    /**
+     * Returns the collision radius of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of {@link CombatEntityAPI#getCollisionRadius()} values. Do not modify it.
+     *
+     * @since 3.0b
+     */
+    public float[] getRadius(int section)
+    {
+        return sections[section].radii;
+    }
+
+    /**
+     * Returns the owner of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of {@link CombatEntityAPI#getOwner()} values. Do not modify it.
+     *
+     * @since 3.0b
+     */
+    public int[] getOwner(int section)
+    {
+        return sections[section].owners;
+    }
+
+    /**
+     * Returns the flags of every entity in a section.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     *
+     * @return The snapshot's array of flag bitmasks, built from the {@code FLAG_} constants in this class. Do not
+     *         modify it.
+     *
+     * @since 3.0b
+     */
+    public int[] getFlags(int section)
+    {
+        return sections[section].flags;
+    }
+
+    /**
+     * Returns the entity an entry of the snapshot was taken from.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     * @param index   The index of the entry in that section's arrays.
+     *
+     * @return The live entity. Its current state may differ from the snapshot if it was changed after the snapshot
+     *         was taken.
+     *
+     * @throws IllegalStateException If called from a {@link SnapshotExecutor} task, as entities must only be used
+     *                               on the game thread.
+     * @since 3.0b
+     */
+    public CombatEntityAPI getEntity(int section, int index)
+    {
+        if (SnapshotExecutor.isWorkerThread())
+        {
+            throw new IllegalStateException("Entities can't be used outside of the game thread!");
+        }
+
+        if (index < 0 || index >= sections[section].size())
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + sections[section].size());
+        }
+
+        return sections[section].entities[index];
+    }
+
+    /**
+     * Checks if an entry of the snapshot has all of the given flags set.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     * @param index   The index of the entry in that section's arrays.
+     * @param flags   One or more of the {@code FLAG_} constants in this class, combined with {@code |}.
+     *
+     * @return {@code true} if every flag in {@code flags} is set for that entry, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean hasFlags(int section, int index, int flags)
+    {
+        return (sections[section].flags[index] & flags) == flags;
+    }
+
+    /**
+     * Finds every entity in a section that is within range of a location, taking collision radius into account
+     * the same way as {@link org.lazywizard.lazylib.MathUtils#isWithinRange(CombatEntityAPI,
+     * org.lwjgl.util.vector.Vector2f, float)}.
+     *
+     * @param section {@link #SHIPS}, {@link #MISSILES}, {@link #PROJECTILES} or {@link #ASTEROIDS}.
+     * @param x       The X coordinate of the location to search around.
+     * @param y       The Y coordinate of the location to search around.
+     * @param range   How far around the location to search.
+     * @param dest    The array the indices of the entities in range will be stored in, in ascending order. Must
+     *                be able to hold {@link #size(int)} entries.
+     *
+     * @return How many entities were in range, i.e. how many entries of {@code dest} were filled.
+     *
+     * @since 3.0b
+     */
+    public int getWithinRange(int section, float x, float y, float range, int[] dest)
+    {
+        final PackedPositions data = sections[section];
+        return BatchMathUtils.getIndicesWithinRange(x, y, range, data.xs, data.ys, data.radii, data.size(), dest);
+    }
+}
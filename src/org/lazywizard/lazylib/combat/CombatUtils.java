@@ -8,7 +8,12 @@ import com.fs.starfarer.api.mission.FleetSide;
 import com.fs.starfarer.api.util.Misc;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.CollectionUtils;
+import org.lazywizard.lazylib.CollisionUtils;
+import org.lazywizard.lazylib.Instrumentation;
+import org.lazywizard.lazylib.LazyLib;
 import org.lazywizard.lazylib.MathUtils;
+import org.lazywizard.lazylib.SweptCollision;
 import org.lazywizard.lazylib.VectorUtils;
 import org.lwjgl.util.vector.Vector2f;
 
@@ -27,6 +32,29 @@ import java.util.*;
 public class CombatUtils
 {
     private static final Logger Log = Global.getLogger(CombatUtils.class);
+    // How much of a ray cast's line is checked against the collision grid at once
+    private static final float RAY_CAST_CHUNK_LENGTH = 500f;
+    // Reused by getSweptCollision() to avoid allocating memory for its grid searches
+    private static final Vector2f sweepSearchCenter = new Vector2f();
+    // Record the cost of each search while instrumentation is enabled in lazylib_settings.json
+    private static final Instrumentation.Probe projectilesWithinRangeProbe =
+            new Instrumentation.Probe("CombatUtils.getProjectilesWithinRange");
+    private static final Instrumentation.Probe missilesWithinRangeProbe =
+            new Instrumentation.Probe("CombatUtils.getMissilesWithinRange");
+    private static final Instrumentation.Probe shipsWithinRangeProbe =
+            new Instrumentation.Probe("CombatUtils.getShipsWithinRange");
+    private static final Instrumentation.Probe asteroidsWithinRangeProbe =
+            new Instrumentation.Probe("CombatUtils.getAsteroidsWithinRange");
+    private static final Instrumentation.Probe objectivesWithinRangeProbe =
+            new Instrumentation.Probe("CombatUtils.getObjectivesWithinRange");
+    private static final Instrumentation.Probe entitiesWithinRangeProbe =
+            new Instrumentation.Probe("CombatUtils.getEntitiesWithinRange");
+    private static final Instrumentation.Probe entitiesInConeProbe =
+            new Instrumentation.Probe("CombatUtils.getEntitiesInCone");
+    private static final Instrumentation.Probe rayCastProbe =
+            new Instrumentation.Probe("CombatUtils.rayCast");
+    private static final Instrumentation.Probe sweptCollisionProbe =
+            new Instrumentation.Probe("CombatUtils.getSweptCollision");
 
     /**
      * Find a {@link ShipAPI}'s corresponding {@link FleetMemberAPI}. Due to the
@@ -168,6 +196,28 @@ public class CombatUtils
         return fog.isVisible(entity.getLocation());
     }
 
+    /**
+     * Returns a copy of the position, velocity, collision radius, owner and status of every ship, missile,
+     * projectile and asteroid in combat, packed into parallel arrays for fast batch processing. The snapshot is
+     * shared by all callers (including LazyLib's own range queries) for the rest of the frame. Each section is
+     * taken the first time it's needed each frame, and retaken by this method if its engine list has changed.
+     *
+     * @return The current frame's {@link CombatSnapshot}, or {@code null} if LazyLib's caching is disabled.
+     *
+     * @see LazyLib#isCachingEnabled()
+     * @since 3.0b
+     */
+    @Nullable
+    public static CombatSnapshot getSnapshot()
+    {
+        if (!LazyLib.isCachingEnabled())
+        {
+            return null;
+        }
+
+        return CombatCache.getSnapshot();
+    }
+
     /**
      * Returns all projectiles in range of a given location, excluding missiles.
      *
@@ -181,22 +231,81 @@ public class CombatUtils
      */
     public static List<DamagingProjectileAPI> getProjectilesWithinRange(Vector2f location, float range)
     {
-        List<DamagingProjectileAPI> projectiles = new ArrayList<>();
+        final List<DamagingProjectileAPI> projectiles = new ArrayList<>();
+        findProjectilesWithinRange(location, range, projectiles, null);
+        return projectiles;
+    }
+
+    /**
+     * Adds all projectiles in range of a given location, excluding missiles,
+     * to an existing {@link List}. This avoids allocating a new {@link List}
+     * for every search.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param results  The {@link List} that projectiles within range will be
+     *                 added to.
+     *
+     * @see #getProjectilesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getProjectilesWithinRange(Vector2f location, float range,
+                                                 List<? super DamagingProjectileAPI> results)
+    {
+        findProjectilesWithinRange(location, range, results, null);
+    }
+
+    /**
+     * Passes all projectiles in range of a given location, excluding missiles,
+     * to an {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param visitor  The {@link EntityVisitor} that will be called for each
+     *                 projectile within range.
+     *
+     * @see #getProjectilesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getProjectilesWithinRange(Vector2f location, float range,
+                                                 EntityVisitor<? super DamagingProjectileAPI> visitor)
+    {
+        findProjectilesWithinRange(location, range, null, visitor);
+    }
+
+    private static boolean findProjectilesWithinRange(Vector2f location, float range,
+                                                      @Nullable List<? super DamagingProjectileAPI> results,
+                                                      @Nullable EntityVisitor<? super DamagingProjectileAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchProjectilesWithinRange(location, range, results, visitor);
+        Instrumentation.end(projectilesWithinRangeProbe, call);
+        return finished;
+    }
 
-        for (DamagingProjectileAPI tmp : Global.getCombatEngine().getProjectiles())
+    private static boolean searchProjectilesWithinRange(Vector2f location, float range,
+                                                        @Nullable List<? super DamagingProjectileAPI> results,
+                                                        @Nullable EntityVisitor<? super DamagingProjectileAPI> visitor)
+    {
+        // Projectiles are only tested against their center, so the engine's grid needs no padding
+        for (Iterator iter = Global.getCombatEngine().getAllObjectGrid().getCheckIterator(
+                location, range * 2f, range * 2f); iter.hasNext(); )
         {
-            if (tmp instanceof MissileAPI)
+            final Object obj = iter.next();
+            if (!(obj instanceof DamagingProjectileAPI) || obj instanceof MissileAPI)
             {
                 continue;
             }
 
-            if (MathUtils.isWithinRange(tmp.getLocation(), location, range))
+            final DamagingProjectileAPI tmp = (DamagingProjectileAPI) obj;
+            if (MathUtils.isWithinRange(tmp.getLocation(), location, range)
+                    && !collect(tmp, results, visitor))
             {
-                projectiles.add(tmp);
+                return false;
             }
         }
 
-        return projectiles;
+        return true;
     }
 
     /**
@@ -212,19 +321,73 @@ public class CombatUtils
      */
     public static List<MissileAPI> getMissilesWithinRange(Vector2f location, float range)
     {
-        List<MissileAPI> missiles = new ArrayList<>();
+        final List<MissileAPI> missiles = new ArrayList<>();
+        findMissilesWithinRange(location, range, missiles, null);
+        return missiles;
+    }
+
+    /**
+     * Adds all missiles in range of a given location to an existing
+     * {@link List}. This avoids allocating a new {@link List} for every search.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param results  The {@link List} that missiles within range will be
+     *                 added to.
+     *
+     * @see #getMissilesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getMissilesWithinRange(Vector2f location, float range,
+                                              List<? super MissileAPI> results)
+    {
+        findMissilesWithinRange(location, range, results, null);
+    }
+
+    /**
+     * Passes all missiles in range of a given location to an
+     * {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param visitor  The {@link EntityVisitor} that will be called for each
+     *                 missile within range.
+     *
+     * @see #getMissilesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getMissilesWithinRange(Vector2f location, float range,
+                                              EntityVisitor<? super MissileAPI> visitor)
+    {
+        findMissilesWithinRange(location, range, null, visitor);
+    }
+
+    private static boolean findMissilesWithinRange(Vector2f location, float range,
+                                                   @Nullable List<? super MissileAPI> results,
+                                                   @Nullable EntityVisitor<? super MissileAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchMissilesWithinRange(location, range, results, visitor);
+        Instrumentation.end(missilesWithinRangeProbe, call);
+        return finished;
+    }
 
+    private static boolean searchMissilesWithinRange(Vector2f location, float range,
+                                                     @Nullable List<? super MissileAPI> results,
+                                                     @Nullable EntityVisitor<? super MissileAPI> visitor)
+    {
         for (Iterator iter = Global.getCombatEngine().getMissileGrid().getCheckIterator(
                 location, range * 2f, range * 2f); iter.hasNext(); )
         {
             MissileAPI tmp = (MissileAPI) iter.next();
-            if (MathUtils.isWithinRange(tmp.getLocation(), location, range))
+            if (MathUtils.isWithinRange(tmp.getLocation(), location, range)
+                    && !collect(tmp, results, visitor))
             {
-                missiles.add(tmp);
+                return false;
             }
         }
 
-        return missiles;
+        return true;
     }
 
     /**
@@ -241,22 +404,112 @@ public class CombatUtils
      */
     public static List<ShipAPI> getShipsWithinRange(Vector2f location, float range)
     {
-        List<ShipAPI> ships = new ArrayList<>();
+        final List<ShipAPI> ships = new ArrayList<>();
+        findShipsWithinRange(location, range, false, ships, null);
+        return ships;
+    }
+
+    /**
+     * Adds all ships in range of a given location, excluding the shuttle pod,
+     * to an existing {@link List}. This avoids allocating a new {@link List}
+     * for every search.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param results  The {@link List} that ships within range will be added
+     *                 to.
+     *
+     * @see #getShipsWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getShipsWithinRange(Vector2f location, float range,
+                                           List<? super ShipAPI> results)
+    {
+        findShipsWithinRange(location, range, false, results, null);
+    }
+
+    /**
+     * Passes all ships in range of a given location, excluding the shuttle
+     * pod, to an {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param visitor  The {@link EntityVisitor} that will be called for each
+     *                 ship within range.
+     *
+     * @see #getShipsWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getShipsWithinRange(Vector2f location, float range,
+                                           EntityVisitor<? super ShipAPI> visitor)
+    {
+        findShipsWithinRange(location, range, false, null, visitor);
+    }
 
-        for (ShipAPI tmp : Global.getCombatEngine().getShips())
+    private static boolean findShipsWithinRange(Vector2f location, float range, boolean includeShuttlePods,
+                                                @Nullable List<? super ShipAPI> results,
+                                                @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchShipsWithinRange(location, range, includeShuttlePods, results, visitor);
+        Instrumentation.end(shipsWithinRangeProbe, call);
+        return finished;
+    }
+
+    private static boolean searchShipsWithinRange(Vector2f location, float range, boolean includeShuttlePods,
+                                                  @Nullable List<? super ShipAPI> results,
+                                                  @Nullable EntityVisitor<? super ShipAPI> visitor)
+    {
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+
+        // Only test ships in nearby cells of the per-frame ship grid, using the per-frame snapshot of their state
+        if (LazyLib.isCachingEnabled())
+        {
+            final CombatSnapshot snapshot = CombatCache.getSnapshot(CombatSnapshot.SHIPS);
+            final float[] xs = snapshot.getX(CombatSnapshot.SHIPS), ys = snapshot.getY(CombatSnapshot.SHIPS),
+                    radii = snapshot.getRadius(CombatSnapshot.SHIPS);
+            final int[] flags = snapshot.getFlags(CombatSnapshot.SHIPS);
+            final int ignoredFlags = (includeShuttlePods ? 0 : CombatSnapshot.FLAG_SHUTTLE_POD);
+            final SpatialHash grid = CombatCache.getShipGrid();
+            final int start = grid.query(location.x, location.y, range);
+            try
+            {
+                for (int i = start, end = grid.getQueryEnd(); i < end; i++)
+                {
+                    final int index = grid.getResult(i);
+                    if ((flags[index] & ignoredFlags) == 0
+                            && MathUtils.isWithinRange(xs[index], ys[index], location.x, location.y,
+                            range + radii[index])
+                            && !collect((ShipAPI) snapshot.getEntity(CombatSnapshot.SHIPS, index), results, visitor))
+                    {
+                        return false;
+                    }
+                }
+            }
+            finally
+            {
+                grid.release(start);
+            }
+
+            return true;
+        }
+
+        for (int i = 0; i < ships.size(); i++)
         {
-            if (tmp.isShuttlePod())
+            final ShipAPI tmp = ships.get(i);
+            if (!includeShuttlePods && tmp.isShuttlePod())
             {
                 continue;
             }
 
-            if (MathUtils.isWithinRange(tmp, location, range))
+            if (MathUtils.isWithinRange(tmp, location, range)
+                    && !collect(tmp, results, visitor))
             {
-                ships.add(tmp);
+                return false;
             }
         }
 
-        return ships;
+        return true;
     }
 
     /**
@@ -271,19 +524,83 @@ public class CombatUtils
      */
     public static List<CombatEntityAPI> getAsteroidsWithinRange(Vector2f location, float range)
     {
-        List<CombatEntityAPI> asteroids = new ArrayList<>();
+        final List<CombatEntityAPI> asteroids = new ArrayList<>();
+        findAsteroidsWithinRange(location, range, asteroids, null);
+        return asteroids;
+    }
+
+    /**
+     * Adds all asteroids in range of a given location to an existing
+     * {@link List}. This avoids allocating a new {@link List} for every search.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param results  The {@link List} that asteroids within range will be
+     *                 added to.
+     *
+     * @see #getAsteroidsWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getAsteroidsWithinRange(Vector2f location, float range,
+                                               List<? super CombatEntityAPI> results)
+    {
+        findAsteroidsWithinRange(location, range, results, null);
+    }
+
+    /**
+     * Passes all asteroids in range of a given location to an
+     * {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param visitor  The {@link EntityVisitor} that will be called for each
+     *                 asteroid within range.
+     *
+     * @see #getAsteroidsWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getAsteroidsWithinRange(Vector2f location, float range,
+                                               EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        findAsteroidsWithinRange(location, range, null, visitor);
+    }
+
+    private static boolean findAsteroidsWithinRange(Vector2f location, float range,
+                                                    @Nullable List<? super CombatEntityAPI> results,
+                                                    @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchAsteroidsWithinRange(location, range, results, visitor);
+        Instrumentation.end(asteroidsWithinRangeProbe, call);
+        return finished;
+    }
 
+    private static boolean searchAsteroidsWithinRange(Vector2f location, float range,
+                                                      @Nullable List<? super CombatEntityAPI> results,
+                                                      @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        // Asteroids only use the snapshot while it's worth keeping their section up to date this frame
+        final CombatSnapshot snapshot = (LazyLib.isCachingEnabled()
+                ? CombatCache.getSnapshot(CombatSnapshot.ASTEROIDS) : null);
+        if (snapshot != null)
+        {
+            return findInSnapshot(snapshot, CombatSnapshot.ASTEROIDS, location, range, results, visitor);
+        }
+
+        // The search area is padded so that asteroids whose collision radius reaches into range are never missed
+        final float searchSize = (range + CombatCache.getMaxRadius(CombatSnapshot.ASTEROIDS)) * 2f;
         for (Iterator iter = Global.getCombatEngine().getAsteroidGrid().getCheckIterator(
-                location, range * 2f + 100f, range * 2f + 100f); iter.hasNext(); )
+                location, searchSize, searchSize); iter.hasNext(); )
         {
             CombatEntityAPI tmp = (CombatEntityAPI) iter.next();
-            if (MathUtils.isWithinRange(tmp, location, range))
+            if (MathUtils.isWithinRange(tmp, location, range)
+                    && !collect(tmp, results, visitor))
             {
-                asteroids.add(tmp);
+                return false;
             }
         }
 
-        return asteroids;
+        return true;
     }
 
     /**
@@ -300,17 +617,73 @@ public class CombatUtils
     public static List<BattleObjectiveAPI> getObjectivesWithinRange(Vector2f location,
                                                                     float range)
     {
-        List<BattleObjectiveAPI> objectives = new ArrayList<>();
+        final List<BattleObjectiveAPI> objectives = new ArrayList<>();
+        findObjectivesWithinRange(location, range, objectives, null);
+        return objectives;
+    }
 
-        for (BattleObjectiveAPI tmp : Global.getCombatEngine().getObjectives())
+    /**
+     * Adds all objectives in range of a given location to an existing
+     * {@link List}. This avoids allocating a new {@link List} for every search.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param results  The {@link List} that objectives within range will be
+     *                 added to.
+     *
+     * @see #getObjectivesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getObjectivesWithinRange(Vector2f location, float range,
+                                                List<? super BattleObjectiveAPI> results)
+    {
+        findObjectivesWithinRange(location, range, results, null);
+    }
+
+    /**
+     * Passes all objectives in range of a given location to an
+     * {@link EntityVisitor}. No {@link List} is created.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param visitor  The {@link EntityVisitor} that will be called for each
+     *                 objective within range.
+     *
+     * @see #getObjectivesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getObjectivesWithinRange(Vector2f location, float range,
+                                                EntityVisitor<? super BattleObjectiveAPI> visitor)
+    {
+        findObjectivesWithinRange(location, range, null, visitor);
+    }
+
+    private static boolean findObjectivesWithinRange(Vector2f location, float range,
+                                                     @Nullable List<? super BattleObjectiveAPI> results,
+                                                     @Nullable EntityVisitor<? super BattleObjectiveAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchObjectivesWithinRange(location, range, results, visitor);
+        Instrumentation.end(objectivesWithinRangeProbe, call);
+        return finished;
+    }
+
+    private static boolean searchObjectivesWithinRange(Vector2f location, float range,
+                                                       @Nullable List<? super BattleObjectiveAPI> results,
+                                                       @Nullable EntityVisitor<? super BattleObjectiveAPI> visitor)
+    {
+        final List<BattleObjectiveAPI> objectives = Global.getCombatEngine().getObjectives();
+        for (int i = 0; i < objectives.size(); i++)
         {
-            if (MathUtils.isWithinRange(tmp.getLocation(), location, range))
+            final BattleObjectiveAPI tmp = objectives.get(i);
+            if (MathUtils.isWithinRange(tmp.getLocation(), location, range)
+                    && !collect(tmp, results, visitor))
             {
-                objectives.add(tmp);
+                return false;
             }
         }
 
-        return objectives;
+        return true;
     }
 
     /**
@@ -325,37 +698,513 @@ public class CombatUtils
      */
     public static List<CombatEntityAPI> getEntitiesWithinRange(Vector2f location, float range)
     {
-        List<CombatEntityAPI> entities = new ArrayList<>();
-        CombatEntityAPI tmp;
+        final List<CombatEntityAPI> entities = new ArrayList<>();
+        findEntitiesWithinRange(location, range, entities, null);
+        return entities;
+    }
 
-        for (ShipAPI ship : Global.getCombatEngine().getShips())
+    /**
+     * Adds all entities in range of a given location to an existing {@link List}. This includes ships, projectiles,
+     * missiles, and asteroids. This avoids allocating a new {@link List} for every search.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param results  The {@link List} that entities within range will be added to.
+     *
+     * @see #getEntitiesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getEntitiesWithinRange(Vector2f location, float range,
+                                              List<? super CombatEntityAPI> results)
+    {
+        findEntitiesWithinRange(location, range, results, null);
+    }
+
+    /**
+     * Passes all entities in range of a given location to an {@link EntityVisitor}. This includes ships,
+     * projectiles, missiles, and asteroids. No {@link List} is created.
+     *
+     * @param location The location to search around.
+     * @param range    How far around {@code location} to search.
+     * @param visitor  The {@link EntityVisitor} that will be called for each entity within range.
+     *
+     * @see #getEntitiesWithinRange(Vector2f, float)
+     * @since 3.0b
+     */
+    public static void getEntitiesWithinRange(Vector2f location, float range,
+                                              EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        findEntitiesWithinRange(location, range, null, visitor);
+    }
+
+    private static boolean findEntitiesWithinRange(Vector2f location, float range,
+                                                   @Nullable List<? super CombatEntityAPI> results,
+                                                   @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = searchEntitiesWithinRange(location, range, results, visitor);
+        Instrumentation.end(entitiesWithinRangeProbe, call);
+        return finished;
+    }
+
+    private static boolean searchEntitiesWithinRange(Vector2f location, float range,
+                                                     @Nullable List<? super CombatEntityAPI> results,
+                                                     @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        if (!findShipsWithinRange(location, range, true, results, visitor))
         {
-            if (MathUtils.isWithinRange(ship, location, range))
+            return false;
+        }
+
+        // With caching on, projectiles (including missiles) are found using a grid of the per-frame snapshot,
+        // and are returned in the same order as CombatEngineAPI.getProjectiles()
+        final CombatSnapshot snapshot = (LazyLib.isCachingEnabled()
+                ? CombatCache.getSnapshot(CombatSnapshot.PROJECTILES) : null);
+        if (snapshot != null)
+        {
+            return findInSnapshot(snapshot, CombatSnapshot.PROJECTILES, location, range, results, visitor)
+                    && findAsteroidsWithinRange(location, range, results, visitor);
+        }
+
+        // Otherwise (without caching, or if projectiles have changed too often this frame to retake them) they
+        // are found using the engine's all-object grid. The search area is padded by the largest projectile's
+        // collision radius, so projectiles that only reach into range with their radius are never missed
+        final float searchSize = (range + CombatCache.getMaxRadius(CombatSnapshot.PROJECTILES)) * 2f;
+        for (Iterator iter = Global.getCombatEngine().getAllObjectGrid().getCheckIterator(
+                location, searchSize, searchSize); iter.hasNext(); )
+        {
+            final Object obj = iter.next();
+            if (!(obj instanceof DamagingProjectileAPI))
+            {
+                continue;
+            }
+
+            final DamagingProjectileAPI proj = (DamagingProjectileAPI) obj;
+            if (MathUtils.isWithinRange(proj, location, range)
+                    && !collect(proj, results, visitor))
             {
-                entities.add(ship);
+                return false;
             }
         }
 
-        // This also includes missiles
-        for (CombatEntityAPI proj : Global.getCombatEngine().getProjectiles())
+        return findAsteroidsWithinRange(location, range, results, visitor);
+    }
+
+    // Searches a grid of one section of the per-frame snapshot, results are in engine list order
+    private static boolean findInSnapshot(CombatSnapshot snapshot, int section, Vector2f location, float range,
+                                          @Nullable List<? super CombatEntityAPI> results,
+                                          @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        final float[] xs = snapshot.getX(section), ys = snapshot.getY(section), radii = snapshot.getRadius(section);
+        final SpatialHash grid = CombatCache.getSectionGrid(section);
+        final int start = grid.query(location.x, location.y, range);
+        try
         {
-            if (MathUtils.isWithinRange(proj, location, range))
+            for (int i = start, end = grid.getQueryEnd(); i < end; i++)
             {
-                entities.add(proj);
+                final int index = grid.getResult(i);
+                if (MathUtils.isWithinRange(xs[index], ys[index], location.x, location.y, range + radii[index])
+                        && !collect(snapshot.getEntity(section, index), results, visitor))
+                {
+                    return false;
+                }
             }
         }
+        finally
+        {
+            grid.release(start);
+        }
 
-        for (Iterator iter = Global.getCombatEngine().getAsteroidGrid().getCheckIterator(
-                location, range * 2f + 100f, range * 2f + 100f); iter.hasNext(); )
+        return true;
+    }
+
+    /**
+     * Returns all entities inside a cone (a circular sector) that starts at a given location. This includes ships,
+     * missiles, and asteroids. Entities that are only partially inside the cone are included, as their collision
+     * radius is taken into account.
+     *
+     * @param apex      The point of the cone.
+     * @param facing    The direction the cone faces, in degrees.
+     * @param halfAngle How far the cone extends on either side of {@code facing}, in degrees. A {@code halfAngle}
+     *                  of 180 or more searches a full circle.
+     * @param range     How far from {@code apex} the cone reaches.
+     *
+     * @return A {@link List} of {@link CombatEntityAPI}s inside the cone.
+     *
+     * @since 3.0b
+     */
+    public static List<CombatEntityAPI> getEntitiesInCone(Vector2f apex, float facing, float halfAngle, float range)
+    {
+        final List<CombatEntityAPI> entities = new ArrayList<>();
+        findEntitiesInCone(apex, facing, halfAngle, range, entities, null);
+        return entities;
+    }
+
+    /**
+     * Adds all entities inside a cone (a circular sector) to an existing {@link List}. This includes ships,
+     * missiles, and asteroids. This avoids allocating a new {@link List} for every search.
+     *
+     * @param apex      The point of the cone.
+     * @param facing    The direction the cone faces, in degrees.
+     * @param halfAngle How far the cone extends on either side of {@code facing}, in degrees.
+     * @param range     How far from {@code apex} the cone reaches.
+     * @param results   The {@link List} that entities inside the cone will be added to.
+     *
+     * @see #getEntitiesInCone(Vector2f, float, float, float)
+     * @since 3.0b
+     */
+    public static void getEntitiesInCone(Vector2f apex, float facing, float halfAngle, float range,
+                                         List<? super CombatEntityAPI> results)
+    {
+        findEntitiesInCone(apex, facing, halfAngle, range, results, null);
+    }
+
+    /**
+     * Passes all entities inside a cone (a circular sector) to an {@link EntityVisitor}. This includes ships,
+     * missiles, and asteroids. No {@link List} is created.
+     *
+     * @param apex      The point of the cone.
+     * @param facing    The direction the cone faces, in degrees.
+     * @param halfAngle How far the cone extends on either side of {@code facing}, in degrees.
+     * @param range     How far from {@code apex} the cone reaches.
+     * @param visitor   The {@link EntityVisitor} that will be called for each entity inside the cone.
+     *
+     * @see #getEntitiesInCone(Vector2f, float, float, float)
+     * @since 3.0b
+     */
+    public static void getEntitiesInCone(Vector2f apex, float facing, float halfAngle, float range,
+                                         EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        findEntitiesInCone(apex, facing, halfAngle, range, null, visitor);
+    }
+
+    private static boolean findEntitiesInCone(Vector2f apex, float facing, float halfAngle, float range,
+                                              @Nullable List<? super CombatEntityAPI> results,
+                                              @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+    {
+        final int call = Instrumentation.start();
+        final ConeSearch inCone = new ConeSearch(new Cone(apex.x, apex.y, facing, halfAngle, range),
+                results, visitor);
+        final boolean finished = searchEntitiesInCone(apex, range, inCone);
+
+        // The range searches count everything they find, so the cone keeps its own count of what it accepted
+        Instrumentation.end(entitiesInConeProbe, call, inCone.numFound);
+        return finished;
+    }
+
+    private static boolean searchEntitiesInCone(Vector2f apex, float range, ConeSearch inCone)
+    {
+        // The range searches do the broadphase, the cone only has to test what they find. They're called directly
+        // rather than through their instrumented wrappers so their own probes only record callers' searches
+        if (!searchShipsWithinRange(apex, range, true, null, inCone))
+        {
+            return false;
+        }
+
+        // The missile grid only tracks centers, and the cone test includes each missile's collision radius
+        final float searchSize = (range + CombatCache.getMaxRadius(CombatSnapshot.MISSILES)) * 2f;
+        for (Iterator iter = Global.getCombatEngine().getMissileGrid().getCheckIterator(
+                apex, searchSize, searchSize); iter.hasNext(); )
         {
-            tmp = (CombatEntityAPI) iter.next();
-            if (MathUtils.isWithinRange(tmp, location, range))
+            if (!inCone.visit((MissileAPI) iter.next()))
             {
-                entities.add(tmp);
+                return false;
             }
         }
 
-        return entities;
+        return searchAsteroidsWithinRange(apex, range, null, inCone);
+    }
+
+    /**
+     * Finds the first entity hit by a line, such as a beam or a line of sight check. Ships, missiles, projectiles
+     * and asteroids are tested against their exact bounds, or their collision circle if they lack bounds.
+     * <p>
+     * Only entities near the line are checked. The line is walked from start to end through the engine's collision
+     * grid, and the search stops as soon as a hit is found that nothing further along the line could beat.
+     *
+     * @param start  The start of the line.
+     * @param end    The end of the line.
+     * @param filter Decides which entities can be hit. If {@code null}, every entity can be hit.
+     *
+     * @return A {@link RayCastResult} describing the first hit, or {@code null} if nothing was hit.
+     *
+     * @see #rayCast(Vector2f, Vector2f, CollectionUtils.CollectionFilter, RayCastResult)
+     * @since 3.0b
+     */
+    @Nullable
+    public static RayCastResult rayCast(Vector2f start, Vector2f end,
+                                        @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter)
+    {
+        final RayCastResult result = new RayCastResult();
+        return (rayCast(start, end, filter, result) ? result : null);
+    }
+
+    /**
+     * Finds the first entity hit by a line, storing the result in an existing {@link RayCastResult}. Reusing the
+     * same result for every ray cast avoids allocating any memory for the results.
+     *
+     * @param start  The start of the line.
+     * @param end    The end of the line.
+     * @param filter Decides which entities can be hit. If {@code null}, every entity can be hit.
+     * @param result Where the first hit will be stored. Cleared if nothing is hit.
+     *
+     * @return {@code true} if anything was hit, {@code false} otherwise.
+     *
+     * @see #rayCast(Vector2f, Vector2f, CollectionUtils.CollectionFilter)
+     * @since 3.0b
+     */
+    public static boolean rayCast(Vector2f start, Vector2f end,
+                                  @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter,
+                                  RayCastResult result)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = findFirstHit(start, end, filter, result);
+        Instrumentation.end(rayCastProbe, call, (finished ? 1 : 0));
+        return finished;
+    }
+
+    private static boolean findFirstHit(Vector2f start, Vector2f end,
+                                        @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter,
+                                        RayCastResult result)
+    {
+        result.clear();
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        final CollisionGridAPI grid = engine.getAllObjectGrid();
+        final float dx = end.x - start.x, dy = end.y - start.y,
+                length = (float) Math.sqrt(dx * dx + dy * dy);
+        final int numChunks = Math.max(1, (int) Math.ceil(length / RAY_CAST_CHUNK_LENGTH));
+        final float padding = getNonShipGridPadding();
+        final Vector2f chunkStart = new Vector2f(start), chunkEnd = new Vector2f(),
+                chunkCenter = new Vector2f(), hit = new Vector2f();
+
+        // Walk the line in chunks, only checking entities in grid cells that chunk passes through
+        for (int chunk = 1; chunk <= numChunks; chunk++)
+        {
+            final float fraction = (float) chunk / numChunks;
+            chunkEnd.set(start.x + dx * fraction, start.y + dy * fraction);
+            chunkCenter.set((chunkStart.x + chunkEnd.x) * 0.5f, (chunkStart.y + chunkEnd.y) * 0.5f);
+            final float width = Math.abs(chunkEnd.x - chunkStart.x) + padding * 2f,
+                    height = Math.abs(chunkEnd.y - chunkStart.y) + padding * 2f;
+
+            for (Iterator iter = grid.getCheckIterator(chunkCenter, width, height); iter.hasNext(); )
+            {
+                final Object obj = iter.next();
+                if (obj instanceof CombatEntityAPI && !(obj instanceof ShipAPI))
+                {
+                    checkRayHit((CombatEntityAPI) obj, start, end, chunkStart, chunkEnd, filter, result, hit);
+                }
+            }
+
+            // Ships can be far larger than the grid's padding, so they're found using the per-frame ship grid
+            // (which accounts for every ship's collision radius), or checked directly without caching
+            if (LazyLib.isCachingEnabled())
+            {
+                final CombatSnapshot snapshot = CombatCache.getSnapshot(CombatSnapshot.SHIPS);
+                final SpatialHash ships = CombatCache.getShipGrid();
+                final int first = ships.query(chunkCenter.x, chunkCenter.y, length / numChunks * 0.5f);
+                try
+                {
+                    for (int i = first, last = ships.getQueryEnd(); i < last; i++)
+                    {
+                        checkRayHit(snapshot.getEntity(CombatSnapshot.SHIPS, ships.getResult(i)),
+                                start, end, chunkStart, chunkEnd, filter, result, hit);
+                    }
+                }
+                finally
+                {
+                    ships.release(first);
+                }
+            }
+            else
+            {
+                final List<ShipAPI> ships = engine.getShips();
+                for (int i = 0; i < ships.size(); i++)
+                {
+                    checkRayHit(ships.get(i), start, end, chunkStart, chunkEnd, filter, result, hit);
+                }
+            }
+
+            // Any entity hit earlier along the line than this would have been found in this chunk or an earlier one
+            if (result.getDistance() <= length * fraction)
+            {
+                return true;
+            }
+
+            chunkStart.set(chunkEnd);
+        }
+
+        return result.hasHit();
+    }
+
+    // Stores an entity in result if the line hits it closer to its start than the best hit found so far
+    private static void checkRayHit(CombatEntityAPI entity, Vector2f start, Vector2f end,
+                                    Vector2f chunkStart, Vector2f chunkEnd,
+                                    @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter,
+                                    RayCastResult result, Vector2f hit)
+    {
+        // Cheap circle test against this chunk before testing the entity's exact bounds
+        if (entity == result.getEntity()
+                || !CollisionUtils.getCollides(chunkStart, chunkEnd,
+                entity.getLocation(), entity.getCollisionRadius())
+                || (filter != null && !filter.accept(entity))
+                || !CollisionUtils.getCollisionPoint(start, end, entity, hit))
+        {
+            return;
+        }
+
+        final float distance = MathUtils.getDistance(start, hit);
+        if (distance < result.getDistance())
+        {
+            result.set(entity, hit, distance);
+        }
+    }
+
+    // How far outside a searched area the all-object grid has to look to find every projectile or asteroid that
+    // reaches into it. Ships are usually far larger, so searches that need them use the ship grid instead
+    private static float getNonShipGridPadding()
+    {
+        return Math.max(CombatCache.getMaxRadius(CombatSnapshot.PROJECTILES),
+                CombatCache.getMaxRadius(CombatSnapshot.ASTEROIDS));
+    }
+
+    /**
+     * Finds the first entity touched by a moving circle (or point) over a period of time, such as a projectile or
+     * fighter over a single frame. Ships, missiles, projectiles and asteroids are tested against their exact bounds,
+     * or their collision circle if they lack bounds, using
+     * {@link CollisionUtils#getSweptCollision(Vector2f, Vector2f, float, float, CombatEntityAPI, SweptCollision)}.
+     * Other entities are treated as stationary.
+     * <p>
+     * Only entities near the circle's path are checked. The path is walked through the engine's collision grid, and
+     * the search stops as soon as a contact is found that nothing further along the path could beat. Apart from the
+     * engine's own grid iterators, this method does not allocate any memory.
+     *
+     * @param position The center of the circle at the start of the sweep.
+     * @param velocity The velocity of the circle.
+     * @param radius   The radius of the circle. A radius of 0 tests a moving point.
+     * @param dt       How long the circle moves for, usually the frame's {@code amount}.
+     * @param filter   Decides which entities can be touched. If {@code null}, every entity can be touched. Use this
+     *                 to exclude the moving entity itself, if it is on the battle map.
+     * @param result   Where the first contact will be stored. Cleared if nothing is touched.
+     *
+     * @return {@code true} if anything was touched within {@code dt}, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public static boolean getSweptCollision(Vector2f position, Vector2f velocity, float radius, float dt,
+                                            @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter,
+                                            SweptCollision result)
+    {
+        final int call = Instrumentation.start();
+        final boolean finished = findFirstContact(position, velocity, radius, dt, filter, result);
+        Instrumentation.end(sweptCollisionProbe, call, (finished ? 1 : 0));
+        return finished;
+    }
+
+    private static boolean findFirstContact(Vector2f position, Vector2f velocity, float radius, float dt,
+                                            @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter,
+                                            SweptCollision result)
+    {
+        result.clear();
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        final CollisionGridAPI grid = engine.getAllObjectGrid();
+        final float dx = velocity.x * dt, dy = velocity.y * dt,
+                length = (float) Math.sqrt(dx * dx + dy * dy),
+                padding = (radius + getNonShipGridPadding()) * 2f;
+        final int numChunks = Math.max(1, (int) Math.ceil(length / RAY_CAST_CHUNK_LENGTH));
+
+        // Walk the path in chunks, only checking entities in grid cells near that chunk
+        for (int chunk = 1; chunk <= numChunks; chunk++)
+        {
+            final float chunkStart = (float) (chunk - 1) / numChunks, chunkEnd = (float) chunk / numChunks,
+                    startX = position.x + dx * chunkStart, startY = position.y + dy * chunkStart,
+                    endX = position.x + dx * chunkEnd, endY = position.y + dy * chunkEnd;
+            sweepSearchCenter.set((startX + endX) * 0.5f, (startY + endY) * 0.5f);
+            final float width = Math.abs(dx) / numChunks + padding,
+                    height = Math.abs(dy) / numChunks + padding;
+
+            for (Iterator iter = grid.getCheckIterator(sweepSearchCenter, width, height); iter.hasNext(); )
+            {
+                final Object obj = iter.next();
+                if (obj instanceof CombatEntityAPI && !(obj instanceof ShipAPI))
+                {
+                    checkSweptContact((CombatEntityAPI) obj, position, velocity, radius, dt,
+                            startX, startY, endX, endY, filter, result);
+                }
+            }
+
+            // Ships can be far larger than the grid's padding, so they're found the same way as in rayCast()
+            if (LazyLib.isCachingEnabled())
+            {
+                final CombatSnapshot snapshot = CombatCache.getSnapshot(CombatSnapshot.SHIPS);
+                final SpatialHash ships = CombatCache.getShipGrid();
+                final int first = ships.query(sweepSearchCenter.x, sweepSearchCenter.y,
+                        length / numChunks * 0.5f + radius);
+                try
+                {
+                    for (int i = first, last = ships.getQueryEnd(); i < last; i++)
+                    {
+                        checkSweptContact(snapshot.getEntity(CombatSnapshot.SHIPS, ships.getResult(i)),
+                                position, velocity, radius, dt, startX, startY, endX, endY, filter, result);
+                    }
+                }
+                finally
+                {
+                    ships.release(first);
+                }
+            }
+            else
+            {
+                final List<ShipAPI> ships = engine.getShips();
+                for (int i = 0; i < ships.size(); i++)
+                {
+                    checkSweptContact(ships.get(i), position, velocity, radius, dt,
+                            startX, startY, endX, endY, filter, result);
+                }
+            }
+
+            // Any entity touched earlier than this would have been found in this chunk or an earlier one
+            if (result.getTime() <= dt * chunkEnd)
+            {
+                return true;
+            }
+        }
+
+        return result.hasHit();
+    }
+
+    // Stores an entity in result if the circle touches it earlier than the best contact found so far
+    private static void checkSweptContact(CombatEntityAPI entity, Vector2f position, Vector2f velocity,
+                                          float radius, float dt, float chunkStartX, float chunkStartY,
+                                          float chunkEndX, float chunkEndY,
+                                          @Nullable CollectionUtils.CollectionFilter<? super CombatEntityAPI> filter,
+                                          SweptCollision result)
+    {
+        // Cheap circle test against this chunk before testing the entity's exact bounds; only contacts earlier
+        // than the best found so far will be stored in result
+        final Vector2f loc = entity.getLocation();
+        if (entity != result.getEntity()
+                && CollisionUtils.getCollides(chunkStartX, chunkStartY, chunkEndX, chunkEndY,
+                loc.x, loc.y, entity.getCollisionRadius() + radius)
+                && (filter == null || filter.accept(entity)))
+        {
+            CollisionUtils.getSweptCollision(position, velocity, radius,
+                    Math.min(dt, result.getTime()), entity, result);
+        }
+    }
+
+    // Used by every search method that supports both result lists and visitors
+    // Returns false if the visitor asked to stop searching
+    static <T> boolean collect(T entity, @Nullable List<? super T> results,
+                               @Nullable EntityVisitor<? super T> visitor)
+    {
+        Instrumentation.countResult();
+        if (visitor != null)
+        {
+            return visitor.visit(entity);
+        }
+
+        results.add(entity);
+        return true;
     }
 
     /**
@@ -497,4 +1346,35 @@ public class CombatUtils
     private CombatUtils()
     {
     }
+
+    // Passes on every entity inside a cone to the cone search's results or visitor
+    private static final class ConeSearch implements EntityVisitor<CombatEntityAPI>
+    {
+        private final Cone cone;
+        @Nullable
+        private final List<? super CombatEntityAPI> results;
+        @Nullable
+        private final EntityVisitor<? super CombatEntityAPI> visitor;
+        private int numFound = 0;
+
+        private ConeSearch(Cone cone, @Nullable List<? super CombatEntityAPI> results,
+                           @Nullable EntityVisitor<? super CombatEntityAPI> visitor)
+        {
+            this.cone = cone;
+            this.results = results;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public boolean visit(CombatEntityAPI entity)
+        {
+            if (!cone.intersects(entity))
+            {
+                return true;
+            }
+
+            numFound++;
+            return collect(entity, results, visitor);
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+
+/**
+ * A circular sector (a cone in 2D) with its direction and edges precomputed, so that testing a circle against it
+ * only takes dot and cross products. No angles are calculated per entity.
+ * <p>
+ * A circle touches the sector if it is within range of the apex, and either its center lies within the sector's
+ * angle or it is within its radius of whichever edge of the sector is on its side.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class Cone
+{
+    private final float apexX, apexY, range, dirX, dirY, cosHalfAngle;
+    // Unit vectors along the left (counter-clockwise) and right edges of the cone
+    private final float leftX, leftY, rightX, rightY;
+    private final boolean fullCircle;
+
+    Cone(float apexX, float apexY, float facing, float halfAngle, float range)
+    {
+        this.apexX = apexX;
+        this.apexY = apexY;
+        this.range = range;
+        fullCircle = (halfAngle >= 180f);
+
+        final double facingRad = Math.toRadians(facing), halfRad = Math.toRadians(Math.max(0f, halfAngle));
+        dirX = (float) Math.cos(facingRad);
+        dirY = (float) Math.sin(facingRad);
+        cosHalfAngle = (float) Math.cos(halfRad);
+        leftX = (float) Math.cos(facingRad + halfRad);
+        leftY = (float) Math.sin(facingRad + halfRad);
+        rightX = (float) Math.cos(facingRad - halfRad);
+        rightY = (float) Math.sin(facingRad - halfRad);
+    }
+
+    boolean intersects(CombatEntityAPI entity)
+    {
+        return intersects(entity.getLocation().x, entity.getLocation().y, entity.getCollisionRadius());
+    }
+
+    boolean intersects(float x, float y, float radius)
+    {
+        final float dx = x - apexX, dy = y - apexY, distanceSquared = dx * dx + dy * dy, maxRange = range + radius;
+        if (distanceSquared > maxRange * maxRange)
+        {
+            return false;
+        }
+
+        // Is the center inside the cone's angle? Squares are compared (keeping their sign) to avoid a square root
+        final float dot = dx * dirX + dy * dirY;
+        if (fullCircle || dot * Math.abs(dot) >= distanceSquared * cosHalfAngle * Math.abs(cosHalfAngle))
+        {
+            return true;
+        }
+
+        // Otherwise, check the distance to the edge on the same side as the circle
+        final boolean leftSide = (dirX * dy - dirY * dx) > 0f;
+        final float edgeX = (leftSide ? leftX : rightX), edgeY = (leftSide ? leftY : rightY);
+        final float along = Math.max(0f, Math.min(range, dx * edgeX + dy * edgeY));
+        final float offX = dx - edgeX * along, offY = dy - edgeY * along;
+        return (offX * offX + offY * offY) <= radius * radius;
+    }
+}
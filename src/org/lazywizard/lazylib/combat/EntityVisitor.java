@@ -0,0 +1,30 @@
+package org.lazywizard.lazylib.combat;
+
+/**
+ * Used with the visitor overloads of {@link CombatUtils} and {@link AIUtils}'s
+ * search methods to act on each result as it is found, instead of collecting
+ * them in a newly allocated {@link java.util.List}.
+ * <p>
+ * Results are passed to the visitor in no guaranteed order. If you keep a
+ * single instance of your visitor around instead of creating a new lambda for
+ * every search, these searches will not allocate any memory at all.
+ *
+ * @param <T> The type of entity being searched for.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public interface EntityVisitor<T>
+{
+    /**
+     * Called for every entity that matches a search.
+     *
+     * @param entity An entity that matched the search.
+     *
+     * @return {@code true} if the search should continue, {@code false} if
+     *         it should stop immediately.
+     *
+     * @since 3.0b
+     */
+    boolean visit(T entity);
+}
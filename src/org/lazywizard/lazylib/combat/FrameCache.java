@@ -0,0 +1,186 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.Global;
+import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.LazyLib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Remembers the result of an expensive combat query until the end of the
+ * current frame. Every {@link FrameCache} shares the same invalidation clock
+ * as LazyLib's own combat caches: results are discarded once the combat
+ * engine's elapsed time changes, the number of ships on the map changes, or a
+ * new battle starts.
+ * <p>
+ * A cache is meant to be created once and stored in a static field. The first
+ * time {@link #get(Object)} is called with a key during a frame, the cache's
+ * loader is run and its result stored; any further calls with that key during
+ * the same frame return the stored result without running the loader again.
+ * <p>
+ * Results are stored inside the combat engine itself, so nothing is kept
+ * alive after a battle ends. If caching is disabled in
+ * lazylib_settings.json, or if called outside of combat, the loader is run
+ * on every call.
+ * <p>
+ * Example usage:
+ * <pre>
+ * private static final FrameCache&lt;ShipAPI, Float&gt; THREAT =
+ *         new FrameCache&lt;&gt;("MyMod.threat", MyMod::calculateThreat);
+ *
+ * // Only calculated once per ship per frame, no matter how often it's called
+ * float threat = THREAT.get(ship);
+ * </pre>
+ *
+ * @param <K> The type of key used to look up results. Keys are compared using
+ *            {@link Object#equals(Object)}.
+ * @param <V> The type of result stored in this cache.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class FrameCache<K, V>
+{
+    private static final List<FrameCache<?, ?>> allCaches = new ArrayList<>();
+    // Stored in place of null results, so a cached null isn't mistaken for a cache miss
+    private static final Object NULL = new Object();
+    private final String name;
+    private final Function<? super K, ? extends V> loader;
+    private final int id;
+    private long hits = 0, misses = 0;
+
+    /**
+     * Creates a new frame-scoped cache.
+     *
+     * @param name   The name of this cache, used when reporting statistics.
+     *               Including your mod's name here is recommended.
+     * @param loader Calculates the result for a key whenever it isn't already
+     *               cached this frame.
+     *
+     * @since 3.0b
+     */
+    public FrameCache(String name, Function<? super K, ? extends V> loader)
+    {
+        this.name = name;
+        this.loader = loader;
+
+        synchronized (allCaches)
+        {
+            id = allCaches.size();
+            allCaches.add(this);
+        }
+    }
+
+    /**
+     * Returns the result for a key, calculating it if it hasn't already been
+     * cached this frame.
+     *
+     * @param key The key to look up.
+     *
+     * @return The result of this cache's loader for {@code key} this frame.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(K key)
+    {
+        if (!LazyLib.isCachingEnabled() || Global.getCombatEngine() == null)
+        {
+            return loader.apply(key);
+        }
+
+        final Map<Object, Object> values = CombatCache.getFrameTable(id);
+        final Object cached = values.get(key);
+        if (cached != null)
+        {
+            hits++;
+            return (cached == NULL ? null : (V) cached);
+        }
+
+        misses++;
+        final V value = loader.apply(key);
+        values.put(key, value == null ? NULL : value);
+        return value;
+    }
+
+    /**
+     * Returns the name this cache was created with.
+     *
+     * @return This cache's name.
+     *
+     * @since 3.0b
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns how many times {@link #get(Object)} found an already cached
+     * result.
+     *
+     * @return The number of cache hits since this cache was created, or since
+     *         {@link #resetStatistics()} was last called.
+     *
+     * @since 3.0b
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns how many times {@link #get(Object)} had to run this cache's
+     * loader.
+     *
+     * @return The number of cache misses since this cache was created, or
+     *         since {@link #resetStatistics()} was last called.
+     *
+     * @since 3.0b
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Resets this cache's hit and miss counters to zero.
+     *
+     * @since 3.0b
+     */
+    public void resetStatistics()
+    {
+        hits = 0;
+        misses = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        final long total = hits + misses;
+        return name + ": " + hits + " hits, " + misses + " misses ("
+                + (total == 0 ? 0 : (hits * 100 / total)) + "% hit rate)";
+    }
+
+    /**
+     * Returns every {@link FrameCache} that has been created, including those
+     * used internally by LazyLib. Useful for checking whether a cache is
+     * actually saving any work.
+     *
+     * @return An unmodifiable {@link List} of all {@link FrameCache}s.
+     *
+     * @since 3.0b
+     */
+    public static List<FrameCache<?, ?>> getAllCaches()
+    {
+        synchronized (allCaches)
+        {
+            return Collections.unmodifiableList(new ArrayList<>(allCaches));
+        }
+    }
+}
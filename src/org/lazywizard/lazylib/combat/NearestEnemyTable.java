@@ -0,0 +1,228 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The results of {@link AIUtils#getNearestEnemiesForAllShips(NearestEnemyTable)}:
+ * the closest visible enemy of every ship on the battle map, as found by
+ * {@link AIUtils#getNearestEnemy(com.fs.starfarer.api.combat.CombatEntityAPI)}.
+ * <p>
+ * A table is meant to be kept and passed back in every frame. Its storage is
+ * reused each time it is filled, so after the first few frames refreshing it
+ * allocates no memory.
+ * <p>
+ * Rows are ordered the same as {@link com.fs.starfarer.api.combat.CombatEngineAPI#getShips()},
+ * skipping hulks, shuttle pods and ships that don't belong to either side.
+ * Call {@link #clear()} once combat ends so the table doesn't keep any ships
+ * alive.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class NearestEnemyTable
+{
+    private ShipAPI[] ships = new ShipAPI[0], nearest = new ShipAPI[0];
+    // An open addressing hash table of row + 1 (0 is an empty slot), keyed by the identity of the ship in that row.
+    // Unlike a Map<ShipAPI, Integer>, filling it never boxes or allocates once it has grown large enough
+    private int[] rowSlots = new int[0];
+    private float[] distances = new float[0];
+    private int size = 0;
+    // Scratch space used while the table is being filled
+    final List<List<ShipAPI>> candidates = new ArrayList<>();
+    final SpatialHash[] grids = {new SpatialHash(), new SpatialHash()};
+
+    /**
+     * Creates an empty table. Fill it with
+     * {@link AIUtils#getNearestEnemiesForAllShips(NearestEnemyTable)}.
+     *
+     * @since 3.0b
+     */
+    public NearestEnemyTable()
+    {
+    }
+
+    /**
+     * Returns how many ships are in this table.
+     *
+     * @return The number of rows in this table.
+     *
+     * @since 3.0b
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the ship a row belongs to.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The ship whose nearest enemy is stored in {@code row}.
+     *
+     * @since 3.0b
+     */
+    public ShipAPI getShip(int row)
+    {
+        checkRow(row);
+        return ships[row];
+    }
+
+    /**
+     * Returns the closest visible enemy of the ship in a row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The closest visible enemy of {@link #getShip(int)}, or
+     *         {@code null} if it can't see any enemies.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getNearestEnemy(int row)
+    {
+        checkRow(row);
+        return nearest[row];
+    }
+
+    /**
+     * Returns the distance between the ship in a row and its closest visible
+     * enemy, as measured by {@link org.lazywizard.lazylib.MathUtils#getDistance(
+     *com.fs.starfarer.api.combat.CombatEntityAPI, org.lwjgl.util.vector.Vector2f)}.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The distance to {@link #getNearestEnemy(int)}, or
+     *         {@link Float#MAX_VALUE} if the ship can't see any enemies.
+     *
+     * @since 3.0b
+     */
+    public float getNearestEnemyDistance(int row)
+    {
+        checkRow(row);
+        return distances[row];
+    }
+
+    /**
+     * Returns the closest visible enemy of a ship.
+     *
+     * @param ship The ship to look up.
+     *
+     * @return The closest visible enemy of {@code ship}, or {@code null} if it
+     *         can't see any enemies or isn't in this table.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getNearestEnemy(ShipAPI ship)
+    {
+        final int row = findRow(ship);
+        return (row < 0 ? null : nearest[row]);
+    }
+
+    /**
+     * Returns the row a ship is stored in.
+     *
+     * @param ship The ship to look up.
+     *
+     * @return The row {@code ship} is stored in, or -1 if it isn't in this
+     *         table.
+     *
+     * @since 3.0b
+     */
+    public int getRow(ShipAPI ship)
+    {
+        return findRow(ship);
+    }
+
+    /**
+     * Empties this table, releasing every ship it refers to.
+     *
+     * @since 3.0b
+     */
+    public void clear()
+    {
+        Arrays.fill(ships, 0, size, null);
+        Arrays.fill(nearest, 0, size, null);
+        for (List<ShipAPI> sideCandidates : candidates)
+        {
+            sideCandidates.clear();
+        }
+
+        Arrays.fill(rowSlots, 0);
+        size = 0;
+    }
+
+    void reset(int capacity)
+    {
+        clear();
+        if (ships.length < capacity)
+        {
+            final int newCapacity = Math.max(capacity, ships.length * 2);
+            ships = new ShipAPI[newCapacity];
+            nearest = new ShipAPI[newCapacity];
+            distances = new float[newCapacity];
+        }
+
+        // Kept at most half full, so probes stay short
+        if (rowSlots.length < capacity * 2)
+        {
+            rowSlots = new int[Integer.highestOneBit(Math.max(1, capacity * 4 - 1))];
+        }
+    }
+
+    void add(ShipAPI ship, @Nullable ShipAPI nearestEnemy, float distance)
+    {
+        ships[size] = ship;
+        nearest[size] = nearestEnemy;
+        distances[size] = distance;
+        final int mask = rowSlots.length - 1;
+        int slot = getSlot(ship, mask);
+        while (rowSlots[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        rowSlots[slot] = ++size;
+    }
+
+    private int findRow(ShipAPI ship)
+    {
+        if (size == 0)
+        {
+            return -1;
+        }
+
+        final int mask = rowSlots.length - 1;
+        for (int slot = getSlot(ship, mask); rowSlots[slot] != 0; slot = (slot + 1) & mask)
+        {
+            final int row = rowSlots[slot] - 1;
+            if (ships[row] == ship)
+            {
+                return row;
+            }
+        }
+
+        return -1;
+    }
+
+    // Identity hash codes can be poorly spread in their low bits, so they're mixed before masking
+    private static int getSlot(ShipAPI ship, int mask)
+    {
+        final int hash = System.identityHashCode(ship) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= size)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+}
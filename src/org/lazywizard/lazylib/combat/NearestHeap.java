@@ -0,0 +1,162 @@
+package org.lazywizard.lazylib.combat;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounded max-heap that keeps the {@code k} entries with the smallest keys seen so far. Used by
+ * {@link AIUtils}'s k-nearest searches so they run in O(n log k) instead of sorting every candidate.
+ *
+ * @param <T> The type of entry stored in this heap.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class NearestHeap<T>
+{
+    // Storage grows as entries are offered, so asking for every result (a capacity of Integer.MAX_VALUE) only
+    // allocates as much as the candidates need
+    private static final int INITIAL_CAPACITY = 16;
+    private final int capacity;
+    private Object[] items;
+    private float[] keys;
+    private int size = 0;
+
+    NearestHeap(int capacity)
+    {
+        this.capacity = Math.max(0, capacity);
+        items = new Object[Math.min(this.capacity, INITIAL_CAPACITY)];
+        keys = new float[items.length];
+    }
+
+    /**
+     * Offers an entry to the heap. If the heap is full, the entry replaces the current worst entry only if its key
+     * is smaller.
+     */
+    void offer(T item, float key)
+    {
+        if (size < capacity)
+        {
+            if (size == items.length)
+            {
+                grow();
+            }
+
+            // Sift the new entry up from the bottom of the heap
+            int i = size++;
+            while (i > 0)
+            {
+                final int parent = (i - 1) >>> 1;
+                if (keys[parent] >= key)
+                {
+                    break;
+                }
+
+                items[i] = items[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+
+            items[i] = item;
+            keys[i] = key;
+        }
+        else if (size > 0 && key < keys[0])
+        {
+            siftDown(item, key);
+        }
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isFull()
+    {
+        return size == capacity;
+    }
+
+    /**
+     * Returns the entry with the largest key, which is the only entry in a heap with a capacity of one.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    T peekWorst()
+    {
+        return (size == 0 ? null : (T) items[0]);
+    }
+
+    void clear()
+    {
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the key an entry must beat to be accepted by {@link #offer(Object, float)}.
+     */
+    float getWorstKey()
+    {
+        return (size < capacity ? Float.MAX_VALUE : keys[0]);
+    }
+
+    /**
+     * Empties the heap, returning its entries ordered from smallest to largest key.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> drainSorted()
+    {
+        final Object[] sorted = new Object[size];
+        while (size > 0)
+        {
+            final Object top = items[0];
+            final int last = --size;
+            if (last > 0)
+            {
+                siftDown(items[last], keys[last]);
+            }
+
+            items[last] = null;
+            sorted[last] = top;
+        }
+
+        return new ArrayList<>((List<T>) Arrays.asList(sorted));
+    }
+
+    private void grow()
+    {
+        final int newLength = (int) Math.min(capacity, Math.max(1L, items.length * 2L));
+        items = Arrays.copyOf(items, newLength);
+        keys = Arrays.copyOf(keys, newLength);
+    }
+
+    // Replaces the root with a new entry and restores the heap property
+    private void siftDown(Object item, float key)
+    {
+        int i = 0;
+        final int half = size >>> 1;
+        while (i < half)
+        {
+            int child = (i << 1) + 1;
+            if (child + 1 < size && keys[child + 1] > keys[child])
+            {
+                child++;
+            }
+
+            if (key >= keys[child])
+            {
+                break;
+            }
+
+            items[i] = items[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+
+        items[i] = item;
+        keys[i] = key;
+    }
+}
@@ -0,0 +1,142 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import org.lazywizard.lazylib.BatchMathUtils;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The entities from one engine list packed into parallel primitive arrays, used as a section of
+ * {@link CombatSnapshot}. Range queries test every entity at once with {@link BatchMathUtils}, which the JIT can
+ * vectorize.
+ * <p>
+ * Index {@code i} of every array refers to the same entity, which is entry {@code i} of the {@link List} the
+ * section was built from.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class PackedPositions
+{
+    float[] xs = new float[0], ys = new float[0], velXs = new float[0], velYs = new float[0], radii = new float[0];
+    int[] owners = new int[0], flags = new int[0];
+    CombatEntityAPI[] entities = new CombatEntityAPI[0];
+    private int[] hits = new int[0], results = new int[0];
+    private int size = 0, numResults = 0;
+
+    void rebuild(List<? extends CombatEntityAPI> list)
+    {
+        final int oldSize = size;
+        size = list.size();
+        if (xs.length < size)
+        {
+            final int newCapacity = Math.max(size, xs.length * 2);
+            xs = new float[newCapacity];
+            ys = new float[newCapacity];
+            velXs = new float[newCapacity];
+            velYs = new float[newCapacity];
+            radii = new float[newCapacity];
+            owners = new int[newCapacity];
+            flags = new int[newCapacity];
+            entities = new CombatEntityAPI[newCapacity];
+            hits = new int[newCapacity];
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            final CombatEntityAPI entity = list.get(i);
+            final Vector2f loc = entity.getLocation(), vel = entity.getVelocity();
+            xs[i] = loc.x;
+            ys[i] = loc.y;
+            velXs[i] = vel.x;
+            velYs[i] = vel.y;
+            radii[i] = entity.getCollisionRadius();
+            owners[i] = entity.getOwner();
+            flags[i] = CombatSnapshot.getFlags(entity);
+            entities[i] = entity;
+        }
+
+        // Don't hold on to entities that are no longer in the list
+        if (oldSize > size)
+        {
+            Arrays.fill(entities, size, oldSize, null);
+        }
+    }
+
+    // Returns false if entities were added to or removed from the list since this section was built. The engine's
+    // lists only grow at the end and shrink where entities are removed, so if the size and both ends are the same
+    // then the contents almost certainly are too
+    boolean matches(List<? extends CombatEntityAPI> list)
+    {
+        return list.size() == size && (size == 0
+                || (list.get(0) == entities[0] && list.get(size - 1) == entities[size - 1]));
+    }
+
+    // Returns a copy trimmed to this section's size, for use as part of a frozen CombatSnapshot
+    PackedPositions copy()
+    {
+        final PackedPositions copy = new PackedPositions();
+        copy.size = size;
+        copy.xs = Arrays.copyOf(xs, size);
+        copy.ys = Arrays.copyOf(ys, size);
+        copy.velXs = Arrays.copyOf(velXs, size);
+        copy.velYs = Arrays.copyOf(velYs, size);
+        copy.radii = Arrays.copyOf(radii, size);
+        copy.owners = Arrays.copyOf(owners, size);
+        copy.flags = Arrays.copyOf(flags, size);
+        copy.entities = Arrays.copyOf(entities, size);
+        copy.hits = new int[size];
+        return copy;
+    }
+
+    /**
+     * Finds every entity within {@code range} of a point, including the entity's collision radius. Results are in
+     * the same order as the list this section was built from.
+     * <p>
+     * Follows the same rules as {@link SpatialHash#query(float, float, float)}: results are stored after those of
+     * any query that hasn't been released yet, and every call must be paired with a call to {@link #release(int)}.
+     *
+     * @return The index of the first result. Results run from this index up to (but not including)
+     *         {@link #getQueryEnd()}; use {@link #getResult(int)} to retrieve them.
+     */
+    int query(float x, float y, float range)
+    {
+        final int start = numResults;
+        final int numHits = BatchMathUtils.getIndicesWithinRange(x, y, range, xs, ys, radii, size, hits);
+        if (results.length < start + numHits)
+        {
+            results = Arrays.copyOf(results, Math.max(start + numHits, results.length * 2));
+        }
+
+        System.arraycopy(hits, 0, results, start, numHits);
+        numResults += numHits;
+        return start;
+    }
+
+    int getQueryEnd()
+    {
+        return numResults;
+    }
+
+    void release(int start)
+    {
+        numResults = start;
+    }
+
+    /**
+     * Returns a result found by {@link #query(float, float, float)}.
+     *
+     * @return The index of the entity in this section's arrays.
+     */
+    int getResult(int index)
+    {
+        return results[index];
+    }
+
+    int size()
+    {
+        return size;
+    }
+}
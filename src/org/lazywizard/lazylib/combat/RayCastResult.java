@@ -0,0 +1,111 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.util.vector.Vector2f;
+
+/**
+ * The result of {@link CombatUtils#rayCast(Vector2f, Vector2f, org.lazywizard.lazylib.CollectionUtils.CollectionFilter,
+ * RayCastResult)}: the first entity hit along a line, where it was hit, and how far from the start of the line.
+ * <p>
+ * A result can be reused for any number of ray casts, which avoids allocating memory for each one.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class RayCastResult
+{
+    private final Vector2f point = new Vector2f();
+    @Nullable
+    private CombatEntityAPI entity = null;
+    private float distance = Float.MAX_VALUE;
+
+    /**
+     * Creates an empty result that doesn't contain a hit.
+     *
+     * @since 3.0b
+     */
+    public RayCastResult()
+    {
+    }
+
+    /**
+     * Returns whether the ray cast hit anything.
+     *
+     * @return {@code true} if an entity was hit, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean hasHit()
+    {
+        return entity != null;
+    }
+
+    /**
+     * Returns the first entity hit.
+     *
+     * @return The first entity hit along the line, or {@code null} if nothing
+     *         was hit.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public CombatEntityAPI getEntity()
+    {
+        return entity;
+    }
+
+    /**
+     * Returns where the line first hit an entity. If the line started inside
+     * an entity's bounds, this is the start of the line.
+     *
+     * @return The point of impact. This {@link Vector2f} is reused by later
+     *         ray casts using this result, so copy it if you need to keep it.
+     *         Its value is undefined if nothing was hit.
+     *
+     * @since 3.0b
+     */
+    public Vector2f getPoint()
+    {
+        return point;
+    }
+
+    /**
+     * Returns how far along the line the hit occurred.
+     *
+     * @return The distance between the start of the line and
+     *         {@link #getPoint()}, or {@link Float#MAX_VALUE} if nothing was
+     *         hit.
+     *
+     * @since 3.0b
+     */
+    public float getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * Resets this result so that it no longer contains a hit.
+     *
+     * @since 3.0b
+     */
+    public void clear()
+    {
+        entity = null;
+        distance = Float.MAX_VALUE;
+    }
+
+    void set(CombatEntityAPI entity, Vector2f point, float distance)
+    {
+        this.entity = entity;
+        this.point.set(point);
+        this.distance = distance;
+    }
+
+    @Override
+    public String toString()
+    {
+        return (entity == null ? "RayCastResult{no hit}"
+                : "RayCastResult{entity=" + entity + ", point=" + point + ", distance=" + distance + "}");
+    }
+}
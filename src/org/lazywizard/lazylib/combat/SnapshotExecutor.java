@@ -0,0 +1,269 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.combat.CombatEngineAPI;
+import org.apache.log4j.Logger;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs expensive calculations on other CPU cores, using a frozen copy of the current frame's {@link CombatSnapshot}
+ * as input. Results are handed back to a callback on the game thread the next time {@link #advance()} is called,
+ * usually on the next frame.
+ * <p>
+ * The game's API is not thread-safe, so tasks run by this class must follow some strict rules:
+ * <ul>
+ * <li>Only read from the {@link CombatSnapshot} passed to the task, and from data the task owns itself.</li>
+ * <li>Never call {@link Global}, the combat engine, or any method of an entity. This includes
+ * {@link CombatSnapshot#getEntity(int, int)} and LazyLib's cached combat methods, which throw an
+ * {@link IllegalStateException} if used from a task.</li>
+ * <li>Return plain data (for example, indices into the snapshot) and turn it back into entities in the callback,
+ * which runs on the game thread and can use any API.</li>
+ * </ul>
+ * <p>
+ * LazyLib doesn't register any plugins of its own, so it is up to the owner of an executor to call
+ * {@link #advance()} every frame, typically from an {@link com.fs.starfarer.api.combat.EveryFrameCombatPlugin}.
+ * Results from a previous battle are discarded rather than delivered.
+ * <p>
+ * Example usage:
+ * <pre>
+ * private static final SnapshotExecutor EXECUTOR = new SnapshotExecutor("MyMod.threat");
+ *
+ * // In your plugin's advance()
+ * EXECUTOR.advance();
+ * EXECUTOR.submit(MyMod::calculateThreatMap, threatMap -&gt; MyMod.threatMap = threatMap);
+ * </pre>
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class SnapshotExecutor
+{
+    private static final Logger Log = Global.getLogger(SnapshotExecutor.class);
+    // The game thread and the JVM's own threads need room too, so never use every core
+    private static final int MAX_THREADS = 4;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static ForkJoinPool pool = null;
+    private final String name;
+    private final Queue<Job<?>> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numPending = new AtomicInteger();
+    // Incremented by cancelAll(), jobs from an earlier generation are skipped and their results discarded
+    private volatile int generation = 0;
+
+    /**
+     * Creates a new executor. Executors share a single pool of worker threads, so creating more than one is
+     * cheap.
+     *
+     * @param name The name of this executor, used when logging errors thrown by its tasks. Including your mod's
+     *             name here is recommended.
+     *
+     * @since 3.0b
+     */
+    public SnapshotExecutor(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Checks if the current thread is one of the worker threads used to run {@link SnapshotExecutor} tasks.
+     *
+     * @return {@code true} if called from inside a task, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public static boolean isWorkerThread()
+    {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    private static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            final int numThreads = Math.max(1, Math.min(MAX_THREADS,
+                    Runtime.getRuntime().availableProcessors() - 1));
+            pool = new ForkJoinPool(numThreads, Worker::new, null, true);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Runs a task on a worker thread against a frozen copy of the current frame's {@link CombatSnapshot}. Must be
+     * called from the game thread during combat.
+     *
+     * @param task     The calculation to run on a worker thread. See the class documentation for what it may and
+     *                 may not do.
+     * @param callback Called with the task's result on the game thread, during the first call to
+     *                 {@link #advance()} after the task finishes.
+     * @param <T>      The type of result calculated by {@code task}.
+     *
+     * @throws IllegalStateException If called outside of combat or from a worker thread.
+     * @since 3.0b
+     */
+    public <T> void submit(Function<? super CombatSnapshot, ? extends T> task, Consumer<? super T> callback)
+    {
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        if (engine == null)
+        {
+            throw new IllegalStateException("SnapshotExecutor can only be used in combat!");
+        }
+
+        // getFrozenSnapshot() also throws if called from a worker thread
+        final Job<T> job = new Job<>(task, callback, CombatCache.getFrozenSnapshot(), engine, generation);
+        numPending.incrementAndGet();
+        getPool().execute(job);
+    }
+
+    /**
+     * Delivers the results of all finished tasks to their callbacks. Must be called regularly (usually every
+     * frame) from the game thread, or callbacks will never run.
+     * <p>
+     * Results are delivered in the order their tasks finished. Results from tasks that threw an exception are
+     * logged and skipped, as are results from tasks submitted during a different battle.
+     *
+     * @return How many callbacks were run.
+     *
+     * @since 3.0b
+     */
+    public int advance()
+    {
+        final CombatEngineAPI engine = Global.getCombatEngine();
+        int numDelivered = 0;
+        Job<?> job;
+        while ((job = completed.poll()) != null)
+        {
+            if (job.generation != generation || job.engine.get() != engine)
+            {
+                continue;
+            }
+
+            if (job.error != null)
+            {
+                Log.error("Task in SnapshotExecutor \"" + name + "\" failed!", job.error);
+                continue;
+            }
+
+            try
+            {
+                job.deliver();
+                numDelivered++;
+            }
+            catch (RuntimeException ex)
+            {
+                Log.error("Callback in SnapshotExecutor \"" + name + "\" failed!", ex);
+            }
+        }
+
+        return numDelivered;
+    }
+
+    /**
+     * Returns how many submitted tasks haven't finished running yet. Finished tasks waiting for {@link #advance()}
+     * to deliver their results aren't counted.
+     *
+     * @return The number of tasks that are queued or running.
+     *
+     * @since 3.0b
+     */
+    public int getPendingCount()
+    {
+        return numPending.get();
+    }
+
+    /**
+     * Discards all submitted tasks. Tasks that haven't started yet won't be run, and the callbacks of tasks that
+     * are already running (or finished, but not yet delivered) won't be called.
+     *
+     * @since 3.0b
+     */
+    public void cancelAll()
+    {
+        generation++;
+        completed.clear();
+    }
+
+    /**
+     * Returns the name this executor was created with.
+     *
+     * @return This executor's name.
+     *
+     * @since 3.0b
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SnapshotExecutor{" + name + ", " + numPending.get() + " pending, "
+                + completed.size() + " awaiting delivery}";
+    }
+
+    private final class Job<T> implements Runnable
+    {
+        private final Function<? super CombatSnapshot, ? extends T> task;
+        private final Consumer<? super T> callback;
+        private final CombatSnapshot snapshot;
+        private final WeakReference<CombatEngineAPI> engine;
+        private final int generation;
+        private T result = null;
+        private Throwable error = null;
+
+        private Job(Function<? super CombatSnapshot, ? extends T> task, Consumer<? super T> callback,
+                    CombatSnapshot snapshot, CombatEngineAPI engine, int generation)
+        {
+            this.task = task;
+            this.callback = callback;
+            this.snapshot = snapshot;
+            this.engine = new WeakReference<>(engine);
+            this.generation = generation;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                if (generation == SnapshotExecutor.this.generation)
+                {
+                    result = task.apply(snapshot);
+                    completed.add(this);
+                }
+            }
+            catch (Throwable ex)
+            {
+                error = ex;
+                completed.add(this);
+            }
+            finally
+            {
+                numPending.decrementAndGet();
+            }
+        }
+
+        private void deliver()
+        {
+            callback.accept(result);
+        }
+    }
+
+    private static final class Worker extends ForkJoinWorkerThread
+    {
+        private Worker(ForkJoinPool pool)
+        {
+            super(pool);
+            setName("LazyLib-SnapshotExecutor-" + threadCounter.incrementAndGet());
+            setDaemon(true);
+        }
+    }
+}
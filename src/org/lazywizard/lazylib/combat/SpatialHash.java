@@ -0,0 +1,242 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid over a snapshot of entity positions, used by {@link CombatCache} to avoid scanning every entity
+ * on the map for each range query. The grid only stores indices into the {@link List} it was built from, so it
+ * never holds a reference to an entity once combat has ended.
+ * <p>
+ * Queries are broadphase only: they return every entity whose cell <i>could</i> contain a match, and it is up to
+ * the caller to run the exact range test on the live entity.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class SpatialHash
+{
+    // Cell size is tuned from the average collision radius of the entities in the grid
+    private static final float CELL_SIZE_MULT = 4f;
+    private static final float MIN_CELL_SIZE = 100f;
+    // Keeps the grid from growing absurdly large when entities are spread across a huge map
+    private static final int MIN_CELLS = 64, CELLS_PER_ENTITY = 2;
+
+    private float[] xs = new float[0], ys = new float[0], radii = new float[0];
+    private int[] cellOf = new int[0], entries = new int[0], results = new int[0];
+    private int[] cellStart = new int[2], cellCursor = new int[1];
+    private int size = 0, numResults = 0, cols = 1, rows = 1;
+    private float minX = 0f, minY = 0f, maxX = 0f, maxY = 0f, maxRadius = 0f;
+    private float cellSize = MIN_CELL_SIZE, invCellSize = 1f / MIN_CELL_SIZE;
+
+    void rebuild(List<? extends CombatEntityAPI> entities)
+    {
+        // Snapshot positions, then build the grid from them
+        final int numEntities = entities.size();
+        ensureEntityCapacity(numEntities);
+        for (int i = 0; i < numEntities; i++)
+        {
+            final CombatEntityAPI entity = entities.get(i);
+            xs[i] = entity.getLocation().x;
+            ys[i] = entity.getLocation().y;
+            radii[i] = entity.getCollisionRadius();
+        }
+
+        build(numEntities);
+    }
+
+    // Builds the grid from a section of the combat snapshot, so its indices are always that section's indices
+    void rebuild(PackedPositions positions)
+    {
+        final int numEntities = positions.size();
+        ensureEntityCapacity(numEntities);
+        System.arraycopy(positions.xs, 0, xs, 0, numEntities);
+        System.arraycopy(positions.ys, 0, ys, 0, numEntities);
+        System.arraycopy(positions.radii, 0, radii, 0, numEntities);
+        build(numEntities);
+    }
+
+    private void build(int numEntities)
+    {
+        size = numEntities;
+        if (size == 0)
+        {
+            maxRadius = 0f;
+            return;
+        }
+
+        // Find the bounds of the grid
+        float totalRadius = 0f;
+        minX = Float.MAX_VALUE;
+        minY = Float.MAX_VALUE;
+        maxX = -Float.MAX_VALUE;
+        maxY = -Float.MAX_VALUE;
+        maxRadius = 0f;
+        for (int i = 0; i < size; i++)
+        {
+            final float x = xs[i], y = ys[i], radius = radii[i];
+            totalRadius += radius;
+            if (radius > maxRadius) maxRadius = radius;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+
+        // Pick a cell size, then grow it if the grid would need too many cells
+        final float width = Math.max(1f, maxX - minX), height = Math.max(1f, maxY - minY),
+                maxCells = Math.max(MIN_CELLS, size * CELLS_PER_ENTITY);
+        cellSize = Math.max(MIN_CELL_SIZE, (totalRadius / size) * CELL_SIZE_MULT);
+        if ((width / cellSize + 1f) * (height / cellSize + 1f) > maxCells)
+        {
+            cellSize = Math.max(cellSize, (float) Math.sqrt((width * height) / maxCells) + 1f);
+        }
+
+        invCellSize = 1f / cellSize;
+        cols = (int) (width * invCellSize) + 1;
+        rows = (int) (height * invCellSize) + 1;
+        final int numCells = cols * rows;
+        if (cellStart.length < numCells + 1)
+        {
+            cellStart = new int[numCells + 1];
+            cellCursor = new int[numCells];
+        }
+
+        // Counting sort of entity indices by cell
+        Arrays.fill(cellStart, 0, numCells + 1, 0);
+        for (int i = 0; i < size; i++)
+        {
+            final int cell = getCellX(xs[i]) + getCellY(ys[i]) * cols;
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+
+        for (int i = 0; i < numCells; i++)
+        {
+            cellStart[i + 1] += cellStart[i];
+        }
+
+        System.arraycopy(cellStart, 0, cellCursor, 0, numCells);
+        for (int i = 0; i < size; i++)
+        {
+            entries[cellCursor[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Finds every entity that might be within {@code range} of a point, including the entity's collision radius.
+     * Candidates are sorted by their index in the list this grid was built from, so callers that test them in
+     * order will return results in the same order as a linear scan of that list.
+     * <p>
+     * Results are stored after those of any query that hasn't been released yet, so a query can safely be made
+     * while iterating over the results of another (for example, from inside an {@link EntityVisitor}). Every call
+     * must be paired with a call to {@link #release(int)} once its results are no longer needed.
+     *
+     * @return The index of the first candidate. Candidates run from this index up to (but not including)
+     *         {@link #getQueryEnd()}; use {@link #getResult(int)} to retrieve them.
+     */
+    int query(float x, float y, float range)
+    {
+        final int start = numResults;
+        final float reach = range + maxRadius;
+        if (size == 0 || reach < 0f)
+        {
+            return start;
+        }
+
+        final int x0 = getCellX(x - reach), x1 = getCellX(x + reach),
+                y0 = getCellY(y - reach), y1 = getCellY(y + reach);
+        for (int cy = y0; cy <= y1; cy++)
+        {
+            for (int cx = x0; cx <= x1; cx++)
+            {
+                final int cell = cx + cy * cols;
+                final int cellEnd = cellStart[cell + 1];
+                ensureResultCapacity(numResults + (cellEnd - cellStart[cell]));
+                for (int i = cellStart[cell]; i < cellEnd; i++)
+                {
+                    results[numResults++] = entries[i];
+                }
+            }
+        }
+
+        Arrays.sort(results, start, numResults);
+        return start;
+    }
+
+    int getQueryEnd()
+    {
+        return numResults;
+    }
+
+    void release(int start)
+    {
+        numResults = start;
+    }
+
+    /**
+     * Returns a candidate found by {@link #query(float, float, float)}.
+     *
+     * @return The index of the candidate in the list this grid was built from.
+     */
+    int getResult(int index)
+    {
+        return results[index];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    float getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Returns whether a query with these arguments would return every entity in the grid.
+     */
+    boolean coversAll(float x, float y, float range)
+    {
+        final float reach = range + maxRadius;
+        return (x - reach <= minX && x + reach >= maxX && y - reach <= minY && y + reach >= maxY);
+    }
+
+    private int getCellX(float x)
+    {
+        final int cell = (int) ((x - minX) * invCellSize);
+        return (cell < 0 ? 0 : (cell >= cols ? cols - 1 : cell));
+    }
+
+    private int getCellY(float y)
+    {
+        final int cell = (int) ((y - minY) * invCellSize);
+        return (cell < 0 ? 0 : (cell >= rows ? rows - 1 : cell));
+    }
+
+    private void ensureEntityCapacity(int capacity)
+    {
+        if (xs.length >= capacity)
+        {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, xs.length * 2);
+        xs = new float[newCapacity];
+        ys = new float[newCapacity];
+        radii = new float[newCapacity];
+        cellOf = new int[newCapacity];
+        entries = new int[newCapacity];
+    }
+
+    private void ensureResultCapacity(int capacity)
+    {
+        if (results.length < capacity)
+        {
+            results = Arrays.copyOf(results, Math.max(capacity, results.length * 2));
+        }
+    }
+}
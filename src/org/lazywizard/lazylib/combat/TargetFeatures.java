@@ -0,0 +1,199 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.ShieldAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.MathUtils;
+import org.lwjgl.util.vector.Vector2f;
+
+/**
+ * Everything a {@link TargetScorer} knows about one candidate target of a {@link TargetSelector} search: how far
+ * away it is, how long a weapon would take to aim at it, and the state of its hull, flux and shields.
+ * <p>
+ * The state of each ship is only looked up once per frame no matter how many searches consider it, and is shared
+ * between all {@link TargetSelector}s. Only the parts that depend on who is searching (distance, time to aim and
+ * shield facing) are calculated per search.
+ * <p>
+ * Instances are reused for every candidate of a search, so scorers should not keep a reference to one.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class TargetFeatures
+{
+    private static final FrameCache<ShipAPI, ShipState> stateCache =
+            new FrameCache<>("LazyLib.TargetFeatures", ShipState::new);
+    private ShipAPI target;
+    private ShipState state;
+    private float distance, range, timeToAim;
+    private boolean shieldFacing;
+
+    TargetFeatures()
+    {
+    }
+
+    // Fills in this candidate's features, as seen by a searcher at the given location (and of the given radius)
+    void set(ShipAPI target, Vector2f from, float fromRadius, float range, float timeToAim)
+    {
+        this.target = target;
+        this.range = range;
+        this.timeToAim = timeToAim;
+        state = stateCache.get(target);
+        distance = Math.max(0f, MathUtils.getDistance(target, from) - fromRadius);
+        shieldFacing = (state.shieldOn && state.shield.isWithinArc(from));
+    }
+
+    /**
+     * Returns the candidate these features describe.
+     *
+     * @return The candidate target.
+     *
+     * @since 3.0b
+     */
+    public ShipAPI getTarget()
+    {
+        return target;
+    }
+
+    /**
+     * Returns how far the candidate is from the searching ship or weapon.
+     *
+     * @return The distance between the edges of the searching ship's and the candidate's collision circles (or
+     *         from the searching weapon to the edge of the candidate's collision circle), or 0 if they overlap. This
+     *         is measured the same way as the search's range, so it is never more than {@link #getRange()}.
+     *
+     * @since 3.0b
+     */
+    public float getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * Returns the range of the search that found the candidate. Useful for turning {@link #getDistance()} into a
+     * value between 0 and 1.
+     *
+     * @return How far the search extended.
+     *
+     * @since 3.0b
+     */
+    public float getRange()
+    {
+        return range;
+    }
+
+    /**
+     * Returns how long the searching weapon needs to turn to face the candidate.
+     *
+     * @return The time in seconds for the weapon to rotate towards the candidate at its current turn rate,
+     *         {@link Float#MAX_VALUE} if it can't turn and isn't already facing the candidate, or 0 for searches
+     *         made by a ship rather than a weapon.
+     *
+     * @since 3.0b
+     */
+    public float getTimeToAim()
+    {
+        return timeToAim;
+    }
+
+    /**
+     * Returns the candidate's remaining hull.
+     *
+     * @return The candidate's {@link ShipAPI#getHullLevel()}, from 0 to 1.
+     *
+     * @since 3.0b
+     */
+    public float getHullLevel()
+    {
+        return state.hullLevel;
+    }
+
+    /**
+     * Returns how close the candidate is to overloading.
+     *
+     * @return The candidate's current flux level, from 0 to 1.
+     *
+     * @since 3.0b
+     */
+    public float getFluxLevel()
+    {
+        return state.fluxLevel;
+    }
+
+    /**
+     * Returns whether the candidate is overloaded or venting, and so unable to shield or fire.
+     *
+     * @return {@code true} if the candidate is overloaded or venting, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean isOverloadedOrVenting()
+    {
+        return state.overloadedOrVenting;
+    }
+
+    /**
+     * Returns whether the candidate's shield is raised.
+     *
+     * @return {@code true} if the candidate has a shield and it is on, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean isShieldUp()
+    {
+        return state.shieldOn;
+    }
+
+    /**
+     * Returns whether the candidate's shield covers the direction of the searching ship or weapon.
+     *
+     * @return {@code true} if the candidate's shield is on and the searcher is within its arc, {@code false}
+     *         otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean isShieldFacing()
+    {
+        return shieldFacing;
+    }
+
+    /**
+     * Returns whether the candidate is a fighter.
+     *
+     * @return The candidate's {@link ShipAPI#isFighter()}.
+     *
+     * @since 3.0b
+     */
+    public boolean isFighter()
+    {
+        return state.fighter;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TargetFeatures{target=" + target + ", distance=" + distance + ", timeToAim=" + timeToAim
+                + ", hullLevel=" + state.hullLevel + ", fluxLevel=" + state.fluxLevel
+                + ", overloadedOrVenting=" + state.overloadedOrVenting + ", shieldUp=" + state.shieldOn
+                + ", shieldFacing=" + shieldFacing + "}";
+    }
+
+    // The parts of a candidate's features that don't depend on who is searching, cached once per frame
+    private static final class ShipState
+    {
+        private final float hullLevel, fluxLevel;
+        private final boolean overloadedOrVenting, shieldOn, fighter;
+        @Nullable
+        private final ShieldAPI shield;
+
+        private ShipState(ShipAPI ship)
+        {
+            hullLevel = ship.getHullLevel();
+            fluxLevel = ship.getFluxTracker().getFluxLevel();
+            overloadedOrVenting = ship.getFluxTracker().isOverloadedOrVenting();
+            shield = ship.getShield();
+            shieldOn = (shield != null && shield.isOn());
+            fighter = ship.isFighter();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.lazywizard.lazylib.combat;
+
+/**
+ * Rates how good a target is, as one part of a {@link TargetSelector}'s weighted score.
+ * <p>
+ * The built-in scorers all return values from 0 (worst) to 1 (best), so that the weights they're given in a
+ * {@link TargetSelector} can be compared directly. Custom scorers are recommended to do the same.
+ * <p>
+ * Example usage:
+ * <pre>
+ * // Prefer close targets whose shields are down, and strongly avoid fighters
+ * private static final TargetSelector SELECTOR = new TargetSelector()
+ *         .add(TargetScorer.PROXIMITY, 1f)
+ *         .add(TargetScorer.SHIELD_NOT_FACING, 2f)
+ *         .add(features -&gt; features.isFighter() ? 0f : 1f, 5f);
+ * </pre>
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+@FunctionalInterface
+public interface TargetScorer
+{
+    /**
+     * Scores closer targets higher: 1 at point-blank range, falling to 0 at the edge of the search.
+     *
+     * @since 3.0b
+     */
+    TargetScorer PROXIMITY = features -> (features.getRange() <= 0f ? 1f
+            : Math.max(0f, 1f - features.getDistance() / features.getRange()));
+    /**
+     * Scores targets the searching weapon can aim at sooner higher: 1 if it's already facing the target, 0.5 if it
+     * needs a second to turn, and so on. Always 1 for searches made by a ship.
+     *
+     * @since 3.0b
+     */
+    TargetScorer QUICK_TO_AIM = features -> 1f / (1f + features.getTimeToAim());
+    /**
+     * Scores targets with less remaining hull higher: 0 at full hull, 1 at none.
+     *
+     * @since 3.0b
+     */
+    TargetScorer DAMAGED_HULL = features -> 1f - features.getHullLevel();
+    /**
+     * Scores targets with more flux higher: 0 with no flux, 1 at maximum flux.
+     *
+     * @since 3.0b
+     */
+    TargetScorer HIGH_FLUX = TargetFeatures::getFluxLevel;
+    /**
+     * Scores targets whose shields won't block shots from the searcher: 1 if the shield is down or facing away
+     * (or the target is overloaded or venting), 0 otherwise.
+     *
+     * @since 3.0b
+     */
+    TargetScorer SHIELD_NOT_FACING = features -> (features.isShieldFacing()
+            && !features.isOverloadedOrVenting() ? 0f : 1f);
+    /**
+     * Scores targets that are overloaded or venting, and so can neither shield nor fire, at 1, and others at 0.
+     *
+     * @since 3.0b
+     */
+    TargetScorer OVERLOADED_OR_VENTING = features -> (features.isOverloadedOrVenting() ? 1f : 0f);
+
+    /**
+     * Rates a target.
+     *
+     * @param features What is known about the target. This object is reused for other targets once this method
+     *                 returns, so don't keep a reference to it.
+     *
+     * @return How good a target this is. Higher is better.
+     *
+     * @since 3.0b
+     */
+    float score(TargetFeatures features);
+}
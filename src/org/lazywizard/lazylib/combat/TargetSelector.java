@@ -0,0 +1,266 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.WeaponAPI;
+import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.Instrumentation;
+import org.lazywizard.lazylib.MathUtils;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Picks the best targets for a ship or weapon by rating every visible enemy in range with a set of weighted
+ * {@link TargetScorer}s. A target's final score is the sum of each scorer's result multiplied by its weight.
+ * <p>
+ * Candidates are found with {@link AIUtils#getNearbyEnemies(com.fs.starfarer.api.combat.CombatEntityAPI, float,
+ * EntityVisitor)}, so hulks, shuttle pods and ships hidden by fog of war are never considered. The
+ * {@link TargetFeatures} handed to each scorer are shared between all selectors, so a ship's hull, flux and shield
+ * state is only looked up once per frame no matter how many ships and weapons are choosing targets.
+ * <p>
+ * A selector is meant to be created once and stored in a static field; see {@link TargetScorer} for an example.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class TargetSelector
+{
+    private static final Instrumentation.Probe shipSearchProbe =
+            new Instrumentation.Probe("TargetSelector.getBestTargets(ShipAPI)");
+    private static final Instrumentation.Probe weaponSearchProbe =
+            new Instrumentation.Probe("TargetSelector.getBestTargets(WeaponAPI)");
+    private TargetScorer[] scorers = new TargetScorer[0];
+    private float[] weights = new float[0];
+
+    /**
+     * Creates a selector with no scorers. Until scorers are added with {@link #add(TargetScorer, float)}, every
+     * target scores 0.
+     *
+     * @since 3.0b
+     */
+    public TargetSelector()
+    {
+    }
+
+    /**
+     * Adds a scorer to this selector.
+     *
+     * @param scorer The scorer to add.
+     * @param weight How much {@code scorer}'s result counts towards a target's final score. Negative weights can be
+     *               used to avoid targets the scorer rates highly.
+     *
+     * @return This selector, so calls can be chained.
+     *
+     * @since 3.0b
+     */
+    public TargetSelector add(TargetScorer scorer, float weight)
+    {
+        scorers = Arrays.copyOf(scorers, scorers.length + 1);
+        weights = Arrays.copyOf(weights, weights.length + 1);
+        scorers[scorers.length - 1] = scorer;
+        weights[weights.length - 1] = weight;
+        return this;
+    }
+
+    /**
+     * Calculates a target's final score.
+     *
+     * @param features What is known about the target.
+     *
+     * @return The weighted sum of every scorer's result for {@code features}.
+     *
+     * @since 3.0b
+     */
+    public float score(TargetFeatures features)
+    {
+        float score = 0f;
+        for (int i = 0; i < scorers.length; i++)
+        {
+            score += scorers[i].score(features) * weights[i];
+        }
+
+        return score;
+    }
+
+    /**
+     * Finds the best targets within range of a ship.
+     *
+     * @param ship       The ship choosing a target.
+     * @param range      How far around {@code ship} to search, taking collision radius into account.
+     * @param maxResults The most targets to return.
+     *
+     * @return Up to {@code maxResults} visible enemies of {@code ship}, ordered from highest to lowest score.
+     *
+     * @since 3.0b
+     */
+    public List<ShipAPI> getBestTargets(ShipAPI ship, float range, int maxResults)
+    {
+        return findBestTargets(ship, range, maxResults).drainSorted();
+    }
+
+    /**
+     * Finds the best targets within range of a ship, and adds them to an existing {@link List}.
+     *
+     * @param ship       The ship choosing a target.
+     * @param range      How far around {@code ship} to search, taking collision radius into account.
+     * @param maxResults The most targets to add.
+     * @param results    The {@link List} that up to {@code maxResults} visible enemies of {@code ship} will be
+     *                   added to, ordered from highest to lowest score.
+     *
+     * @since 3.0b
+     */
+    public void getBestTargets(ShipAPI ship, float range, int maxResults, List<? super ShipAPI> results)
+    {
+        results.addAll(getBestTargets(ship, range, maxResults));
+    }
+
+    /**
+     * Finds the best target within range of a ship.
+     *
+     * @param ship  The ship choosing a target.
+     * @param range How far around {@code ship} to search, taking collision radius into account.
+     *
+     * @return The visible enemy of {@code ship} with the highest score, or {@code null} if there are none in range.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getBestTarget(ShipAPI ship, float range)
+    {
+        return findBestTargets(ship, range, 1).peekWorst();
+    }
+
+    /**
+     * Finds the best targets for a weapon: visible enemies within its range and firing arc.
+     *
+     * @param weapon     The weapon choosing a target.
+     * @param maxResults The most targets to return.
+     *
+     * @return Up to {@code maxResults} visible enemies that {@code weapon} can hit, ordered from highest to lowest
+     *         score.
+     *
+     * @since 3.0b
+     */
+    public List<ShipAPI> getBestTargets(WeaponAPI weapon, int maxResults)
+    {
+        return findBestTargets(weapon, maxResults).drainSorted();
+    }
+
+    /**
+     * Finds the best targets for a weapon, and adds them to an existing {@link List}.
+     *
+     * @param weapon     The weapon choosing a target.
+     * @param maxResults The most targets to add.
+     * @param results    The {@link List} that up to {@code maxResults} visible enemies within {@code weapon}'s
+     *                   range and firing arc will be added to, ordered from highest to lowest score.
+     *
+     * @since 3.0b
+     */
+    public void getBestTargets(WeaponAPI weapon, int maxResults, List<? super ShipAPI> results)
+    {
+        results.addAll(getBestTargets(weapon, maxResults));
+    }
+
+    /**
+     * Finds the best target for a weapon.
+     *
+     * @param weapon The weapon choosing a target.
+     *
+     * @return The visible enemy within {@code weapon}'s range and firing arc with the highest score, or
+     *         {@code null} if there are none.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getBestTarget(WeaponAPI weapon)
+    {
+        return findBestTargets(weapon, 1).peekWorst();
+    }
+
+    private NearestHeap<ShipAPI> findBestTargets(ShipAPI ship, float range, int maxResults)
+    {
+        final int call = Instrumentation.start();
+        final NearestHeap<ShipAPI> result = searchBestTargets(ship, range, maxResults);
+        Instrumentation.end(shipSearchProbe, call, result.size());
+        return result;
+    }
+
+    // Scores are negated so that the heap's smallest keys are the highest scores
+    private NearestHeap<ShipAPI> searchBestTargets(ShipAPI ship, float range, int maxResults)
+    {
+        final NearestHeap<ShipAPI> best = new NearestHeap<>(getMaxCandidates(maxResults));
+        if (maxResults <= 0)
+        {
+            return best;
+        }
+
+        final TargetFeatures features = new TargetFeatures();
+        final Vector2f from = ship.getLocation();
+        AIUtils.getNearbyEnemies(ship, range, target ->
+        {
+            features.set(target, from, ship.getCollisionRadius(), range, 0f);
+            offer(best, features);
+            return true;
+        });
+
+        return best;
+    }
+
+    private NearestHeap<ShipAPI> findBestTargets(WeaponAPI weapon, int maxResults)
+    {
+        final int call = Instrumentation.start();
+        final NearestHeap<ShipAPI> result = searchBestTargets(weapon, maxResults);
+        Instrumentation.end(weaponSearchProbe, call, result.size());
+        return result;
+    }
+
+    private NearestHeap<ShipAPI> searchBestTargets(WeaponAPI weapon, int maxResults)
+    {
+        final NearestHeap<ShipAPI> best = new NearestHeap<>(getMaxCandidates(maxResults));
+        if (maxResults <= 0)
+        {
+            return best;
+        }
+
+        final TargetFeatures features = new TargetFeatures();
+        final WeaponArc arc = new WeaponArc();
+        arc.set(weapon);
+
+        // The ship search must be wide enough to cover the weapon's range from wherever it's mounted
+        final ShipAPI ship = weapon.getShip();
+        final Vector2f from = weapon.getLocation();
+        final float range = arc.range, reach = range + MathUtils.getDistance(ship.getLocation(), from);
+        final float currAngle = weapon.getCurrAngle(), turnRate = weapon.getTurnRate();
+        AIUtils.getNearbyEnemies(ship, reach, target ->
+        {
+            final Vector2f loc = target.getLocation();
+            if (MathUtils.isWithinRange(target, from, range) && arc.isInArc(loc.x, loc.y))
+            {
+                final float timeToAim = WeaponUtils.getTimeToFace(currAngle, turnRate, loc.x - from.x, loc.y - from.y);
+                features.set(target, from, 0f, range, timeToAim);
+                offer(best, features);
+            }
+
+            return true;
+        });
+
+        return best;
+    }
+
+    // Every candidate is a ship on the map, so there's never any need to keep room for more results than that
+    private static int getMaxCandidates(int maxResults)
+    {
+        return Math.min(maxResults, Global.getCombatEngine().getShips().size());
+    }
+
+    private void offer(NearestHeap<ShipAPI> best, TargetFeatures features)
+    {
+        final float score = score(features);
+        if (!Float.isNaN(score))
+        {
+            best.offer(features.getTarget(), -score);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the fog of war status of entities in one of the combat engine's entity lists, so each entity's
+ * visibility is only looked up once per frame no matter how many searches ask for it. Entries are indexed by the
+ * entity's position in the engine's list, and are only trusted if the same entity is still at that position.
+ * <p>
+ * Instances are stored in the combat engine's custom data by {@link CombatCache}, so they never outlive a battle.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class VisibilityCache
+{
+    // Used when caching is disabled; every check goes straight to the fog of war
+    static final VisibilityCache UNCACHED = new VisibilityCache(false);
+    private final boolean enabled;
+    private CombatEntityAPI[] entities = new CombatEntityAPI[0];
+    private int[] frameIds = new int[0];
+    private byte[] sides = new byte[0];
+    private boolean[] visible = new boolean[0];
+    private int frameId = 0;
+
+    VisibilityCache(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    void setFrame(int frameId)
+    {
+        this.frameId = frameId;
+    }
+
+    /**
+     * Returns the same result as {@link CombatUtils#isVisibleToSide(CombatEntityAPI, int)}.
+     *
+     * @param index The position of {@code entity} in the engine list this cache was created for.
+     */
+    boolean isVisibleToSide(CombatEntityAPI entity, int side, int index)
+    {
+        // Neutrals and allies are always visible, and don't need a fog of war lookup at all
+        if (!enabled || side + entity.getOwner() != 1 || index < 0)
+        {
+            return CombatUtils.isVisibleToSide(entity, side);
+        }
+
+        ensureCapacity(index + 1);
+        if (frameIds[index] == frameId && entities[index] == entity && sides[index] == side)
+        {
+            return visible[index];
+        }
+
+        final boolean isVisible = CombatUtils.isVisibleToSide(entity, side);
+        entities[index] = entity;
+        frameIds[index] = frameId;
+        sides[index] = (byte) side;
+        visible[index] = isVisible;
+        return isVisible;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (entities.length >= capacity)
+        {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, entities.length * 2);
+        entities = Arrays.copyOf(entities, newCapacity);
+        frameIds = Arrays.copyOf(frameIds, newCapacity);
+        sides = Arrays.copyOf(sides, newCapacity);
+        visible = Arrays.copyOf(visible, newCapacity);
+    }
+}
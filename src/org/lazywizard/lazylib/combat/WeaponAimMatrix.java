@@ -0,0 +1,302 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.WeaponAPI;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The results of {@link WeaponUtils#getAimMatrix(ShipAPI, List, WeaponAimMatrix)}: for every weapon on a ship and
+ * every target in a candidate list, how long the weapon needs to turn to face the target, and whether the target
+ * is within the weapon's range and firing arc.
+ * <p>
+ * Rows are weapons, ordered the same as {@link ShipAPI#getAllWeapons()}. Columns are targets, ordered the same as
+ * the candidate list the matrix was filled from. Range and arc are tested the same way as
+ * {@link WeaponUtils#getTargetsInArc(ShipAPI, WeaponTargetTable)}: range includes the target's collision radius,
+ * and the arc is tested against the target's center.
+ * <p>
+ * A matrix is meant to be kept and passed back in every frame. Its storage is reused each time it is filled, so
+ * after the first few frames refreshing it allocates no memory. Call {@link #clear()} once combat ends so the
+ * matrix doesn't keep any entities alive.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class WeaponAimMatrix
+{
+    // Bits of each cell in flags
+    static final byte IN_RANGE = 1, IN_ARC = 2;
+    private WeaponAPI[] weapons = new WeaponAPI[0];
+    private CombatEntityAPI[] targets = new CombatEntityAPI[0];
+    private int numWeapons = 0, numTargets = 0;
+    @Nullable
+    private ShipAPI ship = null;
+    // Filled in directly by WeaponUtils.getAimMatrix(), cells are stored row by row
+    WeaponArc[] arcs = new WeaponArc[0];
+    float[] targetXs = new float[0], targetYs = new float[0], targetRadii = new float[0];
+    float[] timesToAim = new float[0];
+    byte[] flags = new byte[0];
+
+    /**
+     * Creates an empty matrix. Fill it with {@link WeaponUtils#getAimMatrix(ShipAPI, List, WeaponAimMatrix)}.
+     *
+     * @since 3.0b
+     */
+    public WeaponAimMatrix()
+    {
+    }
+
+    /**
+     * Returns the ship whose weapons are in this matrix.
+     *
+     * @return The ship this matrix was last filled for, or {@code null} if it is empty.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getShip()
+    {
+        return ship;
+    }
+
+    /**
+     * Returns how many weapons are in this matrix.
+     *
+     * @return The number of rows in this matrix.
+     *
+     * @since 3.0b
+     */
+    public int getNumWeapons()
+    {
+        return numWeapons;
+    }
+
+    /**
+     * Returns how many targets are in this matrix.
+     *
+     * @return The number of columns in this matrix.
+     *
+     * @since 3.0b
+     */
+    public int getNumTargets()
+    {
+        return numTargets;
+    }
+
+    /**
+     * Returns the weapon a row belongs to.
+     *
+     * @param row The row to look up, from 0 to {@link #getNumWeapons()} - 1.
+     *
+     * @return The weapon whose results are stored in {@code row}.
+     *
+     * @since 3.0b
+     */
+    public WeaponAPI getWeapon(int row)
+    {
+        checkRow(row);
+        return weapons[row];
+    }
+
+    /**
+     * Returns the target a column belongs to.
+     *
+     * @param column The column to look up, from 0 to {@link #getNumTargets()} - 1.
+     *
+     * @return The target whose results are stored in {@code column}.
+     *
+     * @since 3.0b
+     */
+    public CombatEntityAPI getTarget(int column)
+    {
+        checkColumn(column);
+        return targets[column];
+    }
+
+    /**
+     * Returns how long a weapon needs to turn to face a target.
+     *
+     * @param row    The weapon's row.
+     * @param column The target's column.
+     *
+     * @return The time in seconds for the weapon to rotate from where it is currently aimed to face the target's
+     *         center, or {@link Float#MAX_VALUE} if it can't turn and isn't already facing the target. This
+     *         doesn't check whether the weapon's arc allows it to turn that far; use {@link #isInArc(int, int)}.
+     *
+     * @since 3.0b
+     */
+    public float getTimeToAim(int row, int column)
+    {
+        checkCell(row, column);
+        return timesToAim[row * numTargets + column];
+    }
+
+    /**
+     * Returns whether a target is within a weapon's range.
+     *
+     * @param row    The weapon's row.
+     * @param column The target's column.
+     *
+     * @return {@code true} if the target's collision circle is within the weapon's range, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean isInRange(int row, int column)
+    {
+        checkCell(row, column);
+        return (flags[row * numTargets + column] & IN_RANGE) != 0;
+    }
+
+    /**
+     * Returns whether a target is within a weapon's firing arc.
+     *
+     * @param row    The weapon's row.
+     * @param column The target's column.
+     *
+     * @return {@code true} if the target's center is within the arc the weapon can turn to cover, {@code false}
+     *         otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean isInArc(int row, int column)
+    {
+        checkCell(row, column);
+        return (flags[row * numTargets + column] & IN_ARC) != 0;
+    }
+
+    /**
+     * Returns whether a weapon can hit a target without the ship moving.
+     *
+     * @param row    The weapon's row.
+     * @param column The target's column.
+     *
+     * @return {@code true} if the target is both in range and in arc of the weapon, {@code false} otherwise.
+     *
+     * @since 3.0b
+     */
+    public boolean canHit(int row, int column)
+    {
+        checkCell(row, column);
+        return flags[row * numTargets + column] == (IN_RANGE | IN_ARC);
+    }
+
+    /**
+     * Finds the target a weapon can aim at soonest, out of those it can hit.
+     *
+     * @param row The weapon's row.
+     *
+     * @return The column of the target in range and arc with the lowest time to aim, or -1 if the weapon can't hit
+     *         any of the targets (including when there are no targets).
+     *
+     * @since 3.0b
+     */
+    public int getQuickestTarget(int row)
+    {
+        checkRow(row);
+        int best = -1;
+        float bestTime = Float.POSITIVE_INFINITY;
+        for (int column = 0, cell = row * numTargets; column < numTargets; column++, cell++)
+        {
+            if (flags[cell] == (IN_RANGE | IN_ARC) && timesToAim[cell] < bestTime)
+            {
+                best = column;
+                bestTime = timesToAim[cell];
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Empties this matrix, releasing every entity it refers to.
+     *
+     * @since 3.0b
+     */
+    public void clear()
+    {
+        Arrays.fill(weapons, 0, numWeapons, null);
+        Arrays.fill(targets, 0, numTargets, null);
+        ship = null;
+        numWeapons = 0;
+        numTargets = 0;
+    }
+
+    void reset(ShipAPI ship, List<WeaponAPI> weapons, List<? extends CombatEntityAPI> targets)
+    {
+        clear();
+        this.ship = ship;
+        numWeapons = weapons.size();
+        numTargets = targets.size();
+        if (this.weapons.length < numWeapons)
+        {
+            this.weapons = new WeaponAPI[numWeapons];
+            arcs = Arrays.copyOf(arcs, numWeapons);
+            for (int i = 0; i < numWeapons; i++)
+            {
+                if (arcs[i] == null)
+                {
+                    arcs[i] = new WeaponArc();
+                }
+            }
+        }
+
+        if (this.targets.length < numTargets)
+        {
+            this.targets = new CombatEntityAPI[numTargets];
+            targetXs = new float[numTargets];
+            targetYs = new float[numTargets];
+            targetRadii = new float[numTargets];
+        }
+
+        final int numCells = numWeapons * numTargets;
+        if (timesToAim.length < numCells)
+        {
+            timesToAim = new float[numCells];
+            flags = new byte[numCells];
+        }
+
+        for (int i = 0; i < numWeapons; i++)
+        {
+            final WeaponAPI weapon = weapons.get(i);
+            this.weapons[i] = weapon;
+            arcs[i].set(weapon);
+        }
+
+        for (int i = 0; i < numTargets; i++)
+        {
+            final CombatEntityAPI target = targets.get(i);
+            this.targets[i] = target;
+            targetXs[i] = target.getLocation().x;
+            targetYs[i] = target.getLocation().y;
+            targetRadii[i] = target.getCollisionRadius();
+        }
+    }
+
+    // Only the dimension being indexed is checked, so a matrix with no targets still has valid rows and vice versa
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= numWeapons)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + numWeapons);
+        }
+    }
+
+    private void checkColumn(int column)
+    {
+        if (column < 0 || column >= numTargets)
+        {
+            throw new IndexOutOfBoundsException("Column " + column + " of " + numTargets);
+        }
+    }
+
+    private void checkCell(int row, int column)
+    {
+        if (row < 0 || row >= numWeapons || column < 0 || column >= numTargets)
+        {
+            throw new IndexOutOfBoundsException("Cell " + row + "," + column + " of " + numWeapons + "x" + numTargets);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.WeaponAPI;
+
+/**
+ * A snapshot of a weapon's location, range and firing arc, laid out so that an arc test is a couple of
+ * multiplications instead of an angle calculation per target. A point is within the arc if the angle between the
+ * arc's center direction and the direction to the point is at most half the arc, which is the same as the dot
+ * product of the two directions being at least {@code cos(arc / 2)} times the point's distance.
+ * <p>
+ * The arc is taken from {@link WeaponAPI#getArc()} and {@link WeaponAPI#getArcFacing()}, so it matches
+ * {@link WeaponAPI#distanceFromArc(org.lwjgl.util.vector.Vector2f)}: the area the weapon can turn to cover, not
+ * where it is currently aimed.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+final class WeaponArc
+{
+    float x, y, range, rangeSquared;
+    private float dirX, dirY, cosHalfArc;
+    private boolean omnidirectional;
+
+    void set(WeaponAPI weapon)
+    {
+        x = weapon.getLocation().x;
+        y = weapon.getLocation().y;
+        range = weapon.getRange();
+        rangeSquared = range * range;
+
+        final float arc = weapon.getArc();
+        omnidirectional = (arc >= 360f);
+        final double facing = Math.toRadians(weapon.getShip().getFacing() + weapon.getArcFacing());
+        dirX = (float) Math.cos(facing);
+        dirY = (float) Math.sin(facing);
+        cosHalfArc = (float) Math.cos(Math.toRadians(arc / 2f));
+    }
+
+    /**
+     * Equivalent to {@code weapon.distanceFromArc(new Vector2f(px, py)) == 0f}.
+     */
+    boolean isInArc(float px, float py)
+    {
+        if (omnidirectional)
+        {
+            return true;
+        }
+
+        final float dx = px - x, dy = py - y;
+        final float dot = dx * dirX + dy * dirY;
+
+        // Compare squares to avoid a square root; the sign check keeps the comparison valid for arcs over 180
+        final float lhs = dot * Math.abs(dot), rhs = (dx * dx + dy * dy) * cosHalfArc * Math.abs(cosHalfArc);
+        return lhs >= rhs;
+    }
+}
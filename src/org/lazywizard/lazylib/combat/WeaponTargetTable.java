@@ -0,0 +1,293 @@
+package org.lazywizard.lazylib.combat;
+
+import com.fs.starfarer.api.combat.MissileAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.WeaponAPI;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The results of {@link WeaponUtils#getTargetsInArc(ShipAPI, WeaponTargetTable)}:
+ * the targets in arc and range of every weapon on a ship. Each row holds the
+ * same results that {@link WeaponUtils#getNearestEnemyInArc(WeaponAPI)},
+ * {@link WeaponUtils#getNearestAllyInArc(WeaponAPI)},
+ * {@link WeaponUtils#getNearestEnemyMissileInArc(WeaponAPI)},
+ * {@link WeaponUtils#getEnemiesInArc(WeaponAPI)},
+ * {@link WeaponUtils#getAlliesInArc(WeaponAPI)} and
+ * {@link WeaponUtils#getEnemyMissilesInArc(WeaponAPI)} would return for that
+ * weapon.
+ * <p>
+ * A table is meant to be kept and passed back in every frame. Its storage is
+ * reused each time it is filled. Rows are ordered the same as
+ * {@link ShipAPI#getAllWeapons()}. Call {@link #clear()} once combat ends so
+ * the table doesn't keep any entities alive.
+ *
+ * @author LazyWizard
+ * @since 3.0b
+ */
+public final class WeaponTargetTable
+{
+    private final List<List<ShipAPI>> enemies = new ArrayList<>(), allies = new ArrayList<>();
+    private final List<List<MissileAPI>> enemyMissiles = new ArrayList<>();
+    private WeaponAPI[] weapons = new WeaponAPI[0];
+    private int size = 0;
+    @Nullable
+    private ShipAPI ship = null;
+    // Filled in directly by WeaponUtils.getTargetsInArc()
+    WeaponArc[] arcs = new WeaponArc[0];
+    ShipAPI[] nearestEnemies = new ShipAPI[0], nearestAllies = new ShipAPI[0];
+    MissileAPI[] nearestEnemyMissiles = new MissileAPI[0];
+    float[] enemyDistances = new float[0], allyDistances = new float[0], missileDistancesSquared = new float[0];
+
+    /**
+     * Creates an empty table. Fill it with
+     * {@link WeaponUtils#getTargetsInArc(ShipAPI, WeaponTargetTable)}.
+     *
+     * @since 3.0b
+     */
+    public WeaponTargetTable()
+    {
+    }
+
+    /**
+     * Returns the ship whose weapons are in this table.
+     *
+     * @return The ship this table was last filled for, or {@code null} if it
+     *         is empty.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getShip()
+    {
+        return ship;
+    }
+
+    /**
+     * Returns how many weapons are in this table.
+     *
+     * @return The number of rows in this table.
+     *
+     * @since 3.0b
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the weapon a row belongs to.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The weapon whose targets are stored in {@code row}.
+     *
+     * @since 3.0b
+     */
+    public WeaponAPI getWeapon(int row)
+    {
+        checkRow(row);
+        return weapons[row];
+    }
+
+    /**
+     * Returns the row a weapon is stored in.
+     *
+     * @param weapon The weapon to look up.
+     *
+     * @return The row {@code weapon} is stored in, or -1 if it isn't in this
+     *         table.
+     *
+     * @since 3.0b
+     */
+    public int getRow(WeaponAPI weapon)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (weapons[i] == weapon)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the closest enemy in arc and range of the weapon in a row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The same result as
+     *         {@link WeaponUtils#getNearestEnemyInArc(WeaponAPI)}.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getNearestEnemy(int row)
+    {
+        checkRow(row);
+        return nearestEnemies[row];
+    }
+
+    /**
+     * Returns the closest ally in arc and range of the weapon in a row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The same result as
+     *         {@link WeaponUtils#getNearestAllyInArc(WeaponAPI)}.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public ShipAPI getNearestAlly(int row)
+    {
+        checkRow(row);
+        return nearestAllies[row];
+    }
+
+    /**
+     * Returns the closest enemy missile in arc and range of the weapon in a
+     * row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The same result as
+     *         {@link WeaponUtils#getNearestEnemyMissileInArc(WeaponAPI)}.
+     *
+     * @since 3.0b
+     */
+    @Nullable
+    public MissileAPI getNearestEnemyMissile(int row)
+    {
+        checkRow(row);
+        return nearestEnemyMissiles[row];
+    }
+
+    /**
+     * Returns every enemy in arc and range of the weapon in a row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The same results as
+     *         {@link WeaponUtils#getEnemiesInArc(WeaponAPI)}. This
+     *         {@link List} is reused the next time this table is filled.
+     *
+     * @since 3.0b
+     */
+    public List<ShipAPI> getEnemies(int row)
+    {
+        checkRow(row);
+        return enemies.get(row);
+    }
+
+    /**
+     * Returns every ally in arc and range of the weapon in a row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The same results as
+     *         {@link WeaponUtils#getAlliesInArc(WeaponAPI)}. This
+     *         {@link List} is reused the next time this table is filled.
+     *
+     * @since 3.0b
+     */
+    public List<ShipAPI> getAllies(int row)
+    {
+        checkRow(row);
+        return allies.get(row);
+    }
+
+    /**
+     * Returns every enemy missile in arc and range of the weapon in a row.
+     *
+     * @param row The row to look up, from 0 to {@link #size()} - 1.
+     *
+     * @return The same results as
+     *         {@link WeaponUtils#getEnemyMissilesInArc(WeaponAPI)}. This
+     *         {@link List} is reused the next time this table is filled.
+     *
+     * @since 3.0b
+     */
+    public List<MissileAPI> getEnemyMissiles(int row)
+    {
+        checkRow(row);
+        return enemyMissiles.get(row);
+    }
+
+    /**
+     * Empties this table, releasing every entity it refers to.
+     *
+     * @since 3.0b
+     */
+    public void clear()
+    {
+        Arrays.fill(weapons, 0, size, null);
+        Arrays.fill(nearestEnemies, 0, size, null);
+        Arrays.fill(nearestAllies, 0, size, null);
+        Arrays.fill(nearestEnemyMissiles, 0, size, null);
+        for (int i = 0; i < size; i++)
+        {
+            enemies.get(i).clear();
+            allies.get(i).clear();
+            enemyMissiles.get(i).clear();
+        }
+
+        ship = null;
+        size = 0;
+    }
+
+    void reset(ShipAPI ship, List<WeaponAPI> weapons)
+    {
+        clear();
+        this.ship = ship;
+        size = weapons.size();
+        if (this.weapons.length < size)
+        {
+            this.weapons = new WeaponAPI[size];
+            nearestEnemies = new ShipAPI[size];
+            nearestAllies = new ShipAPI[size];
+            nearestEnemyMissiles = new MissileAPI[size];
+            enemyDistances = new float[size];
+            allyDistances = new float[size];
+            missileDistancesSquared = new float[size];
+            arcs = Arrays.copyOf(arcs, size);
+            for (int i = 0; i < size; i++)
+            {
+                if (arcs[i] == null)
+                {
+                    arcs[i] = new WeaponArc();
+                }
+            }
+        }
+
+        while (enemies.size() < size)
+        {
+            enemies.add(new ArrayList<ShipAPI>());
+            allies.add(new ArrayList<ShipAPI>());
+            enemyMissiles.add(new ArrayList<MissileAPI>());
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            final WeaponAPI weapon = weapons.get(i);
+            this.weapons[i] = weapon;
+            arcs[i].set(weapon);
+            enemyDistances[i] = Float.MAX_VALUE;
+            allyDistances[i] = Float.MAX_VALUE;
+            missileDistancesSquared[i] = Float.MAX_VALUE;
+        }
+    }
+
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= size)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+}
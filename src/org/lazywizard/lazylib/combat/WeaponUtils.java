@@ -6,12 +6,16 @@ import com.fs.starfarer.api.combat.MissileAPI;
 import com.fs.starfarer.api.combat.ShipAPI;
 import com.fs.starfarer.api.combat.WeaponAPI;
 import org.jetbrains.annotations.Nullable;
+import org.lazywizard.lazylib.FastTrig;
+import org.lazywizard.lazylib.Instrumentation;
+import org.lazywizard.lazylib.LazyLib;
 import org.lazywizard.lazylib.MathUtils;
 import org.lazywizard.lazylib.VectorUtils;
 import org.lwjgl.util.vector.Vector2f;
 
 import java.awt.geom.Line2D;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -24,6 +28,12 @@ import java.util.List;
 // TODO: this entire class needs thorough testing for bugs
 public class WeaponUtils
 {
+    // Record the cost of each search while instrumentation is enabled in lazylib_settings.json
+    private static final Instrumentation.Probe targetsInArcProbe =
+            new Instrumentation.Probe("WeaponUtils.getTargetsInArc");
+    private static final Instrumentation.Probe aimMatrixProbe =
+            new Instrumentation.Probe("WeaponUtils.getAimMatrix");
+
     /**
      * Checks if a {@link CombatEntityAPI} is within the arc and range of a
      * {@link WeaponAPI}.
@@ -323,6 +333,297 @@ public class WeaponUtils
         return missiles;
     }
 
+    /**
+     * Finds the targets in arc and range of every weapon on a ship at once.
+     * This gives the same results as calling {@link #getNearestEnemyInArc(WeaponAPI)},
+     * {@link #getNearestAllyInArc(WeaponAPI)}, {@link #getNearestEnemyMissileInArc(WeaponAPI)},
+     * {@link #getEnemiesInArc(WeaponAPI)}, {@link #getAlliesInArc(WeaponAPI)}
+     * and {@link #getEnemyMissilesInArc(WeaponAPI)} for each weapon, but
+     * nearby ships and missiles are only gathered once for the whole ship.
+     *
+     * @param ship The ship whose weapons should be checked.
+     *
+     * @return A new {@link WeaponTargetTable} containing the targets of every
+     *         weapon on {@code ship}.
+     *
+     * @see #getTargetsInArc(ShipAPI, WeaponTargetTable)
+     * @since 3.0b
+     */
+    public static WeaponTargetTable getTargetsInArc(ShipAPI ship)
+    {
+        return getTargetsInArc(ship, new WeaponTargetTable());
+    }
+
+    /**
+     * Finds the targets in arc and range of every weapon on a ship at once,
+     * reusing an existing {@link WeaponTargetTable}. Passing in the same table
+     * every frame avoids allocating memory for the results.
+     *
+     * @param ship    The ship whose weapons should be checked.
+     * @param results The table to fill. Any existing contents are discarded.
+     *
+     * @return {@code results}, now containing the targets of every weapon on
+     *         {@code ship}.
+     *
+     * @since 3.0b
+     */
+    public static WeaponTargetTable getTargetsInArc(ShipAPI ship, WeaponTargetTable results)
+    {
+        final int call = Instrumentation.start();
+        final WeaponTargetTable result = findTargetsInArc(ship, results);
+        Instrumentation.end(targetsInArcProbe, call, result.size());
+        return result;
+    }
+
+    private static WeaponTargetTable findTargetsInArc(ShipAPI ship, WeaponTargetTable results)
+    {
+        final List<WeaponAPI> weapons = ship.getAllWeapons();
+        results.reset(ship, weapons);
+        final int numWeapons = results.size();
+        if (numWeapons == 0)
+        {
+            return results;
+        }
+
+        // Find how far from the ship's center any of its weapons can reach
+        final Vector2f shipLoc = ship.getLocation();
+        float reach = 0f;
+        for (int i = 0; i < numWeapons; i++)
+        {
+            final WeaponArc arc = results.arcs[i];
+            final float dx = arc.x - shipLoc.x, dy = arc.y - shipLoc.y;
+            reach = Math.max(reach, (float) Math.sqrt(dx * dx + dy * dy) + arc.range);
+        }
+
+        // Ships are checked in the same order as the engine's ship list, so results match the single weapon methods
+        final List<ShipAPI> ships = Global.getCombatEngine().getShips();
+        final VisibilityCache visibility = CombatCache.getVisibility(CombatCache.SHIPS);
+        if (LazyLib.isCachingEnabled())
+        {
+            // Grid entries index the snapshot's ships, which the live list may no longer match
+            final CombatSnapshot snapshot = CombatCache.getSnapshot(CombatSnapshot.SHIPS);
+            final SpatialHash grid = CombatCache.getShipGrid();
+            final int start = grid.query(shipLoc.x, shipLoc.y, reach);
+            try
+            {
+                for (int i = start, end = grid.getQueryEnd(); i < end; i++)
+                {
+                    final int index = grid.getResult(i);
+                    checkShipTarget(ship, (ShipAPI) snapshot.getEntity(CombatSnapshot.SHIPS, index), index,
+                            visibility, results);
+                }
+            }
+            finally
+            {
+                grid.release(start);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < ships.size(); i++)
+            {
+                final ShipAPI tmp = ships.get(i);
+                if (MathUtils.isWithinRange(tmp, shipLoc, reach))
+                {
+                    checkShipTarget(ship, tmp, i, visibility, results);
+                }
+            }
+        }
+
+        // Missiles are only tested against their center, so the engine's grid needs no padding
+        final int owner = ship.getOwner();
+        for (Iterator iter = Global.getCombatEngine().getMissileGrid().getCheckIterator(
+                shipLoc, reach * 2f, reach * 2f); iter.hasNext(); )
+        {
+            final MissileAPI tmp = (MissileAPI) iter.next();
+            final boolean isEnemy = (tmp.getOwner() != owner);
+            if (!isEnemy && !tmp.isFizzling())
+            {
+                continue;
+            }
+
+            final float mx = tmp.getLocation().x, my = tmp.getLocation().y;
+            for (int w = 0; w < numWeapons; w++)
+            {
+                final WeaponArc arc = results.arcs[w];
+                final float dx = mx - arc.x, dy = my - arc.y, distanceSquared = dx * dx + dy * dy;
+                if (distanceSquared > arc.rangeSquared || !arc.isInArc(mx, my))
+                {
+                    continue;
+                }
+
+                results.getEnemyMissiles(w).add(tmp);
+                if (isEnemy && distanceSquared < results.missileDistancesSquared[w])
+                {
+                    results.nearestEnemyMissiles[w] = tmp;
+                    results.missileDistancesSquared[w] = distanceSquared;
+                }
+            }
+        }
+
+        return results;
+    }
+
+    // Tests one ship against every weapon in the table, following the same rules as the single weapon methods
+    private static void checkShipTarget(ShipAPI ship, ShipAPI tmp, int index, VisibilityCache visibility,
+                                        WeaponTargetTable results)
+    {
+        final int owner = ship.getOwner();
+        final boolean isEnemy = (tmp.getOwner() != owner), isAlly = (!isEnemy && tmp != ship);
+        if (!isEnemy && !isAlly)
+        {
+            return;
+        }
+
+        // Only ships that count for getEnemiesOnMap()/getAlliesOnMap() are added to the lists
+        final boolean listable = !tmp.isHulk() && !tmp.isShuttlePod();
+        final float tx = tmp.getLocation().x, ty = tmp.getLocation().y, radius = tmp.getCollisionRadius();
+        int visible = -1;
+        for (int w = 0; w < results.size(); w++)
+        {
+            final WeaponArc arc = results.arcs[w];
+            final float dx = tx - arc.x, dy = ty - arc.y, distanceSquared = dx * dx + dy * dy,
+                    maxRange = arc.range + radius;
+            if (distanceSquared > maxRange * maxRange || !arc.isInArc(tx, ty))
+            {
+                continue;
+            }
+
+            final float distance = Math.max(0f, (float) Math.sqrt(distanceSquared) - radius);
+            if (isEnemy)
+            {
+                if (distance < results.enemyDistances[w])
+                {
+                    results.nearestEnemies[w] = tmp;
+                    results.enemyDistances[w] = distance;
+                }
+
+                if (listable)
+                {
+                    // The fog of war is only checked once per ship, and only if it's in range of something
+                    if (visible < 0)
+                    {
+                        visible = (visibility.isVisibleToSide(tmp, owner, index) ? 1 : 0);
+                    }
+
+                    if (visible == 1)
+                    {
+                        results.getEnemies(w).add(tmp);
+                    }
+                }
+            }
+            else
+            {
+                if (distance < results.allyDistances[w])
+                {
+                    results.nearestAllies[w] = tmp;
+                    results.allyDistances[w] = distance;
+                }
+
+                if (listable)
+                {
+                    results.getAllies(w).add(tmp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures how every weapon on a ship lines up with a set of targets:
+     * how long each weapon needs to turn to face each target, and whether
+     * each target is within each weapon's range and firing arc.
+     *
+     * @param ship    The ship whose weapons should be checked.
+     * @param targets The targets to check the weapons against.
+     *
+     * @return A new {@link WeaponAimMatrix} with a row for every weapon on
+     *         {@code ship} and a column for every entity in {@code targets}.
+     *
+     * @see #getAimMatrix(ShipAPI, List, WeaponAimMatrix)
+     * @since 3.0b
+     */
+    public static WeaponAimMatrix getAimMatrix(ShipAPI ship, List<? extends CombatEntityAPI> targets)
+    {
+        return getAimMatrix(ship, targets, new WeaponAimMatrix());
+    }
+
+    /**
+     * Measures how every weapon on a ship lines up with a set of targets,
+     * reusing an existing {@link WeaponAimMatrix}. Passing in the same matrix
+     * every frame avoids allocating memory for the results.
+     * <p>
+     * Each weapon's location, arc, range, current angle and turn rate and each
+     * target's location and collision radius are read once, so this is much
+     * cheaper than calling the single weapon methods for every pair.
+     *
+     * @param ship    The ship whose weapons should be checked.
+     * @param targets The targets to check the weapons against.
+     * @param results The matrix to fill. Any existing contents are discarded.
+     *
+     * @return {@code results}, now holding a row for every weapon on
+     *         {@code ship} and a column for every entity in {@code targets}.
+     *
+     * @since 3.0b
+     */
+    public static WeaponAimMatrix getAimMatrix(ShipAPI ship, List<? extends CombatEntityAPI> targets,
+                                               WeaponAimMatrix results)
+    {
+        final int call = Instrumentation.start();
+        final WeaponAimMatrix result = fillAimMatrix(ship, targets, results);
+        Instrumentation.end(aimMatrixProbe, call, result.getNumWeapons() * result.getNumTargets());
+        return result;
+    }
+
+    private static WeaponAimMatrix fillAimMatrix(ShipAPI ship, List<? extends CombatEntityAPI> targets,
+                                                 WeaponAimMatrix results)
+    {
+        final List<WeaponAPI> weapons = ship.getAllWeapons();
+        results.reset(ship, weapons, targets);
+        final int numWeapons = results.getNumWeapons(), numTargets = results.getNumTargets();
+        final float[] targetXs = results.targetXs, targetYs = results.targetYs, targetRadii = results.targetRadii;
+        for (int w = 0, cell = 0; w < numWeapons; w++)
+        {
+            final WeaponAPI weapon = weapons.get(w);
+            final WeaponArc arc = results.arcs[w];
+            final float currAngle = weapon.getCurrAngle(), turnRate = weapon.getTurnRate();
+            for (int t = 0; t < numTargets; t++, cell++)
+            {
+                final float tx = targetXs[t], ty = targetYs[t], dx = tx - arc.x, dy = ty - arc.y,
+                        maxRange = arc.range + targetRadii[t];
+                byte flags = 0;
+                if (dx * dx + dy * dy <= maxRange * maxRange)
+                {
+                    flags |= WeaponAimMatrix.IN_RANGE;
+                }
+
+                if (arc.isInArc(tx, ty))
+                {
+                    flags |= WeaponAimMatrix.IN_ARC;
+                }
+
+                results.flags[cell] = flags;
+                results.timesToAim[cell] = getTimeToFace(currAngle, turnRate, dx, dy);
+            }
+        }
+
+        return results;
+    }
+
+    // How long a weapon aimed at currAngle needs to turn to face along (dx, dy)
+    // Unlike getTimeToAim(), this measures from where the weapon is currently aimed rather than from its arc
+    static float getTimeToFace(float currAngle, float turnRate, float dx, float dy)
+    {
+        final float angle = (dx == 0f && dy == 0f) ? 0f
+                : MathUtils.clampAngle((float) Math.toDegrees(FastTrig.atan2(dy, dx)));
+        final float rotation = Math.abs(MathUtils.getShortestRotation(currAngle, angle));
+        if (rotation == 0f)
+        {
+            return 0f;
+        }
+
+        return (turnRate > 0f ? rotation / turnRate : Float.MAX_VALUE);
+    }
+
     /**
      * Manually adjusts a weapon's aim towards a point.
      *
@@ -0,0 +1,1020 @@
+package org.lazywizard.lazylib.testing;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.combat.*;
+import org.lazywizard.lazylib.LazyLib;
+import org.lazywizard.lazylib.MathUtils;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+/**
+ * An in-memory stand-in for {@link CombatEngineAPI}, so LazyLib's combat queries can be tested and benchmarked
+ * without the game. The battle is generated procedurally from a seed: two fleets facing each other across the map,
+ * with projectiles and missiles spread around the ships that fired them and asteroids scattered everywhere.
+ * <p>
+ * Only the parts of the engine (and of its ships, weapons and projectiles) that LazyLib reads are modelled:
+ * entity lists, the ship/missile/asteroid/all-object collision grids, fog of war, custom data, elapsed time, and
+ * the collision bounds of ships and asteroids. Anything else returns {@code false}, zero or {@code null}. Call {@link #install()} to make this the engine
+ * returned by {@link Global#getCombatEngine()}, and {@link #advance(float)} to move everything forward a frame.
+ */
+public class FakeCombatEngine
+{
+    public static final float DEFAULT_MAP_SIZE = 30_000f;
+    // Cell sizes roughly match what the game uses for its own grids
+    private static final float GRID_CELL_SIZE = 1_000f, FOG_CELL_SIZE = 250f, SIGHT_RANGE = 2_500f;
+    private static final float FIGHTER_CHANCE = 0.4f, HULK_CHANCE = 0.05f, POD_CHANCE = 0.02f,
+            SHIELD_CHANCE = 0.6f, FLARE_CHANCE = 0.05f, FIZZLE_CHANCE = 0.05f;
+    // A few projectiles, missiles and asteroids are far larger than usual (like a huge mod-added torpedo or a
+    // planetoid), so searches can't get away with padding the center-only grids by a guessed radius
+    private static final float OVERSIZED_CHANCE = 0.01f, OVERSIZED_MIN_RADIUS = 150f,
+            OVERSIZED_MAX_RADIUS = 600f;
+    // Half of the larger ships get bounds with enough segments for CollisionUtils to test them using a SegmentTree
+    // (32 or more), everything else with bounds is tested segment by segment
+    private static final float DETAILED_BOUNDS_CHANCE = 0.5f;
+    private final Random rng;
+    private final float mapWidth, mapHeight;
+    private final List<ShipAPI> ships = new ArrayList<>();
+    private final List<DamagingProjectileAPI> projectiles = new ArrayList<>();
+    private final List<MissileAPI> missiles = new ArrayList<>();
+    private final List<CombatEntityAPI> asteroids = new ArrayList<>();
+    private final List<BattleObjectiveAPI> objectives = new ArrayList<>();
+    private final List<Body> bodies = new ArrayList<>();
+    private final List<FakeWeapon> weapons = new ArrayList<>();
+    private final Map<String, Object> customData = new HashMap<>();
+    private final FakeGrid shipGrid, missileGrid, asteroidGrid, allObjectGrid;
+    private final FakeFog[] fog = new FakeFog[2];
+    private final FogOfWarAPI noFog;
+    private final CombatEngineAPI engine;
+    private boolean fogEnabled = true;
+    private float elapsed = 0f, lastFrame = 0f;
+
+    public FakeCombatEngine(int numShips, int numProjectiles, int numMissiles)
+    {
+        this(numShips, numProjectiles, numMissiles, numShips / 5, DEFAULT_MAP_SIZE, 1234L);
+    }
+
+    public FakeCombatEngine(int numShips, int numProjectiles, int numMissiles, int numAsteroids,
+                            float mapSize, long seed)
+    {
+        if (numShips <= 0 && (numProjectiles > 0 || numMissiles > 0))
+        {
+            throw new IllegalArgumentException("Projectiles and missiles need at least one ship to fire them!");
+        }
+
+        rng = new Random(seed);
+        mapWidth = mapSize;
+        mapHeight = mapSize;
+        shipGrid = new FakeGrid();
+        missileGrid = new FakeGrid();
+        asteroidGrid = new FakeGrid();
+        allObjectGrid = new FakeGrid();
+        fog[0] = new FakeFog(0);
+        fog[1] = new FakeFog(1);
+        noFog = proxy(FogOfWarAPI.class, (proxy, method, args) ->
+                method.getName().equals("isVisible") ? Boolean.TRUE : defaultValue(proxy, method, args));
+        engine = proxy(CombatEngineAPI.class, this::invokeEngine);
+
+        for (int i = 0; i < numShips; i++)
+        {
+            createShip();
+        }
+
+        for (int i = 0; i < numProjectiles; i++)
+        {
+            projectiles.add(createProjectile(DamagingProjectileAPI.class));
+        }
+
+        // Missiles are also projectiles, as they are in the game
+        for (int i = 0; i < numMissiles; i++)
+        {
+            final MissileAPI missile = createProjectile(MissileAPI.class);
+            missiles.add(missile);
+            projectiles.add(missile);
+        }
+
+        for (int i = 0; i < numAsteroids; i++)
+        {
+            final Body body = new Body(100);
+            body.loc.set(randomInRange(mapWidth / 2f), randomInRange(mapHeight / 2f));
+            body.vel.set(randomPointInCircle(50f));
+            // There are too few asteroids to leave the oversized ones to chance
+            final boolean oversized = (i % 50 == 0);
+            body.radius = (oversized ? randomOversizedRadius() : 10f + rng.nextFloat() * 40f);
+            body.facing = rng.nextFloat() * 360f;
+            body.bounds = (oversized ? randomBounds(body.radius, 32, 64) : randomBounds(body.radius, 5, 12));
+            asteroids.add(body.create(CombatAsteroidAPI.class));
+        }
+
+        for (int i = 0; i < 5; i++)
+        {
+            final Body body = new Body(100);
+            body.loc.set(randomInRange(mapWidth / 3f), randomInRange(mapHeight / 3f));
+            body.radius = 50f;
+            objectives.add(body.create(BattleObjectiveAPI.class));
+        }
+
+        update();
+    }
+
+    //<editor-fold desc="Battle generation">
+    private float randomInRange(float halfRange)
+    {
+        return (rng.nextFloat() * 2f - 1f) * halfRange;
+    }
+
+    private float randomOversizedRadius()
+    {
+        return OVERSIZED_MIN_RADIUS + rng.nextFloat() * (OVERSIZED_MAX_RADIUS - OVERSIZED_MIN_RADIUS);
+    }
+
+    // A random star-shaped polygon that fits inside radius, as every point of an entity's bounds does in the game
+    private BoundsAPI randomBounds(float radius, int minSegments, int maxSegments)
+    {
+        final int numSegments = minSegments + rng.nextInt(maxSegments - minSegments + 1);
+        final float[] points = new float[numSegments * 2];
+        for (int i = 0; i < numSegments; i++)
+        {
+            final double angle = Math.PI * 2.0 * (i + rng.nextFloat() * 0.8f) / numSegments;
+            final float distance = radius * (0.4f + rng.nextFloat() * 0.55f);
+            points[i * 2] = (float) Math.cos(angle) * distance;
+            points[i * 2 + 1] = (float) Math.sin(angle) * distance;
+        }
+
+        return createBounds(points, true);
+    }
+
+    // MathUtils' random methods aren't seeded, so battles couldn't be reproduced with them
+    private Vector2f randomPointInCircle(float radius)
+    {
+        return MathUtils.getPointOnCircumference(null, radius * (float) Math.sqrt(rng.nextFloat()),
+                rng.nextFloat() * 360f);
+    }
+
+    private void createShip()
+    {
+        final int owner = rng.nextInt(2);
+        final Body body = new Body(owner);
+        // Each fleet is spread around its own half of the map, with the front lines meeting in the middle
+        final float spreadY = mapHeight / 4f;
+        body.loc.set(randomInRange(mapWidth / 3f), (owner == 0 ? -spreadY : spreadY)
+                + (float) rng.nextGaussian() * spreadY * 0.6f);
+        body.facing = (owner == 0 ? 90f : 270f) + randomInRange(45f);
+        body.fighter = rng.nextFloat() < FIGHTER_CHANCE;
+        body.hulk = !body.fighter && rng.nextFloat() < HULK_CHANCE;
+        body.shuttlePod = !body.fighter && !body.hulk && rng.nextFloat() < POD_CHANCE;
+        body.radius = (body.fighter ? 20f + rng.nextFloat() * 20f : 60f + rng.nextFloat() * 340f);
+        body.vel.set(MathUtils.getPointOnCircumference(null, (body.fighter ? 300f : 80f) * rng.nextFloat(),
+                body.facing));
+        body.turnRate = (body.fighter ? 120f : 10f + rng.nextFloat() * 50f);
+        body.hullLevel = (body.hulk ? 0f : 0.1f + rng.nextFloat() * 0.9f);
+        body.fluxLevel = rng.nextFloat();
+        body.overloaded = rng.nextFloat() < 0.05f;
+        body.shieldOn = !body.hulk && rng.nextFloat() < SHIELD_CHANCE;
+        body.shieldArc = 90f + rng.nextFloat() * 270f;
+        body.bounds = (body.fighter ? randomBounds(body.radius, 4, 10)
+                : rng.nextFloat() < DETAILED_BOUNDS_CHANCE ? randomBounds(body.radius, 32, 128)
+                : randomBounds(body.radius, 8, 31));
+
+        final ShipAPI ship = body.create(ShipAPI.class);
+        if (!body.hulk && !body.shuttlePod)
+        {
+            final int numWeapons = (body.fighter ? 1 : 2 + rng.nextInt(7));
+            for (int i = 0; i < numWeapons; i++)
+            {
+                final FakeWeapon weapon = new FakeWeapon(ship, body);
+                weapon.offset.set(randomPointInCircle(body.radius * 0.7f));
+                weapon.range = (body.fighter ? 300f : 400f + rng.nextFloat() * 1_000f);
+                weapon.arcFacing = (rng.nextInt(3) == 0 ? 0f : randomInRange(120f));
+                weapon.arc = (rng.nextInt(4) == 0 ? 360f : 5f + rng.nextFloat() * 175f);
+                weapon.angleOffset = randomInRange(weapon.arc / 2f);
+                weapon.turnRate = 10f + rng.nextFloat() * 50f;
+                weapons.add(weapon);
+                body.weapons.add(weapon.proxy);
+            }
+        }
+
+        ships.add(ship);
+    }
+
+    private <T extends DamagingProjectileAPI> T createProjectile(Class<T> type)
+    {
+        final boolean isMissile = MissileAPI.class.isAssignableFrom(type);
+        final ShipAPI source = ships.get(rng.nextInt(ships.size()));
+        final Body body = new Body(source.getOwner());
+        body.source = source;
+        body.facing = rng.nextFloat() * 360f;
+        body.loc.set(MathUtils.getPointOnCircumference(source.getLocation(),
+                source.getCollisionRadius() + rng.nextFloat() * 1_500f, body.facing));
+        body.vel.set(MathUtils.getPointOnCircumference(null, (isMissile ? 250f : 500f)
+                + rng.nextFloat() * 500f, body.facing));
+        body.radius = (rng.nextFloat() < OVERSIZED_CHANCE ? randomOversizedRadius()
+                : isMissile ? 10f + rng.nextFloat() * 20f : 1f + rng.nextFloat() * 10f);
+        if (isMissile)
+        {
+            body.flare = rng.nextFloat() < FLARE_CHANCE;
+            body.fizzling = rng.nextFloat() < FIZZLE_CHANCE;
+        }
+
+        return body.create(type);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Simulation">
+
+    /**
+     * Makes this the engine returned by {@link Global#getCombatEngine()}.
+     */
+    public void install()
+    {
+        Global.setCombatEngine(engine);
+    }
+
+    public static void uninstall()
+    {
+        Global.setCombatEngine(null);
+    }
+
+    /**
+     * Turns LazyLib's combat caches on or off, as the {@code enableCaching} setting would.
+     */
+    public static void setCachingEnabled(boolean enabled)
+    {
+        try
+        {
+            final Field field = LazyLib.class.getDeclaredField("cacheEnabled");
+            field.setAccessible(true);
+            field.setBoolean(null, enabled);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            throw new IllegalStateException("Couldn't toggle LazyLib's caching!", ex);
+        }
+    }
+
+    /**
+     * Moves every entity along its velocity and advances the elapsed time, which also invalidates everything
+     * LazyLib cached during the previous frame.
+     */
+    public void advance(float amount)
+    {
+        for (Body body : bodies)
+        {
+            body.loc.x += body.vel.x * amount;
+            body.loc.y += body.vel.y * amount;
+        }
+
+        elapsed += amount;
+        lastFrame = amount;
+        update();
+    }
+
+    /**
+     * Advances the elapsed time without moving anything, so LazyLib rebuilds its per-frame caches for an otherwise
+     * identical battle.
+     */
+    public void advanceTime(float amount)
+    {
+        elapsed += amount;
+        lastFrame = amount;
+    }
+
+    /**
+     * Removes an entity from the battle without starting a new frame, as the game does when a ship is destroyed or
+     * a projectile hits something partway through a frame.
+     */
+    public void remove(CombatEntityAPI entity)
+    {
+        ships.remove(entity);
+        projectiles.remove(entity);
+        missiles.remove(entity);
+        asteroids.remove(entity);
+        shipGrid.remove(entity);
+        missileGrid.remove(entity);
+        asteroidGrid.remove(entity);
+        allObjectGrid.remove(entity);
+    }
+
+    /**
+     * Spawns a new ship at the end of the ship list without starting a new frame. Fog of war isn't updated until
+     * the next call to {@link #advance(float)}.
+     */
+    public ShipAPI spawnShip()
+    {
+        createShip();
+        final ShipAPI ship = ships.get(ships.size() - 1);
+        addToGrids(ship);
+        return ship;
+    }
+
+    /**
+     * Spawns a new projectile or missile, fired by a random ship, at the end of the projectile list without
+     * starting a new frame.
+     */
+    public DamagingProjectileAPI spawnProjectile(boolean missile)
+    {
+        final DamagingProjectileAPI proj;
+        if (missile)
+        {
+            final MissileAPI tmp = createProjectile(MissileAPI.class);
+            missiles.add(tmp);
+            proj = tmp;
+        }
+        else
+        {
+            proj = createProjectile(DamagingProjectileAPI.class);
+        }
+
+        projectiles.add(proj);
+        addToGrids(proj);
+        return proj;
+    }
+
+    public void setFogOfWarEnabled(boolean fogEnabled)
+    {
+        this.fogEnabled = fogEnabled;
+    }
+
+    // Rebuilds the collision grids and fog of war from the current entity positions
+    private void update()
+    {
+        for (FakeWeapon weapon : weapons)
+        {
+            weapon.update();
+        }
+
+        shipGrid.clear();
+        missileGrid.clear();
+        asteroidGrid.clear();
+        allObjectGrid.clear();
+        for (ShipAPI ship : ships)
+        {
+            addToGrids(ship);
+        }
+
+        for (DamagingProjectileAPI proj : projectiles)
+        {
+            addToGrids(proj);
+        }
+
+        for (CombatEntityAPI asteroid : asteroids)
+        {
+            addToGrids(asteroid);
+        }
+
+        fog[0].update();
+        fog[1].update();
+    }
+
+    // Every entity goes in the all-object grid, plus whichever specialized grid the game would also put it in
+    private void addToGrids(CombatEntityAPI entity)
+    {
+        final Vector2f loc = entity.getLocation();
+        if (entity instanceof ShipAPI)
+        {
+            shipGrid.add(entity, loc);
+        }
+        else if (entity instanceof MissileAPI)
+        {
+            missileGrid.add(entity, loc);
+        }
+        else if (entity instanceof CombatAsteroidAPI)
+        {
+            asteroidGrid.add(entity, loc);
+        }
+
+        allObjectGrid.add(entity, loc);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Accessors">
+    public CombatEngineAPI getEngine()
+    {
+        return engine;
+    }
+
+    public List<ShipAPI> getShips()
+    {
+        return ships;
+    }
+
+    public List<DamagingProjectileAPI> getProjectiles()
+    {
+        return projectiles;
+    }
+
+    public List<MissileAPI> getMissiles()
+    {
+        return missiles;
+    }
+
+    public List<CombatEntityAPI> getAsteroids()
+    {
+        return asteroids;
+    }
+
+    public float getMapWidth()
+    {
+        return mapWidth;
+    }
+
+    public float getMapHeight()
+    {
+        return mapHeight;
+    }
+
+    public Vector2f getRandomPoint(Random rng)
+    {
+        return new Vector2f((rng.nextFloat() - 0.5f) * mapWidth, (rng.nextFloat() - 0.5f) * mapHeight);
+    }
+
+    /**
+     * Creates collision bounds from a list of points in the bounds' local space (where a facing of 0 points along
+     * the X axis), packed as {@code x0, y0, x1, y1, ...}. Each point is joined to the next, and if {@code closed}
+     * the last point is joined back to the first.
+     */
+    public static BoundsAPI createBounds(float[] points, boolean closed)
+    {
+        return new FakeBounds(points, closed).proxy;
+    }
+
+    /**
+     * Creates an entity that isn't part of any battle, for testing against specific bounds. It can be moved by
+     * changing the {@link Vector2f} returned by its {@code getLocation()}, and turned with {@code setFacing()}.
+     *
+     * @param bounds The entity's bounds, or {@code null} for an entity that only has a collision circle.
+     */
+    public static CombatEntityAPI createEntity(Vector2f location, float facing, float radius, BoundsAPI bounds)
+    {
+        final Vector2f loc = new Vector2f(location);
+        final float[] currentFacing = {facing};
+        return proxy(CombatEntityAPI.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getLocation":
+                    return loc;
+                case "getFacing":
+                    return currentFacing[0];
+                case "setFacing":
+                    currentFacing[0] = (Float) args[0];
+                    return null;
+                case "getCollisionRadius":
+                    return radius;
+                case "getExactBounds":
+                    return bounds;
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Returns whether {@code loc} is visible to {@code side} under this engine's fog of war, using the same rules
+     * as the {@link FogOfWarAPI} it hands out.
+     */
+    public boolean isVisible(int side, Vector2f loc)
+    {
+        return !fogEnabled || side < 0 || side > 1 || fog[side].isVisible(loc);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Proxies">
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(FakeCombatEngine.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    // Identity semantics for Object's methods, and false/zero/null for anything that isn't modelled
+    private static Object defaultValue(Object proxy, Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "@"
+                        + Integer.toHexString(System.identityHashCode(proxy));
+        }
+
+        final Class<?> type = method.getReturnType();
+        if (type == boolean.class)
+        {
+            return Boolean.FALSE;
+        }
+        else if (type == float.class)
+        {
+            return 0f;
+        }
+        else if (type == int.class)
+        {
+            return 0;
+        }
+        else if (type == double.class)
+        {
+            return 0.0;
+        }
+        else if (type == long.class)
+        {
+            return 0L;
+        }
+
+        return null;
+    }
+
+    private Object invokeEngine(Object proxy, Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "getShips":
+                return ships;
+            case "getProjectiles":
+                return projectiles;
+            case "getMissiles":
+                return missiles;
+            case "getAsteroids":
+                return asteroids;
+            case "getObjectives":
+                return objectives;
+            case "getCustomData":
+                return customData;
+            case "getTotalElapsedTime":
+                return elapsed;
+            case "getElapsedInLastFrame":
+                return lastFrame;
+            case "getMapWidth":
+                return mapWidth;
+            case "getMapHeight":
+                return mapHeight;
+            case "getShipGrid":
+                return shipGrid.proxy;
+            case "getMissileGrid":
+                return missileGrid.proxy;
+            case "getAsteroidGrid":
+                return asteroidGrid.proxy;
+            case "getAllObjectGrid":
+                return allObjectGrid.proxy;
+            case "getFogOfWar":
+            {
+                final int side = (Integer) args[0];
+                return (fogEnabled && side >= 0 && side <= 1 ? fog[side].proxy : noFog);
+            }
+            case "isEntityInPlay":
+                return ships.contains(args[0]) || projectiles.contains(args[0]) || asteroids.contains(args[0]);
+            default:
+                return defaultValue(proxy, method, args);
+        }
+    }
+
+    // The state behind a ship, projectile, missile, asteroid or objective
+    private class Body implements InvocationHandler
+    {
+        private final Vector2f loc = new Vector2f(), vel = new Vector2f();
+        private final List<WeaponAPI> weapons = new ArrayList<>();
+        private final int owner;
+        private float radius, facing, turnRate, hullLevel = 1f, fluxLevel, shieldArc;
+        private boolean fighter, hulk, shuttlePod, overloaded, shieldOn, flare, fizzling;
+        private ShipAPI source;
+        private BoundsAPI bounds;
+        private ShieldAPI shield;
+        private FluxTrackerAPI fluxTracker;
+
+        private Body(int owner)
+        {
+            this.owner = owner;
+        }
+
+        private <T> T create(Class<T> type)
+        {
+            final T proxy = proxy(type, this);
+            if (type == ShipAPI.class)
+            {
+                fluxTracker = proxy(FluxTrackerAPI.class, this::invokeFluxTracker);
+                shield = (shieldOn ? proxy(ShieldAPI.class, this::invokeShield) : null);
+            }
+
+            bodies.add(this);
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "getLocation":
+                    return loc;
+                case "getVelocity":
+                    return vel;
+                case "getCollisionRadius":
+                    return radius;
+                case "getFacing":
+                    return facing;
+                case "setFacing":
+                    facing = (Float) args[0];
+                    return null;
+                case "getExactBounds":
+                    return bounds;
+                case "getOwner":
+                case "getOriginalOwner":
+                    return owner;
+                case "isFighter":
+                    return fighter;
+                case "isHulk":
+                    return hulk;
+                case "isShuttlePod":
+                    return shuttlePod;
+                case "isAlive":
+                    return !hulk;
+                case "isFlare":
+                    return flare;
+                case "isFizzling":
+                    return fizzling;
+                case "getHullLevel":
+                    return hullLevel;
+                case "getHitpoints":
+                    return hullLevel * 1_000f;
+                case "getMaxHitpoints":
+                    return 1_000f;
+                case "getMaxTurnRate":
+                    return turnRate;
+                case "getAllWeapons":
+                    return weapons;
+                case "getShield":
+                    return shield;
+                case "getFluxTracker":
+                    return fluxTracker;
+                case "getSource":
+                    return source;
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        }
+
+        private Object invokeFluxTracker(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "getFluxLevel":
+                    return fluxLevel;
+                case "getCurrFlux":
+                    return fluxLevel * 10_000f;
+                case "getMaxFlux":
+                    return 10_000f;
+                case "isOverloaded":
+                case "isOverloadedOrVenting":
+                    return overloaded;
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        }
+
+        private Object invokeShield(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "isOn":
+                    return Boolean.TRUE;
+                case "isOff":
+                    return Boolean.FALSE;
+                case "getFacing":
+                    return facing;
+                case "getArc":
+                case "getActiveArc":
+                    return shieldArc;
+                case "getRadius":
+                    return radius;
+                case "getLocation":
+                    return loc;
+                case "isWithinArc":
+                {
+                    final Vector2f point = (Vector2f) args[0];
+                    final float angle = (float) Math.toDegrees(Math.atan2(point.y - loc.y, point.x - loc.x));
+                    return Math.abs(MathUtils.getShortestRotation(facing, angle)) <= shieldArc / 2f;
+                }
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        }
+    }
+
+    // A weapon mounted on a ship, whose location and aim follow the ship as it moves
+    private static class FakeWeapon implements InvocationHandler
+    {
+        private final ShipAPI ship;
+        private final Body shipBody;
+        private final WeaponAPI proxy;
+        private final Vector2f offset = new Vector2f(), loc = new Vector2f();
+        private float range, arc, arcFacing, angleOffset, turnRate;
+
+        private FakeWeapon(ShipAPI ship, Body shipBody)
+        {
+            this.ship = ship;
+            this.shipBody = shipBody;
+            this.proxy = proxy(WeaponAPI.class, this);
+        }
+
+        private void update()
+        {
+            final double facing = Math.toRadians(shipBody.facing);
+            final float cos = (float) Math.cos(facing), sin = (float) Math.sin(facing);
+            loc.set(shipBody.loc.x + offset.x * cos - offset.y * sin,
+                    shipBody.loc.y + offset.x * sin + offset.y * cos);
+        }
+
+        // How many degrees the weapon would need to turn past the edge of its arc to face point
+        private float distanceFromArc(Vector2f point)
+        {
+            if (arc >= 360f)
+            {
+                return 0f;
+            }
+
+            final float angle = (float) Math.toDegrees(Math.atan2(point.y - loc.y, point.x - loc.x));
+            final float fromCenter = Math.abs(MathUtils.getShortestRotation(shipBody.facing + arcFacing, angle));
+            return Math.max(0f, fromCenter - arc / 2f);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "getShip":
+                    return ship;
+                case "getLocation":
+                    return loc;
+                case "getRange":
+                    return range;
+                case "getArc":
+                    return arc;
+                case "getArcFacing":
+                    return arcFacing;
+                case "getCurrAngle":
+                    return MathUtils.clampAngle(shipBody.facing + arcFacing + angleOffset);
+                case "getTurnRate":
+                    return turnRate;
+                case "distanceFromArc":
+                    return distanceFromArc((Vector2f) args[0]);
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        }
+    }
+
+    // Bounds stored in local space, which are moved into world space whenever update() is called, as in the game
+    private static class FakeBounds implements InvocationHandler
+    {
+        private final List<BoundsAPI.SegmentAPI> origSegments = new ArrayList<>(), segments = new ArrayList<>();
+        private final BoundsAPI proxy = FakeCombatEngine.proxy(BoundsAPI.class, this);
+
+        private FakeBounds(float[] points, boolean closed)
+        {
+            final int numPoints = points.length / 2, numSegments = (closed ? numPoints : numPoints - 1);
+            for (int i = 0; i < numSegments; i++)
+            {
+                final int next = (i + 1) % numPoints;
+                origSegments.add(createSegment(points[i * 2], points[i * 2 + 1],
+                        points[next * 2], points[next * 2 + 1]));
+                segments.add(createSegment(points[i * 2], points[i * 2 + 1],
+                        points[next * 2], points[next * 2 + 1]));
+            }
+        }
+
+        private static BoundsAPI.SegmentAPI createSegment(float x1, float y1, float x2, float y2)
+        {
+            final Vector2f p1 = new Vector2f(x1, y1), p2 = new Vector2f(x2, y2);
+            return FakeCombatEngine.proxy(BoundsAPI.SegmentAPI.class, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "getP1":
+                        return p1;
+                    case "getP2":
+                        return p2;
+                    default:
+                        return defaultValue(proxy, method, args);
+                }
+            });
+        }
+
+        private void update(Vector2f location, float facing)
+        {
+            final double angle = Math.toRadians(facing);
+            final float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+            for (int i = 0; i < origSegments.size(); i++)
+            {
+                final BoundsAPI.SegmentAPI orig = origSegments.get(i), seg = segments.get(i);
+                rotate(orig.getP1(), location, cos, sin, seg.getP1());
+                rotate(orig.getP2(), location, cos, sin, seg.getP2());
+            }
+        }
+
+        private static void rotate(Vector2f local, Vector2f location, float cos, float sin, Vector2f dest)
+        {
+            dest.set(location.x + local.x * cos - local.y * sin, location.y + local.x * sin + local.y * cos);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "getOrigSegments":
+                    return origSegments;
+                case "getSegments":
+                    return segments;
+                case "update":
+                    update((Vector2f) args[0], (Float) args[1]);
+                    return null;
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        }
+    }
+
+    // A uniform bucket grid. The game doesn't document how far its grids look past the searched area, so this
+    // models the strictest behavior consistent with them: only objects whose center (as of when they were added)
+    // lies inside the searched rectangle are returned, and callers must pad searches for object size themselves
+    private class FakeGrid implements InvocationHandler
+    {
+        private final int cols = Math.max(1, (int) Math.ceil(mapWidth / GRID_CELL_SIZE)),
+                rows = Math.max(1, (int) Math.ceil(mapHeight / GRID_CELL_SIZE));
+        private final List<List<Object>> cells = new ArrayList<>(cols * rows);
+        private final Map<Object, Vector2f> locations = new IdentityHashMap<>();
+        private final CollisionGridAPI proxy = FakeCombatEngine.proxy(CollisionGridAPI.class, this);
+
+        private FakeGrid()
+        {
+            for (int i = 0; i < cols * rows; i++)
+            {
+                cells.add(new ArrayList<>());
+            }
+        }
+
+        private int getCol(float x)
+        {
+            return Math.max(0, Math.min(cols - 1, (int) Math.floor((x + mapWidth / 2f) / GRID_CELL_SIZE)));
+        }
+
+        private int getRow(float y)
+        {
+            return Math.max(0, Math.min(rows - 1, (int) Math.floor((y + mapHeight / 2f) / GRID_CELL_SIZE)));
+        }
+
+        private List<Object> getCell(Vector2f loc)
+        {
+            return cells.get(getRow(loc.y) * cols + getCol(loc.x));
+        }
+
+        private void clear()
+        {
+            for (List<Object> cell : cells)
+            {
+                cell.clear();
+            }
+
+            locations.clear();
+        }
+
+        private void add(Object obj, Vector2f loc)
+        {
+            remove(obj);
+            final Vector2f stored = new Vector2f(loc);
+            getCell(stored).add(obj);
+            locations.put(obj, stored);
+        }
+
+        private void remove(Object obj)
+        {
+            final Vector2f loc = locations.remove(obj);
+            if (loc != null)
+            {
+                getCell(loc).remove(obj);
+            }
+        }
+
+        private Iterator<Object> getCheckIterator(Vector2f loc, float width, float height)
+        {
+            final float minX = loc.x - width / 2f, maxX = loc.x + width / 2f,
+                    minY = loc.y - height / 2f, maxY = loc.y + height / 2f;
+            final List<Object> found = new ArrayList<>();
+            for (int row = getRow(minY); row <= getRow(maxY); row++)
+            {
+                for (int col = getCol(minX); col <= getCol(maxX); col++)
+                {
+                    for (Object obj : cells.get(row * cols + col))
+                    {
+                        final Vector2f objLoc = locations.get(obj);
+                        if (objLoc.x >= minX && objLoc.x <= maxX && objLoc.y >= minY && objLoc.y <= maxY)
+                        {
+                            found.add(obj);
+                        }
+                    }
+                }
+            }
+
+            return found.iterator();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "getCheckIterator":
+                    return getCheckIterator((Vector2f) args[0], (Float) args[1], (Float) args[2]);
+                case "addObject":
+                {
+                    add(args[0], (Vector2f) args[1]);
+                    return null;
+                }
+                case "removeObject":
+                    remove(args[0]);
+                    return null;
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        }
+    }
+
+    // Everything within sight range of one of a side's active ships is visible to that side
+    private class FakeFog implements InvocationHandler
+    {
+        private final int side, cols = Math.max(1, (int) Math.ceil(mapWidth / FOG_CELL_SIZE)),
+                rows = Math.max(1, (int) Math.ceil(mapHeight / FOG_CELL_SIZE));
+        private final boolean[] visible = new boolean[cols * rows];
+        private final FogOfWarAPI proxy = FakeCombatEngine.proxy(FogOfWarAPI.class, this);
+
+        private FakeFog(int side)
+        {
+            this.side = side;
+        }
+
+        private void update()
+        {
+            Arrays.fill(visible, false);
+            final int cellRange = (int) Math.ceil(SIGHT_RANGE / FOG_CELL_SIZE);
+            for (ShipAPI ship : ships)
+            {
+                if (ship.getOwner() != side || ship.isHulk() || ship.isShuttlePod())
+                {
+                    continue;
+                }
+
+                final Vector2f loc = ship.getLocation();
+                final int centerCol = getCol(loc.x), centerRow = getRow(loc.y);
+                for (int row = Math.max(0, centerRow - cellRange);
+                     row <= Math.min(rows - 1, centerRow + cellRange); row++)
+                {
+                    for (int col = Math.max(0, centerCol - cellRange);
+                         col <= Math.min(cols - 1, centerCol + cellRange); col++)
+                    {
+                        final float dx = (col + 0.5f) * FOG_CELL_SIZE - mapWidth / 2f - loc.x,
+                                dy = (row + 0.5f) * FOG_CELL_SIZE - mapHeight / 2f - loc.y;
+                        if (dx * dx + dy * dy <= SIGHT_RANGE * SIGHT_RANGE)
+                        {
+                            visible[row * cols + col] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        private int getCol(float x)
+        {
+            return Math.max(0, Math.min(cols - 1, (int) Math.floor((x + mapWidth / 2f) / FOG_CELL_SIZE)));
+        }
+
+        private int getRow(float y)
+        {
+            return Math.max(0, Math.min(rows - 1, (int) Math.floor((y + mapHeight / 2f) / FOG_CELL_SIZE)));
+        }
+
+        private boolean isVisible(Vector2f loc)
+        {
+            return visible[getRow(loc.y) * cols + getCol(loc.x)];
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            if (method.getName().equals("isVisible"))
+            {
+                final Object target = args[0];
+                return isVisible(target instanceof Vector2f ? (Vector2f) target
+                        : ((CombatEntityAPI) target).getLocation());
+            }
+
+            return defaultValue(proxy, method, args);
+        }
+    }
+    //</editor-fold>
+}
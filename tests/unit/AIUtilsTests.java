@@ -0,0 +1,149 @@
+import org.junit.Test;
+import org.lazywizard.lazylib.MathUtils;
+import org.lwjgl.util.vector.Vector2f;
+
+import static org.junit.Assert.*;
+import static org.lazywizard.lazylib.combat.AIUtils.*;
+
+public class AIUtilsTests
+{
+    private static final int NUM_TESTS = 10_000, NUM_PAIRS = 500;
+
+    @Test
+    public void testGetBestInterceptPoint()
+    {
+        final Vector2f dest = new Vector2f();
+        int numHits = 0;
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f point = MathUtils.getRandomPointInCircle(null, 2_000f),
+                    targetLoc = MathUtils.getRandomPointInCircle(null, 2_000f),
+                    targetVel = MathUtils.getRandomPointInCircle(null, 600f);
+            final float speed = MathUtils.getRandomNumberInRange(100f, 1_000f);
+            final float time = getInterceptTime(point.x, point.y, speed,
+                    targetLoc.x, targetLoc.y, targetVel.x, targetVel.y);
+            final Vector2f expected = getBestInterceptPoint(point, speed, targetLoc, targetVel);
+
+            dest.set(Float.NaN, Float.NaN);
+            final boolean found = getBestInterceptPoint(point, speed, targetLoc, targetVel, dest);
+            assertEquals(expected != null, found);
+            assertEquals(time != Float.MAX_VALUE, found);
+            if (!found)
+            {
+                // Failed searches must leave dest unchanged
+                assertTrue(Float.isNaN(dest.x) && Float.isNaN(dest.y));
+                continue;
+            }
+
+            numHits++;
+            assertEquals(expected, dest);
+            assertTrue(time > 0f);
+
+            // The object must reach the aim point at the same time as the target
+            assertEquals(targetLoc.x + targetVel.x * time, dest.x, 0.01f);
+            assertEquals(targetLoc.y + targetVel.y * time, dest.y, 0.01f);
+            assertEquals(speed * time, MathUtils.getDistance(point, dest), 0.01f * (1f + speed * time));
+        }
+
+        assertTrue(numHits > 0);
+
+        // Stationary target
+        assertEquals(2f, getInterceptTime(0f, 0f, 500f, 1_000f, 0f, 0f, 0f), 0.0001f);
+        // Target fleeing faster than the object can travel
+        assertEquals(Float.MAX_VALUE, getInterceptTime(0f, 0f, 500f, 1_000f, 0f, 600f, 0f), 0f);
+        assertNull(getBestInterceptPoint(new Vector2f(0f, 0f), 500f, new Vector2f(1_000f, 0f),
+                new Vector2f(600f, 0f)));
+        // Target approaching head-on
+        assertEquals(1f, getInterceptTime(0f, 0f, 500f, 1_000f, 0f, -500f, 0f), 0.0001f);
+    }
+
+    @Test
+    public void testGetInterceptTimes()
+    {
+        final float[] pointXs = new float[NUM_PAIRS], pointYs = new float[NUM_PAIRS], speeds = new float[NUM_PAIRS],
+                targetXs = new float[NUM_PAIRS], targetYs = new float[NUM_PAIRS],
+                targetVelXs = new float[NUM_PAIRS], targetVelYs = new float[NUM_PAIRS], dest = new float[NUM_PAIRS];
+        for (int i = 0; i < NUM_TESTS / 100; i++)
+        {
+            for (int j = 0; j < NUM_PAIRS; j++)
+            {
+                pointXs[j] = MathUtils.getRandomNumberInRange(-2_000f, 2_000f);
+                pointYs[j] = MathUtils.getRandomNumberInRange(-2_000f, 2_000f);
+                speeds[j] = MathUtils.getRandomNumberInRange(100f, 1_000f);
+                targetXs[j] = MathUtils.getRandomNumberInRange(-2_000f, 2_000f);
+                targetYs[j] = MathUtils.getRandomNumberInRange(-2_000f, 2_000f);
+                targetVelXs[j] = MathUtils.getRandomNumberInRange(-600f, 600f);
+                targetVelYs[j] = MathUtils.getRandomNumberInRange(-600f, 600f);
+            }
+
+            // Batch results must be identical to solving each pair on its own
+            final int numHits = getInterceptTimes(pointXs, pointYs, speeds, targetXs, targetYs,
+                    targetVelXs, targetVelYs, NUM_PAIRS, dest);
+            int expectedHits = 0;
+            for (int j = 0; j < NUM_PAIRS; j++)
+            {
+                final float expected = getInterceptTime(pointXs[j], pointYs[j], speeds[j],
+                        targetXs[j], targetYs[j], targetVelXs[j], targetVelYs[j]);
+                assertEquals(expected, dest[j], 0f);
+                if (expected != Float.MAX_VALUE)
+                {
+                    expectedHits++;
+                }
+            }
+
+            assertEquals(expectedHits, numHits);
+        }
+    }
+
+    @Test
+    public void testGetBestInterceptPointWithAcceleration()
+    {
+        final Vector2f zero = new Vector2f(), linear = new Vector2f(), dest = new Vector2f();
+        int numHits = 0;
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f point = MathUtils.getRandomPointInCircle(null, 2_000f),
+                    shooterVel = MathUtils.getRandomPointInCircle(null, 200f),
+                    targetLoc = MathUtils.getRandomPointInCircle(null, 2_000f),
+                    targetVel = MathUtils.getRandomPointInCircle(null, 300f),
+                    targetAccel = MathUtils.getRandomPointInCircle(null, 100f);
+            final float speed = MathUtils.getRandomNumberInRange(500f, 1_000f);
+
+            // Without acceleration or inherited velocity, results should match the linear solver
+            if (getBestInterceptPoint(point, speed, targetLoc, targetVel, linear))
+            {
+                assertTrue(getBestInterceptPoint(point, speed, zero, targetLoc, targetVel, zero, dest));
+                assertEquals(linear.x, dest.x, 0.01f);
+                assertEquals(linear.y, dest.y, 0.01f);
+            }
+
+            if (!getBestInterceptPoint(point, speed, shooterVel, targetLoc, targetVel, targetAccel, dest))
+            {
+                continue;
+            }
+
+            // Launched towards dest with the inherited velocity added, the object
+            // must arrive where the accelerating target will be at that time
+            numHits++;
+            final float time = MathUtils.getDistance(point, dest) / speed,
+                    hitX = point.x + (dest.x - point.x) + shooterVel.x * time,
+                    hitY = point.y + (dest.y - point.y) + shooterVel.y * time;
+            final float tolerance = 0.01f * (1f + speed * time);
+            assertEquals(targetLoc.x + targetVel.x * time + 0.5f * targetAccel.x * time * time, hitX, tolerance);
+            assertEquals(targetLoc.y + targetVel.y * time + 0.5f * targetAccel.y * time * time, hitY, tolerance);
+        }
+
+        assertTrue(numHits > 0);
+
+        // Stationary shooter, target accelerating directly away from rest
+        assertTrue(getBestInterceptPoint(new Vector2f(0f, 0f), 1_000f, zero, new Vector2f(1_000f, 0f),
+                zero, new Vector2f(100f, 0f), dest));
+        final float time = dest.x / 1_000f;
+        assertEquals(1_000f + 50f * time * time, dest.x, 0.5f);
+        assertEquals(0f, dest.y, 0f);
+
+        // Target too fast to ever catch
+        assertFalse(getBestInterceptPoint(new Vector2f(0f, 0f), 100f, zero, new Vector2f(1_000f, 0f),
+                new Vector2f(500f, 0f), new Vector2f(100f, 0f), dest));
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.Test;
+import org.lazywizard.lazylib.MathUtils;
+import org.lwjgl.util.vector.Vector2f;
+
+import static org.junit.Assert.*;
+import static org.lazywizard.lazylib.BatchMathUtils.*;
+
+// Every batch method should give exactly the same results as the equivalent MathUtils method
+public class BatchMathUtilsTests
+{
+    private static final int NUM_TESTS = 1_000, NUM_POINTS = 1_200;
+
+    @Test
+    public void testGetDistancesSquared()
+    {
+        final float[] xs = new float[NUM_POINTS], ys = new float[NUM_POINTS], dest = new float[NUM_POINTS];
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f origin = MathUtils.getRandomPointInCircle(null, 150_000f);
+            fillRandom(xs, ys, null);
+            getDistancesSquared(origin.x, origin.y, xs, ys, NUM_POINTS, dest);
+            for (int j = 0; j < NUM_POINTS; j++)
+            {
+                assertEquals(MathUtils.getDistanceSquared(xs[j], ys[j], origin.x, origin.y), dest[j], 0f);
+            }
+        }
+
+        xs[0] = 50f;
+        ys[0] = 50f;
+        getDistancesSquared(0f, 0f, xs, ys, 1, dest);
+        assertEquals(5_000f, dest[0], 0f);
+    }
+
+    @Test
+    public void testGetWithinRange()
+    {
+        final float[] xs = new float[NUM_POINTS], ys = new float[NUM_POINTS], radii = new float[NUM_POINTS];
+        final boolean[] mask = new boolean[NUM_POINTS];
+        final int[] indices = new int[NUM_POINTS];
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f origin = MathUtils.getRandomPointInCircle(null, 1_000f);
+            final float range = MathUtils.getRandomNumberInRange(0f, 1_500f);
+            fillRandom(xs, ys, radii);
+
+            // Without radii
+            int numHits = getWithinRange(origin.x, origin.y, range, xs, ys, null, NUM_POINTS, mask);
+            assertEquals(numHits, getIndicesWithinRange(origin.x, origin.y, range, xs, ys, null,
+                    NUM_POINTS, indices));
+            int expectedHits = 0;
+            for (int j = 0; j < NUM_POINTS; j++)
+            {
+                final boolean expected = MathUtils.isWithinRange(xs[j], ys[j], origin.x, origin.y, range);
+                assertEquals(expected, mask[j]);
+                if (expected)
+                {
+                    assertEquals(j, indices[expectedHits++]);
+                }
+            }
+            assertEquals(expectedHits, numHits);
+
+            // With radii, which should behave like MathUtils.isWithinRange(CombatEntityAPI, Vector2f, float)
+            numHits = getWithinRange(origin.x, origin.y, range, xs, ys, radii, NUM_POINTS, mask);
+            assertEquals(numHits, getIndicesWithinRange(origin.x, origin.y, range, xs, ys, radii,
+                    NUM_POINTS, indices));
+            expectedHits = 0;
+            for (int j = 0; j < NUM_POINTS; j++)
+            {
+                final boolean expected = MathUtils.isWithinRange(xs[j], ys[j], origin.x, origin.y,
+                        range + radii[j]);
+                assertEquals(expected, mask[j]);
+                if (expected)
+                {
+                    assertEquals(j, indices[expectedHits++]);
+                }
+            }
+            assertEquals(expectedHits, numHits);
+        }
+
+        // Test return values with known arguments
+        final float[] knownXs = {0f, 100f, 100.001f, 0f}, knownYs = {0f, 0f, 0f, 150f},
+                knownRadii = {0f, 0f, 0f, 50f};
+        assertEquals(2, getWithinRange(0f, 0f, 100f, knownXs, knownYs, null, 4, mask));
+        assertTrue(mask[0] && mask[1] && !mask[2] && !mask[3]);
+        assertEquals(3, getIndicesWithinRange(0f, 0f, 100f, knownXs, knownYs, knownRadii, 4, indices));
+        assertEquals(0, indices[0]);
+        assertEquals(1, indices[1]);
+        assertEquals(3, indices[2]);
+        assertEquals(0, getIndicesWithinRange(0f, 0f, 100f, knownXs, knownYs, knownRadii, 0, indices));
+    }
+
+    private static void fillRandom(float[] xs, float[] ys, float[] radii)
+    {
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = MathUtils.getRandomNumberInRange(-2_000f, 2_000f);
+            ys[i] = MathUtils.getRandomNumberInRange(-2_000f, 2_000f);
+            if (radii != null)
+            {
+                radii[i] = MathUtils.getRandomNumberInRange(0f, 300f);
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+import com.fs.starfarer.api.combat.BoundsAPI;
+import com.fs.starfarer.api.combat.BoundsAPI.SegmentAPI;
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import org.junit.Test;
+import org.lazywizard.lazylib.MathUtils;
+import org.lazywizard.lazylib.SweptCollision;
+import org.lazywizard.lazylib.testing.FakeCombatEngine;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.lazywizard.lazylib.CollisionUtils.*;
+
+public class CollisionUtilsTests
+{
+    private static final int NUM_TESTS = 1_200_000;
+    // Every entity with bounds is tested at this many random facings
+    private static final int NUM_BOUNDS_FACINGS = 3, NUM_BOUNDS_TESTS = 100, TREE_MIN_SEGMENTS = 32;
+    // Results closer than this to a tolerance boundary (the 1/3 su allowed by isPointOnSegment(), or just grazing
+    // the bounds) may legitimately differ between local and world space, so they aren't compared
+    private static final float AMBIGUOUS = 0.1f;
+    private final Random rng = new Random(4321);
+
+    @Test
+    public void testGetCollisionPoint()
+    {
+        // The raw coordinate version should agree with the Vector2f version
+        final Vector2f dest = new Vector2f();
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f start1 = MathUtils.getRandomPointInCircle(null, 1_500f),
+                    end1 = MathUtils.getRandomPointInCircle(null, 1_500f),
+                    start2 = MathUtils.getRandomPointInCircle(null, 1_500f),
+                    end2 = MathUtils.getRandomPointInCircle(null, 1_500f);
+            final Vector2f expected = getCollisionPoint(start1, end1, start2, end2);
+            final boolean hit = getCollisionPoint(start1.x, start1.y, end1.x, end1.y,
+                    start2.x, start2.y, end2.x, end2.y, dest);
+            assertEquals(expected != null, hit);
+            if (hit)
+            {
+                assertEquals(expected.x, dest.x, 0.01f);
+                assertEquals(expected.y, dest.y, 0.01f);
+            }
+        }
+
+        // Test return value with known arguments
+        assertTrue(getCollisionPoint(-10f, 0f, 10f, 0f, 0f, -10f, 0f, 10f, dest));
+        assertEquals(new Vector2f(0f, 0f), dest);
+        assertFalse(getCollisionPoint(-10f, 0f, 10f, 0f, -10f, 5f, 10f, 5f, dest));
+        assertFalse(getCollisionPoint(-10f, 0f, 10f, 0f, 20f, -10f, 20f, 10f, dest));
+    }
+
+    @Test
+    public void testGetCollides()
+    {
+        assertTrue(getCollides(-10f, 0f, 10f, 0f, 0f, 5f, 5f));
+        assertFalse(getCollides(-10f, 0f, 10f, 0f, 0f, 5.001f, 5f));
+        assertTrue(getCollides(-10f, 0f, 10f, 0f, 14f, 3f, 5f));
+        assertFalse(getCollides(-10f, 0f, 10f, 0f, 15f, 5f, 5f));
+    }
+
+    @Test
+    public void testIsPointOnSegment()
+    {
+        assertTrue(isPointOnSegment(5f, 0f, 0f, 0f, 10f, 0f));
+        assertTrue(isPointOnSegment(5f, 0.3f, 0f, 0f, 10f, 0f));
+        assertFalse(isPointOnSegment(5f, 0.4f, 0f, 0f, 10f, 0f));
+        assertFalse(isPointOnSegment(11f, 0f, 0f, 0f, 10f, 0f));
+    }
+
+    @Test
+    public void testIsPointWithinPolygon()
+    {
+        // A concave (arrowhead) polygon: the notch between the two tips is outside
+        final float[] polygon = {0f, 0f, 10f, 5f, 0f, 10f, 4f, 5f};
+        assertTrue(isPointWithinPolygon(6f, 5f, polygon, 4));
+        assertTrue(isPointWithinPolygon(2f, 2f, polygon, 4));
+        assertFalse(isPointWithinPolygon(1f, 5f, polygon, 4));
+        assertFalse(isPointWithinPolygon(11f, 5f, polygon, 4));
+        assertFalse(isPointWithinPolygon(5f, -1f, polygon, 4));
+
+        // Only the first numPoints vertices are used
+        assertTrue(isPointWithinPolygon(1f, 5f, polygon, 3));
+
+        // Points inside a regular polygon should match a circle test, away from its edges
+        final int numPoints = 64;
+        final float[] circle = new float[numPoints * 2];
+        for (int i = 0; i < numPoints; i++)
+        {
+            final double angle = Math.PI * 2.0 * i / numPoints;
+            circle[i * 2] = (float) Math.cos(angle) * 500f;
+            circle[i * 2 + 1] = (float) Math.sin(angle) * 500f;
+        }
+
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f inside = MathUtils.getRandomPointInCircle(null, 495f),
+                    outside = MathUtils.getRandomPointOnCircumference(null, MathUtils.getRandomNumberInRange(500.1f, 1_000f));
+            assertTrue(isPointWithinPolygon(inside.x, inside.y, circle, numPoints));
+            assertFalse(isPointWithinPolygon(outside.x, outside.y, circle, numPoints));
+        }
+    }
+
+    //<editor-fold desc="Bounds">
+    // Ships and asteroids of a generated battle, with bounds both above and below SegmentTree's minimum size (so
+    // both the tree and the segment-by-segment paths are compared)
+    private static List<CombatEntityAPI> getEntitiesWithBounds()
+    {
+        final FakeCombatEngine engine = new FakeCombatEngine(100, 0, 0, 100, FakeCombatEngine.DEFAULT_MAP_SIZE, 1234L);
+        final List<CombatEntityAPI> entities = new ArrayList<>(engine.getShips());
+        entities.addAll(engine.getAsteroids());
+
+        int small = 0, large = 0;
+        for (CombatEntityAPI entity : entities)
+        {
+            if (entity.getExactBounds().getOrigSegments().size() >= TREE_MIN_SEGMENTS)
+            {
+                large++;
+            }
+            else
+            {
+                small++;
+            }
+        }
+
+        assertTrue("Battle has no bounds below the tree's minimum size", small > 0);
+        assertTrue("Battle has no bounds above the tree's minimum size", large > 0);
+        return entities;
+    }
+
+    // The entity's bounds in world space, packed as x1, y1, x2, y2 per segment
+    private static float[] getWorldSegments(CombatEntityAPI entity)
+    {
+        final BoundsAPI bounds = entity.getExactBounds();
+        bounds.update(entity.getLocation(), entity.getFacing());
+        final List<SegmentAPI> segs = bounds.getSegments();
+        final float[] packed = new float[segs.size() * 4];
+        for (int i = 0; i < segs.size(); i++)
+        {
+            final SegmentAPI seg = segs.get(i);
+            packed[i * 4] = seg.getP1().x;
+            packed[i * 4 + 1] = seg.getP1().y;
+            packed[i * 4 + 2] = seg.getP2().x;
+            packed[i * 4 + 3] = seg.getP2().y;
+        }
+
+        return packed;
+    }
+
+    private static float getDistanceToSegments(float x, float y, float[] segs)
+    {
+        double closest = Double.MAX_VALUE;
+        for (int i = 0; i < segs.length; i += 4)
+        {
+            closest = Math.min(closest, Line2D.ptSegDistSq(segs[i], segs[i + 1], segs[i + 2], segs[i + 3], x, y));
+        }
+
+        return (float) Math.sqrt(closest);
+    }
+
+    // Even-odd crossing test against every segment
+    private static boolean isInsideSegments(float x, float y, float[] segs)
+    {
+        boolean inside = false;
+        for (int i = 0; i < segs.length; i += 4)
+        {
+            final float x1 = segs[i], y1 = segs[i + 1], x2 = segs[i + 2], y2 = segs[i + 3];
+            if ((y1 > y) != (y2 > y) && x < x1 + (x2 - x1) * (y - y1) / (y2 - y1))
+            {
+                inside = !inside;
+            }
+        }
+
+        return inside;
+    }
+
+    // How far along the line the first segment is crossed (0 at start, 1 at end), or -1 if none are
+    private static double getFirstCrossing(Vector2f start, Vector2f end, float[] segs)
+    {
+        double closest = -1.0;
+        final double dx = end.x - start.x, dy = end.y - start.y;
+        for (int i = 0; i < segs.length; i += 4)
+        {
+            final double segX = segs[i + 2] - segs[i], segY = segs[i + 3] - segs[i + 1],
+                    denom = dx * segY - dy * segX;
+            if (denom == 0.0)
+            {
+                continue;
+            }
+
+            final double offsetX = segs[i] - start.x, offsetY = segs[i + 1] - start.y,
+                    t = (offsetX * segY - offsetY * segX) / denom, u = (offsetX * dy - offsetY * dx) / denom;
+            if (t >= 0.0 && t <= 1.0 && u >= 0.0 && u <= 1.0 && (closest < 0.0 || t < closest))
+            {
+                closest = t;
+            }
+        }
+
+        return closest;
+    }
+
+    // Whether any vertex of the bounds is so close to the line that it might be hit or missed depending on rounding
+    private static boolean isGrazing(Vector2f start, Vector2f end, float[] segs)
+    {
+        for (int i = 0; i < segs.length; i += 2)
+        {
+            if (Line2D.ptSegDist(start.x, start.y, end.x, end.y, segs[i], segs[i + 1]) < AMBIGUOUS)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Vector2f getPointNear(CombatEntityAPI entity, float scale)
+    {
+        final float distance = entity.getCollisionRadius() * scale * (float) Math.sqrt(rng.nextFloat());
+        return MathUtils.getPointOnCircumference(entity.getLocation(), distance, rng.nextFloat() * 360f);
+    }
+
+    @Test
+    public void testPointsAgainstBounds()
+    {
+        for (CombatEntityAPI entity : getEntitiesWithBounds())
+        {
+            for (int facing = 0; facing < NUM_BOUNDS_FACINGS; facing++)
+            {
+                entity.setFacing(rng.nextFloat() * 360f);
+                final float[] segs = getWorldSegments(entity);
+                for (int i = 0; i < NUM_BOUNDS_TESTS; i++)
+                {
+                    final Vector2f point = getPointNear(entity, 1.2f);
+                    final float distance = getDistanceToSegments(point.x, point.y, segs);
+
+                    final Vector2f nearest = getNearestPointOnBounds(point, entity);
+                    assertEquals(distance, MathUtils.getDistance(point, nearest), 0.05f);
+                    assertEquals(0f, getDistanceToSegments(nearest.x, nearest.y, segs), 0.05f);
+
+                    // Points within 1/3 su of the bounds count as on them
+                    if (distance < 0.33f - AMBIGUOUS)
+                    {
+                        assertTrue(isPointWithinBounds(point, entity));
+                    }
+                    else if (distance > 0.33f + AMBIGUOUS)
+                    {
+                        assertEquals(isInsideSegments(point.x, point.y, segs), isPointWithinBounds(point, entity));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLinesAgainstBounds()
+    {
+        final Vector2f dest = new Vector2f();
+        for (CombatEntityAPI entity : getEntitiesWithBounds())
+        {
+            for (int facing = 0; facing < NUM_BOUNDS_FACINGS; facing++)
+            {
+                entity.setFacing(rng.nextFloat() * 360f);
+                final float[] segs = getWorldSegments(entity);
+                for (int i = 0; i < NUM_BOUNDS_TESTS; i++)
+                {
+                    final Vector2f start = getPointNear(entity, 1.5f), end = getPointNear(entity, 1.5f);
+                    // Ends within 1/3 su of the bounds are snapped onto them, which is covered elsewhere
+                    if (getDistanceToSegments(start.x, start.y, segs) < 0.33f + AMBIGUOUS
+                            || getDistanceToSegments(end.x, end.y, segs) < 0.33f + AMBIGUOUS
+                            || isGrazing(start, end, segs))
+                    {
+                        continue;
+                    }
+
+                    final Vector2f expected;
+                    if (isInsideSegments(start.x, start.y, segs))
+                    {
+                        expected = start;
+                    }
+                    else
+                    {
+                        final double fraction = getFirstCrossing(start, end, segs);
+                        expected = (fraction < 0.0 ? null : new Vector2f(
+                                (float) (start.x + (end.x - start.x) * fraction),
+                                (float) (start.y + (end.y - start.y) * fraction)));
+                    }
+
+                    final Vector2f hit = getCollisionPoint(start, end, entity);
+                    assertEquals(expected != null, hit != null);
+                    assertEquals(expected != null, getCollisionPoint(start, end, entity, dest));
+                    if (expected != null)
+                    {
+                        assertEquals(0f, MathUtils.getDistance(expected, hit), 0.05f);
+                        assertEquals(0f, MathUtils.getDistance(expected, dest), 0.05f);
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns the first fraction of the path (0 at start, 1 at end) at which a circle of the given radius touches the
+    // segment, or -1 if it never does. The distance from a moving point to a segment is convex over time, so its
+    // minimum is found by ternary search and the first touch before it by bisection
+    private static double getFirstTouch(Vector2f start, Vector2f delta, double radius,
+                                        float x1, float y1, float x2, float y2, boolean[] grazing)
+    {
+        // Most segments are nowhere near the path, which the distance between the two segments shows directly
+        final Vector2f end = Vector2f.add(start, delta, null);
+        final double segmentDistance = (Line2D.linesIntersect(start.x, start.y, end.x, end.y, x1, y1, x2, y2) ? 0.0
+                : Math.min(Math.min(Line2D.ptSegDist(start.x, start.y, end.x, end.y, x1, y1),
+                        Line2D.ptSegDist(start.x, start.y, end.x, end.y, x2, y2)),
+                Math.min(Line2D.ptSegDist(x1, y1, x2, y2, start.x, start.y),
+                        Line2D.ptSegDist(x1, y1, x2, y2, end.x, end.y))));
+        if (segmentDistance > radius + AMBIGUOUS)
+        {
+            return -1.0;
+        }
+
+        double low = 0.0, high = 1.0;
+        for (int i = 0; i < 60; i++)
+        {
+            final double third1 = low + (high - low) / 3.0, third2 = high - (high - low) / 3.0;
+            if (getDistance(start, delta, third1, x1, y1, x2, y2) < getDistance(start, delta, third2, x1, y1, x2, y2))
+            {
+                high = third2;
+            }
+            else
+            {
+                low = third1;
+            }
+        }
+
+        final double closest = low, minDistance = getDistance(start, delta, closest, x1, y1, x2, y2);
+        if (Math.abs(minDistance - radius) < AMBIGUOUS)
+        {
+            grazing[0] = true;
+        }
+
+        if (minDistance > radius)
+        {
+            return -1.0;
+        }
+
+        low = 0.0;
+        high = closest;
+        for (int i = 0; i < 60; i++)
+        {
+            final double mid = (low + high) / 2.0;
+            if (getDistance(start, delta, mid, x1, y1, x2, y2) <= radius)
+            {
+                high = mid;
+            }
+            else
+            {
+                low = mid;
+            }
+        }
+
+        return high;
+    }
+
+    private static double getDistance(Vector2f start, Vector2f delta, double fraction,
+                                      float x1, float y1, float x2, float y2)
+    {
+        return Line2D.ptSegDist(x1, y1, x2, y2, start.x + delta.x * fraction, start.y + delta.y * fraction);
+    }
+
+    @Test
+    public void testSweptCollisionAgainstBounds()
+    {
+        final SweptCollision result = new SweptCollision();
+        final float dt = 1f / 60f;
+        final boolean[] grazing = new boolean[1];
+        for (CombatEntityAPI entity : getEntitiesWithBounds())
+        {
+            for (int facing = 0; facing < NUM_BOUNDS_FACINGS; facing++)
+            {
+                entity.setFacing(rng.nextFloat() * 360f);
+                final float[] segs = getWorldSegments(entity);
+                for (int i = 0; i < NUM_BOUNDS_TESTS; i++)
+                {
+                    final Vector2f position = getPointNear(entity, 2f), target = getPointNear(entity, 1f);
+                    final Vector2f delta = Vector2f.sub(target, position, null);
+                    delta.scale(1f + rng.nextFloat() * 2f);
+                    final Vector2f velocity = new Vector2f(delta.x / dt, delta.y / dt);
+                    final float radius = (rng.nextBoolean() ? 0f : rng.nextFloat() * 30f),
+                            sweepRadius = Math.max(radius, 0.33333f);
+
+                    final float startDistance = getDistanceToSegments(position.x, position.y, segs);
+                    if (Math.abs(startDistance - sweepRadius) < AMBIGUOUS)
+                    {
+                        continue;
+                    }
+
+                    double expected = -1.0;
+                    grazing[0] = false;
+                    if (startDistance < sweepRadius || isInsideSegments(position.x, position.y, segs))
+                    {
+                        expected = 0.0;
+                    }
+                    else
+                    {
+                        for (int j = 0; j < segs.length; j += 4)
+                        {
+                            final double touch = getFirstTouch(position, delta, sweepRadius,
+                                    segs[j], segs[j + 1], segs[j + 2], segs[j + 3], grazing);
+                            if (touch >= 0.0 && (expected < 0.0 || touch < expected))
+                            {
+                                expected = touch;
+                            }
+                        }
+                    }
+
+                    if (grazing[0])
+                    {
+                        continue;
+                    }
+
+                    result.clear();
+                    assertEquals(expected >= 0.0, getSweptCollision(position, velocity, radius, dt, entity, result));
+                    if (expected >= 0.0)
+                    {
+                        // Compare where the circle was when it touched, rather than when
+                        assertEquals(0f, (float) Math.abs(expected - result.getTime() / dt) * delta.length(), 0.1f);
+                        assertEquals(0f, getDistanceToSegments(result.getPoint().x, result.getPoint().y, segs), 0.1f);
+                    }
+                }
+            }
+        }
+    }
+
+    // VectorUtils.rotate() uses FastTrig, which is too approximate for the tolerances tested here
+    private static Vector2f toWorld(float localX, float localY, float facing, Vector2f center)
+    {
+        final double angle = Math.toRadians(facing);
+        final float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+        return new Vector2f(center.x + localX * cos - localY * sin, center.y + localX * sin + localY * cos);
+    }
+
+    // A point moving far enough in one frame to jump over a thin wall entirely must still hit it
+    @Test
+    public void testSweptCollisionTunneling()
+    {
+        final SweptCollision result = new SweptCollision();
+        final float dt = 1f / 60f, speed = 30_000f;
+        // A single segment, and a wall of the same length split into enough segments to be tested using a tree
+        final float[] thinWall = {0f, -400f, 0f, 400f};
+        final float[] longWall = new float[(TREE_MIN_SEGMENTS + 9) * 2];
+        for (int i = 0; i < longWall.length / 2; i++)
+        {
+            longWall[i * 2 + 1] = -400f + 800f * i / (longWall.length / 2 - 1);
+        }
+
+        final Vector2f center = new Vector2f(1_000f, -2_000f);
+        for (float[] wall : new float[][]{thinWall, longWall})
+        {
+            final CombatEntityAPI entity = FakeCombatEngine.createEntity(center, 0f, 400f,
+                    FakeCombatEngine.createBounds(wall, false));
+            for (float facing = 0f; facing < 360f; facing += 15f)
+            {
+                entity.setFacing(facing);
+                for (float offset = -350f; offset <= 350f; offset += 50f)
+                {
+                    // Start 200 su in front of the wall and move straight through it, ending 300 su past it
+                    final Vector2f position = toWorld(-200f, offset, facing, center),
+                            velocity = toWorld(speed, 0f, facing, new Vector2f()),
+                            end = new Vector2f(position.x + velocity.x * dt, position.y + velocity.y * dt);
+
+                    result.clear();
+                    assertTrue(getSweptCollision(position, velocity, dt, entity, result));
+                    assertEquals((200f - 0.33333f) / speed, result.getTime(), 0.05f / speed);
+                    assertEquals(0f, MathUtils.getDistance(result.getPoint(), toWorld(0f, offset, facing, center)),
+                            0.1f);
+                    // The normal should point back the way the point came from
+                    assertTrue(Vector2f.dot(result.getNormal(), velocity) < 0f);
+                    assertNotNull(getCollisionPoint(position, end, entity));
+
+                    // Passing beside either end of the wall shouldn't hit it
+                    final Vector2f beside = toWorld(-200f, (offset < 0f ? -450f : 450f), facing, center);
+                    result.clear();
+                    assertFalse(getSweptCollision(beside, velocity, 10f, dt, entity, result));
+                }
+            }
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,687 @@
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import com.fs.starfarer.api.combat.DamagingProjectileAPI;
+import com.fs.starfarer.api.combat.MissileAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.WeaponAPI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lazywizard.lazylib.CollisionUtils;
+import org.lazywizard.lazylib.MathUtils;
+import org.lazywizard.lazylib.SweptCollision;
+import org.lazywizard.lazylib.VectorUtils;
+import org.lazywizard.lazylib.combat.AIUtils;
+import org.lazywizard.lazylib.combat.NearestEnemyTable;
+import org.lazywizard.lazylib.combat.RayCastResult;
+import org.lazywizard.lazylib.combat.WeaponAimMatrix;
+import org.lazywizard.lazylib.combat.WeaponTargetTable;
+import org.lazywizard.lazylib.combat.WeaponUtils;
+import org.lazywizard.lazylib.testing.FakeCombatEngine;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.awt.geom.Line2D;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.lazywizard.lazylib.combat.CombatUtils.*;
+
+// Every query should find exactly what a linear scan of the engine's lists finds, with and without caching
+public class CombatUtilsTests
+{
+    private static final int NUM_TESTS = 200, NUM_FRAMES = 3;
+    private final Random rng = new Random(5678);
+    private FakeCombatEngine engine;
+
+    @Before
+    public void setUp()
+    {
+        engine = new FakeCombatEngine(500, 20_000, 3_000);
+        engine.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FakeCombatEngine.setCachingEnabled(false);
+        FakeCombatEngine.uninstall();
+    }
+
+    private static <T> Set<T> asSet(Collection<T> results)
+    {
+        final Set<T> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(results);
+        assertEquals("Duplicate results found", results.size(), set.size());
+        return set;
+    }
+
+    // Runs a test against a few frames of the battle, once with caching enabled and once without
+    private void runTest(Runnable test)
+    {
+        runTest(test, NUM_TESTS);
+    }
+
+    private void runTest(Runnable test, int numTests)
+    {
+        for (boolean caching : new boolean[]{false, true})
+        {
+            FakeCombatEngine.setCachingEnabled(caching);
+            for (int frame = 0; frame < NUM_FRAMES; frame++)
+            {
+                for (int i = 0; i < numTests; i++)
+                {
+                    test.run();
+                }
+
+                engine.advance(1f / 60f);
+            }
+        }
+    }
+
+    @Test
+    public void testGetShipsWithinRange()
+    {
+        runTest(() ->
+        {
+            final Vector2f loc = engine.getRandomPoint(rng);
+            final float range = rng.nextFloat() * 3_000f;
+            final List<ShipAPI> expected = new ArrayList<>();
+            for (ShipAPI ship : engine.getShips())
+            {
+                if (!ship.isShuttlePod() && MathUtils.isWithinRange(ship, loc, range))
+                {
+                    expected.add(ship);
+                }
+            }
+
+            assertEquals(asSet(expected), asSet(getShipsWithinRange(loc, range)));
+        });
+    }
+
+    @Test
+    public void testGetProjectilesWithinRange()
+    {
+        runTest(() ->
+        {
+            final Vector2f loc = engine.getRandomPoint(rng);
+            final float range = rng.nextFloat() * 3_000f;
+            final List<DamagingProjectileAPI> expected = new ArrayList<>();
+            for (DamagingProjectileAPI proj : engine.getProjectiles())
+            {
+                if (!(proj instanceof MissileAPI) && MathUtils.isWithinRange(proj.getLocation(), loc, range))
+                {
+                    expected.add(proj);
+                }
+            }
+
+            assertEquals(asSet(expected), asSet(getProjectilesWithinRange(loc, range)));
+        });
+    }
+
+    @Test
+    public void testGetMissilesWithinRange()
+    {
+        runTest(() ->
+        {
+            final Vector2f loc = engine.getRandomPoint(rng);
+            final float range = rng.nextFloat() * 3_000f;
+            final List<MissileAPI> expected = new ArrayList<>();
+            for (MissileAPI missile : engine.getMissiles())
+            {
+                if (MathUtils.isWithinRange(missile.getLocation(), loc, range))
+                {
+                    expected.add(missile);
+                }
+            }
+
+            assertEquals(asSet(expected), asSet(getMissilesWithinRange(loc, range)));
+        });
+    }
+
+    private List<CombatEntityAPI> getExpectedEntities(Vector2f loc, float range)
+    {
+        final List<CombatEntityAPI> expected = new ArrayList<>();
+        for (ShipAPI ship : engine.getShips())
+        {
+            if (MathUtils.isWithinRange(ship, loc, range))
+            {
+                expected.add(ship);
+            }
+        }
+
+        for (DamagingProjectileAPI proj : engine.getProjectiles())
+        {
+            if (MathUtils.isWithinRange(proj, loc, range))
+            {
+                expected.add(proj);
+            }
+        }
+
+        for (CombatEntityAPI asteroid : engine.getAsteroids())
+        {
+            if (MathUtils.isWithinRange(asteroid, loc, range))
+            {
+                expected.add(asteroid);
+            }
+        }
+
+        return expected;
+    }
+
+    @Test
+    public void testGetEntitiesWithinRange()
+    {
+        runTest(() ->
+        {
+            final Vector2f loc = engine.getRandomPoint(rng);
+            final float range = rng.nextFloat() * 2_000f;
+            assertEquals(asSet(getExpectedEntities(loc, range)), asSet(getEntitiesWithinRange(loc, range)));
+        });
+    }
+
+    // Entities whose collision circle grazes the cone's edge could go either way after rounding, so only
+    // those clearly inside must be found and only those that come close may be
+    @Test
+    public void testGetEntitiesInCone()
+    {
+        runTest(() ->
+        {
+            final Vector2f apex = engine.getRandomPoint(rng);
+            final float facing = rng.nextFloat() * 360f, halfAngle = 1f + rng.nextFloat() * 199f,
+                    range = rng.nextFloat() * 3_000f;
+            final List<CombatEntityAPI> entities = new ArrayList<>(engine.getShips());
+            entities.addAll(engine.getMissiles());
+            entities.addAll(engine.getAsteroids());
+            final Set<CombatEntityAPI> found = asSet(getEntitiesInCone(apex, facing, halfAngle, range));
+            for (CombatEntityAPI entity : entities)
+            {
+                if (isInCone(entity, apex, facing, halfAngle, range, -0.1f))
+                {
+                    assertTrue(found.contains(entity));
+                }
+                else if (!isInCone(entity, apex, facing, halfAngle, range, 0.1f))
+                {
+                    assertFalse(found.contains(entity));
+                }
+            }
+
+            assertTrue(entities.containsAll(found));
+        });
+    }
+
+    private static boolean isInCone(CombatEntityAPI entity, Vector2f apex, float facing, float halfAngle,
+                                    float range, float slack)
+    {
+        final Vector2f loc = entity.getLocation();
+        final float radius = entity.getCollisionRadius() + slack;
+        if (!MathUtils.isWithinRange(loc, apex, range + radius))
+        {
+            return false;
+        }
+
+        if (halfAngle >= 180f
+                || Math.abs(MathUtils.getShortestRotation(facing, VectorUtils.getAngle(apex, loc))) <= halfAngle)
+        {
+            return true;
+        }
+
+        // Otherwise the circle has to reach one of the cone's edges
+        for (float edge : new float[]{facing - halfAngle, facing + halfAngle})
+        {
+            final Vector2f end = MathUtils.getPointOnCircumference(apex, range, edge);
+            if (Line2D.ptSegDist(apex.x, apex.y, end.x, end.y, loc.x, loc.y) <= radius)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Rays long enough to be split into several chunks, passing by ships far larger than any other entity
+    @Test
+    public void testRayCast()
+    {
+        final Vector2f hit = new Vector2f();
+        runTest(() ->
+        {
+            final Vector2f start = engine.getRandomPoint(rng),
+                    end = MathUtils.getPointOnCircumference(start, rng.nextFloat() * 3_000f, rng.nextFloat() * 360f);
+            final List<CombatEntityAPI> candidates = getExpectedEntities(start, MathUtils.getDistance(start, end));
+            float expected = Float.MAX_VALUE;
+            for (CombatEntityAPI entity : candidates)
+            {
+                if (CollisionUtils.getCollisionPoint(start, end, entity, hit))
+                {
+                    expected = Math.min(expected, MathUtils.getDistance(start, hit));
+                }
+            }
+
+            final RayCastResult result = rayCast(start, end, null);
+            assertEquals(expected != Float.MAX_VALUE, result != null);
+            if (result != null)
+            {
+                assertEquals(expected, result.getDistance(), 0.01f);
+                assertTrue(candidates.contains(result.getEntity()));
+            }
+        });
+    }
+
+    @Test
+    public void testGetSweptCollision()
+    {
+        final SweptCollision expected = new SweptCollision(), result = new SweptCollision();
+        runTest(() ->
+        {
+            final Vector2f position = engine.getRandomPoint(rng),
+                    velocity = MathUtils.getPointOnCircumference(null, rng.nextFloat() * 3_000f,
+                            rng.nextFloat() * 360f);
+            final float radius = rng.nextFloat() * 50f;
+            final List<CombatEntityAPI> candidates = getExpectedEntities(position, velocity.length() + radius);
+            expected.clear();
+            for (CombatEntityAPI entity : candidates)
+            {
+                CollisionUtils.getSweptCollision(position, velocity, radius,
+                        Math.min(1f, expected.getTime()), entity, expected);
+            }
+
+            assertEquals(expected.hasHit(), getSweptCollision(position, velocity, radius, 1f, null, result));
+            if (result.hasHit())
+            {
+                assertEquals(expected.getTime(), result.getTime(), 0.001f);
+                assertTrue(candidates.contains(result.getEntity()));
+            }
+        });
+    }
+
+    @Test
+    public void testGetNearbyEnemies()
+    {
+        runTest(() ->
+        {
+            final List<ShipAPI> ships = engine.getShips();
+            final ShipAPI source = ships.get(rng.nextInt(ships.size()));
+            final float range = rng.nextFloat() * 5_000f;
+            final List<ShipAPI> expected = new ArrayList<>();
+            ShipAPI nearest = null;
+            float nearestDistance = Float.MAX_VALUE;
+            for (ShipAPI ship : ships)
+            {
+                if (ship.getOwner() == source.getOwner() || ship.isHulk() || ship.isShuttlePod()
+                        || !engine.isVisible(source.getOwner(), ship.getLocation()))
+                {
+                    continue;
+                }
+
+                final float distance = MathUtils.getDistance(ship, source.getLocation());
+                if (distance < nearestDistance)
+                {
+                    nearest = ship;
+                    nearestDistance = distance;
+                }
+
+                if (MathUtils.isWithinRange(source, ship, range))
+                {
+                    expected.add(ship);
+                }
+            }
+
+            assertEquals(asSet(expected), asSet(AIUtils.getNearbyEnemies(source, range)));
+            final ShipAPI found = AIUtils.getNearestEnemy(source);
+            assertEquals(nearest == null, found == null);
+            if (found != null)
+            {
+                assertEquals(nearestDistance, MathUtils.getDistance(found, source.getLocation()), 0.01f);
+            }
+        });
+    }
+
+    @Test
+    public void testGetNearestMissiles()
+    {
+        runTest(() ->
+        {
+            final List<MissileAPI> missiles = engine.getMissiles();
+            final CombatEntityAPI source = (rng.nextBoolean() ? missiles.get(rng.nextInt(missiles.size()))
+                    : engine.getShips().get(rng.nextInt(engine.getShips().size())));
+            final boolean enemiesOnly = rng.nextBoolean();
+            // Sometimes ask for every result, which mustn't allocate room for Integer.MAX_VALUE of them
+            final int k = (rng.nextInt(10) == 0 ? Integer.MAX_VALUE : 1 + rng.nextInt(20));
+            final List<Float> expected = new ArrayList<>();
+            for (MissileAPI missile : missiles)
+            {
+                if (missile != source && (!enemiesOnly || missile.getOwner() != source.getOwner())
+                        && isVisibleToSide(missile, source.getOwner()))
+                {
+                    expected.add(MathUtils.getDistance(missile.getLocation(), source.getLocation()));
+                }
+            }
+
+            final List<MissileAPI> found = (enemiesOnly ? AIUtils.getNearestEnemyMissiles(source, k)
+                    : AIUtils.getNearestMissiles(source, k));
+            final List<Float> distances = new ArrayList<>();
+            for (MissileAPI missile : found)
+            {
+                distances.add(MathUtils.getDistance(missile.getLocation(), source.getLocation()));
+            }
+
+            assertNearest(expected, k, found, distances);
+        });
+    }
+
+    // A k-nearest search must find the k closest of everything a linear scan accepts, closest first
+    private static void assertNearest(List<Float> expected, int k, List<?> found, List<Float> distances)
+    {
+        Collections.sort(expected);
+        assertEquals(Math.min(k, expected.size()), asSet(found).size());
+        for (int i = 0; i < distances.size(); i++)
+        {
+            assertEquals(expected.get(i), distances.get(i), 0.01f);
+        }
+    }
+
+    @Test
+    public void testGetNearestShips()
+    {
+        runTest(() ->
+        {
+            final List<ShipAPI> ships = engine.getShips();
+            final ShipAPI source = ships.get(rng.nextInt(ships.size()));
+            // Sometimes ask for every result, which mustn't allocate room for Integer.MAX_VALUE of them
+            final int k = (rng.nextInt(10) == 0 ? Integer.MAX_VALUE : 1 + rng.nextInt(20));
+            final List<Float> enemies = new ArrayList<>(), allies = new ArrayList<>(), all = new ArrayList<>();
+            for (ShipAPI ship : ships)
+            {
+                if (ship == source || ship.isHulk() || ship.isShuttlePod())
+                {
+                    continue;
+                }
+
+                final float distance = MathUtils.getDistance(ship, source.getLocation());
+                final boolean visible = isVisibleToSide(ship, source.getOwner());
+                if (visible)
+                {
+                    all.add(distance);
+                }
+
+                if (ship.getOwner() == source.getOwner())
+                {
+                    allies.add(distance);
+                }
+                else if (visible)
+                {
+                    enemies.add(distance);
+                }
+            }
+
+            final List<ShipAPI> nearestEnemies = AIUtils.getNearestEnemies(source, k),
+                    nearestAllies = AIUtils.getNearestAllies(source, k),
+                    nearestShips = AIUtils.getNearestShips(source, k);
+            assertNearest(enemies, k, nearestEnemies, getDistances(nearestEnemies, source.getLocation()));
+            assertNearest(allies, k, nearestAllies, getDistances(nearestAllies, source.getLocation()));
+            assertNearest(all, k, nearestShips, getDistances(nearestShips, source.getLocation()));
+        });
+    }
+
+    private static List<Float> getDistances(List<ShipAPI> ships, Vector2f loc)
+    {
+        final List<Float> distances = new ArrayList<>();
+        for (ShipAPI ship : ships)
+        {
+            distances.add(MathUtils.getDistance(ship, loc));
+        }
+
+        return distances;
+    }
+
+    @Test
+    public void testGetNearestEnemiesForAllShips()
+    {
+        runTest(() ->
+        {
+            final NearestEnemyTable table = AIUtils.getNearestEnemiesForAllShips();
+            int row = 0;
+            for (ShipAPI ship : engine.getShips())
+            {
+                if (ship.isHulk() || ship.isShuttlePod() || (ship.getOwner() != 0 && ship.getOwner() != 1))
+                {
+                    assertEquals(-1, table.getRow(ship));
+                    continue;
+                }
+
+                float nearest = Float.MAX_VALUE;
+                for (ShipAPI enemy : engine.getShips())
+                {
+                    if (enemy.getOwner() != ship.getOwner() && !enemy.isHulk() && !enemy.isShuttlePod()
+                            && isVisibleToSide(enemy, ship.getOwner()))
+                    {
+                        nearest = Math.min(nearest, MathUtils.getDistance(enemy, ship.getLocation()));
+                    }
+                }
+
+                assertSame(ship, table.getShip(row));
+                assertEquals(row, table.getRow(ship));
+                assertSame(table.getNearestEnemy(row), table.getNearestEnemy(ship));
+                assertEquals(nearest == Float.MAX_VALUE, table.getNearestEnemy(row) == null);
+                if (nearest != Float.MAX_VALUE)
+                {
+                    assertEquals(nearest, MathUtils.getDistance(table.getNearestEnemy(row), ship.getLocation()),
+                            0.01f);
+                }
+
+                row++;
+            }
+
+            assertEquals(row, table.size());
+        }, 1);
+    }
+
+    // Every row must hold what the single-weapon searches find for that weapon
+    @Test
+    public void testGetTargetsInArc()
+    {
+        final WeaponTargetTable table = new WeaponTargetTable();
+        runTest(() ->
+        {
+            final List<ShipAPI> ships = engine.getShips();
+            final ShipAPI ship = ships.get(rng.nextInt(ships.size()));
+            WeaponUtils.getTargetsInArc(ship, table);
+            final List<WeaponAPI> weapons = ship.getAllWeapons();
+            assertEquals(weapons.size(), table.size());
+            for (int row = 0; row < table.size(); row++)
+            {
+                final WeaponAPI weapon = weapons.get(row);
+                final Vector2f loc = weapon.getLocation();
+                assertSame(weapon, table.getWeapon(row));
+                assertEquals(asSet(WeaponUtils.getEnemiesInArc(weapon)), asSet(table.getEnemies(row)));
+                assertEquals(asSet(WeaponUtils.getAlliesInArc(weapon)), asSet(table.getAllies(row)));
+                assertEquals(asSet(WeaponUtils.getEnemyMissilesInArc(weapon)),
+                        asSet(table.getEnemyMissiles(row)));
+
+                final ShipAPI enemy = WeaponUtils.getNearestEnemyInArc(weapon),
+                        ally = WeaponUtils.getNearestAllyInArc(weapon);
+                final MissileAPI missile = WeaponUtils.getNearestEnemyMissileInArc(weapon);
+                assertEquals(enemy == null, table.getNearestEnemy(row) == null);
+                assertEquals(ally == null, table.getNearestAlly(row) == null);
+                assertEquals(missile == null, table.getNearestEnemyMissile(row) == null);
+                if (enemy != null)
+                {
+                    assertEquals(MathUtils.getDistance(enemy, loc),
+                            MathUtils.getDistance(table.getNearestEnemy(row), loc), 0.01f);
+                }
+
+                if (ally != null)
+                {
+                    assertEquals(MathUtils.getDistance(ally, loc),
+                            MathUtils.getDistance(table.getNearestAlly(row), loc), 0.01f);
+                }
+
+                if (missile != null)
+                {
+                    assertEquals(MathUtils.getDistance(missile.getLocation(), loc),
+                            MathUtils.getDistance(table.getNearestEnemyMissile(row).getLocation(), loc), 0.01f);
+                }
+            }
+        });
+    }
+
+    // Rows and columns are checked separately, so a matrix with no targets (or no weapons) can still be read
+    @Test
+    public void testAimMatrixWithEmptyLists()
+    {
+        ShipAPI armed = null, unarmed = null;
+        for (ShipAPI ship : engine.getShips())
+        {
+            if (ship.getAllWeapons().isEmpty())
+            {
+                unarmed = ship;
+            }
+            else
+            {
+                armed = ship;
+            }
+        }
+
+        assertNotNull(armed);
+        assertNotNull(unarmed);
+
+        final WeaponAimMatrix matrix = WeaponUtils.getAimMatrix(armed, Collections.<CombatEntityAPI>emptyList());
+        assertEquals(armed.getAllWeapons().size(), matrix.getNumWeapons());
+        assertEquals(0, matrix.getNumTargets());
+        for (int row = 0; row < matrix.getNumWeapons(); row++)
+        {
+            assertSame(armed.getAllWeapons().get(row), matrix.getWeapon(row));
+            assertEquals(-1, matrix.getQuickestTarget(row));
+        }
+
+        assertOutOfBounds(() -> matrix.getTarget(0));
+        assertOutOfBounds(() -> matrix.getTimeToAim(0, 0));
+
+        final List<ShipAPI> targets = engine.getShips().subList(0, 10);
+        WeaponUtils.getAimMatrix(unarmed, targets, matrix);
+        assertEquals(0, matrix.getNumWeapons());
+        assertEquals(targets.size(), matrix.getNumTargets());
+        for (int column = 0; column < matrix.getNumTargets(); column++)
+        {
+            assertSame(targets.get(column), matrix.getTarget(column));
+        }
+
+        assertOutOfBounds(() -> matrix.getWeapon(0));
+        assertOutOfBounds(() -> matrix.getQuickestTarget(0));
+    }
+
+    private static void assertOutOfBounds(Runnable access)
+    {
+        try
+        {
+            access.run();
+            fail("Expected an IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException ignored)
+        {
+        }
+    }
+
+    @Test
+    public void testGetNearbyEnemyMissiles()
+    {
+        runTest(() ->
+        {
+            final List<ShipAPI> ships = engine.getShips();
+            final ShipAPI source = ships.get(rng.nextInt(ships.size()));
+            final float range = rng.nextFloat() * 2_000f;
+            final List<MissileAPI> expected = new ArrayList<>();
+            for (MissileAPI missile : engine.getMissiles())
+            {
+                if ((missile.getOwner() != source.getOwner() || missile.isFizzling())
+                        && MathUtils.isWithinRange(source, missile, range))
+                {
+                    expected.add(missile);
+                }
+            }
+
+            assertEquals(asSet(expected), asSet(AIUtils.getNearbyEnemyMissiles(source, range)));
+        });
+    }
+
+    // Entities replaced by others partway through a frame leave every list the same size, which
+    // the per-frame caches (and the largest radius tracked for grid searches) mustn't mistake for
+    // nothing having changed
+    @Test
+    public void testMidFrameChanges()
+    {
+        for (boolean caching : new boolean[]{false, true})
+        {
+            FakeCombatEngine.setCachingEnabled(caching);
+            for (int i = 0; i < NUM_TESTS; i++)
+            {
+                final Vector2f loc = engine.getRandomPoint(rng);
+                final float range = rng.nextFloat() * 2_000f;
+                assertEquals(asSet(getExpectedEntities(loc, range)), asSet(getEntitiesWithinRange(loc, range)));
+
+                final List<DamagingProjectileAPI> projectiles = engine.getProjectiles();
+                engine.remove(projectiles.get(rng.nextInt(projectiles.size())));
+                engine.spawnProjectile(rng.nextBoolean());
+            }
+
+            for (int i = 0; i < NUM_TESTS; i++)
+            {
+                final List<ShipAPI> ships = engine.getShips();
+                final ShipAPI source = ships.get(rng.nextInt(ships.size()));
+                final float range = rng.nextFloat() * 5_000f;
+                final List<ShipAPI> expected = new ArrayList<>();
+                for (ShipAPI ship : ships)
+                {
+                    if (ship.getOwner() != source.getOwner() && !ship.isHulk() && !ship.isShuttlePod()
+                            && engine.isVisible(source.getOwner(), ship.getLocation())
+                            && MathUtils.isWithinRange(source, ship, range))
+                    {
+                        expected.add(ship);
+                    }
+                }
+
+                assertEquals(asSet(expected), asSet(AIUtils.getNearbyEnemies(source, range)));
+                assertEquals(asSet(getExpectedEntities(source.getLocation(), range)),
+                        asSet(getEntitiesWithinRange(source.getLocation(), range)));
+
+                ShipAPI removed;
+                do
+                {
+                    removed = ships.get(rng.nextInt(ships.size()));
+                }
+                while (removed == source);
+
+                engine.remove(removed);
+                engine.spawnShip();
+            }
+        }
+    }
+
+    @Test
+    public void testFogOfWar()
+    {
+        // Every active ship can see its own location, and turning fog off makes everything visible
+        for (ShipAPI ship : engine.getShips())
+        {
+            if (!ship.isHulk() && !ship.isShuttlePod())
+            {
+                assertTrue(engine.isVisible(ship.getOwner(), ship.getLocation()));
+            }
+        }
+
+        int hidden = 0;
+        for (ShipAPI ship : engine.getShips())
+        {
+            if (!isVisibleToSide(ship, 1 - ship.getOwner()))
+            {
+                hidden++;
+            }
+        }
+
+        assertTrue(hidden > 0);
+        engine.setFogOfWarEnabled(false);
+        for (ShipAPI ship : engine.getShips())
+        {
+            assertTrue(isVisibleToSide(ship, 1 - ship.getOwner()));
+        }
+    }
+}
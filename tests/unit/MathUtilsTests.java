@@ -81,6 +81,28 @@ public class MathUtilsTests
                 new Vector2f(50f, 50f)), 0f);
     }
 
+    @Test
+    public void testGetDistanceFromCoordinates()
+    {
+        // The raw coordinate versions should match the Vector2f versions exactly
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f loc1 = getRandomPointInCircle(null, 150_000f),
+                    loc2 = getRandomPointInCircle(null, 150_000f);
+            final float range = getRandomNumberInRange(0f, 150_000f);
+
+            assertEquals(getDistance(loc1, loc2), getDistance(loc1.x, loc1.y, loc2.x, loc2.y), 0f);
+            assertEquals(getDistanceSquared(loc1, loc2), getDistanceSquared(loc1.x, loc1.y, loc2.x, loc2.y), 0f);
+            assertEquals(isWithinRange(loc1, loc2, range), isWithinRange(loc1.x, loc1.y, loc2.x, loc2.y, range));
+        }
+
+        assertEquals(50f, getDistance(0f, 0f, 50f, 0f), 0f);
+        assertEquals(70.7106f, getDistance(0f, 0f, 50f, 50f), 0.0001f);
+        assertEquals(5_000f, getDistanceSquared(0f, 0f, -50f, -50f), 0f);
+        assertTrue(isWithinRange(0f, 0f, 0f, 50f, 50f));
+        assertFalse(isWithinRange(0f, 0f, 0f, 50.001f, 50f));
+    }
+
     @Test
     public void testClampAngle()
     {
@@ -191,9 +213,36 @@ public class MathUtilsTests
                     notInCircle = getRandomPointOnCircumference(origin, 500.001f);
             assertTrue(isPointWithinCircle(inCircle, origin, 500f));
             assertFalse(isPointWithinCircle(notInCircle, origin, 500f));
+            assertTrue(isPointWithinCircle(inCircle.x, inCircle.y, origin.x, origin.y, 500f));
+            assertFalse(isPointWithinCircle(notInCircle.x, notInCircle.y, origin.x, origin.y, 500f));
         }
     }
 
+    @Test
+    public void testGetNearestPointOnLine()
+    {
+        // The nearest point must be on the line, and no further away than either end
+        final Vector2f dest = new Vector2f();
+        for (int i = 0; i < NUM_TESTS; i++)
+        {
+            final Vector2f source = getRandomPointInCircle(null, 1_500f),
+                    lineStart = getRandomPointInCircle(null, 1_500f),
+                    lineEnd = getRandomPointInCircle(null, 1_500f);
+            getNearestPointOnLine(source.x, source.y, lineStart.x, lineStart.y, lineEnd.x, lineEnd.y, dest);
+            assertEquals(0f, (float) java.awt.geom.Line2D.ptSegDist(lineStart.x, lineStart.y,
+                    lineEnd.x, lineEnd.y, dest.x, dest.y), 0.01f);
+            assertTrue(getDistance(source, dest) <= getDistance(source, lineStart) + 0.01f);
+            assertTrue(getDistance(source, dest) <= getDistance(source, lineEnd) + 0.01f);
+        }
+
+        // Test return value with known arguments
+        assertEquals(new Vector2f(5f, 0f), getNearestPointOnLine(new Vector2f(5f, 5f),
+                new Vector2f(0f, 0f), new Vector2f(10f, 0f)));
+        assertEquals(new Vector2f(10f, 0f), getNearestPointOnLine(20f, 5f, 0f, 0f, 10f, 0f, dest));
+        assertEquals(new Vector2f(0f, 0f), getNearestPointOnLine(-20f, -5f, 0f, 0f, 10f, 0f, dest));
+        assertEquals(new Vector2f(3f, 3f), getNearestPointOnLine(10f, 10f, 3f, 3f, 3f, 3f, dest));
+    }
+
     //@Test
     public void testIsPointOnLine()
     {